@@ -32,10 +32,15 @@ import androidx.test.uiautomator.UiObject2;
 import com.google.common.base.Strings;
 import com.google.gson.annotations.SerializedName;
 
+import java.util.Locale;
+
 /** Workflow Task For Workflows in Spectatio Config JSON Config */
 public class WorkflowTask {
     private static final String LOG_TAG = WorkflowTask.class.getSimpleName();
 
+    // Upper bound for the UI to settle after each task, e.g. a swipe
+    private static final long TASK_SETTLE_TIMEOUT_MS = 1000;
+
     @SerializedName("NAME")
     private String mName;
 
@@ -119,8 +124,9 @@ public class WorkflowTask {
                     String.format(
                             "Completed executing Task %s, %d time(s).", mName, executionCount));
 
-            // Wait for 1 Second before executing another task
-            spectatioUiUtil.wait1Second();
+            // Wait for the UI to settle, at most 1 second, before executing another task
+            spectatioUiUtil.waitForUiToSettle(
+                    /* label= */ mType.toLowerCase(Locale.US), TASK_SETTLE_TIMEOUT_MS);
         } while (executionCount < (1 + mRepeatCount));
 
         Log.i(
@@ -39,6 +39,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 public class SpectatioUiUtil {
     private static final String LOG_TAG = SpectatioUiUtil.class.getSimpleName();
@@ -54,10 +55,12 @@ public class SpectatioUiUtil {
     private static final float SCROLL_PERCENT = 1.0f;
     private static final float SWIPE_PERCENT = 1.0f;
 
-    private int mWaitTimeAfterScroll = 5; // seconds
+    private int mWaitTimeAfterScroll = 5; // milliseconds, as passed to waitNSeconds()
     private int mScrollMargin = 4;
 
     private UiDevice mDevice;
+    private UiSettleWaiter mUiSettleWaiter;
+    private boolean mHasUiAutomation = false;
 
     public enum SwipeDirection {
         TOP_TO_BOTTOM,
@@ -115,6 +118,9 @@ public class SpectatioUiUtil {
 
     private SpectatioUiUtil(UiDevice mDevice) {
         this.mDevice = mDevice;
+        // Without UiAutomation, settle waits fall back to fixed sleeps until an instrumentation
+        // is provided through getInstance(Instrumentation).
+        this.mUiSettleWaiter = new UiSettleWaiter(/* uiAutomation= */ null);
     }
 
     public static SpectatioUiUtil getInstance(UiDevice mDevice) {
@@ -130,7 +136,12 @@ public class SpectatioUiUtil {
      * instance.
      */
     public static SpectatioUiUtil getInstance(Instrumentation instrumentation) {
-        return getInstance(UiDevice.getInstance(instrumentation));
+        SpectatioUiUtil spectatioUiUtil = getInstance(UiDevice.getInstance(instrumentation));
+        if (!spectatioUiUtil.mHasUiAutomation) {
+            spectatioUiUtil.mUiSettleWaiter = new UiSettleWaiter(instrumentation.getUiAutomation());
+            spectatioUiUtil.mHasUiAutomation = true;
+        }
+        return spectatioUiUtil;
     }
 
     /** Sets the scroll margin and wait time after the scroll */
@@ -139,6 +150,32 @@ public class SpectatioUiUtil {
         this.mWaitTimeAfterScroll = waitTime;
     }
 
+    /**
+     * Enables or disables waiting for the UI to settle after clicks and scrolls. When disabled,
+     * Spectatio sleeps for a fixed time after each action instead.
+     */
+    public void setUiSettleDetectionEnabled(boolean enabled) {
+        mUiSettleWaiter.setEnabled(enabled);
+    }
+
+    /** Returns the waits after UI actions recorded so far, in order. */
+    public List<UiSettleWaiter.Wait> getWaits() {
+        return mUiSettleWaiter.getWaits();
+    }
+
+    /**
+     * Returns the time spent waiting after UI actions, keyed by wait type. See {@link
+     * UiSettleWaiter#getMetrics()} for the metric keys.
+     */
+    public Map<String, Long> getWaitMetrics() {
+        return mUiSettleWaiter.getMetrics();
+    }
+
+    /** Clears the waits after UI actions recorded so far. */
+    public void resetWaitMetrics() {
+        mUiSettleWaiter.clearWaits();
+    }
+
     public boolean pressBack() {
         return mDevice.pressBack();
     }
@@ -171,7 +208,7 @@ public class SpectatioUiUtil {
             return false;
         }
         uiObject.longClick();
-        wait1Second();
+        waitForUiToSettle(/* label= */ "long_press", SHORT_UI_RESPONSE_WAIT_MS);
         return true;
     }
 
@@ -180,7 +217,7 @@ public class SpectatioUiUtil {
             // Use English Locale because ADB Shell command does not depend on Device UI
             mDevice.executeShellCommand(
                     String.format(Locale.ENGLISH, "input keyevent --longpress %d", keyCode));
-            wait1Second();
+            waitForUiToSettle(/* label= */ "long_press_key", SHORT_UI_RESPONSE_WAIT_MS);
             return true;
         } catch (IOException e) {
             // Ignore
@@ -217,7 +254,7 @@ public class SpectatioUiUtil {
                             xCenter,
                             yCenter,
                             LONG_PRESS_DURATION_MS));
-            wait1Second();
+            waitForUiToSettle(/* label= */ "long_press", SHORT_UI_RESPONSE_WAIT_MS);
             return true;
         } catch (IOException e) {
             // Ignore
@@ -240,17 +277,17 @@ public class SpectatioUiUtil {
     public void clickAndWait(UiObject2 uiObject) {
         validateUiObjectAndThrowIllegalArgumentException(uiObject, /* action= */ "Click");
         uiObject.click();
-        wait1Second();
+        waitForUiToSettle(/* label= */ "click", SHORT_UI_RESPONSE_WAIT_MS);
     }
 
     /**
-     * Click at a specific location in the UI, and wait one second
+     * Click at a specific location in the UI, and wait up to one second for the UI to settle
      *
      * @param location Where to click
      */
     public void clickAndWait(Point location) {
         mDevice.click(location.x, location.y);
-        wait1Second();
+        waitForUiToSettle(/* label= */ "click", SHORT_UI_RESPONSE_WAIT_MS);
     }
 
     public void waitForIdle() {
@@ -272,6 +309,19 @@ public class SpectatioUiUtil {
 
     public void waitNSeconds(int waitTime) {
         SystemClock.sleep(waitTime);
+        mUiSettleWaiter.recordFixedWait(/* label= */ "fixed", waitTime);
+    }
+
+    /**
+     * Waits until the UI settles, i.e. no accessibility event has been received for a short idle
+     * window, or until the given timeout expires.
+     *
+     * @param label Name of the action the wait follows, recorded with the wait.
+     * @param timeoutMs Upper bound for the wait.
+     * @return true if the UI settled before the timeout.
+     */
+    public boolean waitForUiToSettle(String label, long timeoutMs) {
+        return mUiSettleWaiter.waitForSettle(label, timeoutMs);
     }
 
     /**
@@ -1050,7 +1100,7 @@ public class SpectatioUiUtil {
         String previousView = getViewHierarchy();
 
         scrollableObject.scroll(direction, SCROLL_PERCENT);
-        waitNSeconds(mWaitTimeAfterScroll);
+        waitForUiToSettle(/* label= */ "scroll", mWaitTimeAfterScroll);
 
         String currentView = getViewHierarchy();
 
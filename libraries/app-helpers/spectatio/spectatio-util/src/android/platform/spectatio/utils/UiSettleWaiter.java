@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.platform.spectatio.utils;
+
+import android.app.UiAutomation;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Waits for the device UI to settle after an action instead of sleeping for a fixed time.
+ *
+ * <p>The UI is considered settled once the accessibility event stream (window state and window
+ * content changes, scrolls, etc.) has been quiet for a short idle window. Every wait is bounded by
+ * a timeout, which is the fixed sleep the caller would otherwise have used. When no {@link
+ * UiAutomation} is available the waiter falls back to sleeping for the full timeout.
+ *
+ * <p>Each wait is recorded and can be exported through {@link #getWaits()}, or summed up per label
+ * through {@link #getMetrics()}.
+ */
+public class UiSettleWaiter {
+    private static final String LOG_TAG = UiSettleWaiter.class.getSimpleName();
+
+    private static final String METRIC_PREFIX = "spectatio_wait_";
+    private static final String COUNT_SUFFIX = "_count";
+    private static final String TOTAL_TIME_SUFFIX = "_total_ms";
+    private static final String MAX_TIME_SUFFIX = "_max_ms";
+    private static final String TIMEOUT_COUNT_SUFFIX = "_timeout_count";
+
+    // The UI is considered settled after no accessibility event has been received for this long.
+    private static final long DEFAULT_IDLE_WINDOW_MS = 300;
+
+    private final IdleWaiter mIdleWaiter;
+    private final LongSupplier mClock;
+    private final LongConsumer mSleeper;
+    private final List<Wait> mWaits = new ArrayList<>();
+
+    private long mIdleWindowMs = DEFAULT_IDLE_WINDOW_MS;
+    private boolean mEnabled = true;
+
+    /** Outcome of a wait. */
+    public enum Result {
+        /** The UI settled before the timeout. */
+        SETTLED,
+        /** The UI was still changing when the timeout expired. */
+        TIMED_OUT,
+        /** Settle detection was not used, the full timeout was slept. */
+        SLEPT,
+    }
+
+    /** A single wait after a UI action. */
+    public static final class Wait {
+        private final String mLabel;
+        private final long mWaitedMs;
+        private final Result mResult;
+
+        Wait(String label, long waitedMs, Result result) {
+            mLabel = label;
+            mWaitedMs = waitedMs;
+            mResult = result;
+        }
+
+        /** Returns the name of the action the wait followed. */
+        public String getLabel() {
+            return mLabel;
+        }
+
+        /** Returns how long the wait took. */
+        public long getWaitedMs() {
+            return mWaitedMs;
+        }
+
+        public Result getResult() {
+            return mResult;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d ms (%s)", mLabel, mWaitedMs, mResult);
+        }
+    }
+
+    /** Waits for the accessibility event stream to be idle, as {@link UiAutomation} does. */
+    @VisibleForTesting
+    interface IdleWaiter {
+        void waitForIdle(long idleTimeoutMs, long globalTimeoutMs) throws TimeoutException;
+    }
+
+    /**
+     * @param uiAutomation used to listen to the accessibility event stream, or null to always fall
+     *     back to fixed sleeps.
+     */
+    public UiSettleWaiter(UiAutomation uiAutomation) {
+        this(
+                uiAutomation == null ? null : uiAutomation::waitForIdle,
+                SystemClock::uptimeMillis,
+                SystemClock::sleep);
+    }
+
+    @VisibleForTesting
+    UiSettleWaiter(IdleWaiter idleWaiter, LongSupplier clock, LongConsumer sleeper) {
+        mIdleWaiter = idleWaiter;
+        mClock = clock;
+        mSleeper = sleeper;
+    }
+
+    /** Sets how long the accessibility event stream has to be quiet for the UI to be settled. */
+    public void setIdleWindowMs(long idleWindowMs) {
+        if (idleWindowMs <= 0) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "Idle window must be positive, current value is %d.", idleWindowMs));
+        }
+        mIdleWindowMs = idleWindowMs;
+    }
+
+    /** Enables or disables settle detection. When disabled, every wait sleeps for its timeout. */
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    /**
+     * Waits until the UI settles or the timeout expires, whichever comes first.
+     *
+     * @param label Name of the action the wait follows, recorded with the wait.
+     * @param timeoutMs Upper bound for the wait.
+     * @return true if the UI settled before the timeout, false if the wait timed out or settle
+     *     detection is not available.
+     */
+    public boolean waitForSettle(String label, long timeoutMs) {
+        long startTime = mClock.getAsLong();
+        if (!mEnabled || mIdleWaiter == null || timeoutMs <= mIdleWindowMs) {
+            mSleeper.accept(timeoutMs);
+            record(label, mClock.getAsLong() - startTime, Result.SLEPT);
+            return false;
+        }
+        Result result;
+        try {
+            mIdleWaiter.waitForIdle(mIdleWindowMs, timeoutMs);
+            result = Result.SETTLED;
+        } catch (TimeoutException e) {
+            Log.d(LOG_TAG, String.format("UI did not settle after %s in %d ms.", label, timeoutMs));
+            result = Result.TIMED_OUT;
+        }
+        record(label, mClock.getAsLong() - startTime, result);
+        return result == Result.SETTLED;
+    }
+
+    /** Records a wait which was not performed through this waiter, e.g. an explicit sleep. */
+    public void recordFixedWait(String label, long waitedMs) {
+        record(label, waitedMs, Result.SLEPT);
+    }
+
+    private synchronized void record(String label, long waitedMs, Result result) {
+        mWaits.add(new Wait(label, waitedMs, result));
+    }
+
+    /** Returns the waits recorded so far, in order. */
+    public synchronized List<Wait> getWaits() {
+        return new ArrayList<>(mWaits);
+    }
+
+    /**
+     * Returns the waits recorded so far summed up per label, keyed as {@code
+     * spectatio_wait_<label>_count}, {@code _total_ms}, {@code _max_ms} and {@code _timeout_count},
+     * plus {@code spectatio_wait_all_total_ms}.
+     */
+    public synchronized Map<String, Long> getMetrics() {
+        Map<String, Long> metrics = new HashMap<>();
+        long total = 0;
+        for (Wait wait : mWaits) {
+            String key = METRIC_PREFIX + wait.mLabel;
+            metrics.merge(key + COUNT_SUFFIX, 1L, Long::sum);
+            metrics.merge(key + TOTAL_TIME_SUFFIX, wait.mWaitedMs, Long::sum);
+            metrics.merge(key + MAX_TIME_SUFFIX, wait.mWaitedMs, Math::max);
+            metrics.merge(
+                    key + TIMEOUT_COUNT_SUFFIX,
+                    wait.mResult == Result.TIMED_OUT ? 1L : 0L,
+                    Long::sum);
+            total += wait.mWaitedMs;
+        }
+        metrics.put(METRIC_PREFIX + "all" + TOTAL_TIME_SUFFIX, total);
+        return metrics;
+    }
+
+    /** Clears the waits recorded so far. */
+    public synchronized void clearWaits() {
+        mWaits.clear();
+    }
+}
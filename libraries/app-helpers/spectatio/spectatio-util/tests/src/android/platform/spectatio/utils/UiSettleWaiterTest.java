@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.platform.spectatio.utils;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.platform.spectatio.utils.UiSettleWaiter.Result;
+import android.platform.spectatio.utils.UiSettleWaiter.Wait;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/** Unit tests for {@link UiSettleWaiter}, run against a fake clock. */
+@RunWith(AndroidJUnit4.class)
+public class UiSettleWaiterTest {
+    private long mNowMs = 1000;
+    private final List<Long> mSleeps = new ArrayList<>();
+    private final List<Long> mIdleWaits = new ArrayList<>();
+
+    @Test
+    public void testSleepsWithoutUiAutomation() {
+        UiSettleWaiter waiter = createWaiter(/* idleWaiter= */ null);
+
+        assertThat(waiter.waitForSettle("click", 1000)).isFalse();
+
+        assertThat(mSleeps).containsExactly(1000L);
+        assertWaits(waiter, "click", 1000, Result.SLEPT);
+    }
+
+    @Test
+    public void testSleepsWhenTimeoutWithinIdleWindow() {
+        UiSettleWaiter waiter = createWaiter(settlingAfter(10));
+        waiter.setIdleWindowMs(300);
+
+        assertThat(waiter.waitForSettle("click", 300)).isFalse();
+        assertThat(waiter.waitForSettle("click", 100)).isFalse();
+
+        assertThat(mIdleWaits).isEmpty();
+        assertThat(mSleeps).containsExactly(300L, 100L).inOrder();
+    }
+
+    @Test
+    public void testSleepsWhenDisabled() {
+        UiSettleWaiter waiter = createWaiter(settlingAfter(10));
+        waiter.setEnabled(false);
+
+        assertThat(waiter.waitForSettle("scroll", 5000)).isFalse();
+
+        assertThat(mIdleWaits).isEmpty();
+        assertThat(mSleeps).containsExactly(5000L);
+    }
+
+    @Test
+    public void testReturnsOnceSettled() {
+        UiSettleWaiter waiter = createWaiter(settlingAfter(420));
+        waiter.setIdleWindowMs(200);
+
+        assertThat(waiter.waitForSettle("click", 1000)).isTrue();
+
+        assertThat(mSleeps).isEmpty();
+        assertThat(mIdleWaits).containsExactly(200L, 1000L).inOrder();
+        assertWaits(waiter, "click", 420, Result.SETTLED);
+    }
+
+    @Test
+    public void testTimesOut() {
+        UiSettleWaiter waiter =
+                createWaiter(
+                        (idleTimeoutMs, globalTimeoutMs) -> {
+                            mNowMs += globalTimeoutMs;
+                            throw new TimeoutException();
+                        });
+
+        assertThat(waiter.waitForSettle("swipe", 5000)).isFalse();
+
+        assertThat(mSleeps).isEmpty();
+        assertWaits(waiter, "swipe", 5000, Result.TIMED_OUT);
+        assertThat(waiter.getMetrics()).containsEntry("spectatio_wait_swipe_timeout_count", 1L);
+    }
+
+    @Test
+    public void testMetrics() {
+        UiSettleWaiter waiter = createWaiter(settlingAfter(400));
+        waiter.waitForSettle("click", 1000);
+        waiter.waitForSettle("click", 1000);
+        waiter.recordFixedWait("fixed", 5000);
+
+        Map<String, Long> metrics = waiter.getMetrics();
+
+        assertThat(metrics).containsEntry("spectatio_wait_click_count", 2L);
+        assertThat(metrics).containsEntry("spectatio_wait_click_total_ms", 800L);
+        assertThat(metrics).containsEntry("spectatio_wait_click_max_ms", 400L);
+        assertThat(metrics).containsEntry("spectatio_wait_click_timeout_count", 0L);
+        assertThat(metrics).containsEntry("spectatio_wait_fixed_total_ms", 5000L);
+        assertThat(metrics).containsEntry("spectatio_wait_all_total_ms", 5800L);
+
+        waiter.clearWaits();
+
+        assertThat(waiter.getWaits()).isEmpty();
+        assertThat(waiter.getMetrics()).containsExactly("spectatio_wait_all_total_ms", 0L);
+    }
+
+    private UiSettleWaiter createWaiter(UiSettleWaiter.IdleWaiter idleWaiter) {
+        return new UiSettleWaiter(
+                idleWaiter,
+                () -> mNowMs,
+                sleepMs -> {
+                    mSleeps.add(sleepMs);
+                    mNowMs += sleepMs;
+                });
+    }
+
+    /** Returns an idle waiter for a UI which settles after the given time. */
+    private UiSettleWaiter.IdleWaiter settlingAfter(long settleMs) {
+        return (idleTimeoutMs, globalTimeoutMs) -> {
+            mIdleWaits.add(idleTimeoutMs);
+            mIdleWaits.add(globalTimeoutMs);
+            mNowMs += settleMs;
+        };
+    }
+
+    private static void assertWaits(
+            UiSettleWaiter waiter, String label, long waitedMs, Result result) {
+        List<Wait> waits = waiter.getWaits();
+        assertThat(waits).hasSize(1);
+        assertThat(waits.get(0).getLabel()).isEqualTo(label);
+        assertThat(waits.get(0).getWaitedMs()).isEqualTo(waitedMs);
+        assertThat(waits.get(0).getResult()).isEqualTo(result);
+    }
+}
@@ -32,6 +32,8 @@ import java.util.List;
  */
 public class AutoNotificationHelperImpl extends AbstractStandardAppHelper
         implements IAutoNotificationHelper {
+    // Upper bound for the notification list to settle after a notification is swiped away.
+    private static final long SWIPE_WAIT_TIME_MS = 5000;
 
     private ScrollUtility mScrollUtility;
     private ScrollActions mScrollAction;
@@ -178,7 +180,7 @@ public class AutoNotificationHelperImpl extends AbstractStandardAppHelper
                         postedNotification,
                         String.format("Unable to get the posted notification."));
         getSpectatioUiUtil().swipeLeft(postedNotification);
-        getSpectatioUiUtil().wait5Seconds();
+        getSpectatioUiUtil().waitForUiToSettle(/* label= */ "swipe", SWIPE_WAIT_TIME_MS);
     }
 
     private boolean checkIfClearAllButtonExist(BySelector selector) {
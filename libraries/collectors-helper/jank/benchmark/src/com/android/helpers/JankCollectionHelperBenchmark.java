@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.helpers;
+
+import static com.android.helpers.MetricUtility.constructKey;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.util.Log;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.helpers.JankCollectionHelper.GfxInfoMetric;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmark of {@link JankCollectionHelper#parseGfxInfoOutput} on a large multi-package output,
+ * against matching every metric pattern on each package section. To run it: {@code atest
+ * JankHelperBenchmark}
+ */
+@RunWith(AndroidJUnit4.class)
+public class JankCollectionHelperBenchmark {
+    private static final String LOG_TAG = JankCollectionHelperBenchmark.class.getSimpleName();
+
+    private static final String GFXINFO_OUTPUT_PREAMBLE =
+            "Applications Graphics Acceleration Info:\nUptime: 4296025617 Realtime: 4296025617\n";
+    private static final String GFXINFO_PACKAGE_FORMAT =
+            "\n** Graphics info for pid %d [%s] **"
+                    + "\n"
+                    + "\nStats since: 4295735640623ns"
+                    + "\nTotal frames rendered: %d"
+                    + "\nJanky frames: 12 (10.00%%)"
+                    + "\nJanky frames (legacy): 8 (6.67%%)"
+                    + "\n50th percentile: 6ms"
+                    + "\n90th percentile: 13ms"
+                    + "\n95th percentile: 18ms"
+                    + "\n99th percentile: 32ms"
+                    + "\nNumber Missed Vsync: 1"
+                    + "\nNumber High input latency: 40"
+                    + "\nNumber Slow UI thread: 5"
+                    + "\nNumber Slow bitmap uploads: 0"
+                    + "\nNumber Slow issue draw commands: 2"
+                    + "\nNumber Frame deadline missed: 12"
+                    + "\nNumber Frame deadline missed (legacy): 8"
+                    + "\nHISTOGRAM: 5ms=20 6ms=40 7ms=15 8ms=10 9ms=8 10ms=6 11ms=5 12ms=4 13ms=3"
+                    + " 14ms=2 15ms=1 16ms=1 17ms=1 18ms=1 19ms=0 20ms=0 21ms=0 22ms=0 23ms=0"
+                    + " 24ms=0 25ms=1 26ms=0 27ms=0 28ms=0 29ms=0 30ms=0 31ms=1 32ms=1"
+                    + "\n50th gpu percentile: 4ms"
+                    + "\n90th gpu percentile: 7ms"
+                    + "\n95th gpu percentile: 9ms"
+                    + "\n99th gpu percentile: 14ms"
+                    + "\nGPU HISTOGRAM: 1ms=10 2ms=30 3ms=25 4ms=20 5ms=12 6ms=8 7ms=5 8ms=3"
+                    + " 9ms=3 10ms=1 11ms=1 12ms=1 13ms=0 14ms=1"
+                    + "\nPipeline=Skia (Vulkan)"
+                    + "\nWindow: %s/.MainActivity"
+                    + "\nTotal frames rendered: 100"
+                    + "\nJanky frames: 3 (3.00%%)"
+                    + "\n50th percentile: 5ms"
+                    + "\nHISTOGRAM: 5ms=30 6ms=40 7ms=15 8ms=10 9ms=2 10ms=1 11ms=1 20ms=1"
+                    + "\n";
+    private static final int PACKAGES = 300;
+    private static final int ITERATIONS = 10;
+
+    @Test
+    public void parseLargeMultiPackageOutput() {
+        StringBuilder builder = new StringBuilder(GFXINFO_OUTPUT_PREAMBLE);
+        for (int i = 0; i < PACKAGES; i++) {
+            String pkg = "com.android.pkg" + i;
+            builder.append(String.format(GFXINFO_PACKAGE_FORMAT, 1000 + i, pkg, i, pkg));
+        }
+        String output = builder.toString();
+
+        // The per-section patterns do not report the histogram buckets.
+        Map<String, Double> expected = parseWithMetricPatterns(output);
+        assertThat(expected).hasSize(PACKAGES * GfxInfoMetric.values().length);
+        assertThat(JankCollectionHelper.parseGfxInfoOutput(output))
+                .containsAtLeastEntriesIn(expected);
+
+        long patternsNs = 0;
+        long singlePassNs = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            parseWithMetricPatterns(output);
+            patternsNs += System.nanoTime() - start;
+            start = System.nanoTime();
+            JankCollectionHelper.parseGfxInfoOutput(output);
+            singlePassNs += System.nanoTime() - start;
+        }
+        Log.i(
+                LOG_TAG,
+                String.format(
+                        "Parsed %d packages (%d chars): patterns=%dus, single pass=%dus",
+                        PACKAGES,
+                        output.length(),
+                        patternsNs / ITERATIONS / 1000,
+                        singlePassNs / ITERATIONS / 1000));
+    }
+
+    /** Parses {@code output} by matching each metric pattern against whole package sections. */
+    private static Map<String, Double> parseWithMetricPatterns(String output) {
+        Pattern header =
+                Pattern.compile("[\\s\\S]*Graphics info for pid (\\d+) \\[(.*)\\][\\s\\S]*");
+        Map<String, Double> result = new HashMap<>();
+        String[] sections = output.split("\n\\*\\*");
+        for (int i = 1; i < sections.length; i++) {
+            Matcher matcher = header.matcher(sections[i]);
+            assertThat(matcher.matches()).isTrue();
+            for (GfxInfoMetric metric : GfxInfoMetric.values()) {
+                Double value = metric.parse(sections[i]);
+                if (value != null) {
+                    result.put(
+                            constructKey(
+                                    JankCollectionHelper.GFXINFO_METRICS_PREFIX,
+                                    matcher.group(2),
+                                    metric.getMetricId()),
+                            value);
+                }
+            }
+        }
+        return result;
+    }
+}
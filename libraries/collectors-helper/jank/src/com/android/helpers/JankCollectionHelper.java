@@ -27,9 +27,12 @@ import androidx.test.uiautomator.UiDevice;
 import com.google.common.base.Verify;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -52,9 +55,18 @@ public class JankCollectionHelper implements ICollectorHelper<Double> {
     // Pattern matchers and enumerators to verify and pull gfxinfo metrics.
     // Example: "** Graphics info for pid 853 [com.google.android.leanbacklauncher] **"
     private static final String GFXINFO_OUTPUT_HEADER = "Graphics info for pid (\\d+) \\[(%s)\\]";
-    // Note: use the [\\s\\S]* multi-line matcher to support String#matches(). Instead of splitting
-    // the larger sections into more granular lines, we can match across all lines for simplicity.
-    private static final String MULTILINE_MATCHER = "[\\s\\S]*%s[\\s\\S]*";
+    private static final String GFXINFO_OUTPUT_HEADER_PREFIX = "Graphics info for pid ";
+    private static final Pattern ANY_GFXINFO_OUTPUT_HEADER =
+            Pattern.compile(String.format(GFXINFO_OUTPUT_HEADER, ".*"));
+    // Each package section of the output starts with a line beginning with two asterisks '**'.
+    private static final String SECTION_START = "**";
+    // Histogram labels and the ids of their bucket metrics, formatted with the bucket name.
+    // Example: "HISTOGRAM: 5ms=20 6ms=40 7ms=15"
+    private static final String HISTOGRAM_LABEL = "HISTOGRAM";
+    private static final String HISTOGRAM_METRIC_ID = "frame_render_time_histogram_%s";
+    // Example: "GPU HISTOGRAM: 1ms=10 2ms=30 3ms=25"
+    private static final String GPU_HISTOGRAM_LABEL = "GPU HISTOGRAM";
+    private static final String GPU_HISTOGRAM_METRIC_ID = "gpu_frame_render_time_histogram_%s";
 
     public enum GfxInfoMetric {
         // Example: "Total frames rendered: 20391"
@@ -175,6 +187,12 @@ public class JankCollectionHelper implements ICollectorHelper<Double> {
             mMetricId = metricId;
         }
 
+        /** Returns the label preceding the ':' of the line this metric is parsed from. */
+        private String getLabel() {
+            String pattern = mPattern.pattern();
+            return pattern.substring(0, pattern.indexOf(':')).replace("\\", "");
+        }
+
         public Double parse(String lines) {
             Matcher matcher = mPattern.matcher(lines);
             if (matcher.find()) {
@@ -189,6 +207,17 @@ public class JankCollectionHelper implements ICollectorHelper<Double> {
         }
     }
 
+    // Metrics indexed by the label of the line they are parsed from, e.g. "Janky frames".
+    private static final Map<String, List<GfxInfoMetric>> METRICS_BY_LABEL = new HashMap<>();
+
+    static {
+        for (GfxInfoMetric metric : GfxInfoMetric.values()) {
+            METRICS_BY_LABEL
+                    .computeIfAbsent(metric.getLabel(), label -> new ArrayList<>())
+                    .add(metric);
+        }
+    }
+
     private Set<String> mTrackedPackages = new HashSet<>();
     private UiDevice mDevice;
 
@@ -275,13 +304,13 @@ public class JankCollectionHelper implements ICollectorHelper<Double> {
                 String command = String.format(GFXINFO_COMMAND_RESET, "--");
                 String output = getDevice().executeShellCommand(command);
                 // Success if any header (set by passing an empty-string) exists in the output.
-                verifyMatches(output, getHeaderMatcher(""), "No package headers in output.");
+                verifyHeader(output, getHeaderPattern(""), "No package headers in output.");
                 Log.v(LOG_TAG, "Cleared all gfxinfo.");
             } else {
                 String command = String.format(GFXINFO_COMMAND_RESET, pkg);
                 String output = getDevice().executeShellCommand(command);
                 // Success if the specified package header exists in the output.
-                verifyMatches(output, getHeaderMatcher(pkg), "No package header in output.");
+                verifyHeader(output, getHeaderPattern(pkg), "No package header in output.");
                 Log.v(LOG_TAG, String.format("Cleared %s gfxinfo.", pkg));
             }
         } catch (IOException e) {
@@ -301,60 +330,169 @@ public class JankCollectionHelper implements ICollectorHelper<Double> {
         try {
             String command = String.format(GFXINFO_COMMAND_GET, pkg);
             String output = getDevice().executeShellCommand(command);
-            verifyMatches(output, getHeaderMatcher(pkg), "Missing package header.");
-            // Split each new section starting with two asterisks '**', and then query and append
-            // all metrics. This method supports both single-package and multi-package outputs.
-            String[] pkgMetricSections = output.split("\n\\*\\*");
-            Map<String, Double> result = new HashMap<>();
-            // Skip the 1st section, which contains only header information.
-            for (int i = 1; i < pkgMetricSections.length; i++) {
-                result.putAll(parseGfxInfoMetrics(pkgMetricSections[i]));
-            }
-            return result;
+            verifyHeader(output, getHeaderPattern(pkg), "Missing package header.");
+            return parseGfxInfoOutput(output);
         } catch (IOException e) {
             throw new RuntimeException("Failed to get gfxinfo.", e);
         }
     }
 
-    /** Parse the {@code output} of {@code gfxinfo} to a {@code Map<String, Double>} of metrics. */
-    private Map<String, Double> parseGfxInfoMetrics(String output) {
-        Matcher header = Pattern.compile(getHeaderMatcher("")).matcher(output);
-        if (!header.matches()) {
-            throw new RuntimeException("Failed to parse package from gfxinfo output.");
+    /**
+     * Parse the {@code output} of {@code gfxinfo} to a {@code Map<String, Double>} of metrics, in a
+     * single pass over its lines. This method supports both single-package and multi-package
+     * outputs.
+     *
+     * <p>Each section starting with two asterisks '**' holds the metrics of a package, the text
+     * before the first section only contains header information. Within a section, the first value
+     * of each metric is kept, as the following ones are reported for the individual windows of the
+     * package. Histogram lines are reported as one metric per bucket. Lines without a known label
+     * are skipped without being matched.
+     */
+    @VisibleForTesting
+    static Map<String, Double> parseGfxInfoOutput(String output) {
+        Map<String, Double> results = new HashMap<>();
+        Map<GfxInfoMetric, Double> sectionValues = new EnumMap<>(GfxInfoMetric.class);
+        Map<String, String> sectionHistograms = new HashMap<>();
+        String packageName = null;
+        boolean inSection = false;
+        int lineStart = 0;
+        while (lineStart <= output.length()) {
+            int lineEnd = output.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = output.length();
+            }
+            String line = output.substring(lineStart, lineEnd);
+            // Same as splitting on "\n**": the first line never starts a section.
+            if (lineStart > 0 && line.startsWith(SECTION_START)) {
+                if (inSection) {
+                    addSectionMetrics(packageName, sectionValues, sectionHistograms, results);
+                }
+                inSection = true;
+                packageName = null;
+                sectionValues.clear();
+                sectionHistograms.clear();
+            }
+            if (inSection) {
+                String sectionPackage = parseGfxInfoLine(line, sectionValues, sectionHistograms);
+                if (sectionPackage != null) {
+                    packageName = sectionPackage;
+                }
+            }
+            lineStart = lineEnd + 1;
         }
+        if (inSection) {
+            addSectionMetrics(packageName, sectionValues, sectionHistograms, results);
+        }
+        return results;
+    }
+
+    /**
+     * Parse the first value of the metrics on a {@code line} of a section into {@code values}, and
+     * the buckets of the first histogram of each kind into {@code histograms}, keyed by label.
+     *
+     * @return the package name if the line is the section header, or {@code null} otherwise
+     */
+    private static String parseGfxInfoLine(
+            String line, Map<GfxInfoMetric, Double> values, Map<String, String> histograms) {
+        int colon = line.indexOf(':');
+        String label = colon < 0 ? null : line.substring(0, colon).trim();
+        if (HISTOGRAM_LABEL.equals(label) || GPU_HISTOGRAM_LABEL.equals(label)) {
+            histograms.putIfAbsent(label, line.substring(colon + 1));
+            return null;
+        }
+        List<GfxInfoMetric> metrics = label == null ? null : METRICS_BY_LABEL.get(label);
+        if (metrics == null) {
+            // Lines with an unknown label may still be headers, as process names may contain ':'.
+            if (!line.contains(GFXINFO_OUTPUT_HEADER_PREFIX)) {
+                return null;
+            }
+            Matcher header = ANY_GFXINFO_OUTPUT_HEADER.matcher(line);
+            return header.find() ? header.group(2) : null;
+        }
+        for (GfxInfoMetric metric : metrics) {
+            if (!values.containsKey(metric)) {
+                Double value = metric.parse(line);
+                if (value != null) {
+                    values.put(metric, value);
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Add the metrics parsed from the section of {@code packageName} to {@code results}. */
+    private static void addSectionMetrics(
+            String packageName,
+            Map<GfxInfoMetric, Double> values,
+            Map<String, String> histograms,
+            Map<String, Double> results) {
         // Package name is the only required field.
-        String packageName = header.group(2);
+        if (packageName == null) {
+            throw new RuntimeException("Failed to parse package from gfxinfo output.");
+        }
         Log.v(LOG_TAG, String.format("Collecting metrics for: %s", packageName));
-        // Parse each metric from the results via a common pattern.
-        Map<String, Double> results = new HashMap<String, Double>();
         for (GfxInfoMetric metric : GfxInfoMetric.values()) {
             String metricKey =
                     constructKey(GFXINFO_METRICS_PREFIX, packageName, metric.getMetricId());
             // Find the metric or log that it's missing.
-            Double value = metric.parse(output);
+            Double value = values.get(metric);
             if (value == null) {
                 Log.d(LOG_TAG, String.format("Did not find %s from %s", metricKey, packageName));
             } else {
                 results.put(metricKey, value);
             }
         }
-        return results;
+        for (Map.Entry<String, String> histogram : histograms.entrySet()) {
+            String metricIdFormat =
+                    HISTOGRAM_LABEL.equals(histogram.getKey())
+                            ? HISTOGRAM_METRIC_ID
+                            : GPU_HISTOGRAM_METRIC_ID;
+            addHistogramMetrics(packageName, metricIdFormat, histogram.getValue(), results);
+        }
+    }
+
+    /**
+     * Add a metric for each bucket of a histogram to {@code results}.
+     *
+     * @param buckets the buckets of the histogram, e.g. "5ms=20 6ms=40 7ms=15"
+     */
+    private static void addHistogramMetrics(
+            String packageName,
+            String metricIdFormat,
+            String buckets,
+            Map<String, Double> results) {
+        for (String bucket : buckets.trim().split("\\s+")) {
+            int separator = bucket.indexOf('=');
+            if (separator <= 0) {
+                continue;
+            }
+            String metricKey =
+                    constructKey(
+                            GFXINFO_METRICS_PREFIX,
+                            packageName,
+                            String.format(metricIdFormat, bucket.substring(0, separator)));
+            try {
+                results.put(metricKey, Double.valueOf(bucket.substring(separator + 1)));
+            } catch (NumberFormatException e) {
+                Log.d(LOG_TAG, String.format("Invalid histogram bucket %s", bucket));
+            }
+        }
     }
 
     /**
-     * Returns a matcher {@code String} for {@code pkg}'s {@code gfxinfo} headers.
+     * Returns a {@link Pattern} for {@code pkg}'s {@code gfxinfo} headers.
      *
      * <p>Note: {@code pkg} may be empty.
      */
-    private String getHeaderMatcher(String pkg) {
-        return String.format(
-                MULTILINE_MATCHER,
-                String.format(GFXINFO_OUTPUT_HEADER, (pkg.isEmpty() ? ".*" : pkg)));
+    private Pattern getHeaderPattern(String pkg) {
+        return pkg.isEmpty()
+                ? ANY_GFXINFO_OUTPUT_HEADER
+                : Pattern.compile(String.format(GFXINFO_OUTPUT_HEADER, pkg));
     }
 
-    /** Verify the {@code output} matches {@code match}, or throw if not. */
-    private void verifyMatches(String output, String match, String message, Object... args) {
-        Verify.verify(output.matches(match), message, args);
+    /** Verify the {@code output} contains {@code header}, or throw if not. */
+    private void verifyHeader(String output, Pattern header, String message, Object... args) {
+        Verify.verify(header.matcher(output).find(), message, args);
     }
 
     /** Returns the {@link UiDevice} under test. */
@@ -21,6 +21,10 @@ import static com.android.helpers.JankCollectionHelper.GfxInfoMetric.FRAME_TIME_
 import static com.android.helpers.JankCollectionHelper.GfxInfoMetric.FRAME_TIME_90TH;
 import static com.android.helpers.JankCollectionHelper.GfxInfoMetric.FRAME_TIME_95TH;
 import static com.android.helpers.JankCollectionHelper.GfxInfoMetric.FRAME_TIME_99TH;
+import static com.android.helpers.JankCollectionHelper.GfxInfoMetric.GPU_FRAME_TIME_50TH;
+import static com.android.helpers.JankCollectionHelper.GfxInfoMetric.GPU_FRAME_TIME_90TH;
+import static com.android.helpers.JankCollectionHelper.GfxInfoMetric.GPU_FRAME_TIME_95TH;
+import static com.android.helpers.JankCollectionHelper.GfxInfoMetric.GPU_FRAME_TIME_99TH;
 import static com.android.helpers.JankCollectionHelper.GfxInfoMetric.JANKY_FRAMES_COUNT;
 import static com.android.helpers.JankCollectionHelper.GfxInfoMetric.JANKY_FRAMES_LEGACY_COUNT;
 import static com.android.helpers.JankCollectionHelper.GfxInfoMetric.JANKY_FRAMES_LEGACY_PRCNT;
@@ -45,6 +49,10 @@ import static org.mockito.Mockito.when;
 import androidx.test.runner.AndroidJUnit4;
 import androidx.test.uiautomator.UiDevice;
 
+import com.android.helpers.JankCollectionHelper.GfxInfoMetric;
+
+import com.google.common.collect.ImmutableMap;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -54,6 +62,7 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 
 /** Android Unit tests for {@link JankCollectionHelper}. */
@@ -93,6 +102,103 @@ public class JankCollectionHelperTest {
                     + "\nNumber Slow issue draw commands: 5"
                     + "\nNumber Frame deadline missed (legacy): 3"
                     + "\nNumber Frame deadline missed: 6";
+    // Complete output of a package, as reported by recent platform versions.
+    private static final String GFXINFO_FULL_FORMAT =
+            "\n** Graphics info for pid %d [%s] **"
+                    + "\n"
+                    + "\nStats since: 4295735640623ns"
+                    + "\nTotal frames rendered: %d"
+                    + "\nJanky frames: 12 (10.00%%)"
+                    + "\nJanky frames (legacy): 8 (6.67%%)"
+                    + "\n50th percentile: 6ms"
+                    + "\n90th percentile: 13ms"
+                    + "\n95th percentile: 18ms"
+                    + "\n99th percentile: 32ms"
+                    + "\nNumber Missed Vsync: 1"
+                    + "\nNumber High input latency: 40"
+                    + "\nNumber Slow UI thread: 5"
+                    + "\nNumber Slow bitmap uploads: 0"
+                    + "\nNumber Slow issue draw commands: 2"
+                    + "\nNumber Frame deadline missed: 12"
+                    + "\nNumber Frame deadline missed (legacy): 8"
+                    + "\nHISTOGRAM: 5ms=20 6ms=40 7ms=15 8ms=10 9ms=8 10ms=6 11ms=5 12ms=4 13ms=3"
+                    + " 14ms=2 15ms=1 16ms=1 17ms=1 18ms=1 19ms=0 20ms=0 21ms=0 22ms=0 23ms=0"
+                    + " 24ms=0 25ms=1 26ms=0 27ms=0 28ms=0 29ms=0 30ms=0 31ms=1 32ms=1"
+                    + "\n50th gpu percentile: 4ms"
+                    + "\n90th gpu percentile: 7ms"
+                    + "\n95th gpu percentile: 9ms"
+                    + "\n99th gpu percentile: 14ms"
+                    + "\nGPU HISTOGRAM: 1ms=10 2ms=30 3ms=25 4ms=20 5ms=12 6ms=8 7ms=5 8ms=3"
+                    + " 9ms=3 10ms=1 11ms=1 12ms=1 13ms=0 14ms=1"
+                    + "\nFont Cache (CPU):"
+                    + "\n  Size: 1.04 kB "
+                    + "\n  Glyph Count: 12 "
+                    + "\nPipeline=Skia (Vulkan)"
+                    + "\nWindow: %s/.MainActivity"
+                    + "\nStats since: 4295735640623ns"
+                    + "\nTotal frames rendered: 100"
+                    + "\nJanky frames: 3 (3.00%%)"
+                    + "\nJanky frames (legacy): 2 (2.00%%)"
+                    + "\n50th percentile: 5ms"
+                    + "\n90th percentile: 9ms"
+                    + "\n95th percentile: 11ms"
+                    + "\n99th percentile: 20ms"
+                    + "\nNumber Missed Vsync: 0"
+                    + "\nNumber High input latency: 30"
+                    + "\nNumber Slow UI thread: 1"
+                    + "\nNumber Slow bitmap uploads: 0"
+                    + "\nNumber Slow issue draw commands: 1"
+                    + "\nNumber Frame deadline missed: 3"
+                    + "\nNumber Frame deadline missed (legacy): 2"
+                    + "\nHISTOGRAM: 5ms=30 6ms=40 7ms=15 8ms=10 9ms=2 10ms=1 11ms=1 20ms=1"
+                    + "\n50th gpu percentile: 3ms"
+                    + "\n90th gpu percentile: 6ms"
+                    + "\n95th gpu percentile: 8ms"
+                    + "\n99th gpu percentile: 12ms"
+                    + "\nGPU HISTOGRAM: 1ms=20 2ms=30 3ms=25 4ms=20 5ms=3 6ms=1 8ms=1"
+                    + "\n";
+    // Expected metrics of GFXINFO_FULL_FORMAT, except for the total frames.
+    private static final Map<GfxInfoMetric, Double> GFXINFO_FULL_METRICS =
+            ImmutableMap.<GfxInfoMetric, Double>builder()
+                    .put(JANKY_FRAMES_COUNT, 12.0)
+                    .put(JANKY_FRAMES_PRCNT, 10.0)
+                    .put(JANKY_FRAMES_LEGACY_COUNT, 8.0)
+                    .put(JANKY_FRAMES_LEGACY_PRCNT, 6.67)
+                    .put(FRAME_TIME_50TH, 6.0)
+                    .put(FRAME_TIME_90TH, 13.0)
+                    .put(FRAME_TIME_95TH, 18.0)
+                    .put(FRAME_TIME_99TH, 32.0)
+                    .put(NUM_MISSED_VSYNC, 1.0)
+                    .put(NUM_HIGH_INPUT_LATENCY, 40.0)
+                    .put(NUM_SLOW_UI_THREAD, 5.0)
+                    .put(NUM_SLOW_BITMAP_UPLOADS, 0.0)
+                    .put(NUM_SLOW_DRAW, 2.0)
+                    .put(NUM_FRAME_DEADLINE_MISSED, 12.0)
+                    .put(NUM_FRAME_DEADLINE_MISSED_LEGACY, 8.0)
+                    .put(GPU_FRAME_TIME_50TH, 4.0)
+                    .put(GPU_FRAME_TIME_90TH, 7.0)
+                    .put(GPU_FRAME_TIME_95TH, 9.0)
+                    .put(GPU_FRAME_TIME_99TH, 14.0)
+                    .buildOrThrow();
+    // Expected histogram bucket metrics of GFXINFO_FULL_FORMAT, from the package histograms.
+    private static final Map<String, Double> GFXINFO_FULL_HISTOGRAM_METRICS =
+            ImmutableMap.<String, Double>builder()
+                    .putAll(
+                            histogramMetrics(
+                                    "frame_render_time_histogram_",
+                                    5,
+                                    new int[] {
+                                        20, 40, 15, 10, 8, 6, 5, 4, 3, 2, 1, 1, 1, 1, 0, 0, 0, 0,
+                                        0, 0, 1, 0, 0, 0, 0, 0, 1, 1
+                                    }))
+                    .putAll(
+                            histogramMetrics(
+                                    "gpu_frame_render_time_histogram_",
+                                    1,
+                                    new int[] {10, 30, 25, 20, 12, 8, 5, 3, 3, 1, 1, 1, 0, 1}))
+                    .buildOrThrow();
+    private static final String GFXINFO_OUTPUT_PREAMBLE =
+            "Applications Graphics Acceleration Info:\nUptime: 4296025617 Realtime: 4296025617\n";
 
     private @Mock UiDevice mUiDevice;
     private JankCollectionHelper mHelper;
@@ -517,6 +623,102 @@ public class JankCollectionHelperTest {
                 .containsExactly(JankCollectionHelper.FAILED_PACKAGES_COUNT_METRIC, 1d);
     }
 
+    /** Test that every metric type is parsed from a complete output. */
+    @Test
+    public void testParse_allMetricTypes() {
+        String output =
+                GFXINFO_OUTPUT_PREAMBLE
+                        + String.format(GFXINFO_FULL_FORMAT, 1234, "pkg1", 120, "pkg1");
+
+        assertThat(JankCollectionHelper.parseGfxInfoOutput(output))
+                .containsExactlyEntriesIn(buildExpectedMetrics("pkg1", 120));
+    }
+
+    /** Test that each package of a multi-package output keeps its own metrics. */
+    @Test
+    public void testParse_multiPackage() {
+        String output =
+                GFXINFO_OUTPUT_PREAMBLE
+                        + String.format(GFXINFO_FULL_FORMAT, 1, "pkg1", 120, "pkg1")
+                        + String.format(GFXINFO_FULL_FORMAT, 2, "pkg2:remote", 240, "pkg2")
+                        + String.format(GFXINFO_RESET_FORMAT, "pkg3");
+
+        Map<String, Double> expected = new HashMap<>();
+        expected.putAll(buildExpectedMetrics("pkg1", 120));
+        expected.putAll(buildExpectedMetrics("pkg2:remote", 240));
+        for (GfxInfoMetric metric : GfxInfoMetric.values()) {
+            if (!metric.getMetricId().startsWith("gpu_")) {
+                expected.put(buildMetricKey("pkg3", metric.getMetricId()), 0.0);
+            }
+        }
+        assertThat(JankCollectionHelper.parseGfxInfoOutput(output))
+                .containsExactlyEntriesIn(expected);
+    }
+
+    /** Test that an output without any package section has no metrics. */
+    @Test
+    public void testParse_noSection() {
+        assertThat(JankCollectionHelper.parseGfxInfoOutput(GFXINFO_OUTPUT_PREAMBLE)).isEmpty();
+    }
+
+    /** Test that it fails if a section has no package header. */
+    @Test
+    public void testParse_missingSectionHeader() {
+        String output =
+                String.format(GFXINFO_FULL_FORMAT, 1, "pkg1", 120, "pkg1")
+                        + "\n** Unexpected section **\nTotal frames rendered: 3";
+        try {
+            JankCollectionHelper.parseGfxInfoOutput(output);
+            fail("Should have thrown an exception.");
+        } catch (RuntimeException e) {
+            // pass
+        }
+    }
+
+    /** Test that each histogram bucket is reported, from the first histogram of the package. */
+    @Test
+    public void testParse_histograms() {
+        String output =
+                GFXINFO_OUTPUT_PREAMBLE
+                        + "\n** Graphics info for pid 1 [pkg1] **"
+                        + "\nHISTOGRAM: 5ms=20 6ms=40 7ms=0"
+                        + "\nGPU HISTOGRAM: 1ms=10 2ms=3"
+                        + "\nWindow: pkg1/.MainActivity"
+                        + "\nHISTOGRAM: 5ms=2 6ms=4 7ms=0 8ms=1"
+                        + "\n";
+
+        assertThat(JankCollectionHelper.parseGfxInfoOutput(output))
+                .containsExactly(
+                        buildMetricKey("pkg1", "frame_render_time_histogram_5ms"), 20.0,
+                        buildMetricKey("pkg1", "frame_render_time_histogram_6ms"), 40.0,
+                        buildMetricKey("pkg1", "frame_render_time_histogram_7ms"), 0.0,
+                        buildMetricKey("pkg1", "gpu_frame_render_time_histogram_1ms"), 10.0,
+                        buildMetricKey("pkg1", "gpu_frame_render_time_histogram_2ms"), 3.0);
+    }
+
+    /** Returns the metrics of {@link #GFXINFO_FULL_FORMAT} for {@code pkg}. */
+    private Map<String, Double> buildExpectedMetrics(String pkg, int totalFrames) {
+        Map<String, Double> metrics = new HashMap<>();
+        metrics.put(buildMetricKey(pkg, TOTAL_FRAMES.getMetricId()), (double) totalFrames);
+        for (Map.Entry<GfxInfoMetric, Double> entry : GFXINFO_FULL_METRICS.entrySet()) {
+            metrics.put(buildMetricKey(pkg, entry.getKey().getMetricId()), entry.getValue());
+        }
+        for (Map.Entry<String, Double> entry : GFXINFO_FULL_HISTOGRAM_METRICS.entrySet()) {
+            metrics.put(buildMetricKey(pkg, entry.getKey()), entry.getValue());
+        }
+        return metrics;
+    }
+
+    /** Returns the bucket metric ids of a histogram of 1ms buckets, starting at {@code first}. */
+    private static Map<String, Double> histogramMetrics(
+            String metricIdPrefix, int first, int[] counts) {
+        Map<String, Double> metrics = new HashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            metrics.put(metricIdPrefix + (first + i) + "ms", (double) counts[i]);
+        }
+        return metrics;
+    }
+
     private String buildMetricKey(String pkg, String id) {
         return constructKey(JankCollectionHelper.GFXINFO_METRICS_PREFIX, pkg, id);
     }
@@ -25,11 +25,10 @@ import androidx.annotation.VisibleForTesting;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -42,11 +41,18 @@ import java.util.concurrent.TimeUnit;
  * fit to all samples collected between startCollecting and getMetrics. These metrics are only
  * useful over long (hours) test durations. Samples are taken once per minute. getMetrics returns
  * null for tests shorter than one minute.
+ *
+ * <p>Samples are not kept: each one is added to a {@link SlabRegression}, whose memory use only
+ * depends on the number of slabs.
  */
 public class SlabinfoHelper implements ICollectorHelper<Double> {
     private static final String SLABINFO_PATH = "/proc/slabinfo";
     private static final long PAGE_SIZE = Os.sysconf(OsConstants._SC_PAGESIZE);
 
+    // Indices of the pagesperslab and num_slabs fields of a /proc/slabinfo line
+    private static final int PAGES_PER_SLAB_FIELD = 5;
+    private static final int NUM_SLABS_FIELD = 14;
+
     private final ScheduledExecutorService mScheduler = Executors.newScheduledThreadPool(1);
 
     @VisibleForTesting
@@ -59,8 +65,169 @@ public class SlabinfoHelper implements ICollectorHelper<Double> {
         public Map<String, Long> slabs;
     }
 
-    private final List<SlabinfoSample> mSamples =
-            Collections.synchronizedList(new ArrayList((int) TimeUnit.HOURS.toMinutes(8)));
+    /**
+     * Least squares fit of a line to the size of each slab over time, updated as samples are
+     * added.
+     *
+     * <p>Slabs are the ones of the first sample, identified by their index in per-slab arrays of
+     * running sums. Times and sizes are offset by the ones of the first sample, so that the sums
+     * stay exact for integer values over long collection periods.
+     */
+    @VisibleForTesting
+    public static class SlabRegression {
+        private final Map<String, Integer> mSlabIds = new HashMap<>();
+        private String[] mNames;
+        private int mSlabCount;
+
+        private long mSampleCount;
+        private long mFirstTime;
+        private long mLastTime;
+
+        // Sizes of the sample being added, set if mSampleIds[id] == mSampleCount
+        private long[] mSampleBytes;
+        private long[] mSampleIds;
+        private long mSampleTime;
+        private int mNextId;
+
+        private long[] mFirstBytes;
+        private long[] mCounts;
+        private double[] mSumX;
+        private double[] mSumXX;
+        private double[] mSumY;
+        private double[] mSumXY;
+
+        public SlabRegression() {
+            clear();
+        }
+
+        /** Removes all slabs and samples. */
+        public void clear() {
+            mSlabIds.clear();
+            mNames = new String[0];
+            mSlabCount = 0;
+            mSampleCount = 0;
+            mFirstTime = 0;
+            mLastTime = 0;
+            mSampleBytes = new long[0];
+            mSampleIds = new long[0];
+            mNextId = 0;
+            mFirstBytes = new long[0];
+            mCounts = new long[0];
+            mSumX = new double[0];
+            mSumXX = new double[0];
+            mSumY = new double[0];
+            mSumXY = new double[0];
+        }
+
+        /** Starts a sample taken at {@code time} seconds, discarding any unfinished one. */
+        public void startSample(long time) {
+            mSampleTime = time;
+            mNextId = 0;
+            // Values set for the discarded sample do not carry over to this one
+            Arrays.fill(mSampleIds, 0, mSlabCount, -1);
+        }
+
+        /**
+         * Sets the size of the slab {@code name} in the current sample. Duplicate slab names keep
+         * the largest size.
+         */
+        public void addSlab(String name, long bytes) {
+            Integer id = mSlabIds.get(name);
+            if (id == null) {
+                if (mSampleCount > 0) return;
+                id = addSlabName(name);
+            }
+            addSlab(id, bytes);
+        }
+
+        private void addSlab(int id, long bytes) {
+            if (mSampleIds[id] == mSampleCount) {
+                mSampleBytes[id] = Math.max(mSampleBytes[id], bytes);
+            } else {
+                mSampleIds[id] = mSampleCount;
+                mSampleBytes[id] = bytes;
+            }
+            mNextId = id + 1;
+        }
+
+        /**
+         * Sets the size of the slab named by the first {@code nameLength} characters of {@code
+         * line}. Slabs are listed in the same order by each sample, so the name is compared to
+         * the one following the previous slab before it is looked up.
+         */
+        private void addSlab(String line, int nameLength, long bytes) {
+            if (mNextId < mSlabCount) {
+                String expected = mNames[mNextId];
+                if (expected.length() == nameLength && line.startsWith(expected)) {
+                    addSlab(mNextId, bytes);
+                    return;
+                }
+            }
+            addSlab(line.substring(0, nameLength), bytes);
+        }
+
+        /** Adds the current sample to the fit. */
+        public void endSample() {
+            if (mSampleCount == 0) mFirstTime = mSampleTime;
+            mLastTime = mSampleTime;
+            double x = mSampleTime - mFirstTime;
+            for (int id = 0; id < mSlabCount; id++) {
+                if (mSampleIds[id] != mSampleCount) continue;
+
+                if (mCounts[id] == 0) mFirstBytes[id] = mSampleBytes[id];
+                double y = mSampleBytes[id] - mFirstBytes[id];
+                mCounts[id]++;
+                mSumX[id] += x;
+                mSumXX[id] += x * x;
+                mSumY[id] += y;
+                mSumXY[id] += x * y;
+            }
+            mSampleCount++;
+        }
+
+        /** Returns the number of samples added to the fit. */
+        public long getSampleCount() {
+            return mSampleCount;
+        }
+
+        /**
+         * Returns the slope (bytes/5 minutes) of the line fit to each slab, see {@link
+         * #fitLinesToSamples}.
+         */
+        public Map<String, Double> getSlopes() {
+            Map<String, Double> slopes = new TreeMap<>();
+            for (int id = 0; id < mSlabCount; id++) {
+                double n = mCounts[id];
+                double num = n * mSumXY[id] - mSumX[id] * mSumY[id];
+                double denom = n * mSumXX[id] - mSumX[id] * mSumX[id];
+                slopes.put("slabinfo." + mNames[id], num * TimeUnit.MINUTES.toSeconds(5) / denom);
+            }
+            slopes.put("slabinfo.duration_seconds", (double) mLastTime - mFirstTime);
+            return slopes;
+        }
+
+        private int addSlabName(String name) {
+            int id = mSlabCount++;
+            if (id == mNames.length) {
+                int capacity = Math.max(64, id * 2);
+                mNames = Arrays.copyOf(mNames, capacity);
+                mSampleBytes = Arrays.copyOf(mSampleBytes, capacity);
+                mSampleIds = Arrays.copyOf(mSampleIds, capacity);
+                mFirstBytes = Arrays.copyOf(mFirstBytes, capacity);
+                mCounts = Arrays.copyOf(mCounts, capacity);
+                mSumX = Arrays.copyOf(mSumX, capacity);
+                mSumXX = Arrays.copyOf(mSumXX, capacity);
+                mSumY = Arrays.copyOf(mSumY, capacity);
+                mSumXY = Arrays.copyOf(mSumXY, capacity);
+            }
+            mNames[id] = name;
+            mSampleIds[id] = -1;
+            mSlabIds.put(name, id);
+            return id;
+        }
+    }
+
+    private final SlabRegression mRegression = new SlabRegression();
     private ScheduledFuture<?> mReaderHandle;
 
     @Override
@@ -82,16 +249,18 @@ public class SlabinfoHelper implements ICollectorHelper<Double> {
         } catch (InterruptedException ex) {
             Thread.currentThread().interrupt();
         }
-        mSamples.clear();
+        synchronized (mRegression) {
+            mRegression.clear();
+        }
         return true;
     }
 
     @Override
     public Map<String, Double> getMetrics() {
-        synchronized (mSamples) {
-            if (mSamples.size() < 2) return null;
+        synchronized (mRegression) {
+            if (mRegression.getSampleCount() < 2) return null;
 
-            return fitLinesToSamples(mSamples);
+            return mRegression.getSlopes();
         }
     }
 
@@ -99,12 +268,12 @@ public class SlabinfoHelper implements ICollectorHelper<Double> {
             new Runnable() {
                 @Override
                 public void run() {
-                    SlabinfoSample sample = new SlabinfoSample();
-                    try {
-                        sample.time = getMonotonicSeconds();
-                        sample.slabs = readSlabinfo();
-                        synchronized (mSamples) {
-                            mSamples.add(sample);
+                    try (BufferedReader reader =
+                            new BufferedReader(new FileReader(SLABINFO_PATH))) {
+                        synchronized (mRegression) {
+                            mRegression.startSample(getMonotonicSeconds());
+                            readSlabinfo(reader, mRegression);
+                            mRegression.endSample();
                         }
                     } catch (IOException ex) {
                         ex.printStackTrace();
@@ -129,32 +298,54 @@ public class SlabinfoHelper implements ICollectorHelper<Double> {
         }
     }
 
-    private static Map<String, Long> readSlabinfo() throws IOException {
-        Map<String, Long> slabinfo = new TreeMap<>();
-
-        BufferedReader reader = new BufferedReader(new FileReader(SLABINFO_PATH));
-
+    /**
+     * Adds the size of each slab listed by {@code reader}, in the /proc/slabinfo format, to the
+     * current sample of {@code regression}. Fields are read in place rather than split.
+     */
+    @VisibleForTesting
+    public static void readSlabinfo(BufferedReader reader, SlabRegression regression)
+            throws IOException {
         // Discard the first two header lines
         reader.readLine();
         reader.readLine();
 
         for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-            // Convert multiple adjacent spaces into a single space for tokenization
-            String tokens[] = line.replaceAll(" +", " ").split(" ");
-            String name = tokens[0];
-            long pagesPerSlab = Long.parseLong(tokens[5]), numSlabs = Long.parseLong(tokens[14]);
+            int nameLength = line.indexOf(' ');
+            if (nameLength < 0) nameLength = line.length();
+            int pagesPerSlabStart = skipFields(line, 0, PAGES_PER_SLAB_FIELD);
+            long pagesPerSlab = parseField(line, pagesPerSlabStart);
+            int numSlabsStart =
+                    skipFields(line, pagesPerSlabStart, NUM_SLABS_FIELD - PAGES_PER_SLAB_FIELD);
+            long numSlabs = parseField(line, numSlabsStart);
             long bytes = PAGE_SIZE * pagesPerSlab * numSlabs;
 
-            // Nobody duplicates slab names except for device mapper. Keep the maximum if we
+            // Nobody duplicates slab names except for device mapper. The maximum is kept if we
             // encounter a duplicate slab name.
-            Long val = slabinfo.get(name);
-            if (val != null) val = Math.max(val, bytes);
-            else val = bytes;
+            regression.addSlab(line, nameLength, bytes);
+        }
+    }
+
+    /** Returns the start of the field {@code count} fields after the one at {@code start}. */
+    private static int skipFields(String line, int start, int count) {
+        int index = start;
+        for (int i = 0; i < count; i++) {
+            while (index < line.length() && line.charAt(index) != ' ') index++;
+            while (index < line.length() && line.charAt(index) == ' ') index++;
+        }
+        return index;
+    }
 
-            slabinfo.put(name, val);
+    /** Parses the non-negative decimal field starting at {@code start}. */
+    private static long parseField(String line, int start) {
+        int end = start;
+        long value = 0;
+        while (end < line.length() && line.charAt(end) != ' ') {
+            int digit = Character.digit(line.charAt(end++), 10);
+            if (digit < 0) throw new NumberFormatException("Invalid slabinfo line: " + line);
+            value = value * 10 + digit;
         }
-        reader.close();
-        return slabinfo;
+        if (end == start) throw new NumberFormatException("Invalid slabinfo line: " + line);
+        return value;
     }
 
     // Returns the slope (bytes/5 minutes) of a line fit to the samples for each slab using the
@@ -162,38 +353,14 @@ public class SlabinfoHelper implements ICollectorHelper<Double> {
     // entry: "slabinfo.duration_seconds" to record the duration of the collection period.
     @VisibleForTesting
     public static Map<String, Double> fitLinesToSamples(List<SlabinfoSample> samples) {
-        // Grab slab names from the first entry
-        Set<String> names = samples.get(0).slabs.keySet();
-
-        // Compute averages for each dimension
-        double xbar = 0;
-        Map<String, Double> ybars = new TreeMap<>();
-        for (String name : names) ybars.put(name, 0.0);
-
+        SlabRegression regression = new SlabRegression();
         for (SlabinfoSample sample : samples) {
-            xbar += sample.time;
-            for (String name : names) ybars.put(name, ybars.get(name) + sample.slabs.get(name));
-        }
-        xbar /= samples.size();
-        for (String name : names) ybars.put(name, ybars.get(name) / samples.size());
-
-        // Compute slopes
-        Map<String, Double> slopes = new TreeMap<>();
-        for (String name : names) {
-            double num = 0, denom = 0;
-            for (SlabinfoSample sample : samples) {
-                double delta_x = sample.time - xbar;
-                double delta_y = sample.slabs.get(name) - ybars.get(name);
-                num += delta_x * delta_y;
-                denom += delta_x * delta_x;
+            regression.startSample(sample.time);
+            for (Map.Entry<String, Long> slab : sample.slabs.entrySet()) {
+                regression.addSlab(slab.getKey(), slab.getValue());
             }
-            slopes.put("slabinfo." + name, num * TimeUnit.MINUTES.toSeconds(5) / denom);
+            regression.endSample();
         }
-
-        slopes.put(
-                "slabinfo.duration_seconds",
-                (double) samples.get(samples.size() - 1).time - samples.get(0).time);
-
-        return slopes;
+        return regression.getSlopes();
     }
 }
@@ -24,16 +24,23 @@ import android.content.Context;
 import android.os.Debug.MemoryInfo;
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
 import androidx.test.platform.app.InstrumentationRegistry;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Helper to collect totalpss memory usage per process tracked by the ActivityManager
  * memoryinfo.
+ *
+ * All the processes are sampled together in each iteration, until each of them either stabilized
+ * or reached the maximum number of iterations, so that the collection takes as long as the
+ * slowest process to stabilize.
  */
 public class TotalPssHelper implements ICollectorHelper<Long> {
 
@@ -79,11 +86,14 @@ public class TotalPssHelper implements ICollectorHelper<Long> {
             return mPssFinalMap;
         }
         if (mProcessNames != null) {
+            Map<String, List<Long>> pssData = new LinkedHashMap<>();
             for (String processName : mProcessNames) {
                 if (!processName.isEmpty()) {
-                    measureMemory(processName);
+                    Log.i(TAG, "Tracking memory usage of the process - " + processName);
+                    pssData.put(processName, new ArrayList<Long>());
                 }
             }
+            measureMemory(pssData);
         }
         return mPssFinalMap;
     }
@@ -94,33 +104,43 @@ public class TotalPssHelper implements ICollectorHelper<Long> {
     }
 
     /**
-     * Measure memory info of the given process name tracked by the activity manager
-     * MemoryInfo(i.e getTotalPss).
+     * Measure memory info of the given processes tracked by the activity manager
+     * MemoryInfo(i.e getTotalPss), until the memory usage of each of them is stabilized.
      *
-     * @param processName to calculate the memory info.
+     * @param pssData map of the names of the processes to measure to their pss data, initially
+     *     empty.
      */
-    private void measureMemory(String processName) {
-        Log.i(TAG, "Tracking memory usage of the process - " + processName);
-        List<Long> pssData = new ArrayList<Long>();
-        long pss = 0;
+    private void measureMemory(Map<String, List<Long>> pssData) {
         int iteration = 0;
-        while (iteration < mMaxIterations) {
+        while (!pssData.isEmpty() && iteration < mMaxIterations) {
             sleep(mSleepTime);
-            pss = getPss(processName);
-            pssData.add(pss);
-            if (iteration >= mMinIterations && stabilized(pssData)) {
-                Log.i(TAG, "Memory usage stabilized at iteration count = " + iteration);
-                // Final metric reported in bytes.
-                mPssFinalMap.put(constructKey(PSS_METRIC_PREFIX, processName), pss * 1024);
-                return;
+            Map<String, Long> pss = getPss(pssData.keySet());
+            List<String> stabilizedProcesses = new ArrayList<>();
+            for (Map.Entry<String, List<Long>> entry : pssData.entrySet()) {
+                String processName = entry.getKey();
+                List<Long> processPssData = entry.getValue();
+                processPssData.add(pss.get(processName));
+                if (iteration >= mMinIterations && stabilized(processPssData)) {
+                    Log.i(TAG, processName + " memory usage stabilized at iteration count = "
+                            + iteration);
+                    // Final metric reported in bytes.
+                    mPssFinalMap.put(constructKey(PSS_METRIC_PREFIX, processName),
+                            pss.get(processName) * 1024);
+                    stabilizedProcesses.add(processName);
+                }
             }
+            pssData.keySet().removeAll(stabilizedProcesses);
             iteration++;
         }
 
-        Log.i(TAG, processName + " memory usage did not stabilize."
-                + " Returning the average of the pss data collected.");
-        // Final metric reported in bytes.
-        mPssFinalMap.put(constructKey(PSS_METRIC_PREFIX, processName), average(pssData) * 1024);
+        for (Map.Entry<String, List<Long>> entry : pssData.entrySet()) {
+            String processName = entry.getKey();
+            Log.i(TAG, processName + " memory usage did not stabilize."
+                    + " Returning the average of the pss data collected.");
+            // Final metric reported in bytes.
+            mPssFinalMap.put(constructKey(PSS_METRIC_PREFIX, processName),
+                    average(entry.getValue()) * 1024);
+        }
     }
 
     /**
@@ -128,7 +148,8 @@ public class TotalPssHelper implements ICollectorHelper<Long> {
      *
      * @param time in ms to sleep.
      */
-    private void sleep(int time) {
+    @VisibleForTesting
+    protected void sleep(int time) {
         try {
             Thread.sleep(time);
         } catch (InterruptedException e) {
@@ -137,29 +158,45 @@ public class TotalPssHelper implements ICollectorHelper<Long> {
     }
 
     /**
-     * Get the total pss memory of the given process name.
+     * Get the total pss memory of the given processes, with a single memory info request.
      *
-     * @param processName of the process to measure the memory.
-     * @return the memory in KB.
+     * @param processNames of the processes to measure the memory.
+     * @return map of the process names to their memory in KB, 0 if the process is not found.
      */
-    private long getPss(String processName) {
+    @VisibleForTesting
+    protected Map<String, Long> getPss(Collection<String> processNames) {
         ActivityManager am = (ActivityManager) InstrumentationRegistry.getInstrumentation()
                 .getContext().getSystemService(Context.ACTIVITY_SERVICE);
-        List<RunningAppProcessInfo> apps = am.getRunningAppProcesses();
-        for (RunningAppProcessInfo proc : apps) {
-            if (!proc.processName.equals(processName)) {
-                continue;
+        Map<String, Integer> pids = new LinkedHashMap<>();
+        for (RunningAppProcessInfo proc : am.getRunningAppProcesses()) {
+            if (processNames.contains(proc.processName)) {
+                pids.putIfAbsent(proc.processName, proc.pid);
             }
-            MemoryInfo meminfo = am.getProcessMemoryInfo(new int[] {
-                proc.pid
-            })[0];
+        }
+
+        int[] pidArray = new int[pids.size()];
+        int index = 0;
+        for (int pid : pids.values()) {
+            pidArray[index++] = pid;
+        }
+        MemoryInfo[] meminfos =
+                pidArray.length > 0 ? am.getProcessMemoryInfo(pidArray) : new MemoryInfo[0];
+
+        Map<String, Long> pss = new HashMap<>();
+        index = 0;
+        for (String processName : pids.keySet()) {
+            long totalPss = meminfos[index++].getTotalPss();
             Log.i(TAG,
-                    String.format("Memory usage of process - %s is %d", processName,
-                            meminfo.getTotalPss()));
-            return meminfo.getTotalPss();
+                    String.format("Memory usage of process - %s is %d", processName, totalPss));
+            pss.put(processName, totalPss);
+        }
+        for (String processName : processNames) {
+            if (!pss.containsKey(processName)) {
+                Log.w(TAG, "Not able to find the process id for the process = " + processName);
+                pss.put(processName, 0L);
+            }
         }
-        Log.w(TAG, "Not able to find the process id for the process = " + processName);
-        return 0;
+        return pss;
     }
 
     /**
@@ -19,21 +19,30 @@ package com.android.helpers.tests;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import android.system.Os;
+import android.system.OsConstants;
+
 import androidx.test.runner.AndroidJUnit4;
 
 import com.android.helpers.SlabinfoHelper;
+import com.android.helpers.SlabinfoHelper.SlabRegression;
 import com.android.helpers.SlabinfoHelper.SlabinfoSample;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
 import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 @RunWith(AndroidJUnit4.class)
 public class SlabinfoHelperTest {
@@ -147,4 +156,103 @@ public class SlabinfoHelperTest {
         assertEquals(Double.valueOf(16.4835165), rounded_a);
         assertEquals(Double.valueOf(-35.7142857), rounded_b);
     }
+
+    @Test
+    public void testReadSlabinfo() throws IOException {
+        long pageSize = Os.sysconf(OsConstants._SC_PAGESIZE);
+        SlabRegression regression = new SlabRegression();
+        regression.startSample(0);
+        SlabinfoHelper.readSlabinfo(slabinfo(2, 10, 3), regression);
+        regression.endSample();
+        regression.startSample(60);
+        SlabinfoHelper.readSlabinfo(slabinfo(2, 30, 3), regression);
+        regression.endSample();
+
+        Map<String, Double> slopes = regression.getSlopes();
+        assertEquals(Double.valueOf(2 * 20 * pageSize * 5), slopes.get("slabinfo.a"));
+        assertEquals(Double.valueOf(0), slopes.get("slabinfo.b-1024"));
+        // The duplicate slab keeps its largest size
+        assertEquals(Double.valueOf(2 * 20 * pageSize * 5), slopes.get("slabinfo.dup"));
+        assertEquals(Double.valueOf(60), slopes.get("slabinfo.duration_seconds"));
+        assertEquals(4, slopes.size());
+    }
+
+    @Test
+    public void testDiscardedSample() throws IOException {
+        SlabRegression regression = new SlabRegression();
+        regression.startSample(0);
+        SlabinfoHelper.readSlabinfo(slabinfo(1, 10, 1), regression);
+        regression.endSample();
+        // A sample that fails to be read is not added
+        regression.startSample(30);
+        regression.addSlab("a", 1000000);
+        regression.startSample(60);
+        SlabinfoHelper.readSlabinfo(slabinfo(1, 10, 1), regression);
+        regression.endSample();
+
+        assertEquals(2, regression.getSampleCount());
+        assertEquals(Double.valueOf(0), regression.getSlopes().get("slabinfo.a"));
+    }
+
+    @Test
+    public void testLongCollectionSameAsTwoPassFit() {
+        Random random = new Random(0);
+        int slabCount = 200;
+        int sampleCount = (int) TimeUnit.DAYS.toMinutes(1);
+        long[] sizes = new long[slabCount];
+        for (int i = 0; i < slabCount; i++) sizes[i] = random.nextInt(1 << 30);
+
+        long[] times = new long[sampleCount];
+        long[][] values = new long[sampleCount][slabCount];
+        SlabRegression regression = new SlabRegression();
+        for (int i = 0; i < sampleCount; i++) {
+            times[i] = 1_000_000 + i * 60 + random.nextInt(3);
+            regression.startSample(times[i]);
+            for (int j = 0; j < slabCount; j++) {
+                sizes[j] = Math.max(0, sizes[j] + (random.nextInt(4096) - 2000) * j);
+                values[i][j] = sizes[j];
+                regression.addSlab("slab" + j, sizes[j]);
+            }
+            regression.endSample();
+        }
+
+        Map<String, Double> slopes = regression.getSlopes();
+        for (int j = 0; j < slabCount; j++) {
+            double expected = twoPassSlope(times, values, j);
+            assertEquals(expected, slopes.get("slabinfo.slab" + j), Math.abs(expected) * 1e-9);
+        }
+    }
+
+    /** Fits a line to the sizes of slab {@code slab} as samples used to be fit. */
+    private static double twoPassSlope(long[] times, long[][] values, int slab) {
+        double xbar = 0, ybar = 0;
+        for (int i = 0; i < times.length; i++) {
+            xbar += times[i];
+            ybar += values[i][slab];
+        }
+        xbar /= times.length;
+        ybar /= times.length;
+        double num = 0, denom = 0;
+        for (int i = 0; i < times.length; i++) {
+            num += (times[i] - xbar) * (values[i][slab] - ybar);
+            denom += (times[i] - xbar) * (times[i] - xbar);
+        }
+        return num * 300 / denom;
+    }
+
+    /** Returns /proc/slabinfo content with slabs "a", "b-1024" and "dup", listed twice. */
+    private static BufferedReader slabinfo(int pagesPerSlab, long numSlabs, long otherSlabs) {
+        String format =
+                "%-17s %6d %6d %4d %4d %4d : tunables    0    0    0 : slabdata %6d %6d      0\n";
+        StringBuilder content = new StringBuilder();
+        content.append("slabinfo - version: 2.1\n");
+        content.append("# name            <active_objs> <num_objs> <objsize> <objperslab>")
+                .append(" <pagesperslab> : tunables <limit> <batchcount> <sharedfactor>")
+                .append(" : slabdata <active_slabs> <num_slabs> <sharedavail>\n");
+        content.append(String.format(format, "a", 100, 120, 64, 64, pagesPerSlab, 9, numSlabs));
+        content.append(String.format(format, "b-1024", 8, 8, 1024, 8, 2, 1, 1));
+        content.append(String.format(format, "dup", 1, 1, 64, 64, pagesPerSlab, 1, numSlabs));
+        content.append(String.format(format, "dup", 1, 1, 64, 64, 1, 1, otherSlabs));
+        return new BufferedReader(new StringReader(content.toString()));
+    }
 }
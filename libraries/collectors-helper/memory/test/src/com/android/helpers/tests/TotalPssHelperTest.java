@@ -18,6 +18,7 @@ package com.android.helpers.tests;
 
 import static com.android.helpers.MetricUtility.constructKey;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -29,6 +30,11 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -94,6 +100,25 @@ public class TotalPssHelperTest {
         assertTrue(pssMetrics.get(constructKey(PSS_METRIC_PREFIX, TEST_PROCESS_NAME_2)) > 0);
     }
 
+    /** Test processes are sampled together rather than one after another. */
+    @Test
+    public void testGetMetrics_MultipleProcessesSampledTogether() {
+        CountingTotalPssHelper helper = new CountingTotalPssHelper();
+        helper.setUp(TEST_PROCESS_NAME, TEST_PROCESS_NAME_2, INVALID_PROCESS_NAME);
+        helper.setMinIterations(3);
+        helper.setMaxIterations(6);
+        helper.setSleepTime(200);
+        Map<String, Long> pssMetrics = helper.getMetrics();
+        assertEquals(3, pssMetrics.size());
+        // Steady memory usage stabilizes at the 4th iteration, sampling all the processes in each
+        // of them. Measuring each process in turn would take 3 * 4 rounds.
+        assertEquals(4, helper.mSampledProcesses.size());
+        for (Collection<String> processNames : helper.mSampledProcesses) {
+            assertEquals(3, processNames.size());
+        }
+        assertEquals(Arrays.asList(200, 200, 200, 200), helper.mSleeps);
+    }
+
     /** Test pss metric is 0 for invalid process name. */
     @Test
     public void testGetMetrics_InvalidProcess() {
@@ -102,4 +127,25 @@ public class TotalPssHelperTest {
         assertTrue(pssMetrics.containsKey(constructKey(PSS_METRIC_PREFIX, INVALID_PROCESS_NAME)));
         assertTrue(pssMetrics.get(constructKey(PSS_METRIC_PREFIX, INVALID_PROCESS_NAME)) == 0);
     }
+
+    /** {@link TotalPssHelper} reporting a steady memory usage and recording its sampling. */
+    private static class CountingTotalPssHelper extends TotalPssHelper {
+        private final List<Collection<String>> mSampledProcesses = new ArrayList<>();
+        private final List<Integer> mSleeps = new ArrayList<>();
+
+        @Override
+        protected void sleep(int time) {
+            mSleeps.add(time);
+        }
+
+        @Override
+        protected Map<String, Long> getPss(Collection<String> processNames) {
+            mSampledProcesses.add(new ArrayList<>(processNames));
+            Map<String, Long> pss = new HashMap<>();
+            for (String processName : processNames) {
+                pss.put(processName, 1024L);
+            }
+            return pss;
+        }
+    }
 }
@@ -29,7 +29,10 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -61,10 +64,15 @@ public class PerfettoHelper {
     private static final String CREATE_FILE_CMD = "touch %s";
     // Command to move the perfetto output trace file to given folder.
     private static final String MOVE_CMD = "mv %s %s";
-    // Max wait count for checking if perfetto is stopped successfully
-    private static final int PERFETTO_KILL_WAIT_COUNT = 12;
-    // Check if perfetto is stopped every 5 secs.
-    private static final long PERFETTO_KILL_WAIT_TIME = 5000;
+    // Check if perfetto is stopped every 50 msecs, for 60 secs at most.
+    private static final long PERFETTO_EXIT_POLL_INTERVAL = 50;
+    private static final long PERFETTO_EXIT_TIMEOUT = 60000;
+
+    // Keys of the latencies of the last stopCollecting call, in msecs.
+    public static final String STOP_WAIT_LATENCY = "perfetto_stop_wait_ms";
+    public static final String STOP_EXIT_LATENCY = "perfetto_stop_exit_ms";
+    public static final String STOP_MOVE_LATENCY = "perfetto_stop_move_ms";
+    public static final String STOP_TOTAL_LATENCY = "perfetto_stop_total_ms";
 
     private static Set<Integer> sPerfettoProcessIds = new HashSet<>();
 
@@ -80,6 +88,8 @@ public class PerfettoHelper {
     private String mConfigFileName;
     private boolean mIsTextProtoConfig;
 
+    private final Map<String, Long> mStopLatencies = new LinkedHashMap<>();
+
     /** Set content of the perfetto configuration to be used when tracing */
     public PerfettoHelper setTextProtoConfig(String value) {
         mTextProtoConfig = value;
@@ -286,22 +296,34 @@ public class PerfettoHelper {
      * @return true if the trace collection is successfull otherwise false.
      */
     public boolean stopCollecting(long waitTimeInMsecs, String destinationFile) {
+        mStopLatencies.clear();
+        long startTime = SystemClock.elapsedRealtime();
+
         // Wait for the dump interval before stopping the trace.
         Log.i(LOG_TAG, String.format(
                 "Waiting for %d msecs before stopping perfetto.", waitTimeInMsecs));
         SystemClock.sleep(waitTimeInMsecs);
+        long stopTime = SystemClock.elapsedRealtime();
+        mStopLatencies.put(STOP_WAIT_LATENCY, stopTime - startTime);
 
         // Stop the perfetto and copy the output file.
         Log.i(LOG_TAG, "Stopping perfetto.");
         try {
-            if (stopPerfetto(getPerfettoPid())) {
-                if (!copyFileOutput(destinationFile)) {
-                    return false;
-                }
-            } else {
+            boolean stopped = stopPerfetto(getPerfettoPid());
+            long exitTime = SystemClock.elapsedRealtime();
+            mStopLatencies.put(STOP_EXIT_LATENCY, exitTime - stopTime);
+            if (!stopped) {
                 Log.e(LOG_TAG, "Perfetto failed to stop.");
                 return false;
             }
+            boolean copied = copyFileOutput(destinationFile);
+            long endTime = SystemClock.elapsedRealtime();
+            mStopLatencies.put(STOP_MOVE_LATENCY, endTime - exitTime);
+            mStopLatencies.put(STOP_TOTAL_LATENCY, endTime - startTime);
+            Log.i(LOG_TAG, String.format("Perfetto stop latencies - %s", mStopLatencies));
+            if (!copied) {
+                return false;
+            }
         } catch (IOException ioe) {
             Log.e(LOG_TAG, "Unable to stop the perfetto tracing due to " + ioe.getMessage());
             return false;
@@ -309,6 +331,17 @@ public class PerfettoHelper {
         return true;
     }
 
+    /**
+     * Returns the latencies, in msecs, of the steps of the last {@link #stopCollecting} call:
+     * waiting before stopping ({@link #STOP_WAIT_LATENCY}), stopping perfetto until its process
+     * exited ({@link #STOP_EXIT_LATENCY}), moving the trace to its destination ({@link
+     * #STOP_MOVE_LATENCY}) and all of them ({@link #STOP_TOTAL_LATENCY}). Steps which did not run
+     * are missing.
+     */
+    public Map<String, Long> getStopLatencies() {
+        return Collections.unmodifiableMap(mStopLatencies);
+    }
+
     /**
      * Utility method for stopping perfetto.
      *
@@ -317,20 +350,15 @@ public class PerfettoHelper {
      */
     public boolean stopPerfetto(int perfettoProcId) throws IOException {
         Log.i(LOG_TAG, String.format("Killing the process id - %d", perfettoProcId));
-        String stopOutput =
-                mUIDevice.executeShellCommand(String.format(PERFETTO_STOP_CMD, perfettoProcId));
-        Log.i(LOG_TAG, String.format("Perfetto stop command output - %s", stopOutput));
-        int waitCount = 0;
+        // Shell commands are not run by a shell, so the kill and the wait are separate commands.
+        mUIDevice.executeShellCommand(String.format(PERFETTO_STOP_CMD, perfettoProcId));
+        long deadline = SystemClock.elapsedRealtime() + PERFETTO_EXIT_TIMEOUT;
         while (isTestPerfettoRunning(perfettoProcId)) {
-            // 60 secs timeout for perfetto shutdown.
-            if (waitCount < PERFETTO_KILL_WAIT_COUNT) {
-                // Check every 5 secs if perfetto stopped successfully.
-                SystemClock.sleep(PERFETTO_KILL_WAIT_TIME);
-                waitCount++;
-                continue;
+            if (SystemClock.elapsedRealtime() >= deadline) {
+                Log.i(LOG_TAG, "Perfetto did not stop.");
+                return false;
             }
-            Log.i(LOG_TAG, "Perfetto did not stop.");
-            return false;
+            SystemClock.sleep(PERFETTO_EXIT_POLL_INTERVAL);
         }
         Log.i(LOG_TAG, "Perfetto stopped successfully.");
         boolean isRemoved = sPerfettoProcessIds.remove(perfettoProcId);
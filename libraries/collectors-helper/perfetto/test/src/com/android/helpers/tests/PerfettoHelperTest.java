@@ -36,6 +36,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.IOException;
+import java.util.Map;
 
 /**
  * Android Unit tests for {@link PerfettoHelper}.
@@ -50,6 +51,7 @@ public class PerfettoHelperTest {
 
     private static final String REMOVE_CMD = "rm %s";
     private static final String FILE_SIZE_IN_BYTES = "wc -c %s";
+    private static final String PROC_ID_EXIST_CHECK = "ls -l /proc/%d/exe";
     private static final String DEFAULT_CFG =
             """
             buffers: {
@@ -235,6 +237,40 @@ public class PerfettoHelperTest {
         assertTrue(fileSize > 0);
     }
 
+    /** Test the latencies of each step of stopping perfetto are reported. */
+    @Test
+    public void testPerfettoStopLatencies() throws Exception {
+        assertTrue(mPerfettoHelper.startCollectingFromConfig(DEFAULT_CFG));
+        isPerfettoStartSuccess = true;
+        assertTrue(mPerfettoHelper.stopCollecting(1000, "/data/local/tmp/out.perfetto-trace"));
+        Map<String, Long> latencies = mPerfettoHelper.getStopLatencies();
+        assertTrue(latencies.get(PerfettoHelper.STOP_WAIT_LATENCY) >= 1000);
+        assertTrue(latencies.containsKey(PerfettoHelper.STOP_EXIT_LATENCY));
+        assertTrue(latencies.containsKey(PerfettoHelper.STOP_MOVE_LATENCY));
+        assertTrue(
+                latencies.get(PerfettoHelper.STOP_TOTAL_LATENCY)
+                        >= latencies.get(PerfettoHelper.STOP_WAIT_LATENCY)
+                                + latencies.get(PerfettoHelper.STOP_EXIT_LATENCY));
+    }
+
+    /** Test the perfetto process is gone once stopCollecting returns. */
+    @Test
+    public void testPerfettoProcessStopped() throws Exception {
+        assertTrue(mPerfettoHelper.startCollectingFromConfig(DEFAULT_CFG));
+        isPerfettoStartSuccess = true;
+        int perfettoPid = mPerfettoHelper.getPerfettoPid();
+        UiDevice uiDevice = UiDevice.getInstance(InstrumentationRegistry.getInstrumentation());
+        assertFalse(
+                uiDevice.executeShellCommand(String.format(PROC_ID_EXIST_CHECK, perfettoPid))
+                        .isEmpty());
+
+        assertTrue(mPerfettoHelper.stopCollecting(1000, "/data/local/tmp/out.perfetto-trace"));
+
+        assertTrue(
+                uiDevice.executeShellCommand(String.format(PROC_ID_EXIST_CHECK, perfettoPid))
+                        .isEmpty());
+    }
+
     /**
      * Test perfetto collection returns false when referring to the config root directory
      * which does not contain perfetto config file.
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.helpers;
+
+import static org.junit.Assert.assertEquals;
+
+import android.util.Log;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmark of {@link SymbolMatcher} with a large list of symbols over report lines, against
+ * checking each substring in turn. To run it: {@code atest SimpleperfHelperBenchmark}
+ */
+@RunWith(AndroidJUnit4.class)
+public class SymbolMatcherBenchmark {
+    private static final String LOG_TAG = SymbolMatcherBenchmark.class.getSimpleName();
+
+    @Test
+    public void matchLargeSymbolList() {
+        Random random = new Random(0);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            names.add(randomName(random, 4 + random.nextInt(12)));
+        }
+        Map<String, String> symbols = new LinkedHashMap<>();
+        for (int i = 0; i < 500; i++) {
+            symbols.put("android::" + names.get(i) + "::" + names.get(i + 1) + "(", "key" + i);
+        }
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 200000; i++) {
+            Collections.shuffle(names.subList(0, 600), random);
+            lines.add("android::" + names.get(0) + "::" + names.get(1) + "(int, long)");
+        }
+
+        long start = System.nanoTime();
+        List<String> expected = new ArrayList<>();
+        for (String line : lines) {
+            expected.add(getMatchingSymbol(symbols, line));
+        }
+        long containsMs = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        SymbolMatcher matcher = new SymbolMatcher(symbols);
+        List<String> actual = new ArrayList<>();
+        for (String line : lines) {
+            actual.add(matcher.match(line));
+        }
+        long matcherMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(expected, actual);
+        Log.i(
+                LOG_TAG,
+                String.format(
+                        "Matched %d symbols in %d lines: contains=%dms, matcher=%dms",
+                        symbols.size(), lines.size(), containsMs, matcherMs));
+    }
+
+    /** Returns the key of the first substring {@code symbol} contains, as previously done. */
+    private static String getMatchingSymbol(Map<String, String> symbols, String symbol) {
+        for (String candidate : symbols.keySet()) {
+            if (symbol.contains(candidate)) {
+                return symbols.get(candidate);
+            }
+        }
+        return null;
+    }
+
+    private static String randomName(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(26)));
+        }
+        return builder.toString();
+    }
+}
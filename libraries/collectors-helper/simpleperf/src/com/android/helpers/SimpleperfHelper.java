@@ -29,7 +29,10 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -55,6 +58,10 @@ public class SimpleperfHelper {
 
     private final UiDevice mUiDevice;
 
+    // Symbols the matcher was built for, in order, to only build it again if they change.
+    private List<Map.Entry<String, String>> mMatcherSymbols;
+    private SymbolMatcher mSymbolMatcher;
+
     /** Constructor to receive visible UiDevice. Should not be used except for testing. */
     @VisibleForTesting
     public SimpleperfHelper(UiDevice uidevice) {
@@ -206,63 +213,120 @@ public class SimpleperfHelper {
      */
     private Map<String, String> getMetrics(
             String process, Map<String, String> symbols, int testIterations) {
+        // The first matching symbol in iteration order is reported, so the order matters too.
+        if (!new ArrayList<>(symbols.entrySet()).equals(mMatcherSymbols)) {
+            Map<String, String> matcherSymbols = new LinkedHashMap<>(symbols);
+            mMatcherSymbols = new ArrayList<>(matcherSymbols.entrySet());
+            mSymbolMatcher = new SymbolMatcher(matcherSymbols);
+        }
         Map<String, String> results = new HashMap<>();
-        try {
-            String eventName = "";
-            BufferedReader reader =
-                    new BufferedReader(
-                            new FileReader(SimpleperfHelper.SIMPLEPERF_REPORT_TMP_FILE_PATH));
-            for (String line; (line = reader.readLine()) != null; ) {
-                // Checking for top of the report to find event name and event count.
-                // Event count: 3498520605
-                if (line.contains(": ")) {
-                    String[] splitLine = line.split(": ");
-                    if (splitLine[0].equals("Event")) {
-                        eventName = splitLine[1].split(" ")[0];
-                    } else if (splitLine[0].equals("Event count")) {
-                        String key = String.join("-", process, eventName);
-                        long count = Long.parseLong(splitLine[1]) / testIterations;
-                        results.put(key, String.valueOf(count));
-                    }
-                }
-                // Parsing lines for specific symbols in report to store with event count to results
-                // Children  Self    AccEventCount  SelfEventCount  Pid   Symbol
-                // 54.20%    0.00%   122803507      0               2510  __start_thread
-                else if (line.contains("%")) {
-                    final String[] splitLine = line.split("\\s+", 6);
-                    final String parsedSymbol = splitLine[5].trim();
-                    final String matchedSymbol = getMatchingSymbol(symbols, parsedSymbol);
-                    if (matchedSymbol == null) {
-                        continue;
-                    }
-                    String key = String.join("-", process, matchedSymbol, eventName);
-                    if (results.containsKey(key + "-percentage")) {
-                        // We are searching for symbols with partial matches so only include the
-                        // first hit if we get multiple matches.
-                        continue;
-                    }
-
-                    // Remove trailing %
-                    String percentage = splitLine[0].substring(0, splitLine[0].length() - 1);
-                    results.put(key + "-percentage", percentage);
-                    String eventCount = splitLine[2].trim();
-                    long count = Long.parseLong(eventCount) / testIterations;
-                    results.put(key + "-count", String.valueOf(count));
-                }
-            }
+        try (BufferedReader reader =
+                new BufferedReader(
+                        new FileReader(SimpleperfHelper.SIMPLEPERF_REPORT_TMP_FILE_PATH))) {
+            parseReport(reader, process, mSymbolMatcher, testIterations, results);
         } catch (Exception e) {
             Log.e(LOG_TAG, "Could not open report file: " + e.getMessage());
         }
         return results;
     }
 
-    private static String getMatchingSymbol(Map<String, String> symbols, String parsedSymbol) {
-        for (String candidate : symbols.keySet()) {
-            if (parsedSymbol.contains(candidate)) {
-                return symbols.get(candidate);
+    /**
+     * Extracts metrics from a simpleperf report into {@code results}. Lines are read in place
+     * rather than split, and only the fields of lines matching a symbol are extracted.
+     *
+     * @param reader Simpleperf report.
+     * @param process Process the report is for.
+     * @param symbolMatcher Matcher of the symbols to report events from.
+     * @param results Map to add the recorded event counts to, kept if parsing fails part way.
+     */
+    @VisibleForTesting
+    public static void parseReport(
+            BufferedReader reader,
+            String process,
+            SymbolMatcher symbolMatcher,
+            int testIterations,
+            Map<String, String> results)
+            throws IOException {
+        String eventName = "";
+        for (String line; (line = reader.readLine()) != null; ) {
+            // Checking for top of the report to find event name and event count.
+            // Event count: 3498520605
+            int separator = line.indexOf(": ");
+            if (separator >= 0) {
+                if (line.startsWith("Event: ")) {
+                    int start = separator + 2;
+                    int end = line.indexOf(' ', start);
+                    int nextSeparator = line.indexOf(": ", start);
+                    if (end < 0) end = line.length();
+                    if (nextSeparator >= 0 && nextSeparator < end) end = nextSeparator;
+                    eventName = line.substring(start, end);
+                } else if (line.startsWith("Event count: ")) {
+                    int end = line.indexOf(": ", separator + 2);
+                    if (end < 0) end = line.length();
+                    String key = String.join("-", process, eventName);
+                    long count =
+                            Long.parseLong(line.substring(separator + 2, end)) / testIterations;
+                    results.put(key, String.valueOf(count));
+                }
+            }
+            // Parsing lines for specific symbols in report to store with event count to results
+            // Children  Self    AccEventCount  SelfEventCount  Pid   Symbol
+            // 54.20%    0.00%   122803507      0               2510  __start_thread
+            else if (line.indexOf('%') >= 0) {
+                // Same fields as line.split("\\s+", 6)
+                int selfStart = nextField(line, 0);
+                int eventCountStart = nextField(line, selfStart);
+                int symbolStart =
+                        nextField(line, nextField(line, nextField(line, eventCountStart)));
+                if (symbolStart < 0) {
+                    throw new IllegalArgumentException("Missing symbol in report line: " + line);
+                }
+                int symbolEnd = line.length();
+                while (symbolEnd > symbolStart && line.charAt(symbolEnd - 1) <= ' ') symbolEnd--;
+                final String matchedSymbol = symbolMatcher.match(line, symbolStart, symbolEnd);
+                if (matchedSymbol == null) {
+                    continue;
+                }
+                String key = String.join("-", process, matchedSymbol, eventName);
+                if (results.containsKey(key + "-percentage")) {
+                    // We are searching for symbols with partial matches so only include the
+                    // first hit if we get multiple matches.
+                    continue;
+                }
+
+                // Remove trailing %
+                String percentage = line.substring(0, fieldEnd(line, 0) - 1);
+                results.put(key + "-percentage", percentage);
+                String eventCount =
+                        line.substring(eventCountStart, fieldEnd(line, eventCountStart));
+                long count = Long.parseLong(eventCount) / testIterations;
+                results.put(key + "-count", String.valueOf(count));
             }
         }
-        return null;
+    }
+
+    /**
+     * Returns the start of the whitespace separated field after the one at {@code start}, or -1
+     * if there is none.
+     */
+    private static int nextField(String line, int start) {
+        if (start < 0) return -1;
+        int index = fieldEnd(line, start);
+        if (index == line.length()) return -1;
+        while (index < line.length() && isWhitespace(line.charAt(index))) index++;
+        return index;
+    }
+
+    /** Returns the end of the whitespace separated field at {@code start}. */
+    private static int fieldEnd(String line, int start) {
+        int index = start;
+        while (index < line.length() && !isWhitespace(line.charAt(index))) index++;
+        return index;
+    }
+
+    /** Returns whether {@code c} matches the regular expression {@code \s}. */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 
     /**
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.helpers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Finds which of a set of substrings a symbol contains, in a single pass over the symbol.
+ *
+ * <p>The substrings are compiled into an Aho-Corasick automaton. If a symbol contains several of
+ * them, the first one in the iteration order of the map used to build the matcher is reported, as
+ * when checking each substring in turn with {@link String#contains}.
+ */
+public final class SymbolMatcher {
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    // Metric keys of the substrings, in priority order.
+    private final String[] mKeys;
+    // Outgoing transitions of each state, sorted by character.
+    private final char[][] mLabels;
+    private final int[][] mTargets;
+    // State reached on a mismatch, for the longest suffix of the state that is a prefix.
+    private final int[] mFailures;
+    // Priority of the first substring ending at each state or at any of its failure states.
+    private final int[] mMatches;
+
+    /**
+     * @param symbols Map of the substrings to find to their metric keys.
+     */
+    public SymbolMatcher(Map<String, String> symbols) {
+        mKeys = new String[symbols.size()];
+        List<TreeMap<Character, Integer>> transitions = new ArrayList<>();
+        List<Integer> matches = new ArrayList<>();
+        transitions.add(new TreeMap<>());
+        matches.add(NO_MATCH);
+
+        int priority = 0;
+        for (Map.Entry<String, String> symbol : symbols.entrySet()) {
+            mKeys[priority] = symbol.getValue();
+            String substring = symbol.getKey();
+            int state = 0;
+            for (int i = 0; i < substring.length(); i++) {
+                Integer next = transitions.get(state).get(substring.charAt(i));
+                if (next == null) {
+                    next = transitions.size();
+                    transitions.add(new TreeMap<>());
+                    matches.add(NO_MATCH);
+                    transitions.get(state).put(substring.charAt(i), next);
+                }
+                state = next;
+            }
+            matches.set(state, Math.min(matches.get(state), priority));
+            priority++;
+        }
+
+        int stateCount = transitions.size();
+        mLabels = new char[stateCount][];
+        mTargets = new int[stateCount][];
+        mFailures = new int[stateCount];
+        mMatches = new int[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            TreeMap<Character, Integer> stateTransitions = transitions.get(state);
+            mLabels[state] = new char[stateTransitions.size()];
+            mTargets[state] = new int[stateTransitions.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> transition : stateTransitions.entrySet()) {
+                mLabels[state][i] = transition.getKey();
+                mTargets[state][i] = transition.getValue();
+                i++;
+            }
+            mMatches[state] = matches.get(state);
+        }
+
+        // States are visited by increasing depth, so failure states are complete when used.
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int target : mTargets[0]) {
+            queue.add(target);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < mLabels[state].length; i++) {
+                int target = mTargets[state][i];
+                int failure = mFailures[state];
+                int next = transition(failure, mLabels[state][i]);
+                while (next < 0 && failure != 0) {
+                    failure = mFailures[failure];
+                    next = transition(failure, mLabels[state][i]);
+                }
+                mFailures[target] = next < 0 ? 0 : next;
+                mMatches[target] = Math.min(mMatches[target], mMatches[mFailures[target]]);
+                queue.add(target);
+            }
+        }
+    }
+
+    /**
+     * Returns the metric key of the first substring contained in the given region of {@code
+     * symbol}, or null if it contains none of them.
+     */
+    public String match(CharSequence symbol, int start, int end) {
+        int best = mMatches[0];
+        int state = 0;
+        for (int i = start; i < end && best != 0; i++) {
+            char c = symbol.charAt(i);
+            int next = transition(state, c);
+            while (next < 0 && state != 0) {
+                state = mFailures[state];
+                next = transition(state, c);
+            }
+            state = next < 0 ? 0 : next;
+            best = Math.min(best, mMatches[state]);
+        }
+        return best == NO_MATCH ? null : mKeys[best];
+    }
+
+    /** Returns the metric key of the first substring contained in {@code symbol}, or null. */
+    public String match(CharSequence symbol) {
+        return match(symbol, 0, symbol.length());
+    }
+
+    private int transition(int state, char c) {
+        char[] labels = mLabels[state];
+        if (labels.length < 8) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == c) return mTargets[state][i];
+            }
+            return -1;
+        }
+        int index = Arrays.binarySearch(labels, c);
+        return index < 0 ? -1 : mTargets[state][index];
+    }
+}
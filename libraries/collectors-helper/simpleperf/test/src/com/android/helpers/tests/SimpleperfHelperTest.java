@@ -15,6 +15,7 @@
  */
 package com.android.helpers.tests;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -23,13 +24,19 @@ import androidx.test.runner.AndroidJUnit4;
 import androidx.test.uiautomator.UiDevice;
 
 import com.android.helpers.SimpleperfHelper;
+import com.android.helpers.SymbolMatcher;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Android Unit tests for {@link SimpleperfHelper}.
@@ -94,4 +101,45 @@ public class SimpleperfHelperTest {
         int fileSize = Integer.parseInt(fileStats[0].trim());
         assertTrue(fileSize > 0);
     }
+
+    /** Test event counts are extracted for the first line matching each symbol. */
+    @Test
+    public void testParseReport() throws Exception {
+        String report =
+                String.join(
+                        "\n",
+                        "Cmdline: /system/bin/simpleperf record -g",
+                        "Arch: arm64",
+                        "Event: cpu-cycles (type 0, config 0)",
+                        "Samples: 12345",
+                        "Event count: 3498520605",
+                        "",
+                        "Children  Self    AccEventCount  SelfEventCount  Pid   Symbol",
+                        "54.20%    0.00%   122803507      0               2510  __start_thread",
+                        "12.50%    1.00%   40000          100             2510  "
+                                + "android::SurfaceFlinger::commit(long, long)  ",
+                        "10.00%    1.00%   30000          100             2510  "
+                                + "android::SurfaceFlinger::commit(long)",
+                        "5.25%     0.50%   20000          10              2510  "
+                                + "android::Parcel::writeInt32(int)");
+        Map<String, String> symbols = new LinkedHashMap<>();
+        symbols.put("android::SurfaceFlinger::commit(", "commit");
+        symbols.put("android::Parcel::writeInt32(", "writeInt32");
+        Map<String, String> results = new HashMap<>();
+
+        SimpleperfHelper.parseReport(
+                new BufferedReader(new StringReader(report)),
+                "surfaceflinger",
+                new SymbolMatcher(symbols),
+                2,
+                results);
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("surfaceflinger-cpu-cycles", "1749260302");
+        expected.put("surfaceflinger-commit-cpu-cycles-percentage", "12.50");
+        expected.put("surfaceflinger-commit-cpu-cycles-count", "20000");
+        expected.put("surfaceflinger-writeInt32-cpu-cycles-percentage", "5.25");
+        expected.put("surfaceflinger-writeInt32-cpu-cycles-count", "10000");
+        assertEquals(expected, results);
+    }
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.helpers.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.helpers.SymbolMatcher;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Android Unit tests for {@link SymbolMatcher}.
+ *
+ * <p>atest CollectorsHelperTest:com.android.helpers.tests.SymbolMatcherTest
+ */
+@RunWith(AndroidJUnit4.class)
+public class SymbolMatcherTest {
+
+    /** Test the first matching substring is reported, in the order of the map. */
+    @Test
+    public void testMatchesFirstSubstring() {
+        Map<String, String> symbols = new LinkedHashMap<>();
+        symbols.put("SurfaceFlinger::commit(", "commit");
+        symbols.put("Parcel::writeInt32(", "writeInt32");
+        symbols.put("commit", "anyCommit");
+        SymbolMatcher matcher = new SymbolMatcher(symbols);
+
+        assertEquals("commit", matcher.match("android::SurfaceFlinger::commit(long, long)"));
+        assertEquals("writeInt32", matcher.match("android::Parcel::writeInt32(int)"));
+        assertEquals("anyCommit", matcher.match("android::Layer::commitTransaction()"));
+        assertNull(matcher.match("__start_thread"));
+        assertNull(matcher.match(""));
+        assertEquals("commit", matcher.match("x SurfaceFlinger::commit( x", 2, 25));
+        assertEquals("anyCommit", matcher.match("x SurfaceFlinger::commit( x", 2, 24));
+    }
+
+    /** Test an empty substring matches every symbol. */
+    @Test
+    public void testEmptySubstring() {
+        Map<String, String> symbols = new LinkedHashMap<>();
+        symbols.put("main", "main");
+        symbols.put("", "all");
+        SymbolMatcher matcher = new SymbolMatcher(symbols);
+
+        assertEquals("main", matcher.match("main"));
+        assertEquals("all", matcher.match("__start_thread"));
+        assertEquals("all", matcher.match(""));
+    }
+
+    /** Test overlapping substrings sharing prefixes and suffixes. */
+    @Test
+    public void testSameAsContainsForRandomSymbols() {
+        Random random = new Random(0);
+        for (int i = 0; i < 500; i++) {
+            Map<String, String> symbols = new LinkedHashMap<>();
+            int symbolCount = 1 + random.nextInt(8);
+            for (int j = 0; j < symbolCount; j++) {
+                symbols.put(randomString(random, "abc", 1 + random.nextInt(5)), "key" + j);
+            }
+            SymbolMatcher matcher = new SymbolMatcher(symbols);
+            for (int j = 0; j < 50; j++) {
+                String symbol = randomString(random, "abc", random.nextInt(20));
+                assertEquals(symbol, getMatchingSymbol(symbols, symbol), matcher.match(symbol));
+            }
+        }
+    }
+
+    /** Returns the key of the first substring {@code symbol} contains, as previously done. */
+    private static String getMatchingSymbol(Map<String, String> symbols, String symbol) {
+        for (String candidate : symbols.keySet()) {
+            if (symbol.contains(candidate)) {
+                return symbols.get(candidate);
+            }
+        }
+        return null;
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
@@ -20,11 +20,17 @@ import com.google.errorprone.annotations.CanIgnoreReturnValue;
 
 import org.junit.AssumptionViolatedException;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -40,9 +46,20 @@ public abstract class BusinessLogicExecutor {
     protected static final String STRING_ARRAY_CLASS = "[Ljava.lang.String;";
 
     private static final String REDACTED_PLACEHOLDER = "[redacted]";
+    /* Rules taking longer than this are logged as slow */
+    private static final long SLOW_RULE_THRESHOLD_MS = 500;
     /* List of regexes indicating a method arg should be redacted in the logs */
     protected List<String> mRedactionRegexes = new ArrayList<>();
 
+    /*
+     * Caches of the lookups done for each rule, as large business logic configs invoke the same
+     * methods many times. Executors are not shared across threads.
+     */
+    private final Map<String, Pattern> mRedactionPatterns = new HashMap<>();
+    private final Map<String, Class<?>> mClasses = new HashMap<>();
+    private final Map<Class<?>, Map<String, List<Method>>> mMethodsWithName = new HashMap<>();
+    private final Map<Method, MethodHandle> mMethodHandles = new HashMap<>();
+
     /**
      * Execute a business logic condition.
      * @param method the name of the method to invoke. Must include fully qualified name of the
@@ -52,7 +69,9 @@ public abstract class BusinessLogicExecutor {
      * @throws RuntimeException when failing to resolve or invoke the condition method
      */
     public boolean executeCondition(String method, String... args) {
-        logDebug("Executing condition: %s", formatExecutionString(method, args));
+        String execution = formatExecutionString(method, args);
+        logDebug("Executing condition: %s", execution);
+        long startNs = System.nanoTime();
         try {
             return (Boolean) invokeMethod(method, args);
         } catch (ClassNotFoundException | IllegalAccessException | InstantiationException |
@@ -60,6 +79,8 @@ public abstract class BusinessLogicExecutor {
             throw new RuntimeException(String.format(
                     "BusinessLogic: Failed to invoke condition method %s with args: %s", method,
                     Arrays.toString(args)), e);
+        } finally {
+            logExecutionTime("condition", execution, startNs);
         }
     }
 
@@ -71,7 +92,9 @@ public abstract class BusinessLogicExecutor {
      * @throws RuntimeException when failing to resolve or invoke the action method
      */
     public void executeAction(String method, String... args) {
-        logDebug("Executing action: %s", formatExecutionString(method, args));
+        String execution = formatExecutionString(method, args);
+        logDebug("Executing action: %s", execution);
+        long startNs = System.nanoTime();
         try {
             invokeMethod(method, args);
         } catch (ClassNotFoundException | IllegalAccessException | InstantiationException |
@@ -92,6 +115,18 @@ public abstract class BusinessLogicExecutor {
                 re.setStackTrace(t.getStackTrace());
                 throw re;
             }
+        } finally {
+            logExecutionTime("action", execution, startNs);
+        }
+    }
+
+    /** Log how long a rule took, as info if it is slow so that it shows up in the logs. */
+    private void logExecutionTime(String type, String execution, long startNs) {
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs);
+        if (durationMs >= SLOW_RULE_THRESHOLD_MS) {
+            logInfo("Slow %s took %d ms: %s", type, durationMs, execution);
+        } else {
+            logDebug("Executed %s in %d ms: %s", type, durationMs, execution);
         }
     }
 
@@ -111,7 +146,7 @@ public abstract class BusinessLogicExecutor {
 
     private String formatArg(String arg) {
         for (String regex : mRedactionRegexes) {
-            Pattern pattern = Pattern.compile(regex);
+            Pattern pattern = mRedactionPatterns.computeIfAbsent(regex, Pattern::compile);
             Matcher matcher = pattern.matcher(arg);
             if (matcher.find()) {
                 return REDACTED_PLACEHOLDER;
@@ -143,7 +178,11 @@ public abstract class BusinessLogicExecutor {
                     + "For example, \"com.android.packagename.ClassName.methodName\".", method));
         }
         String className = method.substring(0, index);
-        Class cls = Class.forName(className);
+        Class<?> cls = mClasses.get(className);
+        if (cls == null) {
+            cls = Class.forName(className);
+            mClasses.put(className, cls);
+        }
         Object obj = null;
         if (getTestObject() != null && cls.isAssignableFrom(getTestObject().getClass())) {
             // The given method is a member of the test class, use the known test class instance
@@ -154,7 +193,39 @@ public abstract class BusinessLogicExecutor {
             obj = cls.getDeclaredConstructor().newInstance();
         }
         ResolvedMethod rm = getResolvedMethod(cls, method.substring(index + 1), args);
-        return rm.invoke(obj);
+        return invoke(rm, obj);
+    }
+
+    /**
+     * Invoke a resolved method on a given object, through a {@link MethodHandle} cached for the
+     * method. The handle spreads the receiver and the arguments from a single array, so its arity
+     * is part of the cached handle.
+     */
+    private Object invoke(ResolvedMethod rm, Object instance)
+            throws IllegalAccessException, InvocationTargetException {
+        MethodHandle handle = mMethodHandles.get(rm.mMethod);
+        if (handle == null) {
+            // Varargs are resolved into a single array argument, as with Method.invoke.
+            handle = MethodHandles.publicLookup().unreflect(rm.mMethod).asFixedArity();
+            if (Modifier.isStatic(rm.mMethod.getModifiers())) {
+                // Same as Method.invoke, which ignores the instance of static methods.
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            handle = handle.asType(handle.type().generic())
+                    .asSpreader(Object[].class, handle.type().parameterCount());
+            mMethodHandles.put(rm.mMethod, handle);
+        }
+        Object[] arguments = new Object[rm.mArgs.size() + 1];
+        arguments[0] = instance;
+        for (int i = 0; i < rm.mArgs.size(); i++) {
+            arguments[i + 1] = rm.mArgs.get(i);
+        }
+        try {
+            return (Object) handle.invokeExact(arguments);
+        } catch (Throwable t) {
+            // Same as Method.invoke, which wraps exceptions thrown by the method.
+            throw new InvocationTargetException(t);
+        }
     }
 
     /**
@@ -199,13 +270,18 @@ public abstract class BusinessLogicExecutor {
      * @return a list of method objects
      */
     protected List<Method> getMethodsWithName(Class cls, String name) {
-        List<Method> methodList = new ArrayList<>();
-        for (Method m : cls.getMethods()) {
-            if (name.equals(m.getName())) {
-                methodList.add(m);
+        Map<String, List<Method>> methodsWithName = mMethodsWithName.get(cls);
+        if (methodsWithName == null) {
+            // Index all methods of the class at once, rather than scanning them for each name.
+            methodsWithName = new HashMap<>();
+            for (Method m : cls.getMethods()) {
+                methodsWithName.computeIfAbsent(m.getName(), k -> new ArrayList<>()).add(m);
             }
+            mMethodsWithName.put(cls, methodsWithName);
         }
-        return methodList;
+        List<Method> methodList = methodsWithName.get(name);
+        // Callers may modify the list they get.
+        return methodList == null ? new ArrayList<>() : new ArrayList<>(methodList);
     }
 
     /**
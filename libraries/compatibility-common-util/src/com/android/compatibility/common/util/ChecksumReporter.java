@@ -19,11 +19,15 @@ package com.android.compatibility.common.util;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
 import com.google.common.hash.BloomFilter;
 import com.google.common.hash.Funnels;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -31,15 +35,20 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
+import java.io.ObjectStreamConstants;
 import java.io.Serializable;
-import java.security.DigestException;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /***
  * Calculate and store checksum values for files and test results
@@ -55,8 +64,17 @@ public final class ChecksumReporter implements Serializable {
     private static final String NAME_SEPARATOR = ".";
 
     private static final short CURRENT_VERSION = 1;
-    // Serialized format Id (ie magic number) used to identify serialized data.
+    // Serialized format Id (ie magic number) used to identify Java serialized data, which was
+    // written by previous versions and can still be loaded.
     static final short SERIALIZED_FORMAT_CODE = 650;
+    // Format Id (ie magic number) used to identify binary data, written with a DataOutputStream.
+    static final short BINARY_FORMAT_CODE = 652;
+
+    // Files are read into a large buffer owned by each hashing thread. It is a heap buffer, as
+    // MessageDigest copies the content of direct buffers to the heap in small chunks.
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<byte[]> HASH_BUFFER =
+            ThreadLocal.withInitial(() -> new byte[HASH_BUFFER_SIZE]);
 
     private final BloomFilter<CharSequence> mResultChecksum;
     private final HashMap<String, byte[]> mFileChecksum;
@@ -104,17 +122,31 @@ public final class ChecksumReporter implements Serializable {
     public ChecksumReporter(File directory) throws ChecksumValidationException {
         File file = new File(directory, ChecksumReporter.NAME);
         try (FileInputStream fileStream = new FileInputStream(file);
-            InputStream outputStream = new BufferedInputStream(fileStream);
-            ObjectInput objectInput = new ObjectInputStream(outputStream)) {
-            short magicNumber = objectInput.readShort();
-            switch (magicNumber) {
-                case SERIALIZED_FORMAT_CODE:
-                   mVersion = objectInput.readShort();
-                    mResultChecksum = (BloomFilter<CharSequence>) objectInput.readObject();
-                    mFileChecksum = (HashMap<String, byte[]>) objectInput.readObject();
-                    break;
-                default:
+            InputStream inputStream = new BufferedInputStream(fileStream)) {
+            if (isJavaSerialized(inputStream)) {
+                ObjectInput objectInput = new ObjectInputStream(inputStream);
+                if (objectInput.readShort() != SERIALIZED_FORMAT_CODE) {
                     throw new ChecksumValidationException("Unknown format of serialized data.");
+                }
+                mVersion = objectInput.readShort();
+                mResultChecksum = (BloomFilter<CharSequence>) objectInput.readObject();
+                mFileChecksum = (HashMap<String, byte[]>) objectInput.readObject();
+            } else {
+                DataInputStream input = new DataInputStream(inputStream);
+                if (input.readShort() != BINARY_FORMAT_CODE) {
+                    throw new ChecksumValidationException("Unknown format of serialized data.");
+                }
+                mVersion = input.readShort();
+                mResultChecksum =
+                        BloomFilter.readFrom(input, Funnels.unencodedCharsFunnel());
+                int fileCount = input.readInt();
+                mFileChecksum = new HashMap<>(fileCount);
+                for (int i = 0; i < fileCount; i++) {
+                    String key = readString(input);
+                    byte[] checksum = new byte[input.readUnsignedByte()];
+                    input.readFully(checksum);
+                    mFileChecksum.put(key, checksum);
+                }
             }
         } catch (Exception e) {
             throw new ChecksumValidationException("Unable to load checksum from file", e);
@@ -158,14 +190,8 @@ public final class ChecksumReporter implements Serializable {
      * @param path part of the key to identify the files crc
      */
     public void addFile(File file, String path) {
-        byte[] crc;
-        try {
-            crc = calculateFileChecksum(file);
-        } catch (ChecksumValidationException e) {
-            crc = new byte[0];
-        }
         String key = path + SEPARATOR + file.getName();
-        mFileChecksum.put(key, crc);
+        mFileChecksum.put(key, calculateFileChecksumOrEmpty(file));
     }
 
     @VisibleForTesting
@@ -184,27 +210,58 @@ public final class ChecksumReporter implements Serializable {
     }
 
     /***
-     * Adds all child files recursively through all sub directories
+     * Adds all child files recursively through all sub directories. Files are hashed in parallel.
      * @param directory target that is deeply searched for files
      */
     public void addDirectory(File directory) {
-        addDirectory(directory, directory.getName());
+        List<File> files = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        listFiles(directory, directory.getName(), files, paths);
+        if (files.isEmpty()) {
+            return;
+        }
+
+        int threadCount = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<byte[]>> futures = new ArrayList<>(files.size());
+            for (File file : files) {
+                futures.add(executor.submit(() -> calculateFileChecksumOrEmpty(file)));
+            }
+            for (int i = 0; i < files.size(); i++) {
+                String key = paths.get(i) + SEPARATOR + files.get(i).getName();
+                mFileChecksum.put(key, getUninterruptibly(futures.get(i)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
     }
 
     /***
      * @param path the relative path to the current directory from the base directory
      */
-    private void addDirectory(File directory, String path) {
+    private static void listFiles(
+            File directory, String path, List<File> files, List<String> paths) {
         for(String childName : directory.list()) {
             File child = new File(directory, childName);
             if (child.isDirectory()) {
-                addDirectory(child, path + SEPARATOR + child.getName());
+                listFiles(child, path + SEPARATOR + child.getName(), files, paths);
             } else {
-                addFile(child, path);
+                files.add(child);
+                paths.add(path);
             }
         }
     }
 
+    private static <T> T getUninterruptibly(Future<T> future) {
+        try {
+            return Uninterruptibles.getUninterruptibly(future);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
     /***
      * Calculate checksum of test result and store the value
      * @param testResult the target of the checksum
@@ -254,15 +311,41 @@ public final class ChecksumReporter implements Serializable {
         File file = new File(directory, NAME);
 
         try (FileOutputStream fileStream = new FileOutputStream(file, false);
-             OutputStream outputStream = new BufferedOutputStream(fileStream);
-             ObjectOutput objectOutput = new ObjectOutputStream(outputStream)) {
-            objectOutput.writeShort(SERIALIZED_FORMAT_CODE);
-            objectOutput.writeShort(mVersion);
-            objectOutput.writeObject(mResultChecksum);
-            objectOutput.writeObject(mFileChecksum);
+             DataOutputStream output =
+                     new DataOutputStream(new BufferedOutputStream(fileStream))) {
+            output.writeShort(BINARY_FORMAT_CODE);
+            output.writeShort(mVersion);
+            mResultChecksum.writeTo(output);
+            output.writeInt(mFileChecksum.size());
+            for (Map.Entry<String, byte[]> entry : mFileChecksum.entrySet()) {
+                writeString(output, entry.getKey());
+                output.writeByte(entry.getValue().length);
+                output.write(entry.getValue());
+            }
         }
     }
 
+    /** Returns whether the stream starts with Java serialized data, without consuming it. */
+    private static boolean isJavaSerialized(InputStream inputStream) throws IOException {
+        inputStream.mark(2);
+        int magic = (inputStream.read() << 8) | inputStream.read();
+        inputStream.reset();
+        return magic == (ObjectStreamConstants.STREAM_MAGIC & 0xffff);
+    }
+
+    // writeUTF is limited to 64KB, which is not enforced on file paths.
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
     @VisibleForTesting
     double getCapacity() {
         // If default FPP changes:
@@ -346,25 +429,26 @@ public final class ChecksumReporter implements Serializable {
 
     static byte[] calculateFileChecksum(File file) throws ChecksumValidationException {
 
-        try (FileInputStream fis = new FileInputStream(file);
-             InputStream inputStream = new BufferedInputStream(fis)) {
+        try (InputStream inputStream = new FileInputStream(file)) {
             MessageDigest hashSum = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = HASH_BUFFER.get();
             int cnt;
-            int bufferSize = 8192;
-            byte [] buffer = new byte[bufferSize];
             while ((cnt = inputStream.read(buffer)) != -1) {
                 hashSum.update(buffer, 0, cnt);
             }
-
-            byte[] partialHash = new byte[32];
-            hashSum.digest(partialHash, 0, 32);
-            return partialHash;
+            return hashSum.digest();
         } catch (NoSuchAlgorithmException e) {
             throw new ChecksumValidationException("Unable to hash file.", e);
         } catch (IOException e) {
             throw new ChecksumValidationException("Unable to hash file.", e);
-        } catch (DigestException e) {
-            throw new ChecksumValidationException("Unable to hash file.", e);
+        }
+    }
+
+    private static byte[] calculateFileChecksumOrEmpty(File file) {
+        try {
+            return calculateFileChecksum(file);
+        } catch (ChecksumValidationException e) {
+            return new byte[0];
         }
     }
 
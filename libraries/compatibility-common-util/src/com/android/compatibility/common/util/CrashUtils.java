@@ -23,6 +23,9 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -60,9 +63,8 @@ public class CrashUtils {
     public static final String FILENAME = "filename";
     public static final String METHOD = "method";
     public static final String BACKTRACE = "backtrace";
-    // Matches the smallest blob that has the appropriate header and footer
-    private static final Pattern sCrashBlobPattern =
-            Pattern.compile("DEBUG\\s+?:( [*]{3})+?.*?DEBUG\\s+?:\\s+?backtrace:", Pattern.DOTALL);
+    // Matches the header of a crash, a crash blob spans from it to the next end of a crash
+    private static final Pattern sCrashHeaderPattern = Pattern.compile("DEBUG\\s+?:( [*]{3})");
     // Matches process id and name line and captures them
     private static final Pattern sPidtidNamePattern =
             Pattern.compile("pid: (\\d+?), tid: (\\d+?), name: ([^\\s]+?\\s+?)*?>>> (.*?) <<<");
@@ -226,110 +228,271 @@ public class CrashUtils {
 
     /** Adds all crashes found in the input as JSONObjects to the given JSONArray */
     public static JSONArray addAllCrashes(String input, JSONArray crashes) {
-        Matcher crashBlobFinder = sCrashBlobPattern.matcher(input);
-        while (crashBlobFinder.find()) {
-            String crashStr = crashBlobFinder.group(0);
-            int tid = 0;
-            int pid = 0;
-            BigInteger faultAddress = null;
-            String name = null;
-            String process = null;
-            String signal = null;
-            String abortMessage = null;
-            List<BacktraceFrameInfo> backtraceFrames = new ArrayList<BacktraceFrameInfo>();
-
-            Matcher pidtidNameMatcher = sPidtidNamePattern.matcher(crashStr);
-            if (pidtidNameMatcher.find()) {
-                try {
-                    pid = Integer.parseInt(pidtidNameMatcher.group(1));
-                } catch (NumberFormatException e) {
-                }
-                try {
-                    tid = Integer.parseInt(pidtidNameMatcher.group(2));
-                } catch (NumberFormatException e) {
+        try {
+            return addAllCrashes(new StringReader(input), crashes);
+        } catch (IOException e) {
+            // Never thrown by a StringReader.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Adds all crashes found in the logcat read from the input as JSONObjects to the given
+     * JSONArray. The logcat is scanned line by line in a single pass, so it does not need to be
+     * held in memory.
+     *
+     * @throws IOException if reading the input fails
+     */
+    public static JSONArray addAllCrashes(Reader input, JSONArray crashes) throws IOException {
+        LineReader reader = new LineReader(input);
+        CrashScanner scanner = new CrashScanner(crashes);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            scanner.scanLine(line, reader.isLineTerminated());
+        }
+        scanner.finish();
+        return crashes;
+    }
+
+    /**
+     * Finds the crashes of a logcat, one line at a time.
+     *
+     * <p>A crash blob is the smallest part of the logcat that starts with a crash header and ends
+     * with {@link #sEndofCrashPattern}. The pid, tid and name line, the fault line and the abort
+     * message are the first matches within the blob. The backtrace frames are the lines directly
+     * following the line that ends the blob, until a line that is neither a frame nor a note.
+     */
+    private static class CrashScanner {
+        private final JSONArray mCrashes;
+        // Crash whose blob has started, but not ended yet
+        private CrashInfo mBlobCrash;
+        // Crash whose blob has ended, collecting its backtrace
+        private CrashInfo mBacktraceCrash;
+
+        CrashScanner(JSONArray crashes) {
+            mCrashes = crashes;
+        }
+
+        void scanLine(String line, boolean terminated) {
+            if (mBacktraceCrash != null) {
+                // Only lines ending with a new line are part of the backtrace.
+                if (terminated && scanBacktraceLine(line)) {
+                    return;
                 }
-                name = pidtidNameMatcher.group(3).trim();
-                process = pidtidNameMatcher.group(4).trim();
+                addCrash(mBacktraceCrash);
+                mBacktraceCrash = null;
             }
+            scanCrashBlobs(line);
+        }
 
-            Matcher faultLineMatcher = sFaultLinePattern.matcher(crashStr);
-            if (faultLineMatcher.find()) {
-                signal = faultLineMatcher.group(1);
-                String faultAddrMatch = faultLineMatcher.group(2);
-                if (faultAddrMatch != null) {
-                    try {
-                        faultAddress = new BigInteger(faultAddrMatch, 16);
-                    } catch (NumberFormatException e) {
+        void finish() {
+            if (mBacktraceCrash != null) {
+                addCrash(mBacktraceCrash);
+                mBacktraceCrash = null;
+            }
+            // A blob without an end is not a crash.
+            mBlobCrash = null;
+        }
+
+        private void scanCrashBlobs(String line) {
+            int offset = 0;
+            while (true) {
+                int blobStart = offset;
+                if (mBlobCrash == null) {
+                    if (line.indexOf("DEBUG", offset) == -1) {
+                        return;
                     }
+                    Matcher headerMatcher = sCrashHeaderPattern.matcher(line);
+                    if (!headerMatcher.find(offset)) {
+                        return;
+                    }
+                    mBlobCrash = new CrashInfo();
+                    blobStart = headerMatcher.start();
+                    offset = headerMatcher.end();
                 }
+
+                Matcher endMatcher = sEndofCrashPattern.matcher(line);
+                if (line.indexOf("backtrace:", offset) == -1 || !endMatcher.find(offset)) {
+                    mBlobCrash.scanFields(blobStart == 0 ? line : line.substring(blobStart));
+                    return;
+                }
+                mBlobCrash.scanFields(line.substring(blobStart, endMatcher.end()));
+                if (mBacktraceCrash != null) {
+                    addCrash(mBacktraceCrash);
+                }
+                mBacktraceCrash = mBlobCrash;
+                mBlobCrash = null;
+                offset = endMatcher.end();
             }
+        }
 
-            Matcher abortMessageMatcher = sAbortMessagePattern.matcher(crashStr);
-            if (abortMessageMatcher.find()) {
-                abortMessage = abortMessageMatcher.group(1);
+        /**
+         * Adds the frame of a backtrace line to the crash. The format is from
+         * tombstone_proto_to_text.cpp's print_thread_backtrace().
+         *
+         * @return false if the line is not part of the backtrace
+         */
+        private boolean scanBacktraceLine(String line) {
+            Matcher backtraceNoteMatcher = sBacktraceNotePattern.matcher(line);
+            if (backtraceNoteMatcher.matches()) {
+                return true;
             }
 
-            // Continue on after the crash block to find all the stacktrace entries.
-            // The format is from tombstone_proto_to_text.cpp's print_thread_backtrace()
-            // This will scan the logcat lines until it finds a line that does not match,
-            // or end of log.
-            int currentIndex = crashBlobFinder.end();
-            while (true) {
-                int firstEndline = input.indexOf('\n', currentIndex);
-                int secondEndline = input.indexOf('\n', firstEndline + 1);
-                currentIndex = secondEndline;
-                if (firstEndline == -1 || secondEndline == -1) break;
+            Matcher backtraceFrameWithBuildIdMatcher =
+                    sBacktraceFrameWithBuildIdPattern.matcher(line);
+            Matcher backtraceFrameWithoutBuildIdMatcher =
+                    sBacktraceFrameWithoutBuildIdPattern.matcher(line);
 
-                String nextLine = input.substring(firstEndline + 1, secondEndline);
+            Matcher backtraceFrameMatcher = null;
+            if (backtraceFrameWithBuildIdMatcher.matches()) {
+                backtraceFrameMatcher = backtraceFrameWithBuildIdMatcher;
 
-                Matcher backtraceNoteMatcher = sBacktraceNotePattern.matcher(nextLine);
-                if (backtraceNoteMatcher.matches()) {
-                    continue;
-                }
+            } else if (backtraceFrameWithoutBuildIdMatcher.matches()) {
+                backtraceFrameMatcher = backtraceFrameWithoutBuildIdMatcher;
+
+            } else {
+                return false;
+            }
+
+            mBacktraceCrash.mBacktraceFrames.add(
+                    new BacktraceFrameInfo(
+                            backtraceFrameMatcher.group("filename"),
+                            backtraceFrameMatcher.group("method")));
+            return true;
+        }
 
-                Matcher backtraceFrameWithBuildIdMatcher =
-                        sBacktraceFrameWithBuildIdPattern.matcher(nextLine);
-                Matcher backtraceFrameWithoutBuildIdMatcher =
-                        sBacktraceFrameWithoutBuildIdPattern.matcher(nextLine);
+        private void addCrash(CrashInfo crashInfo) {
+            try {
+                mCrashes.put(crashInfo.toJson());
+            } catch (JSONException e) {}
+        }
+    }
 
-                Matcher backtraceFrameMatcher = null;
-                if (backtraceFrameWithBuildIdMatcher.matches()) {
-                    backtraceFrameMatcher = backtraceFrameWithBuildIdMatcher;
+    /** Fields of a crash, filled from the lines of its blob and backtrace. */
+    private static class CrashInfo {
+        private int mTid = 0;
+        private int mPid = 0;
+        private BigInteger mFaultAddress = null;
+        private String mName = null;
+        private String mProcess = null;
+        private String mSignal = null;
+        private String mAbortMessage = null;
+        private final List<BacktraceFrameInfo> mBacktraceFrames = new ArrayList<>();
+        private boolean mFoundPidTidName;
+        private boolean mFoundFaultLine;
+        private boolean mFoundAbortMessage;
+
+        /** Keeps the first match of each field in the blob. */
+        void scanFields(String blobLine) {
+            if (!mFoundPidTidName && blobLine.contains("pid: ")) {
+                Matcher pidtidNameMatcher = sPidtidNamePattern.matcher(blobLine);
+                if (pidtidNameMatcher.find()) {
+                    mFoundPidTidName = true;
+                    try {
+                        mPid = Integer.parseInt(pidtidNameMatcher.group(1));
+                    } catch (NumberFormatException e) {
+                    }
+                    try {
+                        mTid = Integer.parseInt(pidtidNameMatcher.group(2));
+                    } catch (NumberFormatException e) {
+                    }
+                    mName = pidtidNameMatcher.group(3).trim();
+                    mProcess = pidtidNameMatcher.group(4).trim();
+                }
+            }
 
-                } else if (backtraceFrameWithoutBuildIdMatcher.matches()) {
-                    backtraceFrameMatcher = backtraceFrameWithoutBuildIdMatcher;
+            if (!mFoundFaultLine && blobLine.contains(", fault addr ")) {
+                Matcher faultLineMatcher = sFaultLinePattern.matcher(blobLine);
+                if (faultLineMatcher.find()) {
+                    mFoundFaultLine = true;
+                    mSignal = faultLineMatcher.group(1);
+                    String faultAddrMatch = faultLineMatcher.group(2);
+                    if (faultAddrMatch != null) {
+                        try {
+                            mFaultAddress = new BigInteger(faultAddrMatch, 16);
+                        } catch (NumberFormatException e) {
+                        }
+                    }
+                }
+            }
 
-                } else {
-                    break;
+            if (!mFoundAbortMessage) {
+                Matcher abortMessageMatcher = sAbortMessagePattern.matcher(blobLine);
+                if (abortMessageMatcher.find()) {
+                    mFoundAbortMessage = true;
+                    mAbortMessage = abortMessageMatcher.group(1);
                 }
+            }
+        }
 
-                backtraceFrames.add(
-                        new BacktraceFrameInfo(
-                                backtraceFrameMatcher.group("filename"),
-                                backtraceFrameMatcher.group("method")));
+        JSONObject toJson() throws JSONException {
+            JSONObject crash = new JSONObject();
+            crash.put(PID, mPid);
+            crash.put(TID, mTid);
+            crash.put(NAME, mName);
+            crash.put(PROCESS, mProcess);
+            crash.put(FAULT_ADDRESS, mFaultAddress == null ? null : mFaultAddress.toString(16));
+            crash.put(SIGNAL, mSignal);
+            crash.put(ABORT_MESSAGE, mAbortMessage);
+            JSONArray backtrace = new JSONArray();
+            for (BacktraceFrameInfo frame : mBacktraceFrames) {
+                backtrace.put(
+                        new JSONObject()
+                                .put(FILENAME, frame.getFilename())
+                                .put(METHOD, frame.getMethod()));
             }
+            crash.put(BACKTRACE, backtrace);
+            return crash;
+        }
+    }
 
-            try {
-                JSONObject crash = new JSONObject();
-                crash.put(PID, pid);
-                crash.put(TID, tid);
-                crash.put(NAME, name);
-                crash.put(PROCESS, process);
-                crash.put(FAULT_ADDRESS, faultAddress == null ? null : faultAddress.toString(16));
-                crash.put(SIGNAL, signal);
-                crash.put(ABORT_MESSAGE, abortMessage);
-                JSONArray backtrace = new JSONArray();
-                for (BacktraceFrameInfo frame : backtraceFrames) {
-                    backtrace.put(
-                            new JSONObject()
-                                    .put(FILENAME, frame.getFilename())
-                                    .put(METHOD, frame.getMethod()));
+    /** Reads lines separated by '\n' only, as lines of a logcat may contain '\r'. */
+    private static class LineReader {
+        private final Reader mReader;
+        private final char[] mBuffer = new char[8192];
+        private final StringBuilder mLine = new StringBuilder();
+        private int mPosition;
+        private int mLimit;
+        private boolean mLineTerminated;
+
+        LineReader(Reader reader) {
+            mReader = reader;
+        }
+
+        /** Returns the next line, without its '\n', or null at the end of the input. */
+        String readLine() throws IOException {
+            mLine.setLength(0);
+            while (true) {
+                if (mPosition == mLimit) {
+                    mPosition = 0;
+                    mLimit = Math.max(mReader.read(mBuffer), 0);
+                    if (mLimit == 0) {
+                        mLineTerminated = false;
+                        return mLine.length() == 0 ? null : mLine.toString();
+                    }
                 }
-                crash.put(BACKTRACE, backtrace);
-                crashes.put(crash);
-            } catch (JSONException e) {}
+                for (int i = mPosition; i < mLimit; i++) {
+                    if (mBuffer[i] == '\n') {
+                        String line;
+                        if (mLine.length() == 0) {
+                            line = new String(mBuffer, mPosition, i - mPosition);
+                        } else {
+                            line = mLine.append(mBuffer, mPosition, i - mPosition).toString();
+                        }
+                        mPosition = i + 1;
+                        mLineTerminated = true;
+                        return line;
+                    }
+                }
+                mLine.append(mBuffer, mPosition, mLimit - mPosition);
+                mPosition = mLimit;
+            }
+        }
+
+        /** Returns whether the last line read ended with a '\n'. */
+        boolean isLineTerminated() {
+            return mLineTerminated;
         }
-        return crashes;
     }
 
     public static class BacktraceFrameInfo {
@@ -18,18 +18,22 @@ package com.android.compatibility.common.util;
 import com.android.compatibility.common.util.ChecksumReporter.ChecksumValidationException;
 
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
 import org.xmlpull.v1.XmlSerializer;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Reader;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.file.FileSystems;
@@ -40,11 +44,18 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
@@ -133,21 +144,50 @@ public class ResultHandler {
     /**
      * Returns IInvocationResults that can be queried for general reporting information, but that
      * do not store underlying module data. Useful for summarizing invocation history.
+     *
+     * <p>Result directories are read in parallel, without loading their module data, and the
+     * summaries are kept in an index in the results directory so that unchanged results are not
+     * read again by later calls.
+     *
      * @param resultsDir
      */
     public static List<IInvocationResult> getLightResults(File resultsDir) {
-        List<IInvocationResult> results = new ArrayList<>();
-        List<File> files = getResultDirectories(resultsDir);
-        for (File resultDir : files) {
-            if (LATEST_RESULT_DIR.equals(resultDir.getName())) {
-                continue;
+        List<File> files = new ArrayList<>();
+        for (File resultDir : getResultDirectories(resultsDir)) {
+            if (!LATEST_RESULT_DIR.equals(resultDir.getName())) {
+                files.add(resultDir);
             }
-            IInvocationResult result = getResultFromDir(resultDir, false);
-            if (result != null) {
-                results.add(new LightInvocationResult(result));
-                result = null; // ensure all references are removed to free memory
+        }
+        ResultSummaryIndex index = ResultSummaryIndex.load(resultsDir);
+        index.retainAll(files);
+        List<IInvocationResult> results = new ArrayList<>();
+        if (!files.isEmpty()) {
+            int threadCount = Math.min(
+                    files.size(), Runtime.getRuntime().availableProcessors());
+            ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+            try {
+                List<Future<LightInvocationResult>> futures = new ArrayList<>();
+                for (File resultDir : files) {
+                    futures.add(executor.submit(() -> getLightResult(index, resultDir)));
+                }
+                for (Future<LightInvocationResult> future : futures) {
+                    LightInvocationResult result = getUninterruptibly(future);
+                    if (result != null) {
+                        results.add(result);
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
             }
         }
+        try {
+            index.save(resultsDir);
+        } catch (IOException e) {
+            // The index only speeds up later calls, e.g. the results directory may be read-only.
+            System.out.println(
+                    String.format("Could not save the result summary index of %s: %s",
+                            resultsDir.getAbsolutePath(), e));
+        }
         // Sort the table entries on each entry's timestamp.
         Collections.sort(results,  (result1, result2) -> Long.compare(
                 result1.getStartTime(),
@@ -155,6 +195,27 @@ public class ResultHandler {
         return results;
     }
 
+    private static LightInvocationResult getLightResult(
+            ResultSummaryIndex index, File resultDir) {
+        LightInvocationResult result = index.get(resultDir);
+        if (result == null) {
+            result = getLightResultFromDir(resultDir);
+            if (result != null) {
+                index.put(resultDir, result);
+            }
+        }
+        return result;
+    }
+
+    private static <T> T getUninterruptibly(Future<T> future) {
+        try {
+            return Uninterruptibles.getUninterruptibly(future);
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
     /**
      * @param resultDir
      * @return an IInvocationResult for this result, or null upon error
@@ -193,52 +254,11 @@ public class ResultHandler {
             XmlPullParser parser = factory.newPullParser();
             parser.setInput(new FileReader(resultFile));
 
-            parser.nextTag();
-            parser.require(XmlPullParser.START_TAG, NS, RESULT_TAG);
-            invocation.setStartTime(Long.valueOf(
-                    parser.getAttributeValue(NS, START_TIME_ATTR)));
-            invocation.setTestPlan(parser.getAttributeValue(NS, SUITE_PLAN_ATTR));
-            invocation.setCommandLineArgs(parser.getAttributeValue(NS, COMMAND_LINE_ARGS));
-            String deviceList = parser.getAttributeValue(NS, DEVICES_ATTR);
-            for (String device : deviceList.split(",")) {
-                invocation.addDeviceSerial(device);
-            }
-
-            parser.nextTag();
-            parser.require(XmlPullParser.START_TAG, NS, BUILD_TAG);
-            invocation.addInvocationInfo(BUILD_ID, parser.getAttributeValue(NS, BUILD_ID));
-            invocation.addInvocationInfo(BUILD_PRODUCT, parser.getAttributeValue(NS,
-                    BUILD_PRODUCT));
-            String runHistoryValue = parser.getAttributeValue(NS, RUN_HISTORY_ATTR);
-            if (runHistoryValue != null) {
-                invocation.addInvocationInfo(RUN_HISTORY_ATTR, runHistoryValue);
-            }
-
-            // The build fingerprint needs to reflect the true fingerprint of the device under test,
-            // ignoring potential overrides made by test suites (namely STS) for APFE build
-            // association.
-            String reportFingerprint = parser.getAttributeValue(NS, BUILD_FINGERPRINT);
-            String unalteredFingerprint = parser.getAttributeValue(NS, BUILD_FINGERPRINT_UNALTERED);
-            Boolean fingerprintWasAltered = !Strings.isNullOrEmpty(unalteredFingerprint);
-            invocation.setBuildFingerprint(fingerprintWasAltered ? unalteredFingerprint :
-                reportFingerprint );
-
-            // TODO(stuartscott): may want to reload these incase the retry was done with
-            // --skip-device-info flag
-            parser.nextTag();
-            parser.require(XmlPullParser.END_TAG, NS, BUILD_TAG);
-
-            // Parse RunHistory tag.
-            parser.nextTag();
-            boolean hasRunHistoryTag = true;
-            try {
-                parser.require(XmlPullParser.START_TAG, NS, RUN_HISTORY_TAG);
-            } catch (XmlPullParserException e) {
-                hasRunHistoryTag = false;
-            }
-            if (hasRunHistoryTag) {
-                parseRunHistory(parser);
-            }
+            String reportFingerprint = parseResultHeader(parser, invocation);
+            // The invocation fingerprint differs from the reported one only if it was altered.
+            String unalteredFingerprint = invocation.getBuildFingerprint();
+            Boolean fingerprintWasAltered =
+                    !Objects.equals(unalteredFingerprint, reportFingerprint);
 
             parser.require(XmlPullParser.START_TAG, NS, SUMMARY_TAG);
             parser.nextTag();
@@ -346,6 +366,142 @@ public class ResultHandler {
         }
     }
 
+    /**
+     * Parses the Result and Build attributes and the run history, leaving the parser on the
+     * Summary start tag.
+     *
+     * @return the build fingerprint as reported in the Build tag.
+     */
+    private static String parseResultHeader(XmlPullParser parser, IInvocationResult invocation)
+            throws XmlPullParserException, IOException {
+        parser.nextTag();
+        parser.require(XmlPullParser.START_TAG, NS, RESULT_TAG);
+        invocation.setStartTime(Long.valueOf(
+                parser.getAttributeValue(NS, START_TIME_ATTR)));
+        invocation.setTestPlan(parser.getAttributeValue(NS, SUITE_PLAN_ATTR));
+        invocation.setCommandLineArgs(parser.getAttributeValue(NS, COMMAND_LINE_ARGS));
+        String deviceList = parser.getAttributeValue(NS, DEVICES_ATTR);
+        for (String device : deviceList.split(",")) {
+            invocation.addDeviceSerial(device);
+        }
+
+        parser.nextTag();
+        parser.require(XmlPullParser.START_TAG, NS, BUILD_TAG);
+        invocation.addInvocationInfo(BUILD_ID, parser.getAttributeValue(NS, BUILD_ID));
+        invocation.addInvocationInfo(BUILD_PRODUCT, parser.getAttributeValue(NS,
+                BUILD_PRODUCT));
+        String runHistoryValue = parser.getAttributeValue(NS, RUN_HISTORY_ATTR);
+        if (runHistoryValue != null) {
+            invocation.addInvocationInfo(RUN_HISTORY_ATTR, runHistoryValue);
+        }
+
+        // The build fingerprint needs to reflect the true fingerprint of the device under test,
+        // ignoring potential overrides made by test suites (namely STS) for APFE build
+        // association.
+        String reportFingerprint = parser.getAttributeValue(NS, BUILD_FINGERPRINT);
+        String unalteredFingerprint = parser.getAttributeValue(NS, BUILD_FINGERPRINT_UNALTERED);
+        Boolean fingerprintWasAltered = !Strings.isNullOrEmpty(unalteredFingerprint);
+        invocation.setBuildFingerprint(fingerprintWasAltered ? unalteredFingerprint :
+            reportFingerprint );
+
+        // TODO(stuartscott): may want to reload these incase the retry was done with
+        // --skip-device-info flag
+        parser.nextTag();
+        parser.require(XmlPullParser.END_TAG, NS, BUILD_TAG);
+
+        // Parse RunHistory tag.
+        parser.nextTag();
+        boolean hasRunHistoryTag = true;
+        try {
+            parser.require(XmlPullParser.START_TAG, NS, RUN_HISTORY_TAG);
+        } catch (XmlPullParserException e) {
+            hasRunHistoryTag = false;
+        }
+        if (hasRunHistoryTag) {
+            parseRunHistory(parser);
+        }
+        return reportFingerprint;
+    }
+
+    /**
+     * Reads the summary of a result without loading its module data: the result header is
+     * parsed as in {@link #getResultFromDir(File)}, then only the Module and Test attributes are
+     * read, and the content of every Test element (failures, logs, metrics) is skipped.
+     *
+     * @return a {@link LightInvocationResult} for this result, or null upon error
+     */
+    static LightInvocationResult getLightResultFromDir(File resultDir) {
+        File resultFile = new File(resultDir, TEST_RESULT_FILE_NAME);
+        if (!resultFile.exists()) {
+            return null;
+        }
+        try (Reader reader = new BufferedReader(new FileReader(resultFile))) {
+            LightInvocationResult invocation = new LightInvocationResult(resultDir);
+            XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+            parser.setInput(reader);
+
+            parseResultHeader(parser, invocation);
+            parser.require(XmlPullParser.START_TAG, NS, SUMMARY_TAG);
+            parser.nextTag();
+            parser.require(XmlPullParser.END_TAG, NS, SUMMARY_TAG);
+
+            // Modules are unique per result file, but the last done state wins if one repeats.
+            Map<String, Boolean> moduleDone = new HashMap<>();
+            Map<TestStatus, Integer> resultCounts = new EnumMap<>(TestStatus.class);
+            while (parser.nextTag() == XmlPullParser.START_TAG) {
+                parser.require(XmlPullParser.START_TAG, NS, MODULE_TAG);
+                String moduleId = AbiUtils.createId(
+                        parser.getAttributeValue(NS, ABI_ATTR),
+                        parser.getAttributeValue(NS, NAME_ATTR));
+                invocation.getOrCreateModule(moduleId);
+                moduleDone.put(moduleId,
+                        Boolean.parseBoolean(parser.getAttributeValue(NS, DONE_ATTR)));
+                while (parser.nextTag() == XmlPullParser.START_TAG) {
+                    if (parser.getName().equals(MODULES_NOT_DONE_REASON)) {
+                        skipCurrentTag(parser);
+                        continue;
+                    }
+                    parser.require(XmlPullParser.START_TAG, NS, CASE_TAG);
+                    while (parser.nextTag() == XmlPullParser.START_TAG) {
+                        parser.require(XmlPullParser.START_TAG, NS, TEST_TAG);
+                        // Skipped tests are reported as passed, see TestResult#skipped().
+                        TestStatus status =
+                                Boolean.parseBoolean(parser.getAttributeValue(NS, SKIPPED_ATTR))
+                                        ? TestStatus.PASS
+                                        : TestStatus.getStatus(
+                                                parser.getAttributeValue(NS, RESULT_ATTR));
+                        if (status != null) {
+                            resultCounts.merge(status, 1, Integer::sum);
+                        }
+                        skipCurrentTag(parser);
+                        parser.require(XmlPullParser.END_TAG, NS, TEST_TAG);
+                    }
+                    parser.require(XmlPullParser.END_TAG, NS, CASE_TAG);
+                }
+                parser.require(XmlPullParser.END_TAG, NS, MODULE_TAG);
+            }
+            parser.require(XmlPullParser.END_TAG, NS, RESULT_TAG);
+
+            int moduleCompleteCount = 0;
+            for (boolean done : moduleDone.values()) {
+                if (done) {
+                    moduleCompleteCount++;
+                }
+            }
+            invocation.setModuleCompleteCount(moduleCompleteCount);
+            for (Entry<TestStatus, Integer> count : resultCounts.entrySet()) {
+                invocation.setResultCount(count.getKey(), count.getValue());
+            }
+            return invocation;
+        } catch (XmlPullParserException | IOException e) {
+            System.out.println(
+                    String.format("Exception when trying to load %s",
+                            resultFile.getAbsolutePath()));
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     /** Parse and replay all run history information. */
     private static void parseRunHistory(XmlPullParser parser)
             throws IOException, XmlPullParserException {
@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.compatibility.common.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * On-disk index of result summaries, stored in the root results directory, so that listing the
+ * result history does not need to parse every test_result.xml again.
+ *
+ * <p>Entries are keyed by result directory name and are only reused while the size and last
+ * modified time of the directory's test_result.xml are unchanged.
+ */
+final class ResultSummaryIndex {
+
+    static final String NAME = "result_summary.idx";
+
+    private static final short CURRENT_VERSION = 1;
+    // Serialized format Id (ie magic number) used to identify serialized data.
+    private static final short SERIALIZED_FORMAT_CODE = 651;
+
+    private final Map<String, Entry> mEntries;
+    private boolean mChanged;
+
+    private ResultSummaryIndex(Map<String, Entry> entries) {
+        mEntries = entries;
+    }
+
+    /**
+     * Loads the index of the given results directory. An empty index is returned if there is no
+     * index yet, or if it cannot be read.
+     */
+    static ResultSummaryIndex load(File resultsDir) {
+        File file = new File(resultsDir, NAME);
+        if (!file.exists()) {
+            return new ResultSummaryIndex(new HashMap<>());
+        }
+        try (DataInputStream input =
+                new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readShort() != SERIALIZED_FORMAT_CODE
+                    || input.readShort() != CURRENT_VERSION) {
+                return new ResultSummaryIndex(new HashMap<>());
+            }
+            int count = input.readInt();
+            Map<String, Entry> entries = new HashMap<>(count);
+            for (int i = 0; i < count; i++) {
+                String dirName = input.readUTF();
+                entries.put(dirName, Entry.read(input));
+            }
+            return new ResultSummaryIndex(entries);
+        } catch (IOException e) {
+            // The index is only a cache, start over from an empty one.
+            return new ResultSummaryIndex(new HashMap<>());
+        }
+    }
+
+    /**
+     * Returns the summary of the given result directory, or null if it is not indexed or if its
+     * test_result.xml changed since it was indexed.
+     */
+    synchronized LightInvocationResult get(File resultDir) {
+        Entry entry = mEntries.get(resultDir.getName());
+        File resultFile = new File(resultDir, ResultHandler.TEST_RESULT_FILE_NAME);
+        if (entry == null
+                || entry.mLastModified != resultFile.lastModified()
+                || entry.mLength != resultFile.length()) {
+            return null;
+        }
+        return entry.toResult(resultDir);
+    }
+
+    /** Indexes the summary of the given result directory. */
+    synchronized void put(File resultDir, LightInvocationResult result) {
+        File resultFile = new File(resultDir, ResultHandler.TEST_RESULT_FILE_NAME);
+        mEntries.put(
+                resultDir.getName(),
+                new Entry(resultFile.lastModified(), resultFile.length(), result));
+        mChanged = true;
+    }
+
+    /** Drops the entries of the directories which are not part of the results anymore. */
+    synchronized void retainAll(Collection<File> resultDirs) {
+        Set<String> names = new HashSet<>();
+        for (File resultDir : resultDirs) {
+            names.add(resultDir.getName());
+        }
+        mChanged |= mEntries.keySet().retainAll(names);
+    }
+
+    /**
+     * Writes the index back to the results directory if it changed. The index is written to a
+     * temporary file first, so that concurrent readers never see a partial index.
+     */
+    synchronized void save(File resultsDir) throws IOException {
+        if (!mChanged) {
+            return;
+        }
+        File tmpFile = File.createTempFile(NAME, ".tmp", resultsDir);
+        try {
+            try (DataOutputStream output =
+                    new DataOutputStream(
+                            new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                output.writeShort(SERIALIZED_FORMAT_CODE);
+                output.writeShort(CURRENT_VERSION);
+                output.writeInt(mEntries.size());
+                for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+                    output.writeUTF(entry.getKey());
+                    entry.getValue().write(output);
+                }
+            }
+            Files.move(
+                    tmpFile.toPath(),
+                    new File(resultsDir, NAME).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            mChanged = false;
+        } finally {
+            tmpFile.delete();
+        }
+    }
+
+    /** Summary of a single result, detached from its directory. */
+    private static final class Entry {
+        final long mLastModified;
+        final long mLength;
+        final long mStartTime;
+        final String mTestPlan;
+        final String mCommandLineArgs;
+        final String mBuildFingerprint;
+        final Map<String, String> mInvocationInfo;
+        final Set<String> mSerials;
+        final Set<String> mModuleIds;
+        final int mModuleCompleteCount;
+        final int mNotExecuted;
+        final Map<TestStatus, Integer> mResultCounts;
+
+        Entry(long lastModified, long length, LightInvocationResult result) {
+            this(
+                    lastModified,
+                    length,
+                    result.getStartTime(),
+                    result.getTestPlan(),
+                    result.getCommandLineArgs(),
+                    result.getBuildFingerprint(),
+                    new HashMap<>(result.getInvocationInfo()),
+                    new HashSet<>(result.getDeviceSerials()),
+                    new HashSet<>(result.getModuleIds()),
+                    result.getModuleCompleteCount(),
+                    result.getNotExecuted(),
+                    new HashMap<>());
+            for (TestStatus status : TestStatus.values()) {
+                mResultCounts.put(status, result.countResults(status));
+            }
+        }
+
+        private Entry(
+                long lastModified,
+                long length,
+                long startTime,
+                String testPlan,
+                String commandLineArgs,
+                String buildFingerprint,
+                Map<String, String> invocationInfo,
+                Set<String> serials,
+                Set<String> moduleIds,
+                int moduleCompleteCount,
+                int notExecuted,
+                Map<TestStatus, Integer> resultCounts) {
+            mLastModified = lastModified;
+            mLength = length;
+            mStartTime = startTime;
+            mTestPlan = testPlan;
+            mCommandLineArgs = commandLineArgs;
+            mBuildFingerprint = buildFingerprint;
+            mInvocationInfo = invocationInfo;
+            mSerials = serials;
+            mModuleIds = moduleIds;
+            mModuleCompleteCount = moduleCompleteCount;
+            mNotExecuted = notExecuted;
+            mResultCounts = resultCounts;
+        }
+
+        LightInvocationResult toResult(File resultDir) {
+            LightInvocationResult result = new LightInvocationResult(resultDir);
+            result.setStartTime(mStartTime);
+            result.setTestPlan(mTestPlan);
+            result.setCommandLineArgs(mCommandLineArgs);
+            result.setBuildFingerprint(mBuildFingerprint);
+            for (Map.Entry<String, String> info : mInvocationInfo.entrySet()) {
+                result.addInvocationInfo(info.getKey(), info.getValue());
+            }
+            for (String serial : mSerials) {
+                result.addDeviceSerial(serial);
+            }
+            result.getModuleIds().addAll(mModuleIds);
+            result.setModuleCompleteCount(mModuleCompleteCount);
+            result.setNotExecuted(mNotExecuted);
+            for (Map.Entry<TestStatus, Integer> count : mResultCounts.entrySet()) {
+                result.setResultCount(count.getKey(), count.getValue());
+            }
+            return result;
+        }
+
+        void write(DataOutputStream output) throws IOException {
+            output.writeLong(mLastModified);
+            output.writeLong(mLength);
+            output.writeLong(mStartTime);
+            writeNullableString(output, mTestPlan);
+            writeNullableString(output, mCommandLineArgs);
+            writeNullableString(output, mBuildFingerprint);
+            output.writeInt(mInvocationInfo.size());
+            for (Map.Entry<String, String> info : mInvocationInfo.entrySet()) {
+                writeNullableString(output, info.getKey());
+                writeNullableString(output, info.getValue());
+            }
+            writeStrings(output, mSerials);
+            writeStrings(output, mModuleIds);
+            output.writeInt(mModuleCompleteCount);
+            output.writeInt(mNotExecuted);
+            output.writeInt(mResultCounts.size());
+            for (Map.Entry<TestStatus, Integer> count : mResultCounts.entrySet()) {
+                output.writeUTF(count.getKey().name());
+                output.writeInt(count.getValue());
+            }
+        }
+
+        static Entry read(DataInputStream input) throws IOException {
+            long lastModified = input.readLong();
+            long length = input.readLong();
+            long startTime = input.readLong();
+            String testPlan = readNullableString(input);
+            String commandLineArgs = readNullableString(input);
+            String buildFingerprint = readNullableString(input);
+            int infoCount = input.readInt();
+            Map<String, String> invocationInfo = new HashMap<>(infoCount);
+            for (int i = 0; i < infoCount; i++) {
+                invocationInfo.put(readNullableString(input), readNullableString(input));
+            }
+            Set<String> serials = readStrings(input);
+            Set<String> moduleIds = readStrings(input);
+            int moduleCompleteCount = input.readInt();
+            int notExecuted = input.readInt();
+            int statusCount = input.readInt();
+            Map<TestStatus, Integer> resultCounts = new HashMap<>(statusCount);
+            for (int i = 0; i < statusCount; i++) {
+                try {
+                    resultCounts.put(TestStatus.valueOf(input.readUTF()), input.readInt());
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Unknown test status in result summary index", e);
+                }
+            }
+            return new Entry(
+                    lastModified,
+                    length,
+                    startTime,
+                    testPlan,
+                    commandLineArgs,
+                    buildFingerprint,
+                    invocationInfo,
+                    serials,
+                    moduleIds,
+                    moduleCompleteCount,
+                    notExecuted,
+                    resultCounts);
+        }
+    }
+
+    // writeUTF is limited to 64KB, which command line args may exceed.
+    private static void writeNullableString(DataOutputStream output, String value)
+            throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readNullableString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(DataOutputStream output, Set<String> values)
+            throws IOException {
+        output.writeInt(values.size());
+        for (String value : values) {
+            writeNullableString(output, value);
+        }
+    }
+
+    private static Set<String> readStrings(DataInputStream input) throws IOException {
+        int count = input.readInt();
+        Set<String> values = new HashSet<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readNullableString(input));
+        }
+        return values;
+    }
+}
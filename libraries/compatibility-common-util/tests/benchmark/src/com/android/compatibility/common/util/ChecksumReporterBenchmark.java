@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.compatibility.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark of {@link ChecksumReporter#addDirectory} on a synthetic result tree, against hashing
+ * each file in turn through an 8 KB read loop. Checksums must be identical; the time taken by both
+ * is printed. To run it: {@code atest compatibility-common-util-benchmark}
+ */
+@RunWith(JUnit4.class)
+public class ChecksumReporterBenchmark {
+
+    private static final int DIRECTORIES = 40;
+    private static final int FILES_PER_DIRECTORY = 50;
+    private static final int MAX_FILE_SIZE = 64 * 1024;
+
+    @Rule public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void addDirectory() throws Exception {
+        File resultDir = mTemporaryFolder.newFolder("2024.01.01_00.00.00");
+        Random random = new Random(0);
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < DIRECTORIES; i++) {
+            File directory = new File(resultDir, "module" + i);
+            directory.mkdirs();
+            for (int j = 0; j < FILES_PER_DIRECTORY; j++) {
+                byte[] content = new byte[random.nextInt(MAX_FILE_SIZE)];
+                random.nextBytes(content);
+                File file = new File(directory, "log" + j + ".txt");
+                Files.write(file.toPath(), content);
+                files.add(file);
+            }
+        }
+
+        // Also warms up the file cache and both code paths, so that they are timed alike.
+        List<byte[]> expected = new ArrayList<>(files.size());
+        for (File file : files) {
+            expected.add(calculateChecksumWithStream(file));
+        }
+        new ChecksumReporter(1, 0.05, (short) 1).addDirectory(resultDir);
+
+        long start = System.nanoTime();
+        for (File file : files) {
+            calculateChecksumWithStream(file);
+        }
+        long sequentialNs = System.nanoTime() - start;
+
+        ChecksumReporter reporter = new ChecksumReporter(1, 0.05, (short) 1);
+        start = System.nanoTime();
+        reporter.addDirectory(resultDir);
+        long parallelNs = System.nanoTime() - start;
+
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            assertArrayEquals(expected.get(i), ChecksumReporter.calculateFileChecksum(file));
+            String path = resultDir.getName() + "/" + file.getParentFile().getName();
+            assertTrue(reporter.containsFile(file, path));
+        }
+        System.out.println(
+                String.format(
+                        "Hashed %d files: sequential=%dms, parallel=%dms",
+                        files.size(), sequentialNs / 1_000_000, parallelNs / 1_000_000));
+    }
+
+    /** Hashes {@code file} the way {@link ChecksumReporter} previously did. */
+    private static byte[] calculateChecksumWithStream(File file) throws Exception {
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+            MessageDigest hashSum = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                hashSum.update(buffer, 0, count);
+            }
+            return hashSum.digest();
+        }
+    }
+}
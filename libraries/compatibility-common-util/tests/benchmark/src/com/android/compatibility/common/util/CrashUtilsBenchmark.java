@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.compatibility.common.util;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+
+import org.json.JSONArray;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmark of {@link CrashUtils#addAllCrashes} against the regex based {@link
+ * ReferenceCrashParser}. Results must be identical; the time taken by both on a multi-megabyte
+ * logcat is printed. To run it: {@code atest compatibility-common-util-benchmark}
+ */
+@RunWith(JUnit4.class)
+public class CrashUtilsBenchmark {
+
+    private static final int LARGE_LOGCAT_SIZE = 8 * 1024 * 1024;
+
+    private String mLogcat;
+
+    @Before
+    public void setUp() throws IOException {
+        try (BufferedReader reader =
+                new BufferedReader(
+                        new InputStreamReader(
+                                getClass().getClassLoader().getResourceAsStream("logcat.txt")))) {
+            StringBuilder input = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                input.append(line).append('\n');
+            }
+            mLogcat = input.toString();
+        }
+    }
+
+    @Test
+    public void sameAsReference() throws Exception {
+        String header = "01-01 00:00:00.000 1 1 F DEBUG   : *** *** ***\n";
+        String fault =
+                "01-01 00:00:00.000 1 1 F DEBUG   : signal 11 (SIGSEGV), code 1 (SEGV_MAPERR),"
+                        + " fault addr 0xdead0000\n";
+        String end = "01-01 00:00:00.000 1 1 F DEBUG   : backtrace:\n";
+        String frame =
+                "01-01 00:00:00.000 1 1 F DEBUG   :       #00 pc 0001a2b4  /system/lib/libc.so"
+                        + " (strlen+4) (BuildId: 1234)\n";
+        String note = "01-01 00:00:00.000 1 1 F DEBUG   :       NOTE: note\n";
+        List<String> inputs =
+                ImmutableList.of(
+                        mLogcat,
+                        mLogcat.substring(0, mLogcat.length() - 1),
+                        mLogcat.substring(0, mLogcat.length() / 2),
+                        "",
+                        header + fault + end,
+                        header + fault + end + frame + note + frame,
+                        header + fault + end + frame + frame.substring(0, frame.length() - 1),
+                        header + fault + header + end + frame,
+                        header + fault + end + header + end + frame,
+                        header + fault + frame + "no end\n",
+                        header.trim() + " " + end.trim() + " " + end);
+        for (String input : inputs) {
+            assertEquals(
+                    ReferenceCrashParser.addAllCrashes(input, new JSONArray()).toString(),
+                    CrashUtils.addAllCrashes(input, new JSONArray()).toString());
+        }
+    }
+
+    @Test
+    public void largeLogcat() throws Exception {
+        Random random = new Random(0);
+        StringBuilder logcat = new StringBuilder(LARGE_LOGCAT_SIZE + mLogcat.length());
+        while (logcat.length() < LARGE_LOGCAT_SIZE) {
+            logcat.append(mLogcat);
+            for (int i = random.nextInt(2000); i > 0; i--) {
+                logcat.append("01-01 00:00:00.000  1000  1000 I ActivityManager: line ")
+                        .append(random.nextInt())
+                        .append('\n');
+            }
+        }
+        String input = logcat.toString();
+
+        // Also warms up both code paths, so that they are timed alike.
+        String expected = ReferenceCrashParser.addAllCrashes(input, new JSONArray()).toString();
+        CrashUtils.addAllCrashes(input, new JSONArray());
+
+        long start = System.nanoTime();
+        ReferenceCrashParser.addAllCrashes(input, new JSONArray());
+        long referenceNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        JSONArray crashes = CrashUtils.addAllCrashes(new StringReader(input), new JSONArray());
+        long scannerNs = System.nanoTime() - start;
+
+        assertEquals(expected, crashes.toString());
+        System.out.println(
+                String.format(
+                        "Parsed %d crashes from %d chars: reference=%dms, scanner=%dms",
+                        crashes.length(),
+                        input.length(),
+                        referenceNs / 1_000_000,
+                        scannerNs / 1_000_000));
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.compatibility.common.util;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Regex based crash parsing previously done by {@link CrashUtils#addAllCrashes}, kept as the
+ * reference for the line scanner that replaced it.
+ */
+final class ReferenceCrashParser {
+    // Matches the smallest blob that has the appropriate header and footer
+    private static final Pattern sCrashBlobPattern =
+            Pattern.compile("DEBUG\\s+?:( [*]{3})+?.*?DEBUG\\s+?:\\s+?backtrace:", Pattern.DOTALL);
+    // Matches process id and name line and captures them
+    private static final Pattern sPidtidNamePattern =
+            Pattern.compile("pid: (\\d+?), tid: (\\d+?), name: ([^\\s]+?\\s+?)*?>>> (.*?) <<<");
+    // Matches fault address and signal type line
+    private static final Pattern sFaultLinePattern =
+            Pattern.compile(
+                    "\\w+? \\d+? \\((.*?)\\), code -*?\\d+? \\(.*?\\), fault addr "
+                            + "(?:0x(\\p{XDigit}+)|-+)");
+    // Matches the abort message line
+    private static final Pattern sAbortMessagePattern = Pattern.compile("(?i)Abort message: (.*)");
+    // Matches one backtrace NOTE line, exactly as tombstone_proto_to_text's print_thread_backtrace
+    private static final Pattern sBacktraceNotePattern =
+            Pattern.compile("[0-9\\-\\s:.]+[A-Z] DEBUG\\s+:\\s+NOTE: .*");
+    // Matches one backtrace frame, exactly as tombstone_proto_to_text's print_backtrace
+    // Two versions, because we want to exclude the BuildID section if it exists
+    private static final Pattern sBacktraceFrameWithBuildIdPattern =
+            Pattern.compile(
+                    "[0-9\\-\\s:.]+[A-Z] DEBUG\\s+:\\s+#[0-9]+ pc [0-9a-fA-F]+  "
+                            + "(?<filename>[^\\s]+)(\\s+\\((?<method>.*)\\))?"
+                            + "\\s+\\(BuildId: .*\\)");
+    private static final Pattern sBacktraceFrameWithoutBuildIdPattern =
+            Pattern.compile(
+                    "[0-9\\-\\s:.]+[A-Z] DEBUG\\s+:\\s+#[0-9]+ pc [0-9a-fA-F]+  "
+                            + "(?<filename>[^\\s]+)(\\s+\\((?<method>.*)\\))?");
+
+    static JSONArray addAllCrashes(String input, JSONArray crashes) {
+        Matcher crashBlobFinder = sCrashBlobPattern.matcher(input);
+        while (crashBlobFinder.find()) {
+            String crashStr = crashBlobFinder.group(0);
+            int tid = 0;
+            int pid = 0;
+            BigInteger faultAddress = null;
+            String name = null;
+            String process = null;
+            String signal = null;
+            String abortMessage = null;
+            List<CrashUtils.BacktraceFrameInfo> backtraceFrames = new ArrayList<>();
+
+            Matcher pidtidNameMatcher = sPidtidNamePattern.matcher(crashStr);
+            if (pidtidNameMatcher.find()) {
+                try {
+                    pid = Integer.parseInt(pidtidNameMatcher.group(1));
+                } catch (NumberFormatException e) {
+                }
+                try {
+                    tid = Integer.parseInt(pidtidNameMatcher.group(2));
+                } catch (NumberFormatException e) {
+                }
+                name = pidtidNameMatcher.group(3).trim();
+                process = pidtidNameMatcher.group(4).trim();
+            }
+
+            Matcher faultLineMatcher = sFaultLinePattern.matcher(crashStr);
+            if (faultLineMatcher.find()) {
+                signal = faultLineMatcher.group(1);
+                String faultAddrMatch = faultLineMatcher.group(2);
+                if (faultAddrMatch != null) {
+                    try {
+                        faultAddress = new BigInteger(faultAddrMatch, 16);
+                    } catch (NumberFormatException e) {
+                    }
+                }
+            }
+
+            Matcher abortMessageMatcher = sAbortMessagePattern.matcher(crashStr);
+            if (abortMessageMatcher.find()) {
+                abortMessage = abortMessageMatcher.group(1);
+            }
+
+            // Continue on after the crash block to find all the stacktrace entries.
+            // The format is from tombstone_proto_to_text.cpp's print_thread_backtrace()
+            // This will scan the logcat lines until it finds a line that does not match,
+            // or end of log.
+            int currentIndex = crashBlobFinder.end();
+            while (true) {
+                int firstEndline = input.indexOf('\n', currentIndex);
+                int secondEndline = input.indexOf('\n', firstEndline + 1);
+                currentIndex = secondEndline;
+                if (firstEndline == -1 || secondEndline == -1) break;
+
+                String nextLine = input.substring(firstEndline + 1, secondEndline);
+
+                Matcher backtraceNoteMatcher = sBacktraceNotePattern.matcher(nextLine);
+                if (backtraceNoteMatcher.matches()) {
+                    continue;
+                }
+
+                Matcher backtraceFrameWithBuildIdMatcher =
+                        sBacktraceFrameWithBuildIdPattern.matcher(nextLine);
+                Matcher backtraceFrameWithoutBuildIdMatcher =
+                        sBacktraceFrameWithoutBuildIdPattern.matcher(nextLine);
+
+                Matcher backtraceFrameMatcher = null;
+                if (backtraceFrameWithBuildIdMatcher.matches()) {
+                    backtraceFrameMatcher = backtraceFrameWithBuildIdMatcher;
+
+                } else if (backtraceFrameWithoutBuildIdMatcher.matches()) {
+                    backtraceFrameMatcher = backtraceFrameWithoutBuildIdMatcher;
+
+                } else {
+                    break;
+                }
+
+                backtraceFrames.add(
+                        new CrashUtils.BacktraceFrameInfo(
+                                backtraceFrameMatcher.group("filename"),
+                                backtraceFrameMatcher.group("method")));
+            }
+
+            try {
+                JSONObject crash = new JSONObject();
+                crash.put(CrashUtils.PID, pid);
+                crash.put(CrashUtils.TID, tid);
+                crash.put(CrashUtils.NAME, name);
+                crash.put(CrashUtils.PROCESS, process);
+                crash.put(
+                        CrashUtils.FAULT_ADDRESS,
+                        faultAddress == null ? null : faultAddress.toString(16));
+                crash.put(CrashUtils.SIGNAL, signal);
+                crash.put(CrashUtils.ABORT_MESSAGE, abortMessage);
+                JSONArray backtrace = new JSONArray();
+                for (CrashUtils.BacktraceFrameInfo frame : backtraceFrames) {
+                    backtrace.put(
+                            new JSONObject()
+                                    .put(CrashUtils.FILENAME, frame.getFilename())
+                                    .put(CrashUtils.METHOD, frame.getMethod()));
+                }
+                crash.put(CrashUtils.BACKTRACE, backtrace);
+                crashes.put(crash);
+            } catch (JSONException e) {}
+        }
+        return crashes;
+    }
+
+    private ReferenceCrashParser() {}
+}
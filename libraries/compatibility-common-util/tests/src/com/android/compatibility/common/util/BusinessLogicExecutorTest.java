@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.compatibility.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.AssumptionViolatedException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+/** Unit tests for {@link BusinessLogicExecutor}. */
+@RunWith(JUnit4.class)
+public class BusinessLogicExecutorTest {
+
+    private static final String CLASS_NAME = BusinessLogicExecutorTest.class.getName();
+
+    private static int sActionCount;
+
+    private TestExecutor mExecutor;
+
+    @Before
+    public void setUp() {
+        sActionCount = 0;
+        mExecutor = new TestExecutor(this);
+    }
+
+    @Test
+    public void testExecuteCondition() {
+        assertTrue(mExecutor.executeCondition(CLASS_NAME + ".areEqual", "a", "a"));
+        assertFalse(mExecutor.executeCondition(CLASS_NAME + ".areEqual", "a", "b"));
+        assertTrue(mExecutor.executeCondition(CLASS_NAME + "#isStaticTrue"));
+        assertTrue(mExecutor.executeCondition(CLASS_NAME + ".isEmpty"));
+        assertFalse(mExecutor.executeCondition(CLASS_NAME + ".isEmpty", "a"));
+    }
+
+    @Test
+    public void testExecuteCondition_varargs() {
+        assertTrue(mExecutor.executeCondition(CLASS_NAME + ".containsA", "b", "a"));
+        assertFalse(mExecutor.executeCondition(CLASS_NAME + ".containsA", "b"));
+        assertFalse(mExecutor.executeCondition(CLASS_NAME + ".containsA"));
+    }
+
+    @Test
+    public void testExecuteCondition_staticVarargs() {
+        assertTrue(mExecutor.executeCondition(CLASS_NAME + ".isStaticEmpty"));
+        assertFalse(mExecutor.executeCondition(CLASS_NAME + ".isStaticEmpty", "a"));
+        assertFalse(mExecutor.executeCondition(CLASS_NAME + ".isStaticEmpty", "a", "b"));
+    }
+
+    @Test
+    public void testExecuteAction() {
+        for (int i = 0; i < 3; i++) {
+            mExecutor.executeAction(CLASS_NAME + ".countAction");
+        }
+        assertEquals(3, sActionCount);
+    }
+
+    @Test
+    public void testExecuteAction_rethrowsFailure() {
+        try {
+            mExecutor.executeAction(CLASS_NAME + ".failAction", "message");
+            fail("Should have thrown an exception.");
+        } catch (RuntimeException e) {
+            assertEquals("message", e.getMessage());
+        }
+    }
+
+    @Test(expected = AssumptionViolatedException.class)
+    public void testExecuteAction_rethrowsAssumptionFailure() {
+        mExecutor.executeAction(CLASS_NAME + ".assumeAction");
+    }
+
+    @Test
+    public void testExecuteCondition_unknownMethod() {
+        try {
+            mExecutor.executeCondition("com.android.UnknownClass.method");
+            fail("Should have thrown an exception.");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof ClassNotFoundException);
+        }
+    }
+
+    @Test
+    public void testGetMethodsWithName() {
+        List<Method> methods = mExecutor.getMethodsWithName(getClass(), "isEmpty");
+        assertEquals(2, methods.size());
+        methods.clear();
+        // The cached methods are not affected by changes to the returned list.
+        assertEquals(2, mExecutor.getMethodsWithName(getClass(), "isEmpty").size());
+        assertTrue(mExecutor.getMethodsWithName(getClass(), "unknown").isEmpty());
+    }
+
+    @Test
+    public void testFormatArgs() {
+        mExecutor.mRedactionRegexes.add("^secret");
+        assertEquals(
+                Arrays.asList("public", "[redacted]"),
+                Arrays.asList(mExecutor.formatArgs(new String[] {"public", "secret value"})));
+        mExecutor.mRedactionRegexes.add("public");
+        assertEquals(
+                Arrays.asList("[redacted]", "[redacted]"),
+                Arrays.asList(mExecutor.formatArgs(new String[] {"public", "secret value"})));
+    }
+
+    public boolean areEqual(String first, String second) {
+        return first.equals(second);
+    }
+
+    public static boolean isStaticTrue() {
+        return true;
+    }
+
+    public boolean containsA(String... values) {
+        return Arrays.asList(values).contains("a");
+    }
+
+    public static boolean isStaticEmpty(String... values) {
+        return values.length == 0;
+    }
+
+    public boolean isEmpty() {
+        return true;
+    }
+
+    public boolean isEmpty(String value) {
+        return value.isEmpty();
+    }
+
+    public void countAction() {
+        sActionCount++;
+    }
+
+    public void failAction(String message) {
+        throw new AssertionError(message);
+    }
+
+    public void assumeAction() {
+        throw new AssumptionViolatedException("assumption");
+    }
+
+    /** Resolves methods whose parameters are all strings, or a single string varargs. */
+    private static class TestExecutor extends BusinessLogicExecutor {
+        private final Object mTestObject;
+
+        TestExecutor(Object testObject) {
+            mTestObject = testObject;
+        }
+
+        @Override
+        protected String formatExecutionString(String method, String... args) {
+            return String.format("%s(%s)", method, String.join(", ", formatArgs(args)));
+        }
+
+        @Override
+        public void logInfo(String format, Object... args) {}
+
+        @Override
+        public void logDebug(String format, Object... args) {}
+
+        @Override
+        protected Object getTestObject() {
+            return mTestObject;
+        }
+
+        @Override
+        protected ResolvedMethod getResolvedMethod(Class cls, String methodName, String... args)
+                throws ClassNotFoundException {
+            for (Method method : getMethodsWithName(cls, methodName)) {
+                if (method.isVarArgs()) {
+                    ResolvedMethod rm = new ResolvedMethod(method);
+                    rm.addArg(args);
+                    return rm;
+                }
+                if (method.getParameterCount() == args.length) {
+                    ResolvedMethod rm = new ResolvedMethod(method);
+                    for (String arg : args) {
+                        rm.addArg(arg);
+                    }
+                    return rm;
+                }
+            }
+            throw new RuntimeException("No method " + methodName + " in " + cls);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.compatibility.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.android.compatibility.common.util.ChecksumReporter.ChecksumValidationException;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/** Unit tests for {@link ChecksumReporter}. */
+@RunWith(JUnit4.class)
+public class ChecksumReporterTest {
+
+    private static final String FINGERPRINT = "generic/device/device:14/ID/1234:userdebug/keys";
+    private static final String MODULE_ID = "arm64-v8a CtsExampleTestCases";
+
+    @Rule public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private File mResultDir;
+    private IInvocationResult mInvocation;
+    private IModuleResult mModule;
+
+    @Before
+    public void setUp() throws IOException {
+        mResultDir = mTemporaryFolder.newFolder("2024.01.01_00.00.00");
+        InvocationResult invocation = new InvocationResult();
+        invocation.setBuildFingerprint(FINGERPRINT);
+        mModule = invocation.getOrCreateModule(MODULE_ID);
+        mModule.setDone(true);
+        ICaseResult caseResult = mModule.getOrCreateResult("android.example.ExampleTest");
+        caseResult.getOrCreateResult("testPass").passed(null);
+        caseResult.getOrCreateResult("testFail").failed("java.lang.AssertionError\n\tat Test");
+        mInvocation = invocation;
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        File log = writeFile(new File(mResultDir, "logs"), "device_logcat.txt", 1000, 1);
+        File result = writeFile(mResultDir, "test_result.xml", 100, 2);
+
+        assertTrue(ChecksumReporter.tryCreateChecksum(mResultDir, mInvocation));
+        ChecksumReporter reporter = ChecksumReporter.load(mResultDir);
+
+        assertTrue(reporter.containsModuleResult(mModule, FINGERPRINT));
+        for (ICaseResult caseResult : mModule.getResults()) {
+            for (ITestResult testResult : caseResult.getResults()) {
+                assertTrue(reporter.containsTestResult(testResult, mModule, FINGERPRINT));
+            }
+        }
+        assertTrue(reporter.containsFile(result, mResultDir.getName()));
+        assertTrue(reporter.containsFile(log, mResultDir.getName() + "/logs"));
+
+        // A file modified after the checksum was created does not match anymore.
+        writeFile(new File(mResultDir, "logs"), "device_logcat.txt", 1000, 3);
+        assertFalse(reporter.containsFile(log, mResultDir.getName() + "/logs"));
+    }
+
+    @Test
+    public void testLoadJavaSerializedChecksum() throws Exception {
+        File result = writeFile(mResultDir, "test_result.xml", 100, 1);
+        BloomFilter<CharSequence> resultChecksum =
+                BloomFilter.create(Funnels.unencodedCharsFunnel(), 10, 0.05);
+        HashMap<String, byte[]> fileChecksum = new HashMap<>();
+        fileChecksum.put(
+                mResultDir.getName() + "/" + result.getName(),
+                ChecksumReporter.calculateFileChecksum(result));
+        try (ObjectOutputStream output =
+                new ObjectOutputStream(
+                        new FileOutputStream(new File(mResultDir, ChecksumReporter.NAME)))) {
+            output.writeShort(ChecksumReporter.SERIALIZED_FORMAT_CODE);
+            output.writeShort(1);
+            output.writeObject(resultChecksum);
+            output.writeObject(fileChecksum);
+        }
+
+        ChecksumReporter reporter = ChecksumReporter.load(mResultDir);
+
+        assertTrue(reporter.containsFile(result, mResultDir.getName()));
+    }
+
+    @Test
+    public void testLoadUnknownFormat() throws Exception {
+        writeFile(mResultDir, ChecksumReporter.NAME, 100, 1);
+        try {
+            ChecksumReporter.load(mResultDir);
+            fail("Should have thrown an exception.");
+        } catch (ChecksumValidationException e) {
+            // pass
+        }
+    }
+
+    @Test
+    public void testAddDirectory() throws Exception {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            File directory = new File(mResultDir, "module" + i);
+            files.add(writeFile(directory, "empty.txt", 0, i));
+            files.add(writeFile(directory, "log.txt", 100_000, i));
+        }
+
+        ChecksumReporter reporter = new ChecksumReporter(1, 0.05, (short) 1);
+        reporter.addDirectory(mResultDir);
+
+        for (File file : files) {
+            String path = mResultDir.getName() + "/" + file.getParentFile().getName();
+            assertTrue(reporter.containsFile(file, path));
+            assertArrayEquals(
+                    MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file.toPath())),
+                    ChecksumReporter.calculateFileChecksum(file));
+        }
+        assertFalse(reporter.containsFile(files.get(1), mResultDir.getName() + "/module2"));
+    }
+
+    private static File writeFile(File directory, String name, int size, long seed)
+            throws IOException {
+        directory.mkdirs();
+        byte[] content = new byte[size];
+        new Random(seed).nextBytes(content);
+        File file = new File(directory, name);
+        Files.write(file.toPath(), content);
+        return file;
+    }
+}
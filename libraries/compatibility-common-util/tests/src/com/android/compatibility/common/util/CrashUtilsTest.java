@@ -21,6 +21,7 @@ import com.google.common.collect.ImmutableList;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.StringReader;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -36,6 +37,7 @@ import java.util.regex.Pattern;
 @RunWith(JUnit4.class)
 public class CrashUtilsTest {
 
+    private String mLogcat;
     private JSONArray mCrashes;
 
     @Before
@@ -49,7 +51,8 @@ public class CrashUtilsTest {
             while ((tmp = txtReader.readLine()) != null) {
                 input.append(tmp + "\n");
             }
-            mCrashes = CrashUtils.addAllCrashes(input.toString(), new JSONArray());
+            mLogcat = input.toString();
+            mCrashes = CrashUtils.addAllCrashes(mLogcat, new JSONArray());
         }
     }
 
@@ -496,6 +499,65 @@ public class CrashUtilsTest {
                 mCrashes.toString());
     }
 
+    @Test
+    public void testAddAllCrashes_reader() throws Exception {
+        Assert.assertEquals(
+                mCrashes.toString(),
+                CrashUtils.addAllCrashes(new StringReader(mLogcat), new JSONArray()).toString());
+    }
+
+    @Test
+    public void testAddAllCrashes_truncatedLogcat() throws Exception {
+        Assert.assertEquals(
+                mCrashes.toString(),
+                CrashUtils.addAllCrashes(
+                                mLogcat.substring(0, mLogcat.length() - 1), new JSONArray())
+                        .toString());
+        Assert.assertEquals(0, CrashUtils.addAllCrashes("", new JSONArray()).length());
+    }
+
+    @Test
+    public void testAddAllCrashes_crashBlocks() throws Exception {
+        String header = "01-01 00:00:00.000 1 1 F DEBUG   : *** *** ***\n";
+        String fault =
+                "01-01 00:00:00.000 1 1 F DEBUG   : signal 11 (SIGSEGV), code 1 (SEGV_MAPERR),"
+                        + " fault addr 0xdead0000\n";
+        String end = "01-01 00:00:00.000 1 1 F DEBUG   : backtrace:\n";
+        String frame =
+                "01-01 00:00:00.000 1 1 F DEBUG   :       #00 pc 0001a2b4  /system/lib/libc.so"
+                        + " (strlen+4) (BuildId: 1234)\n";
+        String note = "01-01 00:00:00.000 1 1 F DEBUG   :       NOTE: note\n";
+
+        JSONArray crashes =
+                CrashUtils.addAllCrashes(
+                        header + fault + end + frame + note + frame, new JSONArray());
+        Assert.assertEquals(1, crashes.length());
+        JSONObject crash = crashes.getJSONObject(0);
+        Assert.assertEquals("dead0000", crash.getString(CrashUtils.FAULT_ADDRESS));
+        Assert.assertEquals(CrashUtils.SIGSEGV, crash.getString(CrashUtils.SIGNAL));
+        Assert.assertEquals(2, crash.getJSONArray(CrashUtils.BACKTRACE).length());
+
+        // A header repeated before the end of the crash does not start another crash.
+        crashes = CrashUtils.addAllCrashes(header + fault + header + end + frame, new JSONArray());
+        Assert.assertEquals(1, crashes.length());
+        crash = crashes.getJSONObject(0);
+        Assert.assertEquals("dead0000", crash.getString(CrashUtils.FAULT_ADDRESS));
+
+        // Frames belong to the last crash.
+        crashes =
+                CrashUtils.addAllCrashes(
+                        header + fault + end + header + end + frame, new JSONArray());
+        Assert.assertEquals(2, crashes.length());
+        Assert.assertEquals(
+                0, crashes.getJSONObject(0).getJSONArray(CrashUtils.BACKTRACE).length());
+        Assert.assertEquals(
+                1, crashes.getJSONObject(1).getJSONArray(CrashUtils.BACKTRACE).length());
+
+        // A crash without the backtrace line is not reported.
+        crashes = CrashUtils.addAllCrashes(header + fault + frame + "no end\n", new JSONArray());
+        Assert.assertEquals(0, crashes.length());
+    }
+
     /** Helper method to shorten code for readability. */
     private JSONObject stackFrame(String filename, String method) throws JSONException {
         return new JSONObject().put(CrashUtils.FILENAME, filename).put(CrashUtils.METHOD, method);
@@ -422,6 +422,41 @@ public class ResultHandlerTest extends TestCase {
         checkLightResult(lightResult);
     }
 
+    public void testGetLightResults_reusesSummaryIndex() throws Exception {
+        File resultDir = writeResultDir(resultsDir, false);
+        ResultHandler.getLightResults(resultsDir);
+        assertTrue("Expected a summary index",
+                new File(resultsDir, ResultSummaryIndex.NAME).exists());
+
+        // Invalidate the result without changing its size or modification time, so that the
+        // summary can only come from the index.
+        File resultFile = new File(resultDir, ResultHandler.TEST_RESULT_FILE_NAME);
+        long lastModified = resultFile.lastModified();
+        char[] blank = new char[(int) resultFile.length()];
+        Arrays.fill(blank, ' ');
+        try (FileWriter writer = new FileWriter(resultFile)) {
+            writer.write(blank);
+        }
+        assertTrue(resultFile.setLastModified(lastModified));
+
+        List<IInvocationResult> lightResults = ResultHandler.getLightResults(resultsDir);
+        assertEquals("Expected one result", 1, lightResults.size());
+        checkLightResult(lightResults.get(0));
+    }
+
+    public void testGetLightResults_ignoresStaleSummaryIndex() throws Exception {
+        File resultDir = writeResultDir(resultsDir, false);
+        ResultHandler.getLightResults(resultsDir);
+
+        // Any change to the result size must invalidate its summary.
+        File resultFile = new File(resultDir, ResultHandler.TEST_RESULT_FILE_NAME);
+        try (FileWriter writer = new FileWriter(resultFile)) {
+            writer.write("not a result");
+        }
+
+        assertTrue("Expected no result", ResultHandler.getLightResults(resultsDir).isEmpty());
+    }
+
     static File writeResultDir(File resultsDir, boolean newTestFormat) throws IOException {
         String buildInfo = String.format(XML_BUILD_INFO, EXAMPLE_BUILD_FINGERPRINT,
                 EXAMPLE_BUILD_ID, EXAMPLE_BUILD_PRODUCT);
@@ -33,6 +33,7 @@ import org.junit.runner.notification.Failure;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Map;
 import java.util.function.Supplier;
 
 /**
@@ -240,6 +241,11 @@ public abstract class PerfettoTracingStrategy {
     protected void stopPerfettoTracingAndReportMetric(Path path, DataRecord record) {
         if (stopPerfettoTracing(path)) {
             record.addStringMetric(PERFETTO_FILE_PATH, path.toString());
+            // Report how long each step of stopping the trace took.
+            for (Map.Entry<String, Long> latency :
+                    mPerfettoHelper.getStopLatencies().entrySet()) {
+                record.addStringMetric(latency.getKey(), String.valueOf(latency.getValue()));
+            }
         }
     }
 
@@ -128,7 +128,7 @@ class LayerTraceEntrySubject(
 
     /** {@inheritDoc} */
     override fun contains(componentMatcher: IComponentMatcher): LayerTraceEntrySubject = apply {
-        if (!componentMatcher.layerMatchesAnyOf(entry.flattenedLayers)) {
+        if (!componentMatcher.layerMatchesAnyOf(entry)) {
             val errorMsgBuilder =
                 ExceptionMessageBuilder()
                     .forSubject(this)
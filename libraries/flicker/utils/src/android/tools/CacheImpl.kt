@@ -16,22 +16,85 @@
 
 package android.tools
 
-internal class CacheImpl : ICache {
-    private var cache = mutableMapOf<Any, Any>()
+import java.lang.ref.WeakReference
+import java.util.WeakHashMap
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Interns elements used while parsing traces.
+ *
+ * Elements cached inside [withScope] are kept in a map owned by the scope, which is only accessed
+ * from the thread that opened it. Elements cached outside of any scope are kept in a map shared by
+ * all threads.
+ *
+ * @param shareAcrossScopes whether scopes should reuse equal elements interned by other scopes,
+ *   for as long as they are still referenced. Only immutable elements may be shared this way.
+ */
+internal class CacheImpl(shareAcrossScopes: Boolean = false) : ICache {
+    @Volatile private var cache: MutableMap<Any, Any> = ConcurrentHashMap()
+    private val scopeCache = ThreadLocal<MutableMap<Any, Any>?>()
+    private val sharedElements = if (shareAcrossScopes) WeakInterner() else null
 
     override fun <T : Any> get(element: T): T {
-        return cache.getOrPut(element) { element } as T
+        val scope = scopeCache.get()
+        if (scope == null) {
+            return (cache.putIfAbsent(element, element) ?: element) as T
+        }
+        return scope.getOrPut(element) { sharedElements?.intern(element) ?: element } as T
+    }
+
+    override fun <T> withScope(block: () -> T): T {
+        val parentScope = scopeCache.get()
+        scopeCache.set(HashMap())
+        try {
+            return block()
+        } finally {
+            if (parentScope == null) {
+                scopeCache.remove()
+            } else {
+                scopeCache.set(parentScope)
+            }
+        }
     }
 
+    override val isInScope: Boolean
+        get() = scopeCache.get() != null
+
     override fun clear() {
-        cache = mutableMapOf()
+        val scope = scopeCache.get()
+        if (scope == null) {
+            cache = ConcurrentHashMap()
+        } else {
+            scope.clear()
+        }
     }
 
     override fun backup(): ICache.Backup {
-        return ICache.Backup(cache.toMutableMap())
+        return ICache.Backup((scopeCache.get() ?: cache).toMutableMap())
     }
 
     override fun restore(backup: ICache.Backup) {
-        cache = backup.cache
+        val scope = scopeCache.get()
+        if (scope == null) {
+            cache = ConcurrentHashMap(backup.cache)
+        } else {
+            scope.clear()
+            scope.putAll(backup.cache)
+        }
+    }
+
+    /** Weakly references interned elements, so that they can be collected once unused. */
+    private class WeakInterner {
+        private val elements = WeakHashMap<Any, WeakReference<Any>>()
+
+        @Synchronized
+        fun <T : Any> intern(element: T): T {
+            val interned = elements[element]?.get()
+            if (interned != null) {
+                return interned as T
+            }
+            elements[element] = WeakReference(element)
+            return element
+        }
     }
 }
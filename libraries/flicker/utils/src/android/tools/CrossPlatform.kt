@@ -25,4 +25,12 @@ object CrossPlatform {
     fun setTimestampFactory(factory: TimestampFactory) = apply { Timestamps = factory }
 
     fun setCache(cache: ICache) = apply { Cache = cache }
+
+    /**
+     * Replaces the cache with one whose parse scopes share the equal elements that are still in
+     * use by other parses, e.g. when parsing several traces of the same device in parallel.
+     */
+    fun setCacheSharedAcrossParses(shared: Boolean) = apply {
+        Cache = CacheImpl(shareAcrossScopes = shared)
+    }
 }
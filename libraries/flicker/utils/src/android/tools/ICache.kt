@@ -22,4 +22,15 @@ interface ICache {
     fun clear()
     fun backup(): Backup
     fun restore(backup: Backup)
+
+    /**
+     * Runs [block] in a cache scope of its own. Elements cached by [block] on the calling thread
+     * are not shared with other scopes and are dropped when [block] returns, so that concurrent
+     * parses do not share mutable state.
+     */
+    fun <T> withScope(block: () -> T): T = block()
+
+    /** Whether the calling thread is running inside [withScope]. */
+    val isInScope: Boolean
+        get() = false
 }
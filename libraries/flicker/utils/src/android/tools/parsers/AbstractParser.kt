@@ -40,15 +40,31 @@ abstract class AbstractParser<InputTypeTrace, OutputTypeTrace> {
      * Uses [InputTypeTrace] to generates a trace
      *
      * @param input Parsed proto data
-     * @param clearCache If the caching used while parsing the object should be cleared
+     * @param clearCache If the caching used while parsing the object should be cleared. If so, the
+     *   trace is parsed in its own cache scope, see [withParseCache].
      */
     open fun parse(input: InputTypeTrace, clearCache: Boolean = true): OutputTypeTrace {
+        return withParseCache(clearCache) { doParse(input) }
+    }
+
+    /**
+     * Runs [block] in a cache scope of its own if [clearCache] is set, so that the elements it
+     * caches are dropped once it returns and traces can be parsed concurrently. A parse started
+     * outside of any scope also clears the shared cache, which parses with [clearCache] unset
+     * would otherwise grow without bound. Otherwise, [block] uses the shared cache, and its
+     * elements remain available to later parses.
+     */
+    protected fun <T> withParseCache(clearCache: Boolean, block: () -> T): T {
+        if (!clearCache) {
+            return block()
+        }
+        if (Cache.isInScope) {
+            return Cache.withScope(block)
+        }
         return try {
-            doParse(input)
+            Cache.withScope(block)
         } finally {
-            if (clearCache) {
-                Cache.clear()
-            }
+            Cache.clear()
         }
     }
 
@@ -16,7 +16,6 @@
 
 package android.tools.parsers
 
-import android.tools.Cache
 import android.tools.Logger
 import android.tools.Timestamp
 import android.tools.Timestamps
@@ -110,13 +109,7 @@ abstract class AbstractTraceParser<
         clearCache: Boolean = true
     ): OutputTypeTrace {
         return Logger.withTracing("${this::class.simpleName}#parse") {
-            try {
-                doParse(input, from, to, addInitialEntry)
-            } finally {
-                if (clearCache) {
-                    Cache.clear()
-                }
-            }
+            withParseCache(clearCache) { doParse(input, from, to, addInitialEntry) }
         }
     }
 
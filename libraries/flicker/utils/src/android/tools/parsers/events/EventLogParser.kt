@@ -27,33 +27,116 @@ import android.tools.traces.events.FocusEvent
 
 operator fun <T> List<T>.component6(): T = get(5)
 
-class EventLogParser : AbstractParser<Collection<String>, EventLog>() {
+/**
+ * Parser for event logs captured with `logcat -b events -v threadtime -v printable -v uid -v nsec
+ * -v epoch`.
+ *
+ * The log is tokenized line by line directly from its bytes: only the fields of an event are
+ * decoded, and only for the events which pass the tag and time filters.
+ *
+ * @param tags Tags of the events to parse, or all events if empty. A tag ending with `*` matches
+ *   all the tags starting with the same prefix, e.g. `wm_*`.
+ */
+class EventLogParser @JvmOverloads constructor(tags: Collection<String> = emptyList()) :
+    AbstractParser<Collection<String>, EventLog>() {
     override val traceName: String = "Event Log"
 
+    private val tagFilter = TagFilter(tags)
+
+    override fun parse(bytes: ByteArray, clearCache: Boolean): EventLog {
+        return withParseCache(clearCache) {
+            val events = ArrayList<Event>()
+            forEachLine(bytes) { start, end ->
+                parseLine(bytes, start, end, Long.MIN_VALUE, Long.MAX_VALUE)?.let {
+                    events.add(it.event)
+                }
+            }
+            EventLog(events)
+        }
+    }
+
     override fun doDecodeByteArray(bytes: ByteArray): Collection<String> {
-        val logsString = bytes.decodeToString()
-        return logsString
-            .split("\n")
-            .dropWhile {
-                it.contains(MAGIC_NUMBER) || it.contains("beginning of events") || it.isBlank()
+        val lines = ArrayList<String>()
+        forEachLine(bytes) { start, end ->
+            if (!isBlankOrHeader(bytes, start, end)) {
+                lines.add(String(bytes, start, end - start))
             }
-            .dropLastWhile { it.isBlank() }
+        }
+        return lines
     }
 
     override fun doParse(input: Collection<String>): EventLog {
         val events =
-            input.map { log ->
-                val (metaData, eventData) = log.split(":", limit = 2).map { it.trim() }
-                val (rawTimestamp, uid, pid, tid, priority, tag) =
-                    metaData.split(" ").filter { it.isNotEmpty() }
-
-                val timestamp = Timestamps.from(unixNanos = rawTimestamp.replace(".", "").toLong())
-                parseEvent(timestamp, pid.toInt(), uid, tid.toInt(), tag, eventData)
+            input.mapNotNull { log ->
+                val bytes = log.toByteArray()
+                parseLine(bytes, 0, bytes.size, Long.MIN_VALUE, Long.MAX_VALUE)?.event
             }
 
         return EventLog(events)
     }
 
+    /**
+     * Parses the events logged between [from] and [to] (inclusive), sorted by their log
+     * timestamp.
+     */
+    fun parseSlice(bytes: ByteArray, from: Timestamp, to: Timestamp): EventLog {
+        require(from.unixNanos < to.unixNanos) { "'to' needs to be greater than 'from'" }
+        require(from.hasUnixTimestamp && to.hasUnixTimestamp) { "Missing required timestamp type" }
+        val entries = ArrayList<ParsedEntry>()
+        var isSorted = true
+        forEachLine(bytes) { start, end ->
+            parseLine(bytes, start, end, from.unixNanos, to.unixNanos)?.let {
+                if (entries.isNotEmpty() && entries.last().unixNanos > it.unixNanos) {
+                    isSorted = false
+                }
+                entries.add(it)
+            }
+        }
+        // Event logs are normally ordered, only sort (stable) if they are not.
+        val sortedEntries = if (isSorted) entries else entries.sortedBy { it.unixNanos }
+        return EventLog(sortedEntries.map { it.event })
+    }
+
+    /**
+     * Parses a single event log line, e.g. `1670000000.000000001 system 1200 1300 I input_focus:
+     * [...]`.
+     *
+     * @return the parsed event, or null if the line is not an event, or if the event is filtered
+     *   out by its tag or timestamp.
+     */
+    private fun parseLine(
+        bytes: ByteArray,
+        start: Int,
+        end: Int,
+        fromUnixNanos: Long,
+        toUnixNanos: Long
+    ): ParsedEntry? {
+        if (isBlankOrHeader(bytes, start, end)) {
+            return null
+        }
+        val cursor = LineCursor(bytes, start, end)
+
+        val unixNanos = cursor.readTimestampNanos()
+        if (unixNanos < fromUnixNanos || unixNanos > toUnixNanos) {
+            return null
+        }
+        val uidStart = cursor.readTokenRange()
+        val uidEnd = cursor.position
+        val pid = cursor.readInt()
+        val tid = cursor.readInt()
+        cursor.readTokenRange() // priority
+        val tagStart = cursor.readTokenRange()
+        if (!tagFilter.matches(bytes, tagStart, cursor.position)) {
+            return null
+        }
+        val uid = String(bytes, uidStart, uidEnd - uidStart)
+        val tag = String(bytes, tagStart, cursor.position - tagStart)
+        val eventData = cursor.readData()
+
+        val timestamp = Timestamps.from(unixNanos = unixNanos)
+        return ParsedEntry(unixNanos, parseEvent(timestamp, pid, uid, tid, tag, eventData))
+    }
+
     private fun parseEvent(
         timestamp: Timestamp,
         pid: Int,
@@ -87,21 +170,117 @@ class EventLogParser : AbstractParser<Collection<String>, EventLog>() {
         return data.drop(1).dropLast(1).split(",")
     }
 
-    fun parseSlice(bytes: ByteArray, from: Timestamp, to: Timestamp): EventLog {
-        require(from.unixNanos < to.unixNanos) { "'to' needs to be greater than 'from'" }
-        require(from.hasUnixTimestamp && to.hasUnixTimestamp) { "Missing required timestamp type" }
-        return doParse(
-            this.doDecodeByteArray(bytes)
-                .sortedBy { getTimestampFromRawEntry(it).unixNanos }
-                .dropWhile { getTimestampFromRawEntry(it).unixNanos < from.unixNanos }
-                .dropLastWhile { getTimestampFromRawEntry(it).unixNanos > to.unixNanos }
-        )
+    private class ParsedEntry(val unixNanos: Long, val event: Event)
+
+    /** Reads the fields of a single line, without copying the bytes of skipped fields. */
+    private class LineCursor(private val bytes: ByteArray, start: Int, private val end: Int) {
+        var position = start
+            private set
+
+        fun skipSpaces() {
+            while (position < end && bytes[position] == SPACE) {
+                position++
+            }
+        }
+
+        /** Reads a `seconds.nanoseconds` timestamp as nanoseconds. */
+        fun readTimestampNanos(): Long {
+            skipSpaces()
+            var value = 0L
+            var digits = 0
+            while (position < end && bytes[position] != SPACE) {
+                val byte = bytes[position++]
+                if (byte == DOT) {
+                    continue
+                }
+                require(byte in ZERO..NINE) { "Invalid event log timestamp in '${line()}'" }
+                value = value * 10 + (byte - ZERO)
+                digits++
+            }
+            require(digits > 0) { "Missing event log timestamp in '${line()}'" }
+            return value
+        }
+
+        fun readInt(): Int {
+            val tokenStart = readTokenRange()
+            require(tokenStart < position) { "Missing event log field in '${line()}'" }
+            var value = 0
+            for (index in tokenStart until position) {
+                val byte = bytes[index]
+                require(byte in ZERO..NINE) { "Invalid event log field in '${line()}'" }
+                value = value * 10 + (byte - ZERO)
+            }
+            return value
+        }
+
+        /**
+         * Moves past the next space or colon separated token.
+         *
+         * @return the start index of the token, which ends at [position].
+         */
+        fun readTokenRange(): Int {
+            skipSpaces()
+            val tokenStart = position
+            while (position < end && bytes[position] != SPACE && bytes[position] != COLON) {
+                position++
+            }
+            return tokenStart
+        }
+
+        /** Reads the trimmed event data following the colon after the tag. */
+        fun readData(): String {
+            while (position < end && bytes[position] != COLON) {
+                position++
+            }
+            require(position < end) { "Missing event log data in '${line()}'" }
+            var dataStart = position + 1
+            var dataEnd = end
+            while (dataStart < dataEnd && bytes[dataStart].isWhitespace()) {
+                dataStart++
+            }
+            while (dataEnd > dataStart && bytes[dataEnd - 1].isWhitespace()) {
+                dataEnd--
+            }
+            position = end
+            return String(bytes, dataStart, dataEnd - dataStart)
+        }
+
+        private fun line(): String {
+            var lineStart = position
+            while (lineStart > 0 && bytes[lineStart - 1] != NEW_LINE) {
+                lineStart--
+            }
+            return String(bytes, lineStart, end - lineStart)
+        }
+
+        private fun Byte.isWhitespace() = this == SPACE || this == TAB || this == CARRIAGE_RETURN
     }
 
-    private fun getTimestampFromRawEntry(entry: String): Timestamp {
-        val (metaData, _) = entry.split(":", limit = 2).map { it.trim() }
-        val (rawTimestamp, _, _, _, _, _) = metaData.split(" ").filter { it.isNotEmpty() }
-        return Timestamps.from(unixNanos = rawTimestamp.replace(".", "").toLong())
+    /** Matches tags against exact names and `prefix*` patterns, directly on the log bytes. */
+    private class TagFilter(tags: Collection<String>) {
+        private val exactTags =
+            tags.filterNot { it.endsWith(WILDCARD) }.map { it.toByteArray() }
+        private val tagPrefixes =
+            tags.filter { it.endsWith(WILDCARD) }.map { it.dropLast(1).toByteArray() }
+        private val matchesAll = tags.isEmpty()
+
+        fun matches(bytes: ByteArray, start: Int, end: Int): Boolean {
+            if (matchesAll) {
+                return true
+            }
+            val length = end - start
+            return exactTags.any { it.size == length && regionMatches(bytes, start, it) } ||
+                tagPrefixes.any { it.size <= length && regionMatches(bytes, start, it) }
+        }
+
+        private fun regionMatches(bytes: ByteArray, start: Int, expected: ByteArray): Boolean {
+            for (index in expected.indices) {
+                if (bytes[start + index] != expected[index]) {
+                    return false
+                }
+            }
+            return true
+        }
     }
 
     companion object {
@@ -115,5 +294,49 @@ class EventLogParser : AbstractParser<Collection<String>, EventLog>() {
         const val JANK_CUJ_BEGIN_TAG = "jank_cuj_events_begin_request"
         const val JANK_CUJ_END_TAG = "jank_cuj_events_end_request"
         const val JANK_CUJ_CANCEL_TAG = "jank_cuj_events_cancel_request"
+
+        private const val WILDCARD = "*"
+        private const val LOGCAT_DIVIDER = "--------- "
+
+        private const val SPACE = ' '.code.toByte()
+        private const val TAB = '\t'.code.toByte()
+        private const val CARRIAGE_RETURN = '\r'.code.toByte()
+        private const val NEW_LINE = '\n'.code.toByte()
+        private const val DOT = '.'.code.toByte()
+        private const val COLON = ':'.code.toByte()
+        private const val ZERO = '0'.code.toByte()
+        private const val NINE = '9'.code.toByte()
+
+        private val HEADERS = listOf(MAGIC_NUMBER.toByteArray(), LOGCAT_DIVIDER.toByteArray())
+
+        /** Calls [action] with the bounds of each line of [bytes], without its line terminator. */
+        private inline fun forEachLine(bytes: ByteArray, action: (start: Int, end: Int) -> Unit) {
+            var lineStart = 0
+            while (lineStart < bytes.size) {
+                var lineEnd = lineStart
+                while (lineEnd < bytes.size && bytes[lineEnd] != NEW_LINE) {
+                    lineEnd++
+                }
+                val nextLineStart = lineEnd + 1
+                if (lineEnd > lineStart && bytes[lineEnd - 1] == CARRIAGE_RETURN) {
+                    lineEnd--
+                }
+                action(lineStart, lineEnd)
+                lineStart = nextLineStart
+            }
+        }
+
+        /** Whether the line is blank, the event log header, or a logcat buffer divider. */
+        private fun isBlankOrHeader(bytes: ByteArray, start: Int, end: Int): Boolean {
+            var position = start
+            while (position < end && (bytes[position] == SPACE || bytes[position] == TAB)) {
+                position++
+            }
+            return position == end ||
+                HEADERS.any { header ->
+                    header.size <= end - position &&
+                        header.indices.all { bytes[position + it] == header[it] }
+                }
+        }
     }
 }
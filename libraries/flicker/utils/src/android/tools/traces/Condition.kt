@@ -54,7 +54,8 @@ open class Condition<T>(
     }
 
     /** @return the negation of the current assertion */
-    fun negate(): Condition<T> = Condition(message = "!$message") { !this.condition.invoke(it) }
+    open fun negate(): Condition<T> =
+        Condition(message = "!$message") { !this.condition.invoke(it) }
 
     /** @return a formatted message for the passing or failing condition on a state */
     open fun getMessage(value: T): String = "$message(passed=${isSatisfied(value)})"
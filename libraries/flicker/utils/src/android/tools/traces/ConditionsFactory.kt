@@ -18,6 +18,7 @@ package android.tools.traces
 
 import android.tools.PlatformConsts
 import android.tools.Rotation
+import android.tools.io.TraceType
 import android.tools.traces.component.ComponentNameMatcher
 import android.tools.traces.component.IComponentMatcher
 import android.tools.traces.surfaceflinger.Layer
@@ -27,6 +28,18 @@ import android.tools.traces.wm.WindowManagerState
 import android.tools.traces.wm.WindowState
 
 object ConditionsFactory {
+    private fun wmCondition(
+        message: String,
+        condition: (DeviceStateDump) -> Boolean
+    ): Condition<DeviceStateDump> =
+        DeviceStateCondition(message, setOf(TraceType.WM_DUMP), condition)
+
+    private fun layersCondition(
+        message: String,
+        condition: (DeviceStateDump) -> Boolean
+    ): Condition<DeviceStateDump> =
+        DeviceStateCondition(message, setOf(TraceType.SF_DUMP), condition)
+
     private fun getNavBarComponent(wmState: WindowManagerState) =
         if (wmState.isTablet) ComponentNameMatcher.TASK_BAR else ComponentNameMatcher.NAV_BAR
 
@@ -48,7 +61,7 @@ object ConditionsFactory {
      * windows are visible
      */
     fun isNavOrTaskBarWindowVisible(): Condition<DeviceStateDump> =
-        Condition("isNavBarOrTaskBarWindowVisible") {
+        wmCondition("isNavBarOrTaskBarWindowVisible") {
             val component = getNavBarComponent(it.wmState)
             it.wmState.isWindowSurfaceShown(component)
         }
@@ -78,7 +91,7 @@ object ConditionsFactory {
 
     /** Condition to check if the [ComponentNameMatcher.NAV_BAR] window is visible */
     fun isNavBarWindowVisible(): Condition<DeviceStateDump> =
-        Condition("isNavBarWindowVisible") {
+        wmCondition("isNavBarWindowVisible") {
             it.wmState.isWindowSurfaceShown(ComponentNameMatcher.NAV_BAR)
         }
 
@@ -88,7 +101,7 @@ object ConditionsFactory {
 
     /** Condition to check if the [ComponentNameMatcher.NAV_BAR] layer is opaque */
     fun isNavBarLayerOpaque(): Condition<DeviceStateDump> =
-        Condition("isNavBarLayerOpaque") {
+        layersCondition("isNavBarLayerOpaque") {
             it.layerState.getLayerWithBuffer(ComponentNameMatcher.NAV_BAR)?.color?.isOpaque ?: false
         }
 
@@ -100,7 +113,7 @@ object ConditionsFactory {
 
     /** Condition to check if the [ComponentNameMatcher.TASK_BAR] window is visible */
     fun isTaskBarWindowVisible(): Condition<DeviceStateDump> =
-        Condition("isTaskBarWindowVisible") {
+        wmCondition("isTaskBarWindowVisible") {
             it.wmState.isWindowSurfaceShown(ComponentNameMatcher.TASK_BAR)
         }
 
@@ -110,7 +123,7 @@ object ConditionsFactory {
 
     /** Condition to check if the [ComponentNameMatcher.TASK_BAR] layer is opaque */
     fun isTaskBarLayerOpaque(): Condition<DeviceStateDump> =
-        Condition("isTaskBarLayerOpaque") {
+        layersCondition("isTaskBarLayerOpaque") {
             it.layerState.getLayerWithBuffer(ComponentNameMatcher.TASK_BAR)?.color?.isOpaque
                 ?: false
         }
@@ -123,7 +136,7 @@ object ConditionsFactory {
 
     /** Condition to check if the [ComponentNameMatcher.STATUS_BAR] window is visible */
     fun isStatusBarWindowVisible(): Condition<DeviceStateDump> =
-        Condition("isStatusBarWindowVisible") {
+        wmCondition("isStatusBarWindowVisible") {
             it.wmState.isWindowSurfaceShown(ComponentNameMatcher.STATUS_BAR)
         }
 
@@ -133,21 +146,21 @@ object ConditionsFactory {
 
     /** Condition to check if the [ComponentNameMatcher.STATUS_BAR] layer is opaque */
     fun isStatusBarLayerOpaque(): Condition<DeviceStateDump> =
-        Condition("isStatusBarLayerOpaque") {
+        layersCondition("isStatusBarLayerOpaque") {
             it.layerState.getLayerWithBuffer(ComponentNameMatcher.STATUS_BAR)?.color?.isOpaque
                 ?: false
         }
 
     fun isHomeActivityVisible(): Condition<DeviceStateDump> =
-        Condition("isHomeActivityVisible") { it.wmState.isHomeActivityVisible }
+        wmCondition("isHomeActivityVisible") { it.wmState.isHomeActivityVisible }
 
     fun isRecentsActivityVisible(): Condition<DeviceStateDump> =
-        Condition("isRecentsActivityVisible") {
+        wmCondition("isRecentsActivityVisible") {
             it.wmState.isHomeActivityVisible || it.wmState.isRecentsActivityVisible
         }
 
     fun isLauncherLayerVisible(): Condition<DeviceStateDump> =
-        Condition("isLauncherLayerVisible") {
+        layersCondition("isLauncherLayerVisible") {
             it.layerState.isVisible(ComponentNameMatcher.LAUNCHER) ||
                 it.layerState.isVisible(ComponentNameMatcher.AOSP_LAUNCHER)
         }
@@ -159,7 +172,7 @@ object ConditionsFactory {
      * this method always assumed recents are idle
      */
     fun isAppTransitionIdle(displayId: Int): Condition<DeviceStateDump> =
-        Condition("isAppTransitionIdle[$displayId]") {
+        wmCondition("isAppTransitionIdle[$displayId]") {
             (it.wmState.isHomeRecentsComponent && it.wmState.isHomeActivityVisible) ||
                 it.wmState.isRecentsActivityVisible ||
                 it.wmState.getDisplay(displayId)?.appTransitionState ==
@@ -167,31 +180,31 @@ object ConditionsFactory {
         }
 
     fun containsActivity(componentMatcher: IComponentMatcher): Condition<DeviceStateDump> =
-        Condition("containsActivity[${componentMatcher.toActivityIdentifier()}]") {
+        wmCondition("containsActivity[${componentMatcher.toActivityIdentifier()}]") {
             it.wmState.containsActivity(componentMatcher)
         }
 
     fun containsWindow(componentMatcher: IComponentMatcher): Condition<DeviceStateDump> =
-        Condition("containsWindow[${componentMatcher.toWindowIdentifier()}]") {
+        wmCondition("containsWindow[${componentMatcher.toWindowIdentifier()}]") {
             it.wmState.containsWindow(componentMatcher)
         }
 
     fun isWindowSurfaceShown(componentMatcher: IComponentMatcher): Condition<DeviceStateDump> =
-        Condition("isWindowSurfaceShown[${componentMatcher.toWindowIdentifier()}]") {
+        wmCondition("isWindowSurfaceShown[${componentMatcher.toWindowIdentifier()}]") {
             it.wmState.isWindowSurfaceShown(componentMatcher)
         }
 
     fun isActivityVisible(componentMatcher: IComponentMatcher): Condition<DeviceStateDump> =
-        Condition("isActivityVisible[${componentMatcher.toActivityIdentifier()}]") {
+        wmCondition("isActivityVisible[${componentMatcher.toActivityIdentifier()}]") {
             it.wmState.isActivityVisible(componentMatcher)
         }
 
     fun isWMStateComplete(): Condition<DeviceStateDump> =
-        Condition("isWMStateComplete") { it.wmState.isComplete() }
+        wmCondition("isWMStateComplete") { it.wmState.isComplete() }
 
     fun hasRotation(expectedRotation: Rotation, displayId: Int): Condition<DeviceStateDump> {
         val hasRotationCondition =
-            Condition<DeviceStateDump>("hasRotation[$expectedRotation, display=$displayId]") {
+            wmCondition("hasRotation[$expectedRotation, display=$displayId]") {
                 val currRotation = it.wmState.getRotation(displayId)
                 currRotation == expectedRotation
             }
@@ -218,30 +231,30 @@ object ConditionsFactory {
         )
 
     fun isLayerVisible(componentMatcher: IComponentMatcher): Condition<DeviceStateDump> =
-        Condition("isLayerVisible[${componentMatcher.toLayerIdentifier()}]") {
+        layersCondition("isLayerVisible[${componentMatcher.toLayerIdentifier()}]") {
             it.layerState.isVisible(componentMatcher)
         }
 
     fun isLayerVisible(layerId: Int): Condition<DeviceStateDump> =
-        Condition("isLayerVisible[layerId=$layerId]") {
+        layersCondition("isLayerVisible[layerId=$layerId]") {
             it.layerState.getLayerById(layerId)?.isVisible ?: false
         }
 
     /** Condition to check if the given layer is opaque */
     fun isLayerOpaque(componentMatcher: IComponentMatcher): Condition<DeviceStateDump> =
-        Condition("isLayerOpaque[${componentMatcher.toLayerIdentifier()}]") {
+        layersCondition("isLayerOpaque[${componentMatcher.toLayerIdentifier()}]") {
             it.layerState.getLayerWithBuffer(componentMatcher)?.color?.isOpaque ?: false
         }
 
     fun isLayerColorAlphaOne(componentMatcher: IComponentMatcher): Condition<DeviceStateDump> =
-        Condition("isLayerColorAlphaOne[${componentMatcher.toLayerIdentifier()}]") {
+        layersCondition("isLayerColorAlphaOne[${componentMatcher.toLayerIdentifier()}]") {
             it.layerState.visibleLayers
                 .filter { layer -> componentMatcher.layerMatchesAnyOf(layer) }
                 .any { layer -> layer.color.isOpaque }
         }
 
     fun isLayerColorAlphaOne(layerId: Int): Condition<DeviceStateDump> =
-        Condition("isLayerColorAlphaOne[$layerId]") {
+        layersCondition("isLayerColorAlphaOne[$layerId]") {
             val layer = it.layerState.getLayerById(layerId)
             layer?.color?.a == 1.0f
         }
@@ -250,7 +263,7 @@ object ConditionsFactory {
         componentMatcher: IComponentMatcher,
         transform: Int
     ): Condition<DeviceStateDump> =
-        Condition(
+        layersCondition(
             "isLayerTransformFlagSet[" +
                 "${componentMatcher.toLayerIdentifier()}," +
                 "transform=$transform]"
@@ -261,7 +274,7 @@ object ConditionsFactory {
         }
 
     fun isLayerTransformFlagSet(layerId: Int, transform: Int): Condition<DeviceStateDump> =
-        Condition("isLayerTransformFlagSet[$layerId, $transform]") {
+        layersCondition("isLayerTransformFlagSet[$layerId, $transform]") {
             val layer = it.layerState.getLayerById(layerId)
             layer?.transform?.type?.isFlagSet(transform) ?: false
         }
@@ -281,7 +294,7 @@ object ConditionsFactory {
     fun hasLayersAnimating(): Condition<DeviceStateDump> {
         var prevState: DeviceStateDump? = null
         return ConditionList(
-            Condition("hasLayersAnimating") {
+            layersCondition("hasLayersAnimating") {
                 val result = it.layerState.isAnimating(prevState?.layerState)
                 prevState = it
                 result
@@ -310,7 +323,7 @@ object ConditionsFactory {
         }
 
     fun hasPipWindow(): Condition<DeviceStateDump> =
-        Condition("hasPipWindow") { it.wmState.hasPipWindow() }
+        wmCondition("hasPipWindow") { it.wmState.hasPipWindow() }
 
     fun isImeShown(displayId: Int): Condition<DeviceStateDump> =
         ConditionList(
@@ -324,18 +337,18 @@ object ConditionsFactory {
         )
 
     private fun isImeOnDisplay(displayId: Int): Condition<DeviceStateDump> =
-        Condition("isImeOnDisplay[$displayId]") {
+        wmCondition("isImeOnDisplay[$displayId]") {
             it.wmState.inputMethodWindowState?.displayId == displayId
         }
 
     private fun isImeSurfaceShown(): Condition<DeviceStateDump> =
-        Condition("isImeSurfaceShown") {
+        wmCondition("isImeSurfaceShown") {
             it.wmState.inputMethodWindowState?.isSurfaceShown == true &&
                 it.wmState.inputMethodWindowState?.isVisible == true
         }
 
     fun isAppLaunchEnded(taskId: Int): Condition<DeviceStateDump> =
-        Condition("containsVisibleAppLaunchWindow[taskId=$taskId]") { dump ->
+        wmCondition("containsVisibleAppLaunchWindow[taskId=$taskId]") { dump ->
             val windowStates =
                 dump.wmState.getRootTask(taskId)?.activities?.flatMap {
                     it.children.filterIsInstance<WindowState>()
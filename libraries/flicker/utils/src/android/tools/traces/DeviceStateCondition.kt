@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.tools.traces
+
+import android.tools.io.TraceType
+
+/**
+ * [Condition] on a [DeviceStateDump] which only inspects some of its sections, so that waiting for
+ * it does not require dumping the others.
+ *
+ * @param message The message to show what is waiting for.
+ * @param sections Sections of the dump inspected by the condition, [TraceType.WM_DUMP] for the
+ *   [DeviceStateDump.wmState] and [TraceType.SF_DUMP] for the [DeviceStateDump.layerState]
+ * @param condition If it returns true, that means the condition is satisfied.
+ */
+class DeviceStateCondition(
+    message: String,
+    val sections: Set<TraceType>,
+    condition: (DeviceStateDump) -> Boolean
+) : Condition<DeviceStateDump>(message, condition) {
+    override fun negate(): Condition<DeviceStateDump> =
+        DeviceStateCondition("!$message", sections) { !condition.invoke(it) }
+
+    companion object {
+        private val ALL_SECTIONS = setOf(TraceType.WM_DUMP, TraceType.SF_DUMP)
+
+        /**
+         * @return the sections of the dump inspected by [condition]. Conditions which do not
+         *   declare their sections are assumed to inspect all of them.
+         */
+        @JvmStatic
+        fun sectionsOf(condition: Condition<DeviceStateDump>): Set<TraceType> =
+            when (condition) {
+                is DeviceStateCondition -> condition.sections
+                is ConditionList -> condition.conditions.flatMapTo(mutableSetOf(), ::sectionsOf)
+                else -> ALL_SECTIONS
+            }
+    }
+}
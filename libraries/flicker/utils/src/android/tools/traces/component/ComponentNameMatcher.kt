@@ -17,8 +17,10 @@
 package android.tools.traces.component
 
 import android.tools.traces.surfaceflinger.Layer
+import android.tools.traces.surfaceflinger.LayerTraceEntry
 import android.tools.traces.wm.Activity
 import android.tools.traces.wm.WindowContainer
+import android.tools.traces.wm.WindowManagerState
 
 /** ComponentMatcher based on name */
 class ComponentNameMatcher(var component: ComponentName) : IComponentNameMatcher {
@@ -37,24 +39,42 @@ class ComponentNameMatcher(var component: ComponentName) : IComponentNameMatcher
 
     constructor(className: String) : this("", className)
 
-    override fun activityRecordMatchesAnyOf(layers: Collection<Layer>): Boolean =
-        layers.any { activityRecordFilter.invoke(it.name) }
+    override fun activityRecordMatchesAnyOf(layers: Collection<Layer>): Boolean {
+        val shortWindowName = component.toShortWindowName()
+        return layers.any {
+            it.name.startsWith("ActivityRecord{") && it.name.contains(shortWindowName)
+        }
+    }
 
     override fun componentNameMatcherToString(): String {
         return "ComponentNameMatcher(\"${this.packageName}\", " + "\"${this.className}\")"
     }
 
     /** {@inheritDoc} */
-    override fun windowMatchesAnyOf(windows: Collection<WindowContainer>): Boolean =
-        windows.any { windowNameFilter.invoke(it.title) }
+    override fun windowMatchesAnyOf(windows: Collection<WindowContainer>): Boolean {
+        val windowName = component.toWindowName()
+        return windows.any { it.title.contains(windowName) }
+    }
 
     /** {@inheritDoc} */
-    override fun activityMatchesAnyOf(activities: Collection<Activity>): Boolean =
-        activities.any { activityNameFilter.invoke(it.name) }
+    override fun windowMatchesAnyOf(state: WindowManagerState): Boolean =
+        state.windowNameIndex.anyContains(component.toWindowName())
 
     /** {@inheritDoc} */
-    override fun layerMatchesAnyOf(layers: Collection<Layer>): Boolean =
-        layers.any { layerNameFilter.invoke(it.name) }
+    override fun activityMatchesAnyOf(activities: Collection<Activity>): Boolean {
+        val activityName = component.toActivityName()
+        return activities.any { it.name.contains(activityName) }
+    }
+
+    /** {@inheritDoc} */
+    override fun layerMatchesAnyOf(layers: Collection<Layer>): Boolean {
+        val layerName = component.toLayerName()
+        return layers.any { it.name.contains(layerName) }
+    }
+
+    /** {@inheritDoc} */
+    override fun layerMatchesAnyOf(entry: LayerTraceEntry): Boolean =
+        entry.layerNameIndex.anyContains(component.toLayerName())
 
     /** {@inheritDoc} */
     override fun check(
@@ -81,18 +101,6 @@ class ComponentNameMatcher(var component: ComponentName) : IComponentNameMatcher
 
     override fun toString(): String = component.toString()
 
-    private val activityRecordFilter: (String) -> Boolean
-        get() = { it.startsWith("ActivityRecord{") && it.contains(component.toShortWindowName()) }
-
-    private val activityNameFilter: (String) -> Boolean
-        get() = { it.contains(component.toActivityName()) }
-
-    private val windowNameFilter: (String) -> Boolean
-        get() = { it.contains(component.toWindowName()) }
-
-    private val layerNameFilter: (String) -> Boolean
-        get() = { it.contains(component.toLayerName()) }
-
     companion object {
         val NAV_BAR = ComponentNameMatcher("", "NavigationBar0")
         val TASK_BAR = ComponentNameMatcher("", "Taskbar")
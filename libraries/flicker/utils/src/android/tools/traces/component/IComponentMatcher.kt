@@ -17,8 +17,10 @@
 package android.tools.traces.component
 
 import android.tools.traces.surfaceflinger.Layer
+import android.tools.traces.surfaceflinger.LayerTraceEntry
 import android.tools.traces.wm.Activity
 import android.tools.traces.wm.WindowContainer
+import android.tools.traces.wm.WindowManagerState
 
 interface IComponentMatcher {
     fun or(other: IComponentMatcher): IComponentMatcher {
@@ -37,6 +39,10 @@ interface IComponentMatcher {
      */
     fun windowMatchesAnyOf(windows: Collection<WindowContainer>): Boolean
 
+    /** @return if any of the window states of [state] matches this matcher */
+    fun windowMatchesAnyOf(state: WindowManagerState): Boolean =
+        windowMatchesAnyOf(state.windowStates)
+
     /**
      * @param activity to search
      * @return if any of the components matches [activity]
@@ -61,6 +67,10 @@ interface IComponentMatcher {
      */
     fun layerMatchesAnyOf(layers: Collection<Layer>): Boolean
 
+    /** @return if any of the layers of [entry] matches this matcher */
+    fun layerMatchesAnyOf(entry: LayerTraceEntry): Boolean =
+        layerMatchesAnyOf(entry.flattenedLayers)
+
     /**
      * @return an identifier string that provides enough information to determine which activities
      *
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.tools.traces.component
+
+/**
+ * Index of the layer or window names of a trace entry, to find whether any of them contains a
+ * string without checking all of them.
+ *
+ * Names are indexed by their trigrams (substrings of 3 characters). A string of at least 3
+ * characters is only contained in names that have all of its trigrams, so only the names having
+ * its least common trigram are checked.
+ */
+class NameIndex(private val names: List<String>) {
+    private val namesByTrigram: Map<Long, IntArray>
+
+    init {
+        val indices = HashMap<Long, MutableList<Int>>()
+        names.forEachIndexed { index, name ->
+            for (start in 0..name.length - TRIGRAM_LENGTH) {
+                val nameIndices = indices.getOrPut(trigram(name, start)) { mutableListOf() }
+                // Each name is added once per trigram, even if the trigram repeats.
+                if (nameIndices.lastOrNull() != index) {
+                    nameIndices.add(index)
+                }
+            }
+        }
+        namesByTrigram = indices.mapValues { it.value.toIntArray() }
+    }
+
+    /** @return whether any of the names contains [value], as [String.contains] */
+    fun anyContains(value: String): Boolean {
+        if (value.length < TRIGRAM_LENGTH) {
+            return names.any { it.contains(value) }
+        }
+
+        var candidates: IntArray? = null
+        for (start in 0..value.length - TRIGRAM_LENGTH) {
+            val indices = namesByTrigram[trigram(value, start)] ?: return false
+            if (candidates == null || indices.size < candidates.size) {
+                candidates = indices
+            }
+        }
+        return candidates?.any { names[it].contains(value) } ?: false
+    }
+
+    companion object {
+        private const val TRIGRAM_LENGTH = 3
+
+        private fun trigram(value: String, start: Int): Long =
+            (value[start].code.toLong() shl 32) or
+                (value[start + 1].code.toLong() shl 16) or
+                value[start + 2].code.toLong()
+    }
+}
@@ -17,8 +17,10 @@
 package android.tools.traces.component
 
 import android.tools.traces.surfaceflinger.Layer
+import android.tools.traces.surfaceflinger.LayerTraceEntry
 import android.tools.traces.wm.Activity
 import android.tools.traces.wm.WindowContainer
+import android.tools.traces.wm.WindowManagerState
 
 class OrComponentMatcher(private val componentMatchers: Collection<IComponentMatcher>) :
     IComponentMatcher {
@@ -33,6 +35,11 @@ class OrComponentMatcher(private val componentMatchers: Collection<IComponentMat
         return componentMatchers.any { it.windowMatchesAnyOf(windows) }
     }
 
+    /** {@inheritDoc} */
+    override fun windowMatchesAnyOf(state: WindowManagerState): Boolean {
+        return componentMatchers.any { it.windowMatchesAnyOf(state) }
+    }
+
     /** {@inheritDoc} */
     override fun activityMatchesAnyOf(activity: Activity): Boolean {
         return componentMatchers.any { it.activityMatchesAnyOf(activity) }
@@ -53,6 +60,11 @@ class OrComponentMatcher(private val componentMatchers: Collection<IComponentMat
         return componentMatchers.any { it.layerMatchesAnyOf(layers) }
     }
 
+    /** {@inheritDoc} */
+    override fun layerMatchesAnyOf(entry: LayerTraceEntry): Boolean {
+        return componentMatchers.any { it.layerMatchesAnyOf(entry) }
+    }
+
     /** {@inheritDoc} */
     override fun check(
         layers: Collection<Layer>,
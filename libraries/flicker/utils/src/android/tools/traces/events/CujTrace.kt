@@ -35,20 +35,15 @@ class CujTrace(override val entries: Collection<Cuj>) : Trace<Cuj> {
             val cujs = mutableListOf<Cuj>()
 
             val sortedCujEvents = cujEvents.sortedBy { it.timestamp.unixNanos }
-            val startEvents = sortedCujEvents.filter { it.type == CujEvent.Companion.Type.START }
-            val endEvents = sortedCujEvents.filter { it.type == CujEvent.Companion.Type.END }
-            val canceledEvents =
-                sortedCujEvents.filter { it.type == CujEvent.Companion.Type.CANCEL }
+            val endEvents = ClosingEvents(sortedCujEvents, CujEvent.Companion.Type.END)
+            val canceledEvents = ClosingEvents(sortedCujEvents, CujEvent.Companion.Type.CANCEL)
 
-            for (startEvent in startEvents) {
-                val matchingEndEvent =
-                    endEvents.firstOrNull {
-                        it.cuj == startEvent.cuj && it.timestamp >= startEvent.timestamp
-                    }
-                val matchingCancelEvent =
-                    canceledEvents.firstOrNull {
-                        it.cuj == startEvent.cuj && it.timestamp >= startEvent.timestamp
-                    }
+            for (startEvent in sortedCujEvents) {
+                if (startEvent.type != CujEvent.Companion.Type.START) {
+                    continue
+                }
+                val matchingEndEvent = endEvents.firstAtOrAfter(startEvent)
+                val matchingCancelEvent = canceledEvents.firstAtOrAfter(startEvent)
 
                 if (matchingCancelEvent == null && matchingEndEvent == null) {
                     // CUJ started but not ended within the trace
@@ -70,4 +65,26 @@ class CujTrace(override val entries: Collection<Cuj>) : Trace<Cuj> {
             return CujTrace(cujs)
         }
     }
+
+    /**
+     * Closing events of one [type], per CUJ type, in timestamp order.
+     *
+     * Start events are looked up in timestamp order too, so the events before a start event are
+     * skipped once, and pairing all the events of a trace is linear.
+     */
+    private class ClosingEvents(sortedCujEvents: List<CujEvent>, type: CujEvent.Companion.Type) {
+        private val eventsByCuj = sortedCujEvents.filter { it.type == type }.groupBy { it.cuj }
+        private val positions = IntArray(CujType.values().size)
+
+        /** @return the first event of the CUJ of [startEvent] at or after it, if any */
+        fun firstAtOrAfter(startEvent: CujEvent): CujEvent? {
+            val events = eventsByCuj[startEvent.cuj] ?: return null
+            var position = positions[startEvent.cuj.ordinal]
+            while (position < events.size && events[position].timestamp < startEvent.timestamp) {
+                position++
+            }
+            positions[startEvent.cuj.ordinal] = position
+            return events.getOrNull(position)
+        }
+    }
 }
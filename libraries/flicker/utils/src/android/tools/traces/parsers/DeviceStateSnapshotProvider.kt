@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.tools.traces.parsers
+
+import android.tools.io.TraceType
+import android.tools.traces.DeviceStateDump
+import android.tools.traces.getCurrentState
+import android.tools.traces.parsers.perfetto.LayersTraceParser
+import android.tools.traces.parsers.perfetto.TraceProcessorSession
+import android.tools.traces.parsers.wm.WindowManagerDumpParser
+import android.tools.traces.surfaceflinger.LayerTraceEntry
+import android.tools.traces.wm.WindowManagerState
+import java.security.MessageDigest
+
+/**
+ * Supplies [DeviceStateDump]s to wait conditions, dumping and parsing only the sections they
+ * inspect.
+ *
+ * Each call to [snapshot] dumps the requested sections ([TraceType.WM_DUMP] and/or
+ * [TraceType.SF_DUMP]) again. A section is only parsed again if its dump differs from the previous
+ * one, otherwise its previously parsed state is reused. Sections which are not requested keep
+ * their last parsed state, which may be stale, they are only dumped if they were never parsed
+ * before. Callers publishing a
+ * snapshot beyond the condition which requested it should first refresh the other sections.
+ *
+ * Invoking the provider as a function takes a full snapshot, so that it can be used wherever a
+ * device dump supplier is expected. This class is not thread safe.
+ *
+ * @param clearCacheAfterParsing If the caching used while parsing the dumps should be cleared or
+ *   remain in memory
+ * @param dumper Dumps the given section of the device state
+ * @param wmParser Parses a [TraceType.WM_DUMP]
+ * @param layersParser Parses a [TraceType.SF_DUMP]
+ */
+class DeviceStateSnapshotProvider
+@JvmOverloads
+constructor(
+    private val clearCacheAfterParsing: Boolean = true,
+    private val dumper: (TraceType) -> ByteArray = ::dumpSection,
+    private val wmParser: (ByteArray) -> WindowManagerState = {
+        WindowManagerDumpParser().parse(it, clearCache = clearCacheAfterParsing).entries.first()
+    },
+    private val layersParser: (ByteArray) -> LayerTraceEntry = {
+        TraceProcessorSession.loadPerfettoTrace(it) { session ->
+            LayersTraceParser().parse(session, clearCache = clearCacheAfterParsing).entries.first()
+        }
+    }
+) : () -> DeviceStateDump {
+    private val wmSection = Section(TraceType.WM_DUMP, wmParser)
+    private val layersSection = Section(TraceType.SF_DUMP, layersParser)
+
+    /** Takes a snapshot of all the sections of the device state. */
+    override fun invoke(): DeviceStateDump = snapshot(ALL_SECTIONS)
+
+    /**
+     * Takes a snapshot of the device state, dumping only the given [sections].
+     *
+     * @param sections Sections to refresh, either [TraceType.WM_DUMP] or [TraceType.SF_DUMP]
+     * @param stats Where to record the dump and parse timings of this snapshot
+     */
+    @JvmOverloads
+    fun snapshot(sections: Set<TraceType>, stats: Stats? = null): DeviceStateDump {
+        require(sections.isNotEmpty()) { "No section specified" }
+        val unsupported = sections - ALL_SECTIONS
+        require(unsupported.isEmpty()) { "Unsupported sections: $unsupported" }
+
+        stats?.let { it.snapshotCount++ }
+        return DeviceStateDump(
+            wmSection.get(refresh = TraceType.WM_DUMP in sections, stats),
+            layersSection.get(refresh = TraceType.SF_DUMP in sections, stats)
+        )
+    }
+
+    private inner class Section<T>(
+        private val type: TraceType,
+        private val parser: (ByteArray) -> T
+    ) {
+        private var lastDumpDigest: ByteArray? = null
+        private var lastState: T? = null
+
+        fun get(refresh: Boolean, stats: Stats?): T {
+            val cachedState = lastState
+            if (!refresh && cachedState != null) {
+                return cachedState
+            }
+
+            val dumpStart = System.nanoTime()
+            val dump = dumper(type)
+            stats?.let {
+                it.dumpCount++
+                it.dumpTimeNs += System.nanoTime() - dumpStart
+            }
+
+            // Only a digest of the last dump is kept, not the dump itself.
+            val dumpDigest = MessageDigest.getInstance(DIGEST_ALGORITHM).digest(dump)
+            if (cachedState != null && dumpDigest.contentEquals(lastDumpDigest)) {
+                stats?.let { it.skippedParseCount++ }
+                return cachedState
+            }
+
+            val parseStart = System.nanoTime()
+            val state = parser(dump)
+            stats?.let {
+                it.parseCount++
+                it.parseTimeNs += System.nanoTime() - parseStart
+            }
+            lastDumpDigest = dumpDigest
+            lastState = state
+            return state
+        }
+    }
+
+    /** Dump and parse timings of the snapshots taken during a wait. */
+    class Stats {
+        /** Number of snapshots taken */
+        var snapshotCount = 0
+            internal set
+        /** Number of sections dumped */
+        var dumpCount = 0
+            internal set
+        /** Number of dumped sections parsed */
+        var parseCount = 0
+            internal set
+        /** Number of dumped sections identical to the previous dump, which were not parsed */
+        var skippedParseCount = 0
+            internal set
+        /** Time spent dumping sections, in nanoseconds */
+        var dumpTimeNs = 0L
+            internal set
+        /** Time spent parsing sections, in nanoseconds */
+        var parseTimeNs = 0L
+            internal set
+
+        override fun toString(): String =
+            "snapshots=$snapshotCount, " +
+                "dumps=$dumpCount (${dumpTimeNs / 1_000_000}ms), " +
+                "parses=$parseCount (${parseTimeNs / 1_000_000}ms), " +
+                "skipped parses=$skippedParseCount"
+    }
+
+    companion object {
+        /** Sections a snapshot can contain */
+        @JvmField val ALL_SECTIONS = setOf(TraceType.WM_DUMP, TraceType.SF_DUMP)
+
+        private const val DIGEST_ALGORITHM = "SHA-256"
+
+        private fun dumpSection(type: TraceType): ByteArray {
+            val dump = getCurrentState(type)
+            return if (type == TraceType.WM_DUMP) dump.first else dump.second
+        }
+    }
+}
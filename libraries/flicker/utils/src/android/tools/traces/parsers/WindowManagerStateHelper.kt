@@ -27,8 +27,10 @@ import android.tools.Logger
 import android.tools.Rotation
 import android.tools.TimestampFactory
 import android.tools.datatypes.Region
+import android.tools.io.TraceType
 import android.tools.traces.Condition
 import android.tools.traces.ConditionsFactory
+import android.tools.traces.DeviceStateCondition
 import android.tools.traces.DeviceStateDump
 import android.tools.traces.LOG_TAG
 import android.tools.traces.WaitCondition
@@ -41,7 +43,6 @@ import android.tools.traces.component.ComponentNameMatcher.Companion.SPLIT_DIVID
 import android.tools.traces.component.ComponentNameMatcher.Companion.TRANSITION_SNAPSHOT
 import android.tools.traces.component.IComponentMatcher
 import android.tools.traces.formatRealTimestamp
-import android.tools.traces.getCurrentStateDump
 import android.tools.traces.surfaceflinger.LayerTraceEntry
 import android.tools.traces.surfaceflinger.LayersTrace
 import android.tools.traces.wm.Activity
@@ -58,10 +59,12 @@ constructor(
     /** Instrumentation to run the tests */
     private val instrumentation: Instrumentation = InstrumentationRegistry.getInstrumentation(),
     private val clearCacheAfterParsing: Boolean = true,
-    /** Predicate to supply a new UI information */
-    private val deviceDumpSupplier: () -> DeviceStateDump = {
-        getCurrentStateDump(clearCacheAfterParsing = clearCacheAfterParsing)
-    },
+    /**
+     * Predicate to supply a new UI information. If it is a [DeviceStateSnapshotProvider], wait
+     * conditions only dump the sections of the device state they inspect.
+     */
+    private val deviceDumpSupplier: () -> DeviceStateDump =
+        DeviceStateSnapshotProvider(clearCacheAfterParsing),
     /** Number of attempts to satisfy a wait condition */
     private val numRetries: Int = DEFAULT_RETRY_LIMIT,
     /** Interval between wait for state dumps during wait conditions */
@@ -112,15 +115,51 @@ constructor(
      * conditions
      */
     inner class StateSyncBuilder {
+        private val sections = mutableSetOf<TraceType>()
         private val conditionBuilder = createConditionBuilder()
         private var lastMessage = ""
 
+        /**
+         * Dump and parse timings of the device states checked by [waitFor], when they are supplied
+         * by a [DeviceStateSnapshotProvider]
+         */
+        val snapshotStats = DeviceStateSnapshotProvider.Stats()
+
+        private fun createStateSupplier(): () -> DeviceStateDump {
+            val provider = deviceDumpSupplier as? DeviceStateSnapshotProvider
+            return if (provider != null) {
+                {
+                    provider.snapshot(
+                        sections.ifEmpty { DeviceStateSnapshotProvider.ALL_SECTIONS },
+                        snapshotStats
+                    )
+                }
+            } else {
+                deviceDumpSupplier
+            }
+        }
+
+        /**
+         * Updates the current state with the last state checked by the conditions. The sections
+         * the conditions did not inspect were not refreshed while waiting, so they are refreshed
+         * before being published.
+         */
+        private fun publishState(state: DeviceStateDump) {
+            val provider = deviceDumpSupplier as? DeviceStateSnapshotProvider
+            val staleSections = DeviceStateSnapshotProvider.ALL_SECTIONS - sections
+            if (provider == null || sections.isEmpty() || staleSections.isEmpty()) {
+                updateCurrState(state)
+            } else {
+                updateCurrState(provider.snapshot(staleSections, snapshotStats))
+            }
+        }
+
         private fun createConditionBuilder(): WaitCondition.Builder<DeviceStateDump> =
-            WaitCondition.Builder(deviceDumpSupplier, numRetries)
+            WaitCondition.Builder(createStateSupplier(), numRetries)
                 .onStart { Trace.beginSection(it) }
                 .onEnd { Trace.endSection() }
-                .onSuccess { updateCurrState(it) }
-                .onFailure { updateCurrState(it) }
+                .onSuccess { publishState(it) }
+                .onFailure { publishState(it) }
                 .onLog { msg, isError ->
                     lastMessage = msg
                     if (isError) {
@@ -137,6 +176,7 @@ constructor(
          * @param condition to wait for
          */
         fun add(condition: Condition<DeviceStateDump>): StateSyncBuilder = apply {
+            sections.addAll(DeviceStateCondition.sectionsOf(condition))
             conditionBuilder.withCondition(condition)
         }
 
@@ -157,6 +197,9 @@ constructor(
          */
         fun waitFor(): Boolean {
             val passed = conditionBuilder.build().waitFor()
+            if (snapshotStats.snapshotCount > 0) {
+                Logger.d(LOG_TAG, "Device state snapshots: $snapshotStats")
+            }
             // Ensure WindowManagerService wait until all animations have completed
             instrumentation.waitForIdleSync()
             instrumentation.uiAutomation.syncInputTransactions()
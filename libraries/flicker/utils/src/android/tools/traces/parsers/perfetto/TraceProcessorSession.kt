@@ -22,11 +22,7 @@
 package android.tools.traces.parsers.perfetto
 
 import android.tools.Logger
-import android.tools.io.TraceType
-import androidx.benchmark.perfetto.PerfettoTrace
 import androidx.benchmark.perfetto.PerfettoTraceProcessor
-import java.io.File
-import java.io.FileOutputStream
 
 typealias Row = Map<String, Any?>
 
@@ -45,17 +41,16 @@ class TraceProcessorSession {
     }
 
     companion object {
+        /**
+         * Runs [predicate] on a session on which [trace] is loaded.
+         *
+         * Sessions are shared through [TraceProcessorSessionPool.shared], so loading the same
+         * trace again shortly after, e.g. to read another trace type from the same artifact, does
+         * not ingest the trace again.
+         */
         fun <T> loadPerfettoTrace(trace: ByteArray, predicate: (TraceProcessorSession) -> T): T {
             return Logger.withTracing("TraceProcessorSession#loadPerfettoTrace") {
-                val traceFile = File.createTempFile(TraceType.SF.fileName, "")
-                FileOutputStream(traceFile).use { it.write(trace) }
-                val result =
-                    PerfettoTraceProcessor.runServer {
-                        loadTrace(PerfettoTrace(traceFile.absolutePath)) {
-                            predicate(TraceProcessorSession(this))
-                        }
-                    }
-                result
+                TraceProcessorSessionPool.shared.withSession(trace, predicate)
             }
         }
     }
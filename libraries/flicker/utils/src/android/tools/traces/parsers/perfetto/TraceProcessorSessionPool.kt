@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+@file:OptIn(
+    androidx.benchmark.perfetto.ExperimentalPerfettoCaptureApi::class,
+    androidx.benchmark.perfetto.ExperimentalPerfettoTraceProcessorApi::class
+)
+
+package android.tools.traces.parsers.perfetto
+
+import android.tools.Logger
+import android.tools.io.TraceType
+import android.tools.traces.LOG_TAG
+import androidx.benchmark.perfetto.PerfettoTrace
+import androidx.benchmark.perfetto.PerfettoTraceProcessor
+import java.io.File
+import java.security.MessageDigest
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * Pool of trace processor sessions, keyed by the content hash of the loaded trace.
+ *
+ * Loading a trace starts a trace processor and ingests the trace, which is by far the most
+ * expensive part of parsing it. Pooled sessions stay alive while they are in use and for
+ * [idleTimeoutMs] after their last use, so that the parsers of the layers, transactions,
+ * transitions and protolog data of one artifact all query the same ingested trace.
+ *
+ * Each session is reference counted and owned by a dedicated thread, which keeps the trace
+ * processor running until the session is evicted: either after being idle for [idleTimeoutMs], or
+ * when its slot is needed to load a different trace. An evicted processor is always stopped before
+ * the next one is started, as they listen on the same port. Queries on a session are serialized.
+ *
+ * @param maxSessions maximum number of trace processors running at once. Trace processors listen
+ *   on a fixed port, so more than one session should only be allowed if the processor is
+ *   configured otherwise.
+ * @param idleTimeoutMs how long an unused session is kept alive
+ */
+class TraceProcessorSessionPool(
+    private val maxSessions: Int = DEFAULT_MAX_SESSIONS,
+    private val idleTimeoutMs: Long = DEFAULT_IDLE_TIMEOUT_MS
+) {
+    private val lock = ReentrantLock()
+    private val stateChanged = lock.newCondition()
+    // Access ordered, so that the least recently used idle session is evicted first.
+    private val sessions = LinkedHashMap<String, PooledSession>(16, 0.75f, true)
+    private var runningSessions = 0
+
+    /** Number of traces ingested by this pool so far. */
+    var ingestionCount = 0
+        private set
+
+    init {
+        require(maxSessions > 0) { "maxSessions must be positive, current value is $maxSessions" }
+    }
+
+    /**
+     * Runs [predicate] with a session on which [trace] is loaded, reusing a pooled session if the
+     * same trace was loaded recently.
+     *
+     * If all the sessions of the pool are in use by other threads, waits for one of them to be
+     * released. A nested load of a different trace, i.e. from within [predicate], stops the
+     * processor of the enclosing session, which can't be queried anymore once the nested load
+     * returns.
+     */
+    fun <T> withSession(trace: ByteArray, predicate: (TraceProcessorSession) -> T): T {
+        val key = contentHash(trace)
+        val pooledSession = acquire(key, trace)
+        try {
+            return pooledSession.run(predicate)
+        } finally {
+            release(pooledSession)
+        }
+    }
+
+    /** Stops all the sessions which are not in use and waits for them to terminate. */
+    fun clear() {
+        lock.withLock {
+            sessions.values.filter { it.refCount == 0 }.forEach { evict(it) }
+            while (runningSessions > sessions.size) {
+                stateChanged.await()
+            }
+        }
+    }
+
+    private fun acquire(key: String, trace: ByteArray): PooledSession {
+        val thread = Thread.currentThread()
+        lock.withLock {
+            while (true) {
+                val existing = sessions[key]
+                if (existing != null) {
+                    existing.holders.add(thread)
+                    return existing
+                }
+                if (runningSessions < maxSessions) {
+                    val session = PooledSession(key, trace)
+                    session.holders.add(thread)
+                    sessions[key] = session
+                    runningSessions++
+                    ingestionCount++
+                    session.start()
+                    return session
+                }
+                if (runningSessions > sessions.size) {
+                    // An evicted session is still stopping, wait until its processor is gone.
+                    stateChanged.await()
+                    continue
+                }
+                val session =
+                    sessions.values.firstOrNull { it.refCount == 0 }
+                        ?: sessions.values.firstOrNull { thread in it.holders }
+                if (session != null) {
+                    if (session.refCount > 0) {
+                        Logger.w(LOG_TAG, "Stopping trace processor session ${session.key} in use")
+                    }
+                    evict(session)
+                } else {
+                    // All the sessions are in use by other threads, wait for one to be released.
+                    stateChanged.await()
+                }
+            }
+        }
+    }
+
+    private fun release(session: PooledSession) {
+        lock.withLock {
+            session.holders.remove(Thread.currentThread())
+            session.lastReleaseTimeMs = System.currentTimeMillis()
+            stateChanged.signalAll()
+        }
+    }
+
+    /** Must be called with [lock] held. */
+    private fun evict(session: PooledSession) {
+        Logger.d(LOG_TAG, "Evicting trace processor session ${session.key}")
+        session.isEvicted = true
+        sessions.remove(session.key)
+        stateChanged.signalAll()
+    }
+
+    private inner class PooledSession(val key: String, trace: ByteArray) {
+        private val traceFile =
+            File.createTempFile(TraceType.SF.fileName, "").also { it.writeBytes(trace) }
+        private val session = CompletableFuture<TraceProcessorSession>()
+        private val queryLock = ReentrantLock()
+
+        // Guarded by the pool lock. Holds the thread of each withSession() call using the session.
+        val holders = mutableListOf<Thread>()
+        val refCount: Int
+            get() = holders.size
+        var lastReleaseTimeMs = System.currentTimeMillis()
+        var isEvicted = false
+
+        fun start() {
+            Thread(::serve, "TraceProcessorSession-${key.take(8)}")
+                .apply { isDaemon = true }
+                .start()
+        }
+
+        fun <T> run(predicate: (TraceProcessorSession) -> T): T {
+            val session =
+                try {
+                    session.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            return queryLock.withLock { predicate(session) }
+        }
+
+        private fun serve() {
+            try {
+                Logger.withTracing("TraceProcessorSessionPool#ingest") {
+                    PerfettoTraceProcessor.runServer {
+                        loadTrace(PerfettoTrace(traceFile.absolutePath)) {
+                            session.complete(TraceProcessorSession(this))
+                            awaitEviction()
+                        }
+                    }
+                }
+            } catch (e: Throwable) {
+                session.completeExceptionally(e)
+                Logger.e(LOG_TAG, "Trace processor session $key failed", e)
+            } finally {
+                traceFile.delete()
+                lock.withLock {
+                    if (sessions[key] === this) {
+                        sessions.remove(key)
+                    }
+                    isEvicted = true
+                    runningSessions--
+                    stateChanged.signalAll()
+                }
+            }
+        }
+
+        private fun awaitEviction() {
+            lock.withLock {
+                while (!isEvicted) {
+                    if (refCount > 0) {
+                        stateChanged.await()
+                        continue
+                    }
+                    val idleTimeMs = System.currentTimeMillis() - lastReleaseTimeMs
+                    if (idleTimeMs >= idleTimeoutMs) {
+                        evict(this)
+                    } else {
+                        stateChanged.await(idleTimeoutMs - idleTimeMs, TimeUnit.MILLISECONDS)
+                    }
+                }
+            }
+        }
+    }
+
+    companion object {
+        private const val DEFAULT_MAX_SESSIONS = 1
+        private const val DEFAULT_IDLE_TIMEOUT_MS = 10_000L
+
+        /**
+         * Pool used by [TraceProcessorSession.loadPerfettoTrace]. Its idle processors are stopped
+         * when the JVM exits, the daemon threads owning them would otherwise leave them running.
+         */
+        @JvmStatic
+        val shared =
+            TraceProcessorSessionPool().also { pool ->
+                Runtime.getRuntime()
+                    .addShutdownHook(Thread({ pool.clear() }, "TraceProcessorSessionPool-shutdown"))
+            }
+
+        private fun contentHash(trace: ByteArray): String =
+            MessageDigest.getInstance("SHA-256").digest(trace).joinToString("") {
+                "%02x".format(it)
+            }
+    }
+}
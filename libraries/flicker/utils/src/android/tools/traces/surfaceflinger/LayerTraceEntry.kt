@@ -22,6 +22,7 @@ import android.tools.datatypes.Rect
 import android.tools.datatypes.RectF
 import android.tools.traces.component.ComponentNameMatcher
 import android.tools.traces.component.IComponentMatcher
+import android.tools.traces.component.NameIndex
 
 /**
  * Represents a single Layer trace entry.
@@ -45,6 +46,9 @@ class LayerTraceEntry(
 
     val flattenedLayers: Collection<Layer> = fillFlattenedLayers(_rootLayers)
 
+    /** Index of the names of [flattenedLayers], shared by all the component matchers */
+    val layerNameIndex: NameIndex by lazy { NameIndex(flattenedLayers.map { it.name }) }
+
     // for winscope
     val isVisible: Boolean = true
 
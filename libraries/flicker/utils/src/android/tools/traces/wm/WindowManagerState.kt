@@ -21,6 +21,7 @@ import android.tools.Rotation
 import android.tools.Timestamps
 import android.tools.TraceEntry
 import android.tools.traces.component.IComponentMatcher
+import android.tools.traces.component.NameIndex
 import android.tools.traces.wm.Utils.collectDescendants
 
 /**
@@ -81,6 +82,9 @@ class WindowManagerState(
     val windowStates: Collection<WindowState>
         get() = windowContainers.filterIsInstance<WindowState>()
 
+    /** Index of the titles of [windowStates], shared by all the component matchers */
+    val windowNameIndex: NameIndex by lazy { NameIndex(windowStates.map { it.title }) }
+
     @Deprecated("Please use windowStates instead", replaceWith = ReplaceWith("windowStates"))
     val windows: Collection<WindowState>
         get() = windowStates
@@ -325,7 +329,7 @@ class WindowManagerState(
      * @param componentMatcher Components to search
      */
     fun containsWindow(componentMatcher: IComponentMatcher): Boolean =
-        componentMatcher.windowMatchesAnyOf(windowStates)
+        componentMatcher.windowMatchesAnyOf(this)
 
     /**
      * Check if at least one [WindowState] matching [componentMatcher] is visible
@@ -364,7 +368,7 @@ class WindowManagerState(
      * @param componentMatcher Components to search
      */
     fun contains(componentMatcher: IComponentMatcher): Boolean =
-        componentMatcher.windowMatchesAnyOf(windowStates)
+        componentMatcher.windowMatchesAnyOf(this)
 
     /**
      * Checks if a [WindowState] matching [componentMatcher] is visible
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.tools.parsers.wm
+
+import android.tools.Cache
+import android.tools.Logger
+import android.tools.traces.parsers.wm.WindowManagerTraceParser
+import android.tools.utils.readAsset
+import com.google.common.truth.Truth
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Benchmark of parsing the same stored trace with [WindowManagerTraceParser] sequentially against
+ * in parallel, each parse in its own cache scope. To run it: `atest FlickerLibUtilsBenchmark`
+ */
+class WindowManagerTraceParserBenchmark {
+    @Before
+    fun before() {
+        Cache.clear()
+    }
+
+    @Test
+    fun parseStoredTraceInParallel() {
+        val data = readAsset("wm_trace_openchrome.pb")
+
+        val sequentialStart = System.nanoTime()
+        val sequentialCounts =
+            List(PARSE_COUNT) {
+                WindowManagerTraceParser(legacyTrace = true).parse(data).entries.size
+            }
+        val sequentialMs = (System.nanoTime() - sequentialStart) / 1_000_000
+
+        val executor = Executors.newFixedThreadPool(PARSE_COUNT)
+        try {
+            val parallelStart = System.nanoTime()
+            val parallelCounts =
+                executor
+                    .invokeAll(
+                        List(PARSE_COUNT) {
+                            Callable {
+                                WindowManagerTraceParser(legacyTrace = true)
+                                    .parse(data)
+                                    .entries
+                                    .size
+                            }
+                        }
+                    )
+                    .map { it.get() }
+            val parallelMs = (System.nanoTime() - parallelStart) / 1_000_000
+
+            Truth.assertThat(parallelCounts).isEqualTo(sequentialCounts)
+            Logger.i(
+                TAG,
+                "Parsed $PARSE_COUNT traces in ${sequentialMs}ms sequentially, " +
+                    "${parallelMs}ms in parallel"
+            )
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    companion object {
+        private const val TAG = "WindowManagerTraceParserBenchmark"
+        private const val PARSE_COUNT = 4
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.tools.traces.component
+
+import android.tools.Cache
+import android.tools.Logger
+import android.tools.utils.getLayerTraceReaderFromAsset
+import com.google.common.truth.Truth
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Benchmark of [IComponentMatcher.layerMatchesAnyOf] on all the entries of a large trace, for a
+ * matcher per layer name in the trace, with the name index of each entry against a scan of its
+ * layers. To run it: `atest FlickerLibUtilsBenchmark`
+ */
+class NameIndexBenchmark {
+    @Before
+    fun before() {
+        Cache.clear()
+    }
+
+    @Test
+    fun layerMatchesAnyOf() {
+        val reader =
+            getLayerTraceReaderFromAsset("layers_trace_unlock_and_lock_device.perfetto-trace")
+        val trace = reader.readLayersTrace() ?: error("Unable to read layers trace")
+        val layerNames = trace.entries.flatMap { entry -> entry.flattenedLayers.map { it.name } }
+        val matchers =
+            KNOWN_MATCHERS +
+                layerNames.distinct().map { ComponentNameMatcher(it.substringBefore('#')) } +
+                ComponentNameMatcher("com.example", "com.example.NotInTrace")
+
+        var start = System.nanoTime()
+        val expected =
+            trace.entries.map { entry ->
+                matchers.map { it.layerMatchesAnyOf(entry.flattenedLayers) }
+            }
+        val scanNs = System.nanoTime() - start
+
+        start = System.nanoTime()
+        val actual = trace.entries.map { entry -> matchers.map { it.layerMatchesAnyOf(entry) } }
+        val indexNs = System.nanoTime() - start
+
+        Truth.assertThat(actual).isEqualTo(expected)
+        Logger.i(
+            TAG,
+            "Matched ${matchers.size} components on ${trace.entries.size} entries: " +
+                "scan=${scanNs / 1_000_000}ms, index=${indexNs / 1_000_000}ms"
+        )
+    }
+
+    companion object {
+        private const val TAG = "NameIndexBenchmark"
+        private val KNOWN_MATCHERS =
+            listOf(
+                ComponentNameMatcher.NAV_BAR,
+                ComponentNameMatcher.TASK_BAR,
+                ComponentNameMatcher.STATUS_BAR,
+                ComponentNameMatcher.ROTATION,
+                ComponentNameMatcher.IME,
+                ComponentNameMatcher.SPLASH_SCREEN,
+                ComponentNameMatcher.SNAPSHOT,
+                ComponentNameMatcher.LETTERBOX,
+                ComponentNameMatcher.LAUNCHER,
+                ComponentNameMatcher.SPLIT_DIVIDER
+            )
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.tools.traces.events
+
+import android.tools.Logger
+import android.tools.Timestamps
+import com.google.common.truth.Truth
+import kotlin.random.Random
+import org.junit.Test
+
+/**
+ * Benchmark of [CujTrace.from] on long traces of interleaved, nested and unclosed CUJs, against
+ * pairing each start event with the closing events of its CUJ. To run it: `atest
+ * FlickerLibUtilsBenchmark`
+ */
+class CujTraceBenchmark {
+    @Test
+    fun pairLargeTraces() {
+        val smallTrace = createRandomCujEvents(SMALL_TRACE_SIZE)
+        val largeTrace = createRandomCujEvents(LARGE_TRACE_SIZE)
+
+        var start = System.nanoTime()
+        val expected = referenceCujs(smallTrace)
+        val referenceNs = System.nanoTime() - start
+        start = System.nanoTime()
+        val actual = CujTrace.from(smallTrace).entries
+        val smallNs = System.nanoTime() - start
+        start = System.nanoTime()
+        val largeCujs = CujTrace.from(largeTrace).entries
+        val largeNs = System.nanoTime() - start
+
+        Truth.assertThat(actual.map { it.toTestString() })
+            .containsExactlyElementsIn(expected.map { it.toTestString() })
+            .inOrder()
+        Truth.assertThat(largeCujs).isNotEmpty()
+        Logger.i(
+            TAG,
+            "CujTrace.from: $SMALL_TRACE_SIZE events: reference=${referenceNs / 1_000_000}ms, " +
+                "sweep=${smallNs / 1_000_000}ms; $LARGE_TRACE_SIZE events: " +
+                "sweep=${largeNs / 1_000_000}ms"
+        )
+    }
+
+    /** Pairs each start event with the closing events of its CUJ, as [CujTrace.from] used to. */
+    private fun referenceCujs(cujEvents: Collection<CujEvent>): List<Cuj> {
+        val sortedCujEvents = cujEvents.sortedBy { it.timestamp.unixNanos }
+        val endEvents = sortedCujEvents.filter { it.type == CujEvent.Companion.Type.END }
+        val canceledEvents = sortedCujEvents.filter { it.type == CujEvent.Companion.Type.CANCEL }
+        return sortedCujEvents
+            .filter { it.type == CujEvent.Companion.Type.START }
+            .mapNotNull { startEvent ->
+                val matchingEndEvent =
+                    endEvents.firstOrNull {
+                        it.cuj == startEvent.cuj && it.timestamp >= startEvent.timestamp
+                    }
+                val matchingCancelEvent =
+                    canceledEvents.firstOrNull {
+                        it.cuj == startEvent.cuj && it.timestamp >= startEvent.timestamp
+                    }
+                val closingEvent =
+                    listOfNotNull(matchingCancelEvent, matchingEndEvent).minByOrNull {
+                        it.timestamp
+                    }
+                        ?: return@mapNotNull null
+                Cuj(
+                    startEvent.cuj,
+                    startEvent.timestamp,
+                    closingEvent.timestamp,
+                    closingEvent.type == CujEvent.Companion.Type.CANCEL
+                )
+            }
+    }
+
+    /** Returns interleaved, nested and unclosed CUJs of a few types, with equal timestamps. */
+    private fun createRandomCujEvents(size: Int): List<CujEvent> {
+        val random = Random(SEED)
+        val cujTypes = CujType.values().take(CUJ_TYPES)
+        val tags = listOf(JANK_CUJ_BEGIN, JANK_CUJ_BEGIN, JANK_CUJ_END, JANK_CUJ_CANCEL)
+        return List(size) {
+            CujEvent(
+                Timestamps.from(unixNanos = random.nextLong(size.toLong())),
+                cujTypes[random.nextInt(cujTypes.size)],
+                0,
+                "root",
+                0,
+                tags[random.nextInt(tags.size)],
+                null,
+            )
+        }
+    }
+
+    private fun Cuj.toTestString() =
+        "$cuj ${startTimestamp.unixNanos}-${endTimestamp.unixNanos}" +
+            if (canceled) " canceled" else ""
+
+    companion object {
+        private const val TAG = "CujTraceBenchmark"
+        private const val JANK_CUJ_BEGIN = CujEvent.JANK_CUJ_BEGIN_TAG
+        private const val JANK_CUJ_END = CujEvent.JANK_CUJ_END_TAG
+        private const val JANK_CUJ_CANCEL = CujEvent.JANK_CUJ_CANCEL_TAG
+        private const val SEED = 42
+        private const val CUJ_TYPES = 20
+        private const val SMALL_TRACE_SIZE = 10_000
+        private const val LARGE_TRACE_SIZE = 100_000
+    }
+}
@@ -16,6 +16,9 @@
 
 package android.tools
 
+import android.tools.parsers.AbstractParser
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
 import org.junit.Assert
 import org.junit.Before
 import org.junit.Test
@@ -68,9 +71,95 @@ class CacheTest {
         Assert.assertFalse(copy.cache.containsKey(Dummy(2)))
     }
 
+    @Test
+    fun testScopeIsIsolated() {
+        val shared = Cache.get(Dummy(0))
+        val scoped = Cache.withScope {
+            val element = Cache.get(Dummy(0))
+            Assert.assertSame(element, Cache.get(Dummy(0)))
+            Assert.assertEquals(1, cacheSize())
+            element
+        }
+        Assert.assertNotSame(shared, scoped)
+        Assert.assertSame(shared, Cache.get(Dummy(0)))
+        Assert.assertEquals(1, cacheSize())
+    }
+
+    @Test
+    fun testScopeIsDroppedOnExit() {
+        Cache.withScope { Cache.get(Dummy(0)) }
+        Assert.assertEquals(0, cacheSize())
+    }
+
+    @Test
+    fun testConcurrentScopes() {
+        val executor = Executors.newFixedThreadPool(THREAD_COUNT)
+        try {
+            val sizes =
+                executor
+                    .invokeAll(
+                        List(THREAD_COUNT) {
+                            Callable {
+                                Cache.withScope {
+                                    repeat(ELEMENT_COUNT) { Cache.get(Dummy(it % 10)) }
+                                    cacheSize()
+                                }
+                            }
+                        }
+                    )
+                    .map { it.get() }
+            Assert.assertEquals(List(THREAD_COUNT) { 10 }, sizes)
+            Assert.assertEquals(0, cacheSize())
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    @Test
+    fun testScopesShareElementsWhenEnabled() {
+        val cache = Cache
+        try {
+            CrossPlatform.setCacheSharedAcrossParses(true)
+            val element = Cache.withScope { Cache.get(Dummy(0)) }
+            Assert.assertSame(element, Cache.withScope { Cache.get(Dummy(0)) })
+        } finally {
+            CrossPlatform.setCache(cache)
+        }
+    }
+
+    @Test
+    fun testTopLevelClearingParseClearsSharedCache() {
+        Cache.get(Dummy(0))
+        val parsed = DummyParser().parse(Dummy(1), clearCache = true)
+        Assert.assertEquals(Dummy(1), parsed)
+        Assert.assertEquals(0, cacheSize())
+    }
+
+    @Test
+    fun testNestedClearingParseKeepsEnclosingScope() {
+        val size =
+            Cache.withScope {
+                Cache.get(Dummy(0))
+                DummyParser().parse(Dummy(1), clearCache = true)
+                cacheSize()
+            }
+        Assert.assertEquals(1, size)
+    }
+
     data class Dummy(val value: Int)
 
+    private class DummyParser : AbstractParser<Dummy, Dummy>() {
+        override val traceName = "dummy"
+
+        override fun doDecodeByteArray(bytes: ByteArray): Dummy = error("Not supported")
+
+        override fun doParse(input: Dummy): Dummy = Cache.get(input)
+    }
+
     companion object {
+        private const val THREAD_COUNT = 8
+        private const val ELEMENT_COUNT = 1000
+
         private fun cacheSize() = Cache.backup().cache.size
     }
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.tools.parsers
+
+import android.tools.Cache
+import android.tools.io.TraceType
+import android.tools.traces.ConditionList
+import android.tools.traces.ConditionsFactory
+import android.tools.traces.DeviceStateCondition
+import android.tools.traces.parsers.DeviceStateSnapshotProvider
+import android.tools.traces.parsers.perfetto.LayersTraceParser
+import android.tools.traces.parsers.perfetto.TraceProcessorSession
+import android.tools.traces.parsers.wm.WindowManagerDumpParser
+import android.tools.utils.CleanFlickerEnvironmentRule
+import android.tools.utils.readAsset
+import com.google.common.truth.Truth
+import org.junit.Before
+import org.junit.ClassRule
+import org.junit.Test
+
+/** Contains [DeviceStateSnapshotProvider] tests. */
+class DeviceStateSnapshotProviderTest {
+    private val wmDump = readAsset("wm_trace_dump.pb")
+    private var layersDump = readAsset("layers_dump_with_display.perfetto-trace")
+    private val dumps = mutableListOf<TraceType>()
+    private var wmParseCount = 0
+    private var layersParseCount = 0
+
+    private val provider =
+        DeviceStateSnapshotProvider(
+            clearCacheAfterParsing = true,
+            dumper = { type ->
+                dumps.add(type)
+                if (type == TraceType.WM_DUMP) wmDump.copyOf() else layersDump.copyOf()
+            },
+            wmParser = {
+                wmParseCount++
+                WindowManagerDumpParser().parse(it).entries.first()
+            },
+            layersParser = {
+                layersParseCount++
+                TraceProcessorSession.loadPerfettoTrace(it) { session ->
+                    LayersTraceParser().parse(session).entries.first()
+                }
+            }
+        )
+
+    @Before
+    fun before() {
+        Cache.clear()
+    }
+
+    @Test
+    fun dumpsAllSectionsOnFirstSnapshot() {
+        val stats = DeviceStateSnapshotProvider.Stats()
+        val dump = provider.snapshot(setOf(TraceType.WM_DUMP), stats)
+
+        Truth.assertThat(dumps).containsExactly(TraceType.WM_DUMP, TraceType.SF_DUMP)
+        Truth.assertThat(dump.wmState.windowStates).isNotEmpty()
+        Truth.assertThat(dump.layerState.displays).isNotEmpty()
+        Truth.assertThat(stats.snapshotCount).isEqualTo(1)
+        Truth.assertThat(stats.dumpCount).isEqualTo(2)
+        Truth.assertThat(stats.parseCount).isEqualTo(2)
+    }
+
+    @Test
+    fun dumpsOnlyRequestedSections() {
+        val first = provider()
+        dumps.clear()
+
+        val second = provider.snapshot(setOf(TraceType.WM_DUMP))
+
+        Truth.assertThat(dumps).containsExactly(TraceType.WM_DUMP)
+        Truth.assertThat(second.layerState).isSameInstanceAs(first.layerState)
+    }
+
+    @Test
+    fun parsesChangedSectionsAgain() {
+        val stats = DeviceStateSnapshotProvider.Stats()
+        val first = provider.snapshot(DeviceStateSnapshotProvider.ALL_SECTIONS, stats)
+        layersDump = readAsset("layers_trace_root.perfetto-trace")
+        val second = provider.snapshot(setOf(TraceType.SF_DUMP), stats)
+
+        Truth.assertThat(wmParseCount).isEqualTo(1)
+        Truth.assertThat(layersParseCount).isEqualTo(2)
+        Truth.assertThat(second.wmState).isSameInstanceAs(first.wmState)
+        Truth.assertThat(second.layerState).isNotSameInstanceAs(first.layerState)
+        Truth.assertThat(stats.dumpCount).isEqualTo(3)
+        Truth.assertThat(stats.parseCount).isEqualTo(3)
+        Truth.assertThat(stats.skippedParseCount).isEqualTo(0)
+    }
+
+    @Test
+    fun skipsParsingIdenticalDumps() {
+        val stats = DeviceStateSnapshotProvider.Stats()
+        val first = provider.snapshot(DeviceStateSnapshotProvider.ALL_SECTIONS, stats)
+        val second = provider.snapshot(DeviceStateSnapshotProvider.ALL_SECTIONS, stats)
+
+        Truth.assertThat(wmParseCount).isEqualTo(1)
+        Truth.assertThat(layersParseCount).isEqualTo(1)
+        Truth.assertThat(second.wmState).isSameInstanceAs(first.wmState)
+        Truth.assertThat(second.layerState).isSameInstanceAs(first.layerState)
+        Truth.assertThat(stats.dumpCount).isEqualTo(4)
+        Truth.assertThat(stats.parseCount).isEqualTo(2)
+        Truth.assertThat(stats.skippedParseCount).isEqualTo(2)
+    }
+
+    @Test
+    fun declaresConditionSections() {
+        Truth.assertThat(DeviceStateCondition.sectionsOf(ConditionsFactory.isWMStateComplete()))
+            .containsExactly(TraceType.WM_DUMP)
+        Truth.assertThat(
+                DeviceStateCondition.sectionsOf(
+                    ConditionsFactory.isLayerVisible(layerId = 1).negate()
+                )
+            )
+            .containsExactly(TraceType.SF_DUMP)
+        Truth.assertThat(
+                DeviceStateCondition.sectionsOf(
+                    ConditionList(
+                        ConditionsFactory.isWMStateComplete(),
+                        ConditionsFactory.hasLayersAnimating()
+                    )
+                )
+            )
+            .containsExactly(TraceType.WM_DUMP, TraceType.SF_DUMP)
+        Truth.assertThat(DeviceStateCondition.sectionsOf(ConditionsFactory.isNavBarVisible()))
+            .containsExactly(TraceType.WM_DUMP, TraceType.SF_DUMP)
+    }
+
+    companion object {
+        @ClassRule @JvmField val ENV_CLEANUP = CleanFlickerEnvironmentRule()
+    }
+}
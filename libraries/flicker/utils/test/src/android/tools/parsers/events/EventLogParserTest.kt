@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.tools.parsers.events
+
+import android.tools.Timestamps
+import android.tools.traces.events.EventLog.Companion.MAGIC_NUMBER
+import android.tools.traces.events.FocusEvent
+import android.tools.utils.CleanFlickerEnvironmentRule
+import com.google.common.truth.Truth
+import org.junit.Assert.assertThrows
+import org.junit.ClassRule
+import org.junit.Test
+
+/** Contains [EventLogParser] tests. To run this test: `atest FlickerLibTest:EventLogParserTest` */
+class EventLogParserTest {
+    private val log =
+        """
+            $MAGIC_NUMBER
+            --------- beginning of events
+            1670000000.000000100  system  1200  1300 I wm_task_moved: [12,1,0]
+            1670000000.000000200  u0_a12  1201  1301 I input_focus: [Focus entering 111 com.android.phone/com.android.phone.settings.fdn.FdnSetting (server),reason=test]
+            1670000000.000000300  system  1202  1302 I wm_on_resume_called: [3,com.android.phone,RESUME_ACTIVITY]
+            1670000000.000000400  root    1203  1303 I sysui_multi_action: [757,803]
+
+        """
+            .trimIndent()
+            .toByteArray()
+
+    @Test
+    fun parsesAllEvents() {
+        val eventLog = EventLogParser().parse(log)
+
+        Truth.assertThat(eventLog.entries.map { it.tag })
+            .containsExactly(
+                "wm_task_moved",
+                "input_focus",
+                "wm_on_resume_called",
+                "sysui_multi_action"
+            )
+            .inOrder()
+        val firstEvent = eventLog.entries.first()
+        Truth.assertThat(firstEvent.timestamp.unixNanos).isEqualTo(1670000000000000100L)
+        Truth.assertThat(firstEvent.uid).isEqualTo("system")
+        Truth.assertThat(firstEvent.processId).isEqualTo(1200)
+        Truth.assertThat(firstEvent.threadId).isEqualTo(1300)
+        val focusEvent = eventLog.focusEvents.single()
+        Truth.assertThat(focusEvent.window)
+            .isEqualTo("111 com.android.phone/com.android.phone.settings.fdn.FdnSetting (server)")
+        Truth.assertThat(focusEvent.type).isEqualTo(FocusEvent.Type.GAINED)
+        Truth.assertThat(focusEvent.reason).isEqualTo("test")
+    }
+
+    @Test
+    fun filtersByTag() {
+        val eventLog = EventLogParser(listOf("wm_*", "input_focus")).parse(log)
+
+        Truth.assertThat(eventLog.entries.map { it.tag })
+            .containsExactly("wm_task_moved", "input_focus", "wm_on_resume_called")
+            .inOrder()
+    }
+
+    @Test
+    fun filtersByTimeWindow() {
+        val eventLog =
+            EventLogParser()
+                .parseSlice(
+                    log,
+                    from = Timestamps.from(unixNanos = 1670000000000000200L),
+                    to = Timestamps.from(unixNanos = 1670000000000000300L)
+                )
+
+        Truth.assertThat(eventLog.entries.map { it.tag })
+            .containsExactly("input_focus", "wm_on_resume_called")
+            .inOrder()
+    }
+
+    @Test
+    fun sortsSliceByTimestamp() {
+        val unsortedLog =
+            """
+                1670000000.000000300  system  1202  1302 I wm_on_resume_called: [3]
+                1670000000.000000100  system  1200  1300 I wm_task_moved: [12,1,0]
+            """
+                .trimIndent()
+                .toByteArray()
+
+        val eventLog =
+            EventLogParser()
+                .parseSlice(
+                    unsortedLog,
+                    from = Timestamps.from(unixNanos = 1670000000000000000L),
+                    to = Timestamps.from(unixNanos = 1670000000000000400L)
+                )
+
+        Truth.assertThat(eventLog.entries.map { it.tag })
+            .containsExactly("wm_task_moved", "wm_on_resume_called")
+            .inOrder()
+    }
+
+    @Test
+    fun parsesLines() {
+        val eventLog = EventLogParser().parse(log.decodeToString().lines())
+
+        Truth.assertThat(eventLog.entries).hasSize(4)
+    }
+
+    @Test
+    fun invalidLineThrows() {
+        assertThrows(IllegalArgumentException::class.java) {
+            EventLogParser().parse("not an event: []".toByteArray())
+        }
+    }
+
+    companion object {
+        @ClassRule @JvmField val ENV_CLEANUP = CleanFlickerEnvironmentRule()
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.tools.parsers.perfetto
+
+import android.tools.Cache
+import android.tools.traces.parsers.perfetto.LayersTraceParser
+import android.tools.traces.parsers.perfetto.TraceProcessorSessionPool
+import android.tools.traces.parsers.perfetto.TransactionsTraceParser
+import android.tools.utils.CleanFlickerEnvironmentRule
+import android.tools.utils.readAsset
+import com.google.common.truth.Truth
+import org.junit.After
+import org.junit.Before
+import org.junit.ClassRule
+import org.junit.Test
+
+class TraceProcessorSessionPoolTest {
+    private val pool = TraceProcessorSessionPool()
+
+    @Before
+    fun before() {
+        Cache.clear()
+        // Trace processors listen on a fixed port, stop the ones left by other tests.
+        TraceProcessorSessionPool.shared.clear()
+    }
+
+    @After
+    fun after() {
+        pool.clear()
+    }
+
+    @Test
+    fun reusesSessionForSameTrace() {
+        val trace = readAsset("transactions_trace.perfetto-trace")
+
+        val first = pool.withSession(trace) { TransactionsTraceParser().parse(it) }
+        val second = pool.withSession(trace.copyOf()) { TransactionsTraceParser().parse(it) }
+
+        Truth.assertWithMessage("Ingestions").that(pool.ingestionCount).isEqualTo(1)
+        Truth.assertWithMessage("Entries")
+            .that(second.entries.map { it.timestamp.elapsedNanos })
+            .containsExactlyElementsIn(first.entries.map { it.timestamp.elapsedNanos })
+            .inOrder()
+    }
+
+    @Test
+    fun reusesSessionForNestedLoads() {
+        val trace = readAsset("transactions_trace.perfetto-trace")
+
+        val entries =
+            pool.withSession(trace) { _ ->
+                pool.withSession(trace) { TransactionsTraceParser().parse(it) }.entries
+            }
+
+        Truth.assertWithMessage("Ingestions").that(pool.ingestionCount).isEqualTo(1)
+        Truth.assertWithMessage("Entries").that(entries).isNotEmpty()
+    }
+
+    @Test
+    fun evictsIdleSessionForDifferentTrace() {
+        pool.withSession(readAsset("transactions_trace.perfetto-trace")) {
+            TransactionsTraceParser().parse(it)
+        }
+        val layers =
+            pool.withSession(readAsset("layers_trace_emptyregion.perfetto-trace")) {
+                LayersTraceParser().parse(it)
+            }
+
+        Truth.assertWithMessage("Ingestions").that(pool.ingestionCount).isEqualTo(2)
+        Truth.assertWithMessage("Entries").that(layers.entries).isNotEmpty()
+    }
+
+    @Test
+    fun stopsEnclosingSessionForNestedLoadOfDifferentTrace() {
+        val layers =
+            pool.withSession(readAsset("transactions_trace.perfetto-trace")) { _ ->
+                pool.withSession(readAsset("layers_trace_emptyregion.perfetto-trace")) {
+                    LayersTraceParser().parse(it)
+                }
+            }
+
+        Truth.assertWithMessage("Ingestions").that(pool.ingestionCount).isEqualTo(2)
+        Truth.assertWithMessage("Entries").that(layers.entries).isNotEmpty()
+    }
+
+    @Test
+    fun reloadsTraceAfterClear() {
+        val trace = readAsset("transactions_trace.perfetto-trace")
+
+        pool.withSession(trace) { TransactionsTraceParser().parse(it) }
+        pool.clear()
+        pool.withSession(trace) { TransactionsTraceParser().parse(it) }
+
+        Truth.assertWithMessage("Ingestions").that(pool.ingestionCount).isEqualTo(2)
+    }
+
+    companion object {
+        @ClassRule @JvmField val ENV_CLEANUP = CleanFlickerEnvironmentRule()
+    }
+}
@@ -19,11 +19,14 @@ package android.tools.parsers.wm
 import android.tools.Cache
 import android.tools.traces.monitors.wm.WindowManagerTraceMonitor
 import android.tools.traces.parsers.wm.WindowManagerTraceParser
+import android.tools.traces.wm.WindowManagerState
 import android.tools.utils.CleanFlickerEnvironmentRule
 import android.tools.utils.readAsset
 import androidx.test.platform.app.InstrumentationRegistry
 import androidx.test.uiautomator.UiDevice
 import com.google.common.truth.Truth
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
 import org.junit.Before
 import org.junit.ClassRule
 import org.junit.Test
@@ -59,7 +62,61 @@ class WindowManagerTraceParserTest {
         Truth.assertThat(trace.entries).isNotEmpty()
     }
 
+    @Test
+    fun canParseStoredTraceInParallel() {
+        val data = readAsset("wm_trace_openchrome.pb")
+        val expected =
+            List(PARSE_COUNT) {
+                WindowManagerTraceParser(legacyTrace = true).parse(data).entries.map {
+                    it.contents()
+                }
+            }
+
+        val executor = Executors.newFixedThreadPool(PARSE_COUNT)
+        try {
+            val actual =
+                executor
+                    .invokeAll(
+                        List(PARSE_COUNT) {
+                            Callable {
+                                WindowManagerTraceParser(legacyTrace = true)
+                                    .parse(data)
+                                    .entries
+                                    .map { entry -> entry.contents() }
+                            }
+                        }
+                    )
+                    .map { it.get() }
+
+            Truth.assertThat(actual).isEqualTo(expected)
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    /**
+     * All the parsed values of an entry. [WindowManagerState.equals] only compares timestamps, the
+     * window containers compare their own properties and are listed in hierarchy order.
+     */
+    private fun WindowManagerState.contents(): List<Any?> =
+        listOf(
+            timestamp,
+            where,
+            policy,
+            focusedApp,
+            focusedDisplayId,
+            focusedWindow,
+            inputMethodWindowAppToken,
+            isHomeRecentsComponent,
+            isDisplayFrozen,
+            pendingActivities,
+            keyguardControllerState,
+            hashCode()
+        ) + windowContainers.toList()
+
     companion object {
+        private const val PARSE_COUNT = 4
+
         @ClassRule @JvmField val ENV_CLEANUP = CleanFlickerEnvironmentRule()
     }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.tools.traces.component
+
+import android.tools.Cache
+import android.tools.utils.CleanFlickerEnvironmentRule
+import android.tools.utils.getLayerTraceReaderFromAsset
+import com.google.common.truth.Truth
+import org.junit.Before
+import org.junit.ClassRule
+import org.junit.Test
+
+/** Contains [NameIndex] tests. To run this test: `atest FlickerLibTest:NameIndexTest` */
+class NameIndexTest {
+    @Before
+    fun before() {
+        Cache.clear()
+    }
+
+    @Test
+    fun matchesSameAsContains() {
+        val names =
+            listOf(
+                "StatusBar#0",
+                "com.android.launcher3/com.android.launcher3.Launcher#12",
+                "Splash Screen com.example#3",
+                "aaaa",
+                ""
+            )
+        val index = NameIndex(names)
+        val values =
+            listOf(
+                "",
+                "S",
+                "#0",
+                "StatusBar",
+                "Bar#",
+                "Launcher#12",
+                "Splash Screen",
+                "aaa",
+                "aaaaa",
+                "NavigationBar0",
+                "usBarStat"
+            )
+        for (value in values) {
+            Truth.assertWithMessage(value)
+                .that(index.anyContains(value))
+                .isEqualTo(names.any { it.contains(value) })
+        }
+    }
+
+    @Test
+    fun emptyIndexMatchesNothing() {
+        val index = NameIndex(emptyList())
+        Truth.assertThat(index.anyContains("")).isFalse()
+        Truth.assertThat(index.anyContains("StatusBar")).isFalse()
+    }
+
+    @Test
+    fun layerMatchesAnyOfSameAsScan() {
+        val reader = getLayerTraceReaderFromAsset("layers_trace_launch_split_screen.perfetto-trace")
+        val trace = reader.readLayersTrace() ?: error("Unable to read layers trace")
+        val layerNames = trace.entries.flatMap { entry -> entry.flattenedLayers.map { it.name } }
+        val matchers =
+            KNOWN_MATCHERS +
+                layerNames.distinct().map { ComponentNameMatcher(it.substringBefore('#')) } +
+                ComponentNameMatcher("com.example", "com.example.NotInTrace")
+
+        val expected =
+            trace.entries.map { entry ->
+                matchers.map { it.layerMatchesAnyOf(entry.flattenedLayers) }
+            }
+        val actual = trace.entries.map { entry -> matchers.map { it.layerMatchesAnyOf(entry) } }
+
+        Truth.assertThat(actual).isEqualTo(expected)
+    }
+
+    companion object {
+        private val KNOWN_MATCHERS =
+            listOf(
+                ComponentNameMatcher.NAV_BAR,
+                ComponentNameMatcher.TASK_BAR,
+                ComponentNameMatcher.STATUS_BAR,
+                ComponentNameMatcher.ROTATION,
+                ComponentNameMatcher.IME,
+                ComponentNameMatcher.SPLASH_SCREEN,
+                ComponentNameMatcher.SNAPSHOT,
+                ComponentNameMatcher.LETTERBOX,
+                ComponentNameMatcher.LAUNCHER,
+                ComponentNameMatcher.SPLIT_DIVIDER
+            )
+
+        @ClassRule @JvmField val ENV_CLEANUP = CleanFlickerEnvironmentRule()
+    }
+}
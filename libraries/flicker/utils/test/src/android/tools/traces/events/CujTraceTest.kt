@@ -146,6 +146,57 @@ class CujTraceTest {
         Truth.assertThat(trace.entries).isEmpty()
     }
 
+    @Test
+    fun canHandleNestedAndOverlappingCujs() {
+        val trace =
+            CujTrace.from(
+                listOf(
+                    createCujEvent(1, CujType.CUJ_LAUNCHER_ALL_APPS_SCROLL, JANK_CUJ_BEGIN),
+                    createCujEvent(2, CujType.CUJ_LAUNCHER_ALL_APPS_SCROLL, JANK_CUJ_BEGIN),
+                    createCujEvent(3, CujType.CUJ_LAUNCHER_APP_CLOSE_TO_HOME, JANK_CUJ_BEGIN),
+                    createCujEvent(4, CujType.CUJ_LAUNCHER_ALL_APPS_SCROLL, JANK_CUJ_END),
+                    createCujEvent(5, CujType.CUJ_LAUNCHER_ALL_APPS_SCROLL, JANK_CUJ_BEGIN),
+                    createCujEvent(5, CujType.CUJ_LAUNCHER_APP_CLOSE_TO_HOME, JANK_CUJ_CANCEL),
+                    createCujEvent(6, CujType.CUJ_LAUNCHER_ALL_APPS_SCROLL, JANK_CUJ_CANCEL),
+                    createCujEvent(7, CujType.CUJ_LAUNCHER_ALL_APPS_SCROLL, JANK_CUJ_END),
+                )
+            )
+
+        Truth.assertThat(trace.entries.map { it.toTestString() })
+            .containsExactly(
+                "CUJ_LAUNCHER_ALL_APPS_SCROLL 1-4",
+                "CUJ_LAUNCHER_ALL_APPS_SCROLL 2-4",
+                "CUJ_LAUNCHER_APP_CLOSE_TO_HOME 3-5 canceled",
+                "CUJ_LAUNCHER_ALL_APPS_SCROLL 5-6 canceled",
+            )
+            .inOrder()
+    }
+
+    @Test
+    fun canPairLongTraces() {
+        val cujTypes = CujType.values().take(CUJ_TYPES)
+        val events =
+            List(TRACE_SIZE) {
+                createCujEvent(
+                    it.toLong(),
+                    cujTypes[it / 2 % cujTypes.size],
+                    if (it % 2 == 0) JANK_CUJ_BEGIN else JANK_CUJ_END
+                )
+            }
+
+        Truth.assertThat(CujTrace.from(events.reversed()).entries.map { it.toTestString() })
+            .containsExactlyElementsIn(
+                List(TRACE_SIZE / 2) {
+                    "${cujTypes[it % cujTypes.size]} ${2 * it}-${2 * it + 1}"
+                }
+            )
+            .inOrder()
+    }
+
+    private fun Cuj.toTestString() =
+        "$cuj ${startTimestamp.unixNanos}-${endTimestamp.unixNanos}" +
+            if (canceled) " canceled" else ""
+
     private fun createCujEvent(
         timestamp: Long,
         cuj: CujType,
@@ -164,6 +215,12 @@ class CujTraceTest {
     }
 
     companion object {
+        private const val JANK_CUJ_BEGIN = CujEvent.JANK_CUJ_BEGIN_TAG
+        private const val JANK_CUJ_END = CujEvent.JANK_CUJ_END_TAG
+        private const val JANK_CUJ_CANCEL = CujEvent.JANK_CUJ_CANCEL_TAG
+        private const val CUJ_TYPES = 20
+        private const val TRACE_SIZE = 200
+
         @ClassRule @JvmField val ENV_CLEANUP = CleanFlickerEnvironmentRule()
     }
 }
@@ -16,13 +16,16 @@
 package android.host.test.composer;
 
 import java.lang.AssertionError;
-import java.util.Collection;
-import java.util.Collections;
+import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.RandomAccess;
 
 /**
  * A {@link Compose} function base class for repeating objects a configurable number of times.
+ *
+ * <p>The repeated objects are not copied: the returned list computes each element from its index,
+ * so that it takes the same memory regardless of the number of iterations.
  */
 public abstract class IterateBase<T, U> implements Compose<T, U> {
     protected static final String ITERATIONS_OPTION_NAME = "iterations";
@@ -50,15 +53,8 @@ public abstract class IterateBase<T, U> implements Compose<T, U> {
         OrderOptions order = getOrdersArgument(args);
         switch (order) {
             case CYCLIC:
-                return Collections.nCopies(iterations, input)
-                        .stream()
-                        .flatMap(Collection::stream)
-                        .collect(Collectors.toList());
             case SEQUENTIAL:
-                return input.stream()
-                        .map(u -> Collections.nCopies(iterations, u))
-                        .flatMap(Collection::stream)
-                        .collect(Collectors.toList());
+                return new IteratedList<>(input, iterations, order);
         }
         // We should never get here as the switch statement should exhaust the order options.
         throw new AssertionError(
@@ -80,4 +76,39 @@ public abstract class IterateBase<T, U> implements Compose<T, U> {
     public void setOptionName(String name) {
         mOptionName = name;
     }
+
+    /** A read-only list of {@code iterations} repetitions of the input, in the given order. */
+    private static class IteratedList<U> extends AbstractList<U> implements RandomAccess {
+        private final List<U> mInput;
+        private final int mIterations;
+        private final OrderOptions mOrder;
+        private final int mSize;
+
+        IteratedList(List<U> input, int iterations, OrderOptions order) {
+            if (iterations < 0) {
+                throw new IllegalArgumentException("List length = " + iterations);
+            }
+            // Copy the input, which is small, so that later changes to it are not reflected.
+            mInput = new ArrayList<>(input);
+            mIterations = iterations;
+            mOrder = order;
+            mSize = Math.multiplyExact(mInput.size(), iterations);
+        }
+
+        @Override
+        public U get(int index) {
+            if (index < 0 || index >= mSize) {
+                throw new IndexOutOfBoundsException(
+                        String.format("Index: %d, Size: %d", index, mSize));
+            }
+            return mOrder == OrderOptions.CYCLIC
+                    ? mInput.get(index % mInput.size())
+                    : mInput.get(index / mIterations);
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+    }
 }
@@ -15,12 +15,16 @@
  */
 package android.host.test.composer;
 
-import java.util.Collections;
+import java.util.AbstractList;
 import java.util.List;
 import java.util.Random;
+import java.util.RandomAccess;
 
 /**
  * A {@link Compose} function base class for shuffling all objects with an optional seed.
+ *
+ * <p>The order is the one {@link java.util.Collections#shuffle(List, Random)} gives for the same
+ * seed, but the input is neither copied nor modified: only the shuffled indices are stored.
  */
 public abstract class ShuffleBase<T, U> implements Compose<T, U> {
     protected static final String SEED_OPTION_NAME = "seed";
@@ -42,7 +46,7 @@ public abstract class ShuffleBase<T, U> implements Compose<T, U> {
         boolean shuffle = getShuffleArgument(args);
         if (shuffle) {
             long seed = getSeedArgument(args);
-            Collections.shuffle(input, new Random(seed));
+            return new ShuffledList<>(input, new Random(seed));
         }
         return input;
     }
@@ -52,4 +56,35 @@ public abstract class ShuffleBase<T, U> implements Compose<T, U> {
 
     /** Returns the shuffle seed value from {@code args}. */
     protected abstract long getSeedArgument(T args);
+
+    /** A read-only view of the input, in shuffled order. */
+    private static class ShuffledList<U> extends AbstractList<U> implements RandomAccess {
+        private final List<U> mInput;
+        private final int[] mIndices;
+
+        ShuffledList(List<U> input, Random random) {
+            mInput = input;
+            mIndices = new int[input.size()];
+            for (int i = 0; i < mIndices.length; i++) {
+                mIndices[i] = i;
+            }
+            // Same swaps, and calls to random, as Collections#shuffle.
+            for (int i = mIndices.length; i > 1; i--) {
+                int j = random.nextInt(i);
+                int index = mIndices[i - 1];
+                mIndices[i - 1] = mIndices[j];
+                mIndices[j] = index;
+            }
+        }
+
+        @Override
+        public U get(int index) {
+            return mInput.get(mIndices[index]);
+        }
+
+        @Override
+        public int size() {
+            return mIndices.length;
+        }
+    }
 }
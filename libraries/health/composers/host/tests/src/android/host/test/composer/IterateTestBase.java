@@ -18,6 +18,8 @@ package android.host.test.composer;
 import static com.google.common.truth.Truth.assertThat;
 //import static org.junit.Assert.assertThrows;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
@@ -44,6 +46,7 @@ public abstract class IterateTestBase<T> {
     protected static final ImmutableList<Integer> SIMPLE_INPUT = ImmutableList.copyOf(
             IntStream.range(0, NUM_TESTS).boxed().collect(Collectors.toList()));
     protected static final int EXPECTED_ITERATIONS = 25;
+    protected static final int LARGE_ITERATIONS = 100_000_000;
 
     @Rule
     public ExpectedException illegalArgumentExceptionThrown = ExpectedException.none();
@@ -131,6 +134,68 @@ public abstract class IterateTestBase<T> {
         assertThat(respected).isTrue();
     }
 
+    /** Unit test that both orders are the same as repeating copies of the input. */
+    @Test
+    public void testOrdersSameAsCopies() {
+        List<Integer> cyclic =
+                getIterate()
+                        .apply(
+                                getArgumentsBuilder()
+                                        .setIteration(EXPECTED_ITERATIONS)
+                                        .setOrder(ORDER_VAL_CYCLIC)
+                                        .build(),
+                                SIMPLE_INPUT);
+        assertThat(cyclic)
+                .containsExactlyElementsIn(
+                        Collections.nCopies(EXPECTED_ITERATIONS, SIMPLE_INPUT)
+                                .stream()
+                                .flatMap(Collection::stream)
+                                .collect(Collectors.toList()))
+                .inOrder();
+        List<Integer> sequential =
+                getIterate()
+                        .apply(
+                                getArgumentsBuilder()
+                                        .setIteration(EXPECTED_ITERATIONS)
+                                        .setOrder(ORDER_VAL_SEQUENTIAL)
+                                        .build(),
+                                SIMPLE_INPUT);
+        assertThat(sequential)
+                .containsExactlyElementsIn(
+                        SIMPLE_INPUT.stream()
+                                .map(u -> Collections.nCopies(EXPECTED_ITERATIONS, u))
+                                .flatMap(Collection::stream)
+                                .collect(Collectors.toList()))
+                .inOrder();
+    }
+
+    /** Unit test that many iterations are computed lazily, without allocating all of them. */
+    @Test
+    public void testManyIterationsAreLazy() {
+        List<Integer> cyclic =
+                getIterate()
+                        .apply(
+                                getArgumentsBuilder()
+                                        .setIteration(LARGE_ITERATIONS)
+                                        .setOrder(ORDER_VAL_CYCLIC)
+                                        .build(),
+                                SIMPLE_INPUT);
+        assertThat(cyclic).hasSize(NUM_TESTS * LARGE_ITERATIONS);
+        assertThat(cyclic.get(NUM_TESTS * LARGE_ITERATIONS - 1)).isEqualTo(NUM_TESTS - 1);
+        assertThat(cyclic.get(NUM_TESTS * LARGE_ITERATIONS / 2 + 1)).isEqualTo(1);
+        List<Integer> sequential =
+                getIterate()
+                        .apply(
+                                getArgumentsBuilder()
+                                        .setIteration(LARGE_ITERATIONS)
+                                        .setOrder(ORDER_VAL_SEQUENTIAL)
+                                        .build(),
+                                SIMPLE_INPUT);
+        assertThat(sequential).hasSize(NUM_TESTS * LARGE_ITERATIONS);
+        assertThat(sequential.get(LARGE_ITERATIONS - 1)).isEqualTo(0);
+        assertThat(sequential.get(LARGE_ITERATIONS)).isEqualTo(1);
+    }
+
     /**
      * Unit test that an exception is thrown for an invalid order argument.
      */
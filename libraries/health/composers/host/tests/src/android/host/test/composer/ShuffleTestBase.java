@@ -46,6 +46,18 @@ public abstract class ShuffleTestBase<T> {
         assertThat(input).isEqualTo(output);
     }
 
+    /** Unit test that shuffling a large input gives the same order as shuffling it in place. */
+    @Test
+    public void testShuffleLargeInputSameOrder() {
+        long seedValue = new Random().nextLong();
+        List<Integer> input = IntStream.range(0, 100_000).boxed().collect(Collectors.toList());
+        List<Integer> output = getShuffle().apply(getArguments(true, seedValue), input);
+        // The input is left as is.
+        assertThat(input).isInOrder();
+        Collections.shuffle(input, new Random(seedValue));
+        assertThat(output).containsExactlyElementsIn(input).inOrder();
+    }
+
     protected abstract ShuffleBase<T, Integer> getShuffle();
 
     protected abstract T getArguments(boolean shuffle, long seed);
@@ -22,25 +22,50 @@ import androidx.annotation.VisibleForTesting;
 
 import org.junit.runner.Description;
 
-/** Contains a method for filtering specific tests to run. Expects the format class#method. */
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Contains a method for filtering specific tests to run. Expects a comma separated list of
+ * class#method, class#prefix* or class entries, where the last two select all the methods starting
+ * with prefix, or all the methods of the class.
+ */
 public final class TestFilter {
 
     private static final String LOG_TAG = TestFilter.class.getSimpleName();
     @VisibleForTesting static final String OPTION_NAME = "filter-tests";
+    private static final String WILDCARD = "*";
 
-    private TestFilter() {}
+    // Filter used when the argument is unspecified, it matches all tests.
+    private static final TestFilter UNSPECIFIED = new TestFilter(null);
 
-    public static boolean isFilteredOrUnspecified(Bundle arguments, Description description) {
-        String testFilters = arguments.getString(OPTION_NAME);
-        // If the argument is unspecified, always return true.
-        if (testFilters == null) {
-            return true;
+    // Last parsed filter, the same argument is checked for each test of a run.
+    private static volatile TestFilter sLastFilter;
+
+    private final String mFilterArgument;
+    // Display names, as method(class), of the tests selected one by one.
+    private final Set<String> mDisplayNames = new HashSet<>();
+    // Classes whose tests are all selected.
+    private final Set<String> mClassNames = new HashSet<>();
+    // Method name prefixes of the tests selected, by class.
+    private final Map<String, List<String>> mMethodPrefixes = new HashMap<>();
+
+    private TestFilter(String filterArgument) {
+        mFilterArgument = filterArgument;
+        if (filterArgument == null) {
+            return;
         }
 
-        String displayName = description.getDisplayName();
+        for (String testFilter : filterArgument.split(",")) {
+            if (!testFilter.isEmpty() && !testFilter.contains("#")) {
+                mClassNames.add(testFilter);
+                continue;
+            }
 
-        // Test the display name against all filter arguments.
-        for (String testFilter : testFilters.split(",")) {
             String[] filterComponents = testFilter.split("#");
             if (filterComponents.length != 2) {
                 Log.e(
@@ -51,15 +76,66 @@ public final class TestFilter {
                 continue;
             }
 
-            String displayNameFilter =
-                    String.format(
-                            "%s(%s)",
-                            // method
-                            filterComponents[1],
-                            // class
-                            filterComponents[0]);
-            if (displayNameFilter.equals(displayName)) {
-                return true;
+            String className = filterComponents[0];
+            String methodName = filterComponents[1];
+            if (methodName.equals(WILDCARD)) {
+                mClassNames.add(className);
+            } else if (methodName.endsWith(WILDCARD)) {
+                mMethodPrefixes
+                        .computeIfAbsent(className, k -> new ArrayList<>())
+                        .add(methodName.substring(0, methodName.length() - WILDCARD.length()));
+            } else {
+                mDisplayNames.add(String.format("%s(%s)", methodName, className));
+            }
+        }
+    }
+
+    /**
+     * Returns the filter for the filter-tests argument in {@code arguments}. The argument is only
+     * parsed again when it changes, so that checking all the tests of a run is linear.
+     */
+    public static TestFilter fromArguments(Bundle arguments) {
+        String testFilters = arguments.getString(OPTION_NAME);
+        // If the argument is unspecified, always match.
+        if (testFilters == null) {
+            return UNSPECIFIED;
+        }
+
+        TestFilter filter = sLastFilter;
+        if (filter == null || !testFilters.equals(filter.mFilterArgument)) {
+            filter = new TestFilter(testFilters);
+            sLastFilter = filter;
+        }
+        return filter;
+    }
+
+    public static boolean isFilteredOrUnspecified(Bundle arguments, Description description) {
+        return fromArguments(arguments).matches(description);
+    }
+
+    /** Returns whether the test is selected by this filter, or if the filter is unspecified. */
+    public boolean matches(Description description) {
+        if (mFilterArgument == null) {
+            return true;
+        }
+        if (mDisplayNames.contains(description.getDisplayName())) {
+            return true;
+        }
+        if (mClassNames.isEmpty() && mMethodPrefixes.isEmpty()) {
+            return false;
+        }
+
+        String className = description.getClassName();
+        if (mClassNames.contains(className)) {
+            return true;
+        }
+        List<String> methodPrefixes = mMethodPrefixes.get(className);
+        String methodName = description.getMethodName();
+        if (methodPrefixes != null && methodName != null) {
+            for (String methodPrefix : methodPrefixes) {
+                if (methodName.startsWith(methodPrefix)) {
+                    return true;
+                }
             }
         }
         // If the argument is specified and no matches, return false.
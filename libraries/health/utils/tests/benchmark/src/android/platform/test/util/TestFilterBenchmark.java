@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.platform.test.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.os.Bundle;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark of {@link TestFilter} on a large synthetic suite with one filter per few tests, against
+ * splitting the filter argument again for each test. To run it: {@code atest
+ * HealthTestingUtilsBenchmark}
+ */
+@RunWith(JUnit4.class)
+public final class TestFilterBenchmark {
+    private static final String LOG_TAG = TestFilterBenchmark.class.getSimpleName();
+
+    // Size of the synthetic suite
+    private static final int CLASS_COUNT = 200;
+    private static final int METHODS_PER_CLASS = 10;
+
+    @Test
+    public void benchmarkLargeSuite() {
+        List<Description> descriptions = new ArrayList<>();
+        StringBuilder filterArg = new StringBuilder();
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            for (int j = 0; j < METHODS_PER_CLASS; j++) {
+                String className = "android.platform.test.Class" + i;
+                String methodName = "testMethod" + j;
+                descriptions.add(Description.createTestDescription(className, methodName));
+                if ((i + j) % 4 == 0) {
+                    filterArg.append(className).append('#').append(methodName).append(',');
+                }
+            }
+        }
+        Bundle arguments = new Bundle();
+        arguments.putString(TestFilter.OPTION_NAME, filterArg.toString());
+
+        long start = System.nanoTime();
+        List<Boolean> expected = new ArrayList<>();
+        for (Description description : descriptions) {
+            expected.add(isFilteredBySplitting(filterArg.toString(), description));
+        }
+        long splittingNs = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<Boolean> actual = new ArrayList<>();
+        for (Description description : descriptions) {
+            actual.add(TestFilter.isFilteredOrUnspecified(arguments, description));
+        }
+        long indexedNs = System.nanoTime() - start;
+
+        assertThat(actual).isEqualTo(expected);
+        Log.i(
+                LOG_TAG,
+                String.format(
+                        "Filtered %d tests: splitting=%dms, indexed=%dms",
+                        descriptions.size(), splittingNs / 1_000_000, indexedNs / 1_000_000));
+    }
+
+    /** Filters the way {@link TestFilter} previously did, for each test. */
+    private static boolean isFilteredBySplitting(String testFilters, Description description) {
+        for (String testFilter : testFilters.split(",")) {
+            String[] filterComponents = testFilter.split("#");
+            if (filterComponents.length == 2
+                    && String.format("%s(%s)", filterComponents[1], filterComponents[0])
+                            .equals(description.getDisplayName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -71,6 +71,63 @@ public final class TestFilterTest {
                 .isFalse();
     }
 
+    @Test
+    public void testFilters_class() {
+        Bundle arguments = buildArguments("testClassA");
+        assertThat(TestFilter.isFilteredOrUnspecified(arguments, DESCRIPTION1)).isTrue();
+        assertThat(TestFilter.isFilteredOrUnspecified(arguments, DESCRIPTION2)).isFalse();
+    }
+
+    @Test
+    public void testFilters_wildcard() {
+        Bundle arguments = buildArguments("testClassA#*,testClassB#meth*");
+        assertThat(TestFilter.isFilteredOrUnspecified(arguments, DESCRIPTION1)).isTrue();
+        assertThat(TestFilter.isFilteredOrUnspecified(arguments, DESCRIPTION2)).isTrue();
+        assertThat(
+                        TestFilter.isFilteredOrUnspecified(
+                                arguments,
+                                Description.createTestDescription("testClassB", "other")))
+                .isFalse();
+        assertThat(
+                        TestFilter.isFilteredOrUnspecified(
+                                arguments,
+                                Description.createTestDescription("testClassC", "method1")))
+                .isFalse();
+    }
+
+    @Test
+    public void testFromArguments_reusesParsedFilter() {
+        Bundle arguments = buildArguments("testClassA#method1");
+        TestFilter filter = TestFilter.fromArguments(arguments);
+        assertThat(TestFilter.fromArguments(arguments)).isSameInstanceAs(filter);
+        TestFilter otherFilter = TestFilter.fromArguments(buildArguments("testClassB#method2"));
+        assertThat(otherFilter).isNotSameInstanceAs(filter);
+        assertThat(otherFilter.matches(DESCRIPTION2)).isTrue();
+        assertThat(filter.matches(DESCRIPTION2)).isFalse();
+    }
+
+    @Test
+    public void testFilters_manyTests() {
+        StringBuilder filterArg = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 4; j++) {
+                if ((i + j) % 2 == 0) {
+                    filterArg.append("testClass" + i + "#method" + j + ",");
+                }
+            }
+        }
+        Bundle arguments = buildArguments(filterArg.toString());
+
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 4; j++) {
+                Description description =
+                        Description.createTestDescription("testClass" + i, "method" + j);
+                assertThat(TestFilter.isFilteredOrUnspecified(arguments, description))
+                        .isEqualTo((i + j) % 2 == 0);
+            }
+        }
+    }
+
     private Bundle buildArguments(String testFilterArg) {
         Bundle args = new Bundle();
         args.putString(TestFilter.OPTION_NAME, testFilterArg);
@@ -29,6 +29,9 @@ import java.util.Queue;
 
 /**
  * Useful test utilities for metrics tests.
+ *
+ * <p>Assertions on a {@link MetricsReader} read the whole metrics log each time. Tests making many
+ * assertions can read it once into a {@link MetricsSnapshot} and assert on the snapshot instead.
  */
 public class MetricsAsserts {
 
@@ -49,6 +52,13 @@ public class MetricsAsserts {
         assertTrue(message, !logs.isEmpty());
     }
 
+    /**
+     * Assert unless there is a log with the matching category and with ACTION type.
+     */
+    public static void assertHasActionLog(String message, MetricsSnapshot snapshot, int view) {
+        assertHasLog(message, snapshot, new LogMaker(view).setType(MetricsEvent.TYPE_ACTION));
+    }
+
     /**
      * Assert unless there is a log with the matching category and with visibility type.
      */
@@ -69,6 +79,16 @@ public class MetricsAsserts {
         assertTrue(message, !logs.isEmpty());
     }
 
+    /**
+     * Assert unless there is a log with the matching category and with visibility type.
+     */
+    public static void assertHasVisibilityLog(String message, MetricsSnapshot snapshot,
+            int view, boolean visible) {
+        assertHasLog(message, snapshot,
+                new LogMaker(view)
+                        .setType(visible ? MetricsEvent.TYPE_OPEN : MetricsEvent.TYPE_CLOSE));
+    }
+
     /**
      * @returns logs that have at least all the matching fields in the template.
      */
@@ -94,6 +114,13 @@ public class MetricsAsserts {
         return logs;
     }
 
+    /**
+     * @returns logs that have at least all the matching fields in the template.
+     */
+    public static Queue<LogMaker> findMatchingLogs(MetricsSnapshot snapshot, LogMaker template) {
+        return snapshot.findMatchingLogs(template);
+    }
+
     /**
      * Assert unless there is at least one  log that matches the template.
      */
@@ -109,6 +136,13 @@ public class MetricsAsserts {
         assertTrue(message, !findMatchingLogs(queue, expected).isEmpty());
     }
 
+    /**
+     * Assert unless there is at least one  log that matches the template.
+     */
+    public static void assertHasLog(String message, MetricsSnapshot snapshot, LogMaker expected) {
+        assertTrue(message, snapshot.hasMatchingLog(expected));
+    }
+
     private static class ReaderQueue implements Queue<LogMaker> {
 
         private final MetricsReader mMetricsReader;
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.test.metricshelper;
+
+import android.metrics.LogMaker;
+import android.metrics.MetricsReader;
+
+import com.android.internal.logging.nano.MetricsProto.MetricsEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Logs read from a {@link MetricsReader}, indexed by category and type, so that many assertions
+ * can be made without reading the whole metrics log for each of them.
+ *
+ * <p>{@link #refresh} adds the logs written since the previous read.
+ */
+public class MetricsSnapshot {
+
+    private final MetricsReader mReader;
+
+    // All logs, in log order.
+    private final List<LogMaker> mLogs = new ArrayList<>();
+    // Key: category, or null for logs without one.
+    private final Map<Object, List<LogMaker>> mLogsByCategory = new HashMap<>();
+    // Key: category, then type, or null for logs without one.
+    private final Map<Object, Map<Object, List<LogMaker>>> mLogsByCategoryAndType =
+            new HashMap<>();
+
+    // Timestamp of the newest log, and number of logs read with that timestamp.
+    private long mNewestTimestamp;
+    private int mNewestTimestampCount;
+
+    /**
+     * Reads all the logs available from {@code reader}.
+     */
+    public MetricsSnapshot(MetricsReader reader) {
+        mReader = reader;
+        read(0);
+    }
+
+    /**
+     * Adds the logs written since the previous read.
+     *
+     * @return this snapshot.
+     */
+    public MetricsSnapshot refresh() {
+        read(mNewestTimestamp);
+        return this;
+    }
+
+    /**
+     * @returns logs that have at least all the matching fields in the template, most recent first.
+     */
+    public Queue<LogMaker> findMatchingLogs(LogMaker template) {
+        LinkedList<LogMaker> logs = new LinkedList<>();
+        if (template == null) {
+            return logs;
+        }
+        for (LogMaker log : getCandidates(template)) {
+            if (template.isSubsetOf(log)) {
+                logs.push(log);
+            }
+        }
+        return logs;
+    }
+
+    /**
+     * @returns whether any log has at least all the matching fields in the template.
+     */
+    public boolean hasMatchingLog(LogMaker template) {
+        if (template == null) {
+            return false;
+        }
+        for (LogMaker log : getCandidates(template)) {
+            if (template.isSubsetOf(log)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @returns the number of logs read.
+     */
+    public int size() {
+        return mLogs.size();
+    }
+
+    /**
+     * Returns the logs that can match {@code template}, in log order: the ones with the same
+     * category and type as the template, when it has them.
+     */
+    private List<LogMaker> getCandidates(LogMaker template) {
+        Object category = template.getTaggedData(MetricsEvent.RESERVED_FOR_LOGBUILDER_CATEGORY);
+        if (category == null) {
+            return mLogs;
+        }
+        Object type = template.getTaggedData(MetricsEvent.RESERVED_FOR_LOGBUILDER_TYPE);
+        if (type == null) {
+            return mLogsByCategory.getOrDefault(category, Collections.emptyList());
+        }
+        Map<Object, List<LogMaker>> logsByType = mLogsByCategoryAndType.get(category);
+        if (logsByType == null) {
+            return Collections.emptyList();
+        }
+        return logsByType.getOrDefault(type, Collections.emptyList());
+    }
+
+    /**
+     * Reads the logs from {@code horizonMs}, skipping the ones already read: older ones, and the
+     * first ones with the newest timestamp already read, as logs are read in order.
+     */
+    private void read(long horizonMs) {
+        final long newestTimestamp = mNewestTimestamp;
+        final int newestTimestampCount = mNewestTimestampCount;
+        int skippedNewest = 0;
+        mReader.read(horizonMs);
+        while (mReader.hasNext()) {
+            LogMaker log = mReader.next();
+            long timestamp = log.getTimestamp();
+            if (timestamp < newestTimestamp) {
+                continue;
+            }
+            if (timestamp == newestTimestamp && skippedNewest < newestTimestampCount) {
+                skippedNewest++;
+                continue;
+            }
+            add(log);
+        }
+    }
+
+    private void add(LogMaker log) {
+        long timestamp = log.getTimestamp();
+        if (timestamp > mNewestTimestamp) {
+            mNewestTimestamp = timestamp;
+            mNewestTimestampCount = 0;
+        }
+        mNewestTimestampCount++;
+
+        Object category = log.getTaggedData(MetricsEvent.RESERVED_FOR_LOGBUILDER_CATEGORY);
+        Object type = log.getTaggedData(MetricsEvent.RESERVED_FOR_LOGBUILDER_TYPE);
+        mLogs.add(log);
+        mLogsByCategory.computeIfAbsent(category, k -> new ArrayList<>()).add(log);
+        mLogsByCategoryAndType
+                .computeIfAbsent(category, k -> new HashMap<>())
+                .computeIfAbsent(type, k -> new ArrayList<>())
+                .add(log);
+    }
+}
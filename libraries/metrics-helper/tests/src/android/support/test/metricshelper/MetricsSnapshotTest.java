@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.support.test.metricshelper;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.metrics.LogMaker;
+import android.metrics.MetricsReader;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.internal.logging.nano.MetricsProto.MetricsEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class MetricsSnapshotTest {
+    @Mock MetricsReader mReader;
+
+    // Logs returned by each call to read, in order.
+    private final LinkedList<List<LogMaker>> mReads = new LinkedList<>();
+    private Iterator<LogMaker> mSession;
+
+    private LogMaker a;
+    private LogMaker b;
+    private LogMaker c;
+    private LogMaker d;
+
+    private int mActionView = MetricsEvent.ACTION_WIFI_ON;
+    private int mOpenView = MetricsEvent.MAIN_SETTINGS;
+    private int mCloseView = MetricsEvent.NOTIFICATION_PANEL;
+    private int mSubtype = 4;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+
+        a = new LogMaker(MetricsEvent.SCREEN)
+                .setType(MetricsEvent.TYPE_OPEN)
+                .setTimestamp(1000);
+        b = new LogMaker(mOpenView)
+                .setType(MetricsEvent.TYPE_OPEN)
+                .setTimestamp(2000);
+        c = new LogMaker(mActionView)
+                .setType(MetricsEvent.TYPE_ACTION)
+                .setSubtype(mSubtype)
+                .setTimestamp(3000);
+        d = new LogMaker(mCloseView)
+                .setType(MetricsEvent.TYPE_CLOSE)
+                .setTimestamp(3000);
+
+        doAnswer(invocation -> {
+            mSession = mReads.poll().iterator();
+            return null;
+        }).when(mReader).read(anyLong());
+        when(mReader.hasNext()).thenAnswer(invocation -> mSession.hasNext());
+        when(mReader.next()).thenAnswer(invocation -> mSession.next());
+    }
+
+    @Test
+    public void testAsserts() {
+        mReads.add(Arrays.asList(a, b, c, d));
+        MetricsSnapshot snapshot = new MetricsSnapshot(mReader);
+
+        MetricsAsserts.assertHasActionLog("foo", snapshot, mActionView);
+        MetricsAsserts.assertHasVisibilityLog("foo", snapshot, mOpenView, true);
+        MetricsAsserts.assertHasVisibilityLog("foo", snapshot, mCloseView, false);
+        MetricsAsserts.assertHasLog("foo", snapshot, new LogMaker(mActionView));
+        MetricsAsserts.assertHasLog("foo", snapshot,
+                new LogMaker(mActionView)
+                        .setType(MetricsEvent.TYPE_ACTION)
+                        .setSubtype(mSubtype));
+        try {
+            MetricsAsserts.assertHasActionLog("bar", snapshot, mOpenView);
+            fail("Should have thrown an exception.");
+        } catch (AssertionError e) {
+            assertEquals("bar", e.getMessage());
+        }
+        assertFalse(snapshot.hasMatchingLog(
+                new LogMaker(mActionView)
+                        .setType(MetricsEvent.TYPE_ACTION)
+                        .setSubtype(mSubtype + 1)));
+        assertFalse(snapshot.hasMatchingLog(null));
+    }
+
+    @Test
+    public void testRefreshAddsNewLogsOnly() {
+        mReads.add(Arrays.asList(a, b, c));
+        // Logs with the timestamp of the newest log may be read again.
+        mReads.add(Arrays.asList(c, d));
+        MetricsSnapshot snapshot = new MetricsSnapshot(mReader);
+        assertEquals(3, snapshot.size());
+        assertFalse(snapshot.hasMatchingLog(new LogMaker(mCloseView)));
+
+        snapshot.refresh();
+
+        verify(mReader).read(3000);
+        assertEquals(4, snapshot.size());
+        assertEquals(1, snapshot.findMatchingLogs(new LogMaker(mActionView)).size());
+        assertTrue(snapshot.hasMatchingLog(new LogMaker(mCloseView)));
+    }
+
+    /** Test the snapshot finds the same logs as reading the log for each template. */
+    @Test
+    public void testSameAsReadingEachTime() {
+        Random random = new Random(0);
+        List<LogMaker> logs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            logs.add(new LogMaker(random.nextInt(10))
+                    .setType(random.nextInt(5))
+                    .setSubtype(random.nextInt(3))
+                    .setTimestamp(i));
+        }
+        List<LogMaker> templates = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            LogMaker template = new LogMaker(random.nextInt(12));
+            if (random.nextBoolean()) template.setType(random.nextInt(5));
+            if (random.nextBoolean()) template.setSubtype(random.nextInt(3));
+            templates.add(template);
+        }
+
+        mReads.add(logs);
+        MetricsSnapshot snapshot = new MetricsSnapshot(mReader);
+        for (LogMaker template : templates) {
+            mReads.add(logs);
+            assertEquals(
+                    new ArrayList<>(MetricsAsserts.findMatchingLogs(mReader, template)),
+                    new ArrayList<>(MetricsAsserts.findMatchingLogs(snapshot, template)));
+        }
+    }
+}
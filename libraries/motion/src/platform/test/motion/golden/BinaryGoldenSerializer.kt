@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package platform.test.motion.golden
+
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.ByteArrayOutputStream
+import java.io.Closeable
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+import java.io.Flushable
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import org.json.JSONObject
+
+/**
+ * Utility to (de-)serialize golden [TimeSeries] data in a compact, column-oriented binary format.
+ *
+ * Each feature is stored as a typed primitive array of its values, next to a per-frame state table
+ * (value, `null` or not found), after a single frame id table shared by all features. Compared to
+ * [JsonGoldenSerializer], goldens of long recordings are much smaller, faster to load and can be
+ * compared as [ColumnarTimeSeries] without creating a [DataPoint] per value.
+ *
+ * Features are written and read one at a time through [Writer] and [Reader], so neither side needs
+ * to hold the whole golden in memory. The human readable JSON format remains available through
+ * [toJson].
+ */
+class BinaryGoldenSerializer(
+    /**
+     * [DataPointType] implementations used to de-serialize values to golden values.
+     *
+     * @see DataPointTypes
+     */
+    private val dataPointTypes: List<DataPointType<*>>
+) {
+    /** Writes [golden] to [output]. [output] is flushed, but not closed. */
+    fun write(golden: TimeSeries, output: OutputStream) {
+        Writer(output, golden.frameIds).use { writer -> golden.features.forEach(writer::write) }
+    }
+
+    /** Writes [golden] to [output]. [output] is flushed, but not closed. */
+    fun write(golden: ColumnarTimeSeries, output: OutputStream) {
+        Writer(output, golden.frameIds).use { writer -> golden.features.forEach(writer::write) }
+    }
+
+    /**
+     * Reads a previously serialized [TimeSeries].
+     *
+     * Golden data types not supported by construction-time specified `dataPointTypes` will produce
+     * an [UnknownType].
+     *
+     * @throws IOException if the data is not a valid binary golden.
+     */
+    fun read(input: InputStream): TimeSeries = readColumnar(input).toTimeSeries(dataPointTypes)
+
+    /**
+     * Reads a previously serialized golden in its columnar form, without creating [DataPoint]s.
+     *
+     * @throws IOException if the data is not a valid binary golden.
+     */
+    fun readColumnar(input: InputStream): ColumnarTimeSeries {
+        val reader = Reader(input)
+        return ColumnarTimeSeries(reader.frameIds, reader.asSequence().toList())
+    }
+
+    /** Converts a binary golden to the human readable format of [JsonGoldenSerializer]. */
+    fun toJson(input: InputStream): JSONObject =
+        JsonGoldenSerializer(dataPointTypes).toJson(read(input))
+
+    /**
+     * Streaming writer of a binary golden.
+     *
+     * The [frameIds] table is written immediately, each [write] call appends one feature. [close]
+     * must be called to terminate the golden; it flushes, but does not close, the [output].
+     */
+    class Writer(output: OutputStream, private val frameIds: List<FrameId>) :
+        Closeable, Flushable {
+        private val output = DataOutputStream(BufferedOutputStream(output))
+        private val featureBuffer = ByteArrayOutputStream()
+        private var isClosed = false
+
+        init {
+            this.output.writeInt(MAGIC)
+            this.output.writeInt(VERSION)
+            this.output.writeInt(frameIds.size)
+            frameIds.forEach { writeFrameId(this.output, it) }
+        }
+
+        /**
+         * Appends [feature] to the golden.
+         *
+         * @throws IllegalArgumentException if the feature contains more than one data point type,
+         *   an [UnknownType] data point, or not exactly one data point per frame.
+         */
+        fun write(feature: Feature<*>) = write(ColumnarFeature.of(feature))
+
+        /**
+         * Appends [feature] to the golden.
+         *
+         * @throws IllegalArgumentException if the feature does not contain exactly one data point
+         *   per frame.
+         */
+        fun write(feature: ColumnarFeature) {
+            check(!isClosed) { "Writer is already closed" }
+            require(feature.size == frameIds.size) {
+                "Feature [${feature.name}] includes ${feature.size} data points, " +
+                    "but ${frameIds.size} data points are expected"
+            }
+            // Features are length-prefixed, so that readers can skip them without decoding.
+            featureBuffer.reset()
+            writeFeature(DataOutputStream(featureBuffer), feature)
+            output.writeByte(MARKER_FEATURE.toInt())
+            output.writeInt(featureBuffer.size())
+            featureBuffer.writeTo(output)
+        }
+
+        override fun flush() = output.flush()
+
+        override fun close() {
+            if (isClosed) return
+            isClosed = true
+            output.writeByte(MARKER_END.toInt())
+            output.flush()
+        }
+    }
+
+    /**
+     * Streaming reader of a binary golden.
+     *
+     * The [frameIds] table is read immediately, features are read one at a time while iterating.
+     * [skip] allows to skip over features without decoding them.
+     *
+     * @throws IOException if the data is not a valid binary golden.
+     */
+    class Reader(input: InputStream) : Iterator<ColumnarFeature> {
+        private val input = DataInputStream(BufferedInputStream(input))
+        private var nextMarker: Byte? = null
+
+        val frameIds: List<FrameId>
+
+        init {
+            if (this.input.readInt() != MAGIC) {
+                throw IOException("Not a binary motion golden")
+            }
+            val version = this.input.readInt()
+            if (version != VERSION) {
+                throw IOException("Unsupported binary motion golden version $version")
+            }
+            frameIds = List(this.input.readInt()) { readFrameId(this.input) }
+        }
+
+        override fun hasNext(): Boolean {
+            val marker = nextMarker ?: input.readByte().also { nextMarker = it }
+            return when (marker) {
+                MARKER_FEATURE -> true
+                MARKER_END -> false
+                else -> throw IOException("Unexpected feature marker $marker")
+            }
+        }
+
+        override fun next(): ColumnarFeature {
+            if (!hasNext()) throw NoSuchElementException()
+            nextMarker = null
+            input.readInt() // Feature length, only needed to skip.
+            val feature = readFeature(input)
+            if (feature.size != frameIds.size) {
+                throw IOException(
+                    "Feature [${feature.name}] includes ${feature.size} data points, " +
+                        "but ${frameIds.size} data points are expected"
+                )
+            }
+            return feature
+        }
+
+        /** Skips the next feature without decoding it. */
+        fun skip() {
+            if (!hasNext()) throw NoSuchElementException()
+            nextMarker = null
+            var remaining = input.readInt()
+            while (remaining > 0) {
+                val skipped = input.skipBytes(remaining)
+                if (skipped <= 0) throw EOFException()
+                remaining -= skipped
+            }
+        }
+    }
+
+    companion object {
+        // "MGLD"
+        private const val MAGIC = 0x4d474c44
+        private const val VERSION = 1
+
+        private const val MARKER_END: Byte = 0
+        private const val MARKER_FEATURE: Byte = 1
+
+        private const val FRAME_ID_TIMESTAMP: Byte = 0
+        private const val FRAME_ID_SUPPLEMENTAL: Byte = 1
+
+        private const val COLUMN_EMPTY: Byte = 0
+        private const val COLUMN_FLOAT: Byte = 1
+        private const val COLUMN_INT: Byte = 2
+        private const val COLUMN_BOOLEAN: Byte = 3
+        private const val COLUMN_STRING: Byte = 4
+        private const val COLUMN_JSON: Byte = 5
+
+        private fun writeFrameId(output: DataOutputStream, frameId: FrameId) {
+            when (frameId) {
+                is TimestampFrameId -> {
+                    output.writeByte(FRAME_ID_TIMESTAMP.toInt())
+                    output.writeLong(frameId.milliseconds)
+                }
+                is SupplementalFrameId -> {
+                    output.writeByte(FRAME_ID_SUPPLEMENTAL.toInt())
+                    writeString(output, frameId.label)
+                }
+            }
+        }
+
+        private fun readFrameId(input: DataInputStream): FrameId =
+            when (val type = input.readByte()) {
+                FRAME_ID_TIMESTAMP -> TimestampFrameId(input.readLong())
+                FRAME_ID_SUPPLEMENTAL -> SupplementalFrameId(readString(input))
+                else -> throw IOException("Unknown FrameId type $type")
+            }
+
+        private fun writeFeature(output: DataOutputStream, feature: ColumnarFeature) {
+            writeString(output, feature.name)
+            output.writeBoolean(feature.typeName != null)
+            feature.typeName?.let { writeString(output, it) }
+            output.writeInt(feature.size)
+            output.write(feature.states)
+
+            when (val column = feature.column) {
+                is Column.Empty -> output.writeByte(COLUMN_EMPTY.toInt())
+                is Column.Floats -> {
+                    output.writeByte(COLUMN_FLOAT.toInt())
+                    column.values.forEach(output::writeFloat)
+                }
+                is Column.Ints -> {
+                    output.writeByte(COLUMN_INT.toInt())
+                    column.values.forEach(output::writeInt)
+                }
+                is Column.Booleans -> {
+                    output.writeByte(COLUMN_BOOLEAN.toInt())
+                    column.values.forEach(output::writeBoolean)
+                }
+                is Column.Strings -> {
+                    output.writeByte(COLUMN_STRING.toInt())
+                    column.values.forEach { writeString(output, it) }
+                }
+                is Column.Json -> {
+                    output.writeByte(COLUMN_JSON.toInt())
+                    column.values.forEach { writeString(output, it) }
+                }
+            }
+        }
+
+        private fun readFeature(input: DataInputStream): ColumnarFeature {
+            val name = readString(input)
+            val typeName = if (input.readBoolean()) readString(input) else null
+            val states = ByteArray(input.readInt())
+            input.readFully(states)
+            val valueCount = states.count { it == DataPointState.VALUE }
+
+            val column =
+                when (val columnType = input.readByte()) {
+                    COLUMN_EMPTY -> Column.Empty
+                    COLUMN_FLOAT -> Column.Floats(FloatArray(valueCount) { input.readFloat() })
+                    COLUMN_INT -> Column.Ints(IntArray(valueCount) { input.readInt() })
+                    COLUMN_BOOLEAN ->
+                        Column.Booleans(BooleanArray(valueCount) { input.readBoolean() })
+                    COLUMN_STRING -> Column.Strings(Array(valueCount) { readString(input) })
+                    COLUMN_JSON -> Column.Json(Array(valueCount) { readString(input) })
+                    else -> throw IOException("Unknown column type $columnType")
+                }
+            try {
+                return ColumnarFeature(name, typeName, states, column)
+            } catch (e: IllegalArgumentException) {
+                throw IOException(e)
+            }
+        }
+
+        // DataOutputStream.writeUTF is limited to 64KB, which JSON values may exceed.
+        private fun writeString(output: DataOutputStream, value: String) {
+            val bytes = value.toByteArray(Charsets.UTF_8)
+            output.writeInt(bytes.size)
+            output.write(bytes)
+        }
+
+        private fun readString(input: DataInputStream): String {
+            val bytes = ByteArray(input.readInt())
+            input.readFully(bytes)
+            return String(bytes, Charsets.UTF_8)
+        }
+    }
+}
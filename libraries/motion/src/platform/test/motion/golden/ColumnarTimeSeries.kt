@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package platform.test.motion.golden
+
+import org.json.JSONArray
+
+/**
+ * Column-oriented representation of a [TimeSeries], as stored by [BinaryGoldenSerializer].
+ *
+ * Each feature keeps its values in a typed primitive array instead of a list of [DataPoint]s, so
+ * that large goldens can be loaded and compared without allocating an object per data point.
+ */
+data class ColumnarTimeSeries(val frameIds: List<FrameId>, val features: List<ColumnarFeature>) {
+    init {
+        features.forEach {
+            require(it.size == frameIds.size) {
+                "Feature [${it.name}] includes ${it.size} data points, " +
+                    "but ${frameIds.size} data points are expected"
+            }
+        }
+    }
+
+    /**
+     * Converts this to a [TimeSeries], resolving the feature types with [dataPointTypes].
+     *
+     * Golden data types not supported by `dataPointTypes` will produce an [UnknownType].
+     */
+    fun toTimeSeries(dataPointTypes: List<DataPointType<*>>): TimeSeries {
+        val typeRegistry = dataPointTypes.associateBy { it.typeName }
+        return TimeSeries(frameIds, features.map { it.toFeature(typeRegistry) })
+    }
+
+    companion object {
+        /**
+         * Converts [timeSeries] to its columnar representation.
+         *
+         * @throws IllegalArgumentException if a feature contains more than one data point type, or
+         *   an [UnknownType] data point.
+         */
+        fun of(timeSeries: TimeSeries) =
+            ColumnarTimeSeries(timeSeries.frameIds, timeSeries.features.map(ColumnarFeature::of))
+    }
+}
+
+/**
+ * Column-oriented representation of a [Feature].
+ *
+ * [states] holds one [DataPointState] per frame. The values of the [DataPointState.VALUE] frames
+ * are stored, in order, in [column].
+ */
+class ColumnarFeature(
+    val name: String,
+    /** [DataPointType.typeName] of the values, or `null` if the feature has no values. */
+    val typeName: String?,
+    val states: ByteArray,
+    val column: Column,
+) {
+    init {
+        require(column.size == states.count { it == DataPointState.VALUE }) {
+            "Feature [$name] includes ${column.size} values, " +
+                "but ${states.count { it == DataPointState.VALUE }} values are expected"
+        }
+    }
+
+    /** Number of data points in this feature. */
+    val size: Int
+        get() = states.size
+
+    internal fun toFeature(typeRegistry: Map<String, DataPointType<*>>): Feature<*> {
+        val type = typeName?.let { typeRegistry[it] }
+        var valueIndex = 0
+        val dataPoints =
+            List(states.size) { index ->
+                when (states[index]) {
+                    DataPointState.NULL -> DataPoint.nullValue()
+                    DataPointState.NOT_FOUND -> DataPoint.notFound()
+                    else -> {
+                        val value = column.jsonValueAt(valueIndex++)
+                        type?.fromJson(value) ?: DataPoint.unknownType<Any>()
+                    }
+                }
+            }
+        return Feature(name, dataPoints)
+    }
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is ColumnarFeature) return false
+        return name == other.name &&
+            typeName == other.typeName &&
+            states.contentEquals(other.states) &&
+            column == other.column
+    }
+
+    override fun hashCode(): Int {
+        var result = name.hashCode()
+        result = 31 * result + (typeName?.hashCode() ?: 0)
+        result = 31 * result + states.contentHashCode()
+        result = 31 * result + column.hashCode()
+        return result
+    }
+
+    override fun toString() = "ColumnarFeature(name=$name, typeName=$typeName, size=$size)"
+
+    companion object {
+        /**
+         * Converts [feature] to its columnar representation, in a single pass over its data points.
+         *
+         * @throws IllegalArgumentException if the feature contains more than one data point type,
+         *   or an [UnknownType] data point.
+         */
+        fun of(feature: Feature<*>): ColumnarFeature {
+            val states = ByteArray(feature.dataPoints.size)
+            var type: DataPointType<*>? = null
+            val values = ArrayList<Any>(feature.dataPoints.size)
+            for ((index, dataPoint) in feature.dataPoints.withIndex()) {
+                states[index] =
+                    when (dataPoint) {
+                        is ValueDataPoint<*> -> {
+                            val previousType = type
+                            require(
+                                previousType == null ||
+                                    previousType.typeName == dataPoint.type.typeName
+                            ) {
+                                "Feature [${feature.name}] contains more than one data point " +
+                                    "type: [${previousType?.typeName}, ${dataPoint.type.typeName}]"
+                            }
+                            type = dataPoint.type
+                            values.add(dataPoint.value)
+                            DataPointState.VALUE
+                        }
+                        is NullDataPoint -> DataPointState.NULL
+                        is NotFoundDataPoint -> DataPointState.NOT_FOUND
+                        is UnknownType ->
+                            throw IllegalArgumentException(
+                                "Feature [${feature.name}] must not contain UnknownDataPoints"
+                            )
+                    }
+            }
+            return ColumnarFeature(feature.name, type?.typeName, states, Column.of(type, values))
+        }
+    }
+}
+
+/** State of a single data point in a [ColumnarFeature]. */
+object DataPointState {
+    const val VALUE: Byte = 0
+    const val NULL: Byte = 1
+    const val NOT_FOUND: Byte = 2
+}
+
+/** Typed values of a [ColumnarFeature]. */
+sealed class Column {
+    abstract val size: Int
+
+    /** Returns the value at [index] as produced by [DataPointType.toJson]. */
+    internal abstract fun jsonValueAt(index: Int): Any
+
+    /** A feature without any values. */
+    object Empty : Column() {
+        override val size = 0
+
+        override fun jsonValueAt(index: Int): Any = throw IndexOutOfBoundsException("$index")
+    }
+
+    class Floats(val values: FloatArray) : Column() {
+        override val size
+            get() = values.size
+
+        override fun jsonValueAt(index: Int): Any = values[index]
+
+        override fun equals(other: Any?) = other is Floats && values.contentEquals(other.values)
+
+        override fun hashCode() = values.contentHashCode()
+    }
+
+    class Ints(val values: IntArray) : Column() {
+        override val size
+            get() = values.size
+
+        override fun jsonValueAt(index: Int): Any = values[index]
+
+        override fun equals(other: Any?) = other is Ints && values.contentEquals(other.values)
+
+        override fun hashCode() = values.contentHashCode()
+    }
+
+    class Booleans(val values: BooleanArray) : Column() {
+        override val size
+            get() = values.size
+
+        override fun jsonValueAt(index: Int): Any = values[index]
+
+        override fun equals(other: Any?) = other is Booleans && values.contentEquals(other.values)
+
+        override fun hashCode() = values.contentHashCode()
+    }
+
+    class Strings(val values: Array<String>) : Column() {
+        override val size
+            get() = values.size
+
+        override fun jsonValueAt(index: Int): Any = values[index]
+
+        override fun equals(other: Any?) = other is Strings && values.contentEquals(other.values)
+
+        override fun hashCode() = values.contentHashCode()
+    }
+
+    /**
+     * Values of types other than the [DataPointTypes], stored as their JSON text representation.
+     * Each value is wrapped in a single element JSON array, so that primitive JSON values can be
+     * read back as well.
+     */
+    class Json(val values: Array<String>) : Column() {
+        override val size
+            get() = values.size
+
+        override fun jsonValueAt(index: Int): Any = JSONArray(values[index]).get(0)
+
+        override fun equals(other: Any?) = other is Json && values.contentEquals(other.values)
+
+        override fun hashCode() = values.contentHashCode()
+    }
+
+    companion object {
+        internal fun of(type: DataPointType<*>?, values: List<Any>): Column {
+            return when {
+                type == null -> Empty
+                type === DataPointTypes.float ->
+                    Floats(FloatArray(values.size) { values[it] as Float })
+                type === DataPointTypes.int -> Ints(IntArray(values.size) { values[it] as Int })
+                type === DataPointTypes.boolean ->
+                    Booleans(BooleanArray(values.size) { values[it] as Boolean })
+                type === DataPointTypes.string ->
+                    Strings(Array(values.size) { values[it] as String })
+                else -> {
+                    @Suppress("UNCHECKED_CAST") val jsonType = type as DataPointType<Any>
+                    Json(
+                        Array(values.size) {
+                            JSONArray().put(jsonType.toJson(values[it])).toString()
+                        }
+                    )
+                }
+            }
+        }
+    }
+}
@@ -97,24 +97,28 @@ class JsonGoldenSerializer(
         JSONObject().apply {
             put(KEY_FEATURE_NAME, feature.name)
 
-            val dataPointTypes =
-                feature.dataPoints
-                    .filterIsInstance<ValueDataPoint<Any>>()
-                    .map { it.type.typeName }
-                    .toSet()
-            if (dataPointTypes.size == 1) {
-                put(KEY_FEATURE_TYPE, dataPointTypes.single())
-            } else if (dataPointTypes.size > 1) {
-                throw JSONException(
-                    "Feature [${feature.name}] contains more than one data point type: " +
-                        "[${dataPointTypes.joinToString()}]"
-                )
+            // Collect the type and the JSON values of the data points in a single pass.
+            var typeName: String? = null
+            val dataPoints = JSONArray()
+            for (dataPoint in feature.dataPoints) {
+                if (dataPoint is ValueDataPoint<*>) {
+                    val dataPointTypeName = dataPoint.type.typeName
+                    if (typeName == null) {
+                        typeName = dataPointTypeName
+                    } else if (typeName != dataPointTypeName) {
+                        throw JSONException(
+                            "Feature [${feature.name}] contains more than one data point type: " +
+                                "[$typeName, $dataPointTypeName]"
+                        )
+                    }
+                }
+                dataPoints.put(dataPoint.asJson())
+            }
+            if (typeName != null) {
+                put(KEY_FEATURE_TYPE, typeName)
             }
 
-            put(
-                KEY_FEATURE_DATAPOINTS,
-                JSONArray().apply { feature.dataPoints.map { it.asJson() }.forEach(this::put) }
-            )
+            put(KEY_FEATURE_DATAPOINTS, dataPoints)
         }
     companion object {
         private const val KEY_FRAME_IDS = "frame_ids"
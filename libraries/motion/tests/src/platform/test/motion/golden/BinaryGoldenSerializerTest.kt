@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package platform.test.motion.golden
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.google.common.truth.Truth.assertAbout
+import com.google.common.truth.Truth.assertThat
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import org.json.JSONObject
+import org.junit.Assert.assertThrows
+import org.junit.Test
+import org.junit.runner.RunWith
+import platform.test.motion.golden.DataPoint.Companion.notFound
+import platform.test.motion.golden.DataPoint.Companion.nullValue
+import platform.test.motion.golden.DataPoint.Companion.unknownType
+import platform.test.motion.golden.JsonSubject.Companion.json
+
+@RunWith(AndroidJUnit4::class)
+class BinaryGoldenSerializerTest {
+
+    data class Native(val id: String)
+
+    private val nativeType =
+        DataPointType(
+            "native",
+            jsonToValue = { Native((it as JSONObject).getString("id")) },
+            valueToJson = { JSONObject().put("id", it.id) }
+        )
+
+    private val subject = BinaryGoldenSerializer(DataPointTypes.allTypes + nativeType)
+
+    private fun TimeSeries.toBytes() =
+        ByteArrayOutputStream().also { subject.write(this, it) }.toByteArray()
+
+    private fun assertRoundTrip(timeSeries: TimeSeries) {
+        val bytes = timeSeries.toBytes()
+
+        assertThat(subject.read(ByteArrayInputStream(bytes))).isEqualTo(timeSeries)
+        assertThat(subject.readColumnar(ByteArrayInputStream(bytes)))
+            .isEqualTo(ColumnarTimeSeries.of(timeSeries))
+    }
+
+    @Test
+    fun emptyTimeSeries() {
+        assertRoundTrip(TimeSeries(listOf(), listOf()))
+    }
+
+    @Test
+    fun frameIds() {
+        assertRoundTrip(
+            TimeSeries(listOf(SupplementalFrameId("before"), TimestampFrameId(33)), listOf())
+        )
+    }
+
+    @Test
+    fun feature_withoutDataPoint() {
+        assertRoundTrip(TimeSeries(listOf(), listOf(Feature<Int>("foo", emptyList()))))
+    }
+
+    @Test
+    fun features_ofAllTypes() {
+        assertRoundTrip(
+            TimeSeries(
+                listOf(TimestampFrameId(1), TimestampFrameId(2)),
+                listOf(
+                    Feature("int", listOf(42.asDataPoint(), 43.asDataPoint())),
+                    Feature("float", listOf(1.5f.asDataPoint(), (-2f).asDataPoint())),
+                    Feature("boolean", listOf(true.asDataPoint(), false.asDataPoint())),
+                    Feature("string", listOf("one".asDataPoint(), "two".asDataPoint())),
+                    Feature(
+                        "native",
+                        listOf(
+                            nativeType.makeDataPoint(Native("a")),
+                            nativeType.makeDataPoint(Native("b"))
+                        )
+                    ),
+                )
+            )
+        )
+    }
+
+    @Test
+    fun feature_withNullAndNotFoundDataPoints() {
+        assertRoundTrip(
+            TimeSeries(
+                listOf(TimestampFrameId(1), TimestampFrameId(2), TimestampFrameId(3)),
+                listOf(Feature("foo", listOf(nullValue(), 43.asDataPoint(), notFound())))
+            )
+        )
+    }
+
+    @Test
+    fun serialize_featureWithMultipleTypesPerDataPoint_throws() {
+        assertThrows(IllegalArgumentException::class.java) {
+            TimeSeries(
+                    listOf(TimestampFrameId(1), TimestampFrameId(2)),
+                    listOf(Feature("foo", listOf(42.asDataPoint(), 42f.asDataPoint())))
+                )
+                .toBytes()
+        }
+    }
+
+    @Test
+    fun serialize_featureWithUnknownDataPoints_throws() {
+        assertThrows(IllegalArgumentException::class.java) {
+            TimeSeries(
+                    listOf(TimestampFrameId(1), TimestampFrameId(2)),
+                    listOf(Feature("foo", listOf(42.asDataPoint(), unknownType())))
+                )
+                .toBytes()
+        }
+    }
+
+    @Test
+    fun deserialize_featureWithUnknownType_producesUnknown() {
+        val bytes =
+            TimeSeries(
+                    listOf(TimestampFrameId(1), TimestampFrameId(2)),
+                    listOf(Feature("foo", listOf(nullValue(), 43.asDataPoint())))
+                )
+                .toBytes()
+
+        val timeSeries = BinaryGoldenSerializer(listOf()).read(ByteArrayInputStream(bytes))
+
+        assertThat(timeSeries)
+            .isEqualTo(
+                TimeSeries(
+                    listOf(TimestampFrameId(1), TimestampFrameId(2)),
+                    listOf(Feature<Any>("foo", listOf(nullValue(), unknownType())))
+                )
+            )
+    }
+
+    @Test
+    fun deserialize_invalidData_throws() {
+        assertThrows(IOException::class.java) {
+            subject.read(ByteArrayInputStream("{}".toByteArray()))
+        }
+    }
+
+    @Test
+    fun reader_skipsFeaturesWithoutDecoding() {
+        val timeSeries =
+            TimeSeries(
+                listOf(TimestampFrameId(1)),
+                listOf(
+                    Feature("first", listOf("skipped".asDataPoint())),
+                    Feature("second", listOf(42.asDataPoint())),
+                )
+            )
+
+        val reader = BinaryGoldenSerializer.Reader(ByteArrayInputStream(timeSeries.toBytes()))
+        reader.skip()
+        val feature = reader.next()
+
+        assertThat(reader.frameIds).containsExactly(TimestampFrameId(1))
+        assertThat(feature.name).isEqualTo("second")
+        assertThat((feature.column as Column.Ints).values).asList().containsExactly(42)
+        assertThat(reader.hasNext()).isFalse()
+    }
+
+    @Test
+    fun writer_streamsFeatures() {
+        val frameIds = listOf(TimestampFrameId(1), TimestampFrameId(2))
+        val output = ByteArrayOutputStream()
+        BinaryGoldenSerializer.Writer(output, frameIds).use {
+            it.write(Feature("foo", listOf(1.asDataPoint(), 2.asDataPoint())))
+            it.write(Feature("bar", listOf(true.asDataPoint(), notFound())))
+        }
+
+        assertThat(subject.read(ByteArrayInputStream(output.toByteArray())))
+            .isEqualTo(
+                TimeSeries(
+                    frameIds,
+                    listOf(
+                        Feature("foo", listOf(1.asDataPoint(), 2.asDataPoint())),
+                        Feature("bar", listOf(true.asDataPoint(), notFound())),
+                    )
+                )
+            )
+    }
+
+    @Test
+    fun writer_featureWithWrongSize_throws() {
+        val writer = BinaryGoldenSerializer.Writer(ByteArrayOutputStream(), listOf())
+
+        assertThrows(IllegalArgumentException::class.java) {
+            writer.write(Feature("foo", listOf(1.asDataPoint())))
+        }
+    }
+
+    @Test
+    fun columnarComparison_detectsDifferentValues() {
+        val frameIds = listOf(TimestampFrameId(1))
+        val golden = TimeSeries(frameIds, listOf(Feature("foo", listOf(1f.asDataPoint()))))
+        val actual = TimeSeries(frameIds, listOf(Feature("foo", listOf(2f.asDataPoint()))))
+
+        assertThat(subject.readColumnar(ByteArrayInputStream(golden.toBytes())))
+            .isNotEqualTo(ColumnarTimeSeries.of(actual))
+    }
+
+    @Test
+    fun toJson_matchesJsonGoldenSerializer() {
+        val timeSeries =
+            TimeSeries(
+                listOf(TimestampFrameId(1), SupplementalFrameId("after")),
+                listOf(Feature("foo", listOf(notFound(), 43.asDataPoint())))
+            )
+
+        assertAbout(json())
+            .that(subject.toJson(ByteArrayInputStream(timeSeries.toBytes())))
+            .isEqualTo(JsonGoldenSerializer(DataPointTypes.allTypes).toJson(timeSeries))
+    }
+}
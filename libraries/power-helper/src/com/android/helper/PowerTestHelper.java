@@ -26,12 +26,14 @@ import androidx.test.uiautomator.UiAutomatorTestCase;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Properties;
 
 public class PowerTestHelper extends UiAutomatorTestCase {
     private final static String PARAM_CONFIG = "conf";
+    // Write each power log line to storage as soon as it is logged.
+    private final static String PARAM_SYNC_POWER_LOG = "sync_power_log";
     private final static String SD_CARD_PATH =
         Environment.getExternalStorageDirectory().getAbsolutePath() + "/";
     private final static String POWER_OUTPUT = SD_CARD_PATH + "autotester.log";
@@ -40,6 +42,10 @@ public class PowerTestHelper extends UiAutomatorTestCase {
     private final static String TAG = "PowerTestHelper";
 
     private Bundle mParams;
+    // Loaded from the config file on first use.
+    private Properties mProperties;
+    // Power log lines not written to the power log file yet.
+    private final StringBuilder mPowerLog = new StringBuilder();
 
     @Override
     public Bundle getParams() {
@@ -59,6 +65,15 @@ public class PowerTestHelper extends UiAutomatorTestCase {
         SystemClock.sleep(SYNC_DELAY);
     }
 
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            flushPowerLog();
+        } finally {
+            super.tearDown();
+        }
+    }
+
     /**
      * Expects a file from the command line via conf param or default following
      * format each on its own line. <code>
@@ -107,16 +122,18 @@ public class PowerTestHelper extends UiAutomatorTestCase {
 
     private String getProperty(String key)
             throws FileNotFoundException, IOException {
-        String value;
-
-        Properties prop = new Properties();
-        FileInputStream inputStream = new FileInputStream(mParams.getString(PARAM_CONFIG,
-                PROPERTY_FILE_NAME));
-        prop.load(inputStream);
-        value = prop.getProperty(key);
-        inputStream.close();
-
-        return value;
+        if (mProperties == null) {
+            Properties prop = new Properties();
+            FileInputStream inputStream = new FileInputStream(mParams.getString(PARAM_CONFIG,
+                    PROPERTY_FILE_NAME));
+            try {
+                prop.load(inputStream);
+            } finally {
+                inputStream.close();
+            }
+            mProperties = prop;
+        }
+        return mProperties.getProperty(key);
     }
 
     /**
@@ -137,6 +154,8 @@ public class PowerTestHelper extends UiAutomatorTestCase {
      * Power log capture the time when the measurement start and end. It will be
      * merged with the monsoon raw power data to get the average power usage in
      * that particular time frame.
+     * The line is kept in memory until {@link #flushPowerLog()}, unless the
+     * sync_power_log param is true.
      * @param logType
      * @param testCase : Test case name
      * @param time : Specific time stamp
@@ -145,10 +164,38 @@ public class PowerTestHelper extends UiAutomatorTestCase {
      */
     protected void writePowerLog(String logType, String testCase, long time,
             long delay) throws IOException {
-        FileWriter outputWriter = new FileWriter(new File(POWER_OUTPUT), true);
-        outputWriter.write(String.format("%d %s %s\n", (time + delay),
+        mPowerLog.append(String.format("%d %s %s\n", (time + delay),
                 logType, testCase));
-        outputWriter.close();
+        if (isPowerLogSynced()) {
+            flushPowerLog();
+        }
+    }
+
+    /**
+     * Writes the power log lines logged since the last flush to the power log
+     * file, in a single write. Called when the test is torn down. If the
+     * sync_power_log param is true, the file is also synced to storage, so that
+     * lines are not lost if the device crashes.
+     * @throws IOException
+     */
+    protected void flushPowerLog() throws IOException {
+        if (mPowerLog.length() == 0) {
+            return;
+        }
+        FileOutputStream outputStream = new FileOutputStream(new File(POWER_OUTPUT), true);
+        try {
+            outputStream.write(mPowerLog.toString().getBytes());
+            if (isPowerLogSynced()) {
+                outputStream.getFD().sync();
+            }
+        } finally {
+            outputStream.close();
+        }
+        mPowerLog.setLength(0);
+    }
+
+    private boolean isPowerLogSynced() {
+        return Boolean.parseBoolean(getParams().getString(PARAM_SYNC_POWER_LOG));
     }
 
     protected void writePowerLogStart(String testCase) throws IOException {
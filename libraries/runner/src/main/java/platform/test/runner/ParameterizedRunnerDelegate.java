@@ -22,13 +22,17 @@ import org.junit.runners.model.FrameworkMethod;
 import org.junit.runners.model.TestClass;
 
 import java.lang.annotation.Annotation;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * Encapsulates reflection operations needed to instantiate and parameterize a test instance for
@@ -42,6 +46,21 @@ import java.util.Locale;
  */
 class ParameterizedRunnerDelegate {
 
+    /**
+     * Parameters of each test class, keyed by the class as loaded in the class loader the
+     * parameters were computed in. The parameter values may be instances of classes from that
+     * class loader, e.g. enum constants declared in the test. Values are soft references so that
+     * they cannot keep a discarded class loader alive once memory is needed.
+     */
+    private static final Map<Class<?>, SoftReference<List<Object>>> sParametersLists =
+            new WeakHashMap<>();
+
+    /**
+     * {@link Parameter} fields of each test class. Values only hold the names of the fields, so
+     * they do not reference the class.
+     */
+    private static final Map<Class<?>, ParameterFields> sParameterFields = new WeakHashMap<>();
+
     private final int mParametersIndex;
     private final String mName;
 
@@ -99,43 +118,35 @@ class ParameterizedRunnerDelegate {
         }
     }
 
-    @SuppressWarnings("unchecked")
     private void injectParametersIntoFields(
             Object testClassInstance, ClassLoader classLoader, final TestClass testClass)
             throws Exception {
-        // Robolectric uses a different class loader when running the tests, so referencing
-        // Parameter
-        // directly causes type mismatches. Instead, we find its class within the test's class
-        // loader.
-        Class<?> parameterClass = getClassInClassLoader(Parameter.class, classLoader);
         Object[] parameters = computeParams(classLoader, testClass);
-        HashSet<Integer> parameterFieldsFound = new HashSet<>();
-        for (Field field : testClassInstance.getClass().getFields()) {
-            Annotation parameter = field.getAnnotation((Class<Annotation>) parameterClass);
-            if (parameter != null) {
-                int index = (int) parameter.annotationType().getMethod("value").invoke(parameter);
-                parameterFieldsFound.add(index);
-                try {
-                    field.set(testClassInstance, parameters[index]);
-                } catch (IllegalArgumentException e) {
-                    throw new Exception(
-                            String.format(
-                                    "%s: Trying to set %s with the value %s that is not the right"
-                                            + " type (%s instead of %s).",
-                                    testClass.getName(),
-                                    field.getName(),
-                                    parameters[index],
-                                    parameters[index].getClass().getSimpleName(),
-                                    field.getType().getSimpleName()),
-                            e);
-                }
+        Class<?> instanceClass = testClassInstance.getClass();
+        ParameterFields parameterFields = getParameterFields(instanceClass, classLoader);
+        for (int i = 0; i < parameterFields.mNames.size(); i++) {
+            Field field = instanceClass.getField(parameterFields.mNames.get(i));
+            int index = parameterFields.mIndices.get(i);
+            try {
+                field.set(testClassInstance, parameters[index]);
+            } catch (IllegalArgumentException e) {
+                throw new Exception(
+                        String.format(
+                                "%s: Trying to set %s with the value %s that is not the right"
+                                        + " type (%s instead of %s).",
+                                testClass.getName(),
+                                field.getName(),
+                                parameters[index],
+                                parameters[index].getClass().getSimpleName(),
+                                field.getType().getSimpleName()),
+                        e);
             }
         }
-        if (parameterFieldsFound.size() != parameters.length) {
+        if (parameterFields.mIndicesFound.size() != parameters.length) {
             throw new IllegalStateException(
                     String.format(
                             "Provided %d parameters, but only found fields for parameters: %s",
-                            parameters.length, parameterFieldsFound));
+                            parameters.length, parameterFields.mIndicesFound));
         }
     }
 
@@ -200,9 +211,40 @@ class ParameterizedRunnerDelegate {
         return !getAnnotatedFieldsByParameter(testClass).isEmpty();
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Returns the parameters of the test class, computed within the provided class loader. The
+     * parameters method is only invoked once per class loader, the list is then shared by all the
+     * test instances created in it.
+     */
     static List<Object> getParametersList(TestClass testClass, ClassLoader classLoader)
             throws Throwable {
+        Class<?> klass = getClassInClassLoader(testClass.getJavaClass(), classLoader);
+        synchronized (sParametersLists) {
+            SoftReference<List<Object>> reference = sParametersLists.get(klass);
+            List<Object> parametersList = reference == null ? null : reference.get();
+            if (parametersList == null) {
+                parametersList = invokeParametersMethod(testClass, classLoader);
+                sParametersLists.put(klass, new SoftReference<>(parametersList));
+            }
+            return parametersList;
+        }
+    }
+
+    private static ParameterFields getParameterFields(
+            Class<?> instanceClass, ClassLoader classLoader) throws Exception {
+        synchronized (sParameterFields) {
+            ParameterFields parameterFields = sParameterFields.get(instanceClass);
+            if (parameterFields == null) {
+                parameterFields = new ParameterFields(instanceClass, classLoader);
+                sParameterFields.put(instanceClass, parameterFields);
+            }
+            return parameterFields;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> invokeParametersMethod(TestClass testClass, ClassLoader classLoader)
+            throws Throwable {
         return (List<Object>) getParametersMethod(testClass, classLoader).invokeExplosively(null);
     }
 
@@ -266,4 +308,29 @@ class ParameterizedRunnerDelegate {
         // Find the class in the class loader corresponding to the declaring class of the method.
         return classLoader.loadClass(klass.getName());
     }
+
+    /** Names of the fields of a test class annotated with {@link Parameter}, and their indices. */
+    private static class ParameterFields {
+        private final List<String> mNames = new ArrayList<>();
+        private final List<Integer> mIndices = new ArrayList<>();
+        private final HashSet<Integer> mIndicesFound = new HashSet<>();
+
+        @SuppressWarnings("unchecked")
+        ParameterFields(Class<?> instanceClass, ClassLoader classLoader) throws Exception {
+            // Robolectric uses a different class loader when running the tests, so referencing
+            // Parameter directly causes type mismatches. Instead, we find its class within the
+            // test's class loader.
+            Class<?> parameterClass = getClassInClassLoader(Parameter.class, classLoader);
+            for (Field field : instanceClass.getFields()) {
+                Annotation parameter = field.getAnnotation((Class<Annotation>) parameterClass);
+                if (parameter != null) {
+                    int index =
+                            (int) parameter.annotationType().getMethod("value").invoke(parameter);
+                    mNames.add(field.getName());
+                    mIndices.add(index);
+                    mIndicesFound.add(index);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package platform.test.runner.parameterized;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.junit.runners.model.TestClass;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+/** Unit tests for {@link ParameterizedRunnerDelegate}. */
+@RunWith(JUnit4.class)
+public class ParameterizedRunnerDelegateTest {
+
+    // Number of calls to the data() method of each test class below, in any class loader. Public
+    // as the copy of ListParameters in another class loader is in another runtime package.
+    public static int sListDataCalls;
+    private static int sFieldDataCalls;
+    private static int sConstructorDataCalls;
+
+    @Test
+    public void testGetParametersList_oncePerClassLoader() throws Throwable {
+        TestClass testClass = new TestClass(ListParameters.class);
+        ClassLoader classLoader = ListParameters.class.getClassLoader();
+
+        List<Object> parameters =
+                ParameterizedRunnerDelegate.getParametersList(testClass, classLoader);
+
+        assertSame(
+                parameters, ParameterizedRunnerDelegate.getParametersList(testClass, classLoader));
+        assertEquals(1, sListDataCalls);
+
+        ClassLoader otherClassLoader = new ReloadingClassLoader(ListParameters.class);
+        List<Object> otherParameters =
+                ParameterizedRunnerDelegate.getParametersList(testClass, otherClassLoader);
+
+        assertNotSame(parameters, otherParameters);
+        assertEquals(parameters, otherParameters);
+        assertSame(
+                otherParameters,
+                ParameterizedRunnerDelegate.getParametersList(testClass, otherClassLoader));
+        assertEquals(2, sListDataCalls);
+    }
+
+    @Test
+    public void testCreateTestInstance_fields() throws Exception {
+        TestClass testClass = new TestClass(FieldParameters.class);
+        for (int i = 0; i < 2; i++) {
+            ParameterizedRunnerDelegate delegate =
+                    new ParameterizedRunnerDelegate(i, "[" + i + "]");
+            for (int j = 0; j < 3; j++) {
+                FieldParameters instance =
+                        (FieldParameters)
+                                delegate.createTestInstance(FieldParameters.class, testClass);
+                assertEquals("p" + i, instance.mName);
+                assertEquals(i, instance.mIndex);
+            }
+        }
+        assertEquals(1, sFieldDataCalls);
+    }
+
+    @Test
+    public void testCreateTestInstance_constructor() throws Exception {
+        TestClass testClass = new TestClass(ConstructorParameters.class);
+        for (int i = 0; i < 2; i++) {
+            ParameterizedRunnerDelegate delegate =
+                    new ParameterizedRunnerDelegate(i, "[" + i + "]");
+            for (int j = 0; j < 3; j++) {
+                ConstructorParameters instance =
+                        (ConstructorParameters)
+                                delegate.createTestInstance(ConstructorParameters.class, testClass);
+                assertEquals("p" + i, instance.mName);
+            }
+        }
+        assertEquals(1, sConstructorDataCalls);
+    }
+
+    public static class ListParameters {
+        @Parameters
+        public static List<Object> data() {
+            sListDataCalls++;
+            return Arrays.asList("p0", "p1");
+        }
+    }
+
+    public static class FieldParameters {
+        @Parameter(0)
+        public String mName;
+
+        @Parameter(1)
+        public int mIndex;
+
+        @Parameters
+        public static List<Object[]> data() {
+            sFieldDataCalls++;
+            return Arrays.asList(new Object[] {"p0", 0}, new Object[] {"p1", 1});
+        }
+    }
+
+    public static class ConstructorParameters {
+        private final String mName;
+
+        public ConstructorParameters(String name) {
+            mName = name;
+        }
+
+        @Parameters
+        public static List<Object> data() {
+            sConstructorDataCalls++;
+            return Arrays.asList("p0", "p1");
+        }
+    }
+
+    /** Loads its own copy of a class, like Robolectric does in its sandboxes. */
+    private static class ReloadingClassLoader extends ClassLoader {
+        private final String mClassName;
+
+        ReloadingClassLoader(Class<?> klass) {
+            super(klass.getClassLoader());
+            mClassName = klass.getName();
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(mClassName)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> klass = findLoadedClass(name);
+                if (klass == null) {
+                    String resource = name.replace('.', '/') + ".class";
+                    try (InputStream input = getParent().getResourceAsStream(resource)) {
+                        byte[] bytes = input.readAllBytes();
+                        klass = defineClass(name, bytes, 0, bytes.length);
+                    } catch (IOException e) {
+                        throw new ClassNotFoundException(name, e);
+                    }
+                }
+                return klass;
+            }
+        }
+    }
+}
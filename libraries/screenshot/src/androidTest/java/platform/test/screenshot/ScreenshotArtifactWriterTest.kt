@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package platform.test.screenshot
+
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.graphics.Color
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.SmallTest
+import com.google.common.truth.Truth.assertThat
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.CountDownLatch
+import org.junit.Assert.assertThrows
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+
+@RunWith(AndroidJUnit4::class)
+@SmallTest
+class ScreenshotArtifactWriterTest {
+
+    @get:Rule val tempFolder = TemporaryFolder()
+
+    @Test
+    fun write_skipsPendingAndExistingFiles() {
+        val writer = ScreenshotArtifactWriter(workerCount = 1)
+        val release = CountDownLatch(1)
+        val pending = File(tempFolder.root, "pending.textproto")
+        val existing = tempFolder.newFile("existing.textproto").apply { writeText("existing") }
+
+        val queued =
+            writer.write(pending) {
+                release.await()
+                it.write("first".toByteArray())
+            }
+        assertThat(queued).isTrue()
+        assertThat(writer.write(pending) { it.write("second".toByteArray()) }).isFalse()
+        assertThat(writer.write(existing) { it.write("second".toByteArray()) }).isFalse()
+        release.countDown()
+        writer.flush()
+
+        assertThat(pending.readText()).isEqualTo("first")
+        assertThat(existing.readText()).isEqualTo("existing")
+    }
+
+    @Test
+    fun await_propagatesFailure() {
+        val writer = ScreenshotArtifactWriter()
+        val failing = File(tempFolder.root, "failing.pb")
+        val written = File(tempFolder.root, "written.pb")
+
+        writer.write(failing) { throw IllegalStateException("Encoding failed") }
+        writer.writeBytes(written, byteArrayOf(1, 2, 3))
+
+        val error = assertThrows(IOException::class.java) { writer.await(listOf(failing, written)) }
+        assertThat(error).hasMessageThat().contains(failing.absolutePath)
+        assertThat(error).hasCauseThat().isInstanceOf(IllegalStateException::class.java)
+        assertThat(written.readBytes()).isEqualTo(byteArrayOf(1, 2, 3))
+
+        // The failure is only reported once.
+        writer.await(listOf(failing, written))
+    }
+
+    @Test
+    fun write_runsOnCallerWhenQueueIsFull() {
+        val writer = ScreenshotArtifactWriter(workerCount = 1, queueCapacity = 1)
+        val release = CountDownLatch(1)
+        val writeThreads = mutableMapOf<String, Thread>()
+        fun write(name: String, block: Boolean = false) {
+            writer.write(File(tempFolder.root, name)) {
+                if (block) {
+                    release.await()
+                }
+                synchronized(writeThreads) { writeThreads[name] = Thread.currentThread() }
+            }
+        }
+
+        // The worker is busy with the first write and the second one fills the queue.
+        write("running", block = true)
+        write("queued")
+        write("caller")
+
+        assertThat(writeThreads["caller"]).isSameInstanceAs(Thread.currentThread())
+        release.countDown()
+        writer.flush()
+        assertThat(writeThreads["running"]).isNotSameInstanceAs(Thread.currentThread())
+        assertThat(writeThreads["queued"]).isNotSameInstanceAs(Thread.currentThread())
+    }
+
+    @Test
+    fun writeBitmap_allowsRecyclingRightAway() {
+        val writer = ScreenshotArtifactWriter()
+        val file = File(tempFolder.root, "actual.png")
+        val bitmap =
+            Bitmap.createBitmap(8, 4, Bitmap.Config.ARGB_8888).apply { eraseColor(Color.RED) }
+
+        writer.writeBitmap(file, bitmap)
+        bitmap.recycle()
+        writer.flush()
+
+        val written = BitmapFactory.decodeFile(file.absolutePath)
+        assertThat(written.width).isEqualTo(8)
+        assertThat(written.height).isEqualTo(4)
+        assertThat(written.getPixel(0, 0)).isEqualTo(Color.RED)
+    }
+}
@@ -171,6 +171,7 @@ class ScreenshotTestRuleTest {
         expectErrorMessage("Image mismatch! Comparison stats: '$compStatistics'") {
             first.assertAgainstGolden(rule, goldenIdentifier)
         }
+        rule.flushArtifacts()
 
         val resultProto = rule.getPathOnDeviceFor(RESULT_PROTO, goldenIdentifier)
         assertThat(resultProto.readText()).contains("FAILED")
@@ -209,6 +210,7 @@ class ScreenshotTestRuleTest {
         expectErrorMessage("Image mismatch! Comparison stats: '$compStatistics'") {
             first.assertAgainstGolden(rule, goldenIdentifier, matcher = PixelPerfectMatcher())
         }
+        rule.flushArtifacts()
 
         val resultProto = rule.getPathOnDeviceFor(RESULT_PROTO, goldenIdentifier)
         assertThat(resultProto.readText()).contains("FAILED")
@@ -244,6 +246,7 @@ class ScreenshotTestRuleTest {
 
         val goldenIdentifier = "round_rect_green"
         first.assertAgainstGolden(rule, goldenIdentifier, matcher = PixelPerfectMatcher())
+        rule.flushArtifacts()
 
         assertThat(rule.getPathOnDeviceFor(IMAGE_ACTUAL, goldenIdentifier).exists()).isFalse()
         assertThat(rule.getPathOnDeviceFor(IMAGE_DIFF, goldenIdentifier).exists()).isFalse()
@@ -253,6 +256,7 @@ class ScreenshotTestRuleTest {
         assertThrows(AssertionError::class.java) {
             second.assertAgainstGolden(rule, goldenIdentifier, matcher = PixelPerfectMatcher())
         }
+        rule.flushArtifacts()
 
         assertThat(rule.getPathOnDeviceFor(IMAGE_ACTUAL, goldenIdentifier).exists()).isTrue()
         assertThat(rule.getPathOnDeviceFor(IMAGE_DIFF, goldenIdentifier).exists()).isTrue()
@@ -268,6 +272,7 @@ class ScreenshotTestRuleTest {
         expectErrorMessage("Sizes are different! Expected: [48, 48], Actual: [720, 1184]") {
             first.assertAgainstGolden(rule, goldenIdentifier)
         }
+        rule.flushArtifacts()
 
         val resultProto = rule.getPathOnDeviceFor(RESULT_PROTO, goldenIdentifier)
         assertThat(resultProto.readText()).contains("FAILED")
@@ -294,6 +299,7 @@ class ScreenshotTestRuleTest {
         ) {
             first.assertAgainstGolden(rule, goldenIdentifier)
         }
+        rule.flushArtifacts()
 
         val resultProto = rule.getPathOnDeviceFor(RESULT_PROTO, goldenIdentifier)
         assertThat(resultProto.readText()).contains("MISSING_REFERENCE")
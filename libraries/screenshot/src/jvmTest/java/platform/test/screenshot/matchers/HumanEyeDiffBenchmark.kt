@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package platform.test.screenshot.matchers
+
+import com.google.common.truth.Truth.assertThat
+import kotlin.random.Random
+import org.junit.Test
+
+/**
+ * Compares [HumanEyeDiff] to [ReferenceHumanEyeDiff] on large, tablet and foldable sized, images.
+ *
+ * Results must be identical; the time taken by both is printed. To run it: `atest
+ * platform-screenshot-diff-jvm-benchmark`
+ */
+class HumanEyeDiffBenchmark {
+    private val random = Random(SEED)
+
+    @Test
+    fun tabletScreenshot() = benchmark("tablet", width = 2560, height = 1600)
+
+    @Test
+    fun foldableScreenshot() = benchmark("foldable", width = 2208, height = 1840)
+
+    @Test
+    fun smallScreenshot() = benchmark("small", width = 100, height = 37)
+
+    @Test
+    fun identicalScreenshot() {
+        val expected = randomImage(1080, 2400)
+        for (config in CONFIGS) {
+            val result =
+                HumanEyeDiff(config.first, config.second)
+                    .compare(expected, expected.copyOf(), 1080, 2400, filter = null)
+            assertThat(result.differentPixels).isEqualTo(0)
+            assertThat(result.diff).isNull()
+        }
+    }
+
+    private fun benchmark(name: String, width: Int, height: Int) {
+        val expected = randomImage(width, height)
+        val given = addDifferences(expected, width, height)
+        val regionFilter = BooleanArray(width * height) { (it % width) < width * 3 / 4 }
+
+        for ((accountForGrouping, accountForTransparency) in CONFIGS) {
+            for (filter in listOf(null, regionFilter)) {
+                val reference = ReferenceHumanEyeDiff(accountForGrouping, accountForTransparency)
+                val tiled = HumanEyeDiff(accountForGrouping, accountForTransparency)
+
+                var referenceResult: HumanEyeDiff.Result? = null
+                var tiledResult: HumanEyeDiff.Result? = null
+                val referenceNs = measure {
+                    referenceResult = reference.compare(expected, given, width, height, filter)
+                }
+                val tiledNs = measure {
+                    tiledResult = tiled.compare(expected, given, width, height, filter)
+                }
+
+                assertSameResult(tiledResult!!, referenceResult!!)
+                println(
+                    "HumanEyeDiffBenchmark[$name ${width}x$height, " +
+                        "grouping=$accountForGrouping, transparency=$accountForTransparency, " +
+                        "filtered=${filter != null}]: " +
+                        "reference=${referenceNs / 1_000_000}ms, tiled=${tiledNs / 1_000_000}ms"
+                )
+            }
+        }
+    }
+
+    private fun assertSameResult(actual: HumanEyeDiff.Result, expected: HumanEyeDiff.Result) {
+        assertThat(actual.ignoredPixels).isEqualTo(expected.ignoredPixels)
+        assertThat(actual.differentPixels).isEqualTo(expected.differentPixels)
+        if (expected.diff == null) {
+            assertThat(actual.diff).isNull()
+        } else {
+            assertThat(actual.diff).isEqualTo(expected.diff)
+        }
+    }
+
+    /** @return the median time of [ITERATIONS] runs of [block], after [WARMUP_ITERATIONS] runs */
+    private fun measure(block: () -> Unit): Long {
+        repeat(WARMUP_ITERATIONS) { block() }
+        val times =
+            LongArray(ITERATIONS) {
+                val start = System.nanoTime()
+                block()
+                System.nanoTime() - start
+            }
+        times.sort()
+        return times[ITERATIONS / 2]
+    }
+
+    private fun randomImage(width: Int, height: Int) =
+        IntArray(width * height) {
+            val alpha = if (random.nextInt(10) == 0) random.nextInt(256) else 0xff
+            (alpha shl 24) or (random.nextInt() and 0xffffff)
+        }
+
+    /** Adds isolated pixels, lines and blocks of pixels with small and large color differences. */
+    private fun addDifferences(expected: IntArray, width: Int, height: Int): IntArray {
+        val given = expected.copyOf()
+        repeat(width * height / 200) {
+            val index = random.nextInt(given.size)
+            given[index] = shift(given[index], random.nextInt(1, 40))
+        }
+        repeat(height / 20) {
+            val y = random.nextInt(height)
+            val shift = random.nextInt(1, 12)
+            for (x in 0 until width) {
+                given[y * width + x] = shift(given[y * width + x], shift)
+            }
+        }
+        val blockSize = minOf(64, width / 2, height / 2)
+        repeat(20) {
+            val left = random.nextInt(width - blockSize)
+            val top = random.nextInt(height - blockSize)
+            val shift = random.nextInt(1, 6)
+            for (y in top until top + blockSize) {
+                for (x in left until left + blockSize) {
+                    given[y * width + x] = shift(given[y * width + x], shift)
+                }
+            }
+        }
+        return given
+    }
+
+    private fun shift(color: Int, amount: Int): Int {
+        val green = (color shr 8) and 0xff
+        val shifted = if (green + amount > 0xff) green - amount else green + amount
+        return (color and 0xffff00ff.toInt()) or (shifted shl 8)
+    }
+
+    private companion object {
+        const val SEED = 42
+        const val WARMUP_ITERATIONS = 2
+        const val ITERATIONS = 5
+
+        /** accountForGrouping to accountForTransparency */
+        val CONFIGS = listOf(true to true, true to false, false to true, false to false)
+    }
+}
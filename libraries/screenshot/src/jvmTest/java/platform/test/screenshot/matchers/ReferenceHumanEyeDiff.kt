@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package platform.test.screenshot.matchers
+
+import kotlin.math.max
+
+/**
+ * Single-threaded, full-image comparison previously done by [HumanEyeMatcher], kept as the
+ * reference for [HumanEyeDiff]. Colors are decoded like `android.graphics.Color` does.
+ */
+internal class ReferenceHumanEyeDiff(
+    private val accountForGrouping: Boolean,
+    private val accountForTransparency: Boolean,
+) {
+    fun compare(
+        expected: IntArray,
+        given: IntArray,
+        width: Int,
+        height: Int,
+        filter: BooleanArray?
+    ): HumanEyeDiff.Result {
+        var ignored = 0
+
+        val colorDiffSqArray =
+            IntArray(width * height) { index ->
+                if (filter == null || filter[index]) {
+                    if (accountForTransparency) {
+                        colorDiffSqWithTransparency(expected[index], given[index])
+                    } else {
+                        colorDiffSq(expected[index], given[index])
+                    }
+                } else {
+                    ignored++
+                    IGNORED_COLOR_DIFF
+                }
+            }
+
+        fun isIndexSameForLargeArea(index: Int) = isSameForLargeArea(colorDiffSqArray[index])
+
+        if (!accountForGrouping) {
+            val diffArray = lazy { IntArray(width * height) }
+            var different = 0
+            expected.indices.forEach { index ->
+                if (!isIndexSameForLargeArea(index)) {
+                    diffArray.value[index] = MAGENTA
+                    different++
+                }
+            }
+            return HumanEyeDiff.Result(
+                ignored,
+                different,
+                if (diffArray.isInitialized()) diffArray.value else null
+            )
+        }
+
+        fun getEasiestThresholdFailed(x: Int, y: Int): Int? {
+            val colorDiff = colorDiffSqArray[x + width * y]
+            return when {
+                colorDiff == IGNORED_COLOR_DIFF -> null
+                colorDiff > THRESHOLD_ISOLATED_PIXEL_SQ -> THRESHOLD_ISOLATED_PIXEL_SQ
+                colorDiff > THRESHOLD_1PX_LINE_OF_PIXELS_SQ -> THRESHOLD_1PX_LINE_OF_PIXELS_SQ
+                colorDiff > THRESHOLD_2PX_LINE_OF_PIXELS_SQ -> THRESHOLD_2PX_LINE_OF_PIXELS_SQ
+                colorDiff > THRESHOLD_BLOCK_OF_PIXELS_SQ -> THRESHOLD_BLOCK_OF_PIXELS_SQ
+                else -> 0
+            }
+        }
+
+        var different = 0
+        val diffArray = lazy { IntArray(colorDiffSqArray.size) }
+
+        colorDiffSqArray.indices.forEach { index ->
+            if (isIndexSameForLargeArea(index)) return@forEach
+
+            val x = index % width
+            val y = index / width
+
+            val currThreshold = getEasiestThresholdFailed(x, y)!!
+            val upThreshold = if (y > 0) getEasiestThresholdFailed(x, y - 1) else null
+            val downThreshold = if (y < height - 1) getEasiestThresholdFailed(x, y + 1) else null
+            val leftThreshold = if (x > 0) getEasiestThresholdFailed(x - 1, y) else null
+            val rightThreshold = if (x < width - 1) getEasiestThresholdFailed(x + 1, y) else null
+
+            var neighbouringDiffs = 4
+            if (upThreshold != null && currThreshold > upThreshold) neighbouringDiffs--
+            if (downThreshold != null && currThreshold > downThreshold) neighbouringDiffs--
+            if (leftThreshold != null && currThreshold > leftThreshold) neighbouringDiffs--
+            if (rightThreshold != null && currThreshold > rightThreshold) neighbouringDiffs--
+
+            if (!isSame(colorDiffSqArray[index], neighbouringDiffs)) {
+                diffArray.value[index] = MAGENTA
+                different++
+            }
+        }
+
+        return HumanEyeDiff.Result(
+            ignored,
+            different,
+            if (diffArray.isInitialized()) diffArray.value else null
+        )
+    }
+
+    private fun colorDiffSqWithTransparency(referenceColor: Int, testColor: Int): Int {
+        val diffWithWhite =
+            colorDiffSq(
+                blendWithBackground(referenceColor, WHITE),
+                blendWithBackground(testColor, WHITE)
+            )
+        val diffWithBlack =
+            colorDiffSq(
+                blendWithBackground(referenceColor, BLACK),
+                blendWithBackground(testColor, BLACK)
+            )
+
+        return max(diffWithWhite, diffWithBlack)
+    }
+
+    private fun colorDiffSq(referenceColor: Int, testColor: Int): Int {
+        val green = green(referenceColor) - green(testColor)
+        val blue = blue(referenceColor) - blue(testColor)
+        val red = red(referenceColor) - red(testColor)
+        val redMean = (red(referenceColor) + red(testColor)) / 2
+        val redScalar = if (redMean < 128) 2 else 3
+        val blueScalar = if (redMean < 128) 3 else 2
+        val greenScalar = 4
+
+        return (redScalar * red * red) + (greenScalar * green * green) + (blueScalar * blue * blue)
+    }
+
+    private fun getThresholdSq(neighbouringDiffs: Int): Int =
+        when (neighbouringDiffs) {
+            0,
+            1 -> THRESHOLD_ISOLATED_PIXEL_SQ
+            2 -> THRESHOLD_1PX_LINE_OF_PIXELS_SQ
+            3 -> THRESHOLD_2PX_LINE_OF_PIXELS_SQ
+            4 -> THRESHOLD_BLOCK_OF_PIXELS_SQ
+            else ->
+                throw IllegalArgumentException(
+                    "Unsupported neighbouringDiffs value: $neighbouringDiffs"
+                )
+        }
+
+    private fun isSameForLargeArea(colorDiff: Int) = colorDiff <= THRESHOLD_BLOCK_OF_PIXELS_SQ
+
+    private fun isSame(colorDiff: Int, neighbouringDiffs: Int) =
+        colorDiff <= getThresholdSq(neighbouringDiffs)
+
+    private fun blendWithBackground(color: Int, backgroundColor: Int): Int {
+        val alpha: Float = (color ushr 24) / 255f
+        if (alpha == 1f) return color
+        if (alpha == 0f) return backgroundColor
+
+        val outRed = alpha * red(color) + (1 - alpha) * red(backgroundColor)
+        val outGreen = alpha * green(color) + (1 - alpha) * green(backgroundColor)
+        val outBlue = alpha * blue(color) + (1 - alpha) * blue(backgroundColor)
+
+        // Color.valueOf(red, green, blue).toArgb()
+        return (0xff shl 24) or
+            ((outRed / 255f * 255.0f + 0.5f).toInt() shl 16) or
+            ((outGreen / 255f * 255.0f + 0.5f).toInt() shl 8) or
+            (outBlue / 255f * 255.0f + 0.5f).toInt()
+    }
+
+    private companion object {
+        const val THRESHOLD_BLOCK_OF_PIXELS_SQ = 3 * 3
+        const val THRESHOLD_2PX_LINE_OF_PIXELS_SQ = 10 * 10
+        const val THRESHOLD_1PX_LINE_OF_PIXELS_SQ = 12 * 12
+        const val THRESHOLD_ISOLATED_PIXEL_SQ = 40 * 40
+
+        const val IGNORED_COLOR_DIFF = -1
+
+        const val WHITE = -0x1
+        const val BLACK = -0x1000000
+        const val MAGENTA = -0xff01
+
+        fun red(color: Int) = (color shr 16) and 0xff
+
+        fun green(color: Int) = (color shr 8) and 0xff
+
+        fun blue(color: Int) = color and 0xff
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package platform.test.screenshot
+
+import android.graphics.Bitmap
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Future
+import java.util.concurrent.FutureTask
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Writes screenshot test artifacts (images and result protos) to the device on a pool of background
+ * threads, so that PNG encoding and file I/O do not run on the test thread.
+ *
+ * Writes are queued on a bounded queue. When the queue is full, the calling thread performs the
+ * write itself, which bounds the memory held by pending bitmaps. [flush] waits for all the pending
+ * writes and reports the first failure, [await] only for the writes of the given files.
+ */
+class ScreenshotArtifactWriter(
+    workerCount: Int = DEFAULT_WORKER_COUNT,
+    queueCapacity: Int = DEFAULT_QUEUE_CAPACITY,
+) {
+    private val threadCount = AtomicInteger()
+    private val executor =
+        ThreadPoolExecutor(
+                workerCount,
+                workerCount,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                ArrayBlockingQueue(queueCapacity),
+                { runnable ->
+                    Thread(runnable, "ScreenshotArtifactWriter-${threadCount.incrementAndGet()}")
+                },
+                ThreadPoolExecutor.CallerRunsPolicy(),
+            )
+            .apply { allowCoreThreadTimeOut(true) }
+    private val pendingWrites = LinkedHashMap<File, Future<*>>()
+
+    /**
+     * Encodes [bitmap] as PNG into [file]. The bitmap is copied on the calling thread, so the
+     * caller is free to recycle it as soon as this returns.
+     */
+    fun writeBitmap(file: File, bitmap: Bitmap) {
+        if (isWrittenOrPending(file)) {
+            return
+        }
+        val copy = bitmap.copy(bitmap.config ?: Bitmap.Config.ARGB_8888, /* isMutable= */ false)
+        val queued =
+            write(file) { stream ->
+                try {
+                    copy.compress(Bitmap.CompressFormat.PNG, 0 /*ignored for png*/, stream)
+                } finally {
+                    copy.recycle()
+                }
+            }
+        if (!queued) {
+            copy.recycle()
+        }
+    }
+
+    /** Writes [bytes] into [file]. */
+    fun writeBytes(file: File, bytes: ByteArray) {
+        write(file) { it.write(bytes) }
+    }
+
+    /**
+     * Queues [writeAction] to write [file]. Nothing is written if the file already exists or is
+     * already queued, which happens when the same golden is compared repeatedly in one test.
+     *
+     * @return whether the write was queued.
+     */
+    fun write(file: File, writeAction: (FileOutputStream) -> Unit): Boolean {
+        val task =
+            FutureTask<Unit> {
+                try {
+                    FileOutputStream(file).use { writeAction(it) }
+                } catch (e: Exception) {
+                    throw IOException(
+                        "Could not write file to storage (path: ${file.absolutePath}). ",
+                        e
+                    )
+                }
+            }
+        synchronized(pendingWrites) {
+            if (isWrittenOrPending(file)) {
+                return false
+            }
+            pendingWrites[file] = task
+        }
+        // Submitted outside of the lock: with a full queue the write runs on this thread.
+        executor.execute(task)
+        return true
+    }
+
+    private fun isWrittenOrPending(file: File): Boolean =
+        synchronized(pendingWrites) { file.exists() || pendingWrites.containsKey(file) }
+
+    /**
+     * Blocks until the pending writes of [files] are done. Files which are not pending, e.g.
+     * because they were skipped or already awaited, are ignored.
+     *
+     * @throws IOException if any of the writes failed. All the pending writes are still awaited.
+     */
+    fun await(files: Collection<File>) {
+        val writes =
+            synchronized(pendingWrites) {
+                files.mapNotNull { file -> pendingWrites.remove(file)?.let { file to it } }
+            }
+        var failure: IOException? = null
+        for ((file, future) in writes) {
+            try {
+                future.get()
+            } catch (e: ExecutionException) {
+                val error =
+                    e.cause as? IOException
+                        ?: IOException("Could not write file ${file.absolutePath}", e.cause)
+                failure?.addSuppressed(error) ?: run { failure = error }
+            }
+        }
+        failure?.let { throw it }
+    }
+
+    /**
+     * Blocks until all the artifacts queued so far are written.
+     *
+     * @throws IOException if any of the writes failed. All the pending writes are still awaited.
+     */
+    fun flush() {
+        await(synchronized(pendingWrites) { pendingWrites.keys.toList() })
+    }
+
+    companion object {
+        private const val DEFAULT_WORKER_COUNT = 2
+        private const val DEFAULT_QUEUE_CAPACITY = 16
+        private const val KEEP_ALIVE_SECONDS = 5L
+
+        /** Writer shared by all the [ScreenshotTestRule]s of the test process. */
+        @JvmStatic val shared = ScreenshotArtifactWriter()
+    }
+}
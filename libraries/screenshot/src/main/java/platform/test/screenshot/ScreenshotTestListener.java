@@ -37,6 +37,9 @@ public class ScreenshotTestListener extends InstrumentationRunListener {
 
     @Override
     public void testRunFinished(Result result) throws Exception {
+        // Make sure the artifacts of the last test class are written before the run ends.
+        ScreenshotArtifactWriter.getShared().flush();
+
         // Skip cleaning up if we run Robolectric tests.
         if (Build.FINGERPRINT.contains("robolectric")) {
             return;
@@ -26,6 +26,7 @@ import android.os.Build
 import android.os.Bundle
 import android.platform.uiautomator_helpers.DeviceHelpers.shell
 import android.provider.Settings.System
+import android.util.Log
 import androidx.test.platform.app.InstrumentationRegistry
 import androidx.test.runner.screenshot.Screenshot
 import com.android.internal.app.SimpleIconFactory
@@ -53,6 +54,11 @@ import platform.test.screenshot.proto.ScreenshotResultProto
  * comparison against the given golden. All the results (including result proto file) are stored
  * into the device to be retrieved later.
  *
+ * Result files are encoded and written by the shared [ScreenshotArtifactWriter] off the test
+ * thread. Pending files are flushed once all the tests of a class are done, either when the first
+ * test of the next class starts, when this rule is used as a class rule, or by
+ * [ScreenshotTestListener] at the end of the run.
+ *
  * @see Bitmap.assertAgainstGolden
  */
 @SuppressLint("SyntheticAccessor")
@@ -73,11 +79,15 @@ open class ScreenshotTestRule(val goldenImagePathManager: GoldenImagePathManager
         object : Statement() {
             override fun evaluate() {
                 try {
+                    flushOnClassChange(description.className)
                     testIdentifier = getTestIdentifier(description)
                     SimpleIconFactory.setPoolEnabled(false)
                     base.evaluate()
                 } finally {
                     SimpleIconFactory.setPoolEnabled(true)
+                    if (description.isSuite) {
+                        artifactWriter?.flush()
+                    }
                 }
             }
         }
@@ -89,6 +99,35 @@ open class ScreenshotTestRule(val goldenImagePathManager: GoldenImagePathManager
     private fun isGradle(): Boolean =
         java.lang.System.getProperty("java.class.path").contains("gradle-worker.jar")
 
+    /** Writer for the on-device artifacts, or null to write them on the test thread. */
+    private val artifactWriter: ScreenshotArtifactWriter? =
+        if (isRobolectric) null else ScreenshotArtifactWriter.shared
+
+    /**
+     * Blocks until all the result files reported so far are written to the device.
+     *
+     * @throws IOException if any of the result files could not be written.
+     */
+    fun flushArtifacts() {
+        artifactWriter?.flush()
+    }
+
+    private fun flushOnClassChange(className: String) {
+        val writer = artifactWriter ?: return
+        synchronized(ScreenshotTestRule::class.java) {
+            if (lastTestClassName == className) {
+                return
+            }
+            lastTestClassName = className
+        }
+        try {
+            writer.flush()
+        } catch (e: IOException) {
+            // The failed artifacts belong to a previous test class, do not fail this one.
+            Log.e(TAG, "Failed to write screenshot test artifacts", e)
+        }
+    }
+
     fun Bitmap.writeTo(path: Path) {
         // Make sure we either create a new file or overwrite an existing one.
         check(!Files.exists(path) || Files.isRegularFile(path))
@@ -302,15 +341,15 @@ open class ScreenshotTestRule(val goldenImagePathManager: GoldenImagePathManager
             }
         }
 
-        writeToDevice(OutputFileType.RESULT_PROTO, goldenIdentifier) {
-                it.write(resultProto.build().toString().toByteArray())
-            }
+        val resultProtoText = resultProto.build().toString().toByteArray()
+        writeToDevice(OutputFileType.RESULT_PROTO, goldenIdentifier) { it.write(resultProtoText) }
             .also {
                 report.putString(bundleKeyPrefix + OutputFileType.RESULT_PROTO, it.absolutePath)
             }
 
+        val resultProtoBinary = resultProto.build().toByteArray()
         writeToDevice(OutputFileType.RESULT_BIN_PROTO, goldenIdentifier) {
-                it.write(resultProto.build().toByteArray())
+                it.write(resultProtoBinary)
             }
             .also {
                 report.putString(bundleKeyPrefix + OutputFileType.RESULT_BIN_PROTO, it.absolutePath)
@@ -414,23 +453,38 @@ open class ScreenshotTestRule(val goldenImagePathManager: GoldenImagePathManager
     }
 
     private fun Bitmap.writeToDevice(fileType: OutputFileType, goldenIdentifier: String): File {
+        val writer = artifactWriter
+        if (writer != null) {
+            val file = getPathOnDeviceFor(fileType, goldenIdentifier)
+            createDeviceLocalDirectory()
+            writer.writeBitmap(file, this)
+            return file
+        }
         return writeToDevice(fileType, goldenIdentifier) {
             compress(Bitmap.CompressFormat.PNG, 0 /*ignored for png*/, it)
         }
     }
 
+    private fun createDeviceLocalDirectory() {
+        val fileGolden = File(goldenImagePathManager.deviceLocalPath)
+        if (!fileGolden.exists() && !fileGolden.mkdirs()) {
+            throw IOException("Could not create folder $fileGolden.")
+        }
+    }
+
     private fun writeToDevice(
         fileType: OutputFileType,
         goldenIdentifier: String,
         writeAction: (FileOutputStream) -> Unit
     ): File {
-        val fileGolden = File(goldenImagePathManager.deviceLocalPath)
-        if (!fileGolden.exists() && !fileGolden.mkdirs()) {
-            throw IOException("Could not create folder $fileGolden.")
-        }
+        createDeviceLocalDirectory()
 
         val file = getPathOnDeviceFor(fileType, goldenIdentifier)
-        if (!file.exists()) {
+        val writer = artifactWriter
+        if (writer != null) {
+            // Duplicate file names are skipped by the writer as well.
+            writer.write(file, writeAction)
+        } else if (!file.exists()) {
             // file typically exists when in one test, the same golden image was repeatedly
             // compared with. In this scenario, multiple actual/expected/diff images with same
             // names will be attempted to write to the device.
@@ -484,6 +538,11 @@ open class ScreenshotTestRule(val goldenImagePathManager: GoldenImagePathManager
     }
 }
 
+private const val TAG = "ScreenshotTestRule"
+
+/** Class of the last test run with a [ScreenshotTestRule], used to flush artifacts per class. */
+private var lastTestClassName: String? = null
+
 typealias BitmapSupplier = () -> Bitmap
 
 /** Implements a screenshot asserter based on the ScreenshotRule */
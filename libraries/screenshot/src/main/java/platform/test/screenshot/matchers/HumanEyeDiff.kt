@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package platform.test.screenshot.matchers
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
+import java.util.stream.IntStream
+import kotlin.math.max
+
+/**
+ * Pixel comparison of [HumanEyeMatcher], free of Android dependencies so that it can run and be
+ * benchmarked on the host.
+ *
+ * Images are processed in bands of [BAND_ROWS] rows, in parallel for large images. Each band
+ * computes the color differences of its rows, plus the row above and below it to classify pixels
+ * on its edges, into a buffer owned by the thread processing it. Buffers are reused across bands
+ * and comparisons, so no per-pixel array is allocated unless pixels differ.
+ */
+internal class HumanEyeDiff(
+    private val accountForGrouping: Boolean,
+    private val accountForTransparency: Boolean,
+    private val parallel: Boolean = true,
+) {
+    /**
+     * Result of a comparison.
+     *
+     * @param ignoredPixels Number of pixels excluded by the filter
+     * @param differentPixels Number of pixels that differ
+     * @param diff ARGB diff image, in which differing pixels are magenta and all other pixels are
+     *   transparent. `null` if no pixel differs.
+     */
+    class Result(val ignoredPixels: Int, val differentPixels: Int, val diff: IntArray?)
+
+    /**
+     * Compares [given] to [expected].
+     *
+     * @param filter Whether each pixel should be compared, or `null` to compare all of them
+     */
+    fun compare(
+        expected: IntArray,
+        given: IntArray,
+        width: Int,
+        height: Int,
+        filter: BooleanArray?
+    ): Result {
+        val ignored = AtomicInteger()
+        val different = AtomicInteger()
+        val diff = AtomicReference<IntArray?>()
+        val bandCount = (height + BAND_ROWS - 1) / BAND_ROWS
+
+        val bands = IntStream.range(0, bandCount)
+        (if (parallel && width * height >= PARALLEL_MIN_PIXELS) bands.parallel() else bands)
+            .forEach { band ->
+                compareBand(expected, given, width, height, filter, band, ignored, different, diff)
+            }
+
+        return Result(ignored.get(), different.get(), diff.get())
+    }
+
+    private fun compareBand(
+        expected: IntArray,
+        given: IntArray,
+        width: Int,
+        height: Int,
+        filter: BooleanArray?,
+        band: Int,
+        ignoredCount: AtomicInteger,
+        differentCount: AtomicInteger,
+        diffRef: AtomicReference<IntArray?>
+    ) {
+        val startY = band * BAND_ROWS
+        val endY = minOf(startY + BAND_ROWS, height)
+        // Rows startY - 1 until endY + 1, clamped to the image.
+        val firstRow = max(startY - 1, 0)
+        val lastRow = minOf(endY + 1, height)
+        val buffer = bandBuffer((lastRow - firstRow) * width)
+
+        var ignored = 0
+        for (y in firstRow until lastRow) {
+            val offset = y * width
+            val bufferOffset = (y - firstRow) * width
+            val isBandRow = y in startY until endY
+            for (x in 0 until width) {
+                val index = offset + x
+                buffer[bufferOffset + x] =
+                    if (filter == null || filter[index]) {
+                        if (accountForTransparency) {
+                            colorDiffSqWithTransparency(expected[index], given[index])
+                        } else {
+                            colorDiffSq(expected[index], given[index])
+                        }
+                    } else {
+                        if (isBandRow) ignored++
+                        IGNORED_COLOR_DIFF
+                    }
+            }
+        }
+
+        var different = 0
+        var diff: IntArray? = null
+        for (y in startY until endY) {
+            val bufferOffset = (y - firstRow) * width
+            for (x in 0 until width) {
+                val colorDiff = buffer[bufferOffset + x]
+                // Also covers the ignored case
+                if (isSameForLargeArea(colorDiff)) continue
+
+                if (accountForGrouping) {
+                    val currThreshold = getEasiestThresholdFailed(colorDiff)
+                    // IGNORED_THRESHOLD = ignored or out of bounds of image
+                    val upThreshold =
+                        if (y > 0) {
+                            getEasiestThresholdFailed(buffer[bufferOffset + x - width])
+                        } else {
+                            IGNORED_THRESHOLD
+                        }
+                    val downThreshold =
+                        if (y < height - 1) {
+                            getEasiestThresholdFailed(buffer[bufferOffset + x + width])
+                        } else {
+                            IGNORED_THRESHOLD
+                        }
+                    val leftThreshold =
+                        if (x > 0) {
+                            getEasiestThresholdFailed(buffer[bufferOffset + x - 1])
+                        } else {
+                            IGNORED_THRESHOLD
+                        }
+                    val rightThreshold =
+                        if (x < width - 1) {
+                            getEasiestThresholdFailed(buffer[bufferOffset + x + 1])
+                        } else {
+                            IGNORED_THRESHOLD
+                        }
+
+                    // Pixels with lower diff thresholds are not counted as neighbouring diffs
+                    var neighbouringDiffs = 4
+                    if (isLowerThreshold(upThreshold, currThreshold)) neighbouringDiffs--
+                    if (isLowerThreshold(downThreshold, currThreshold)) neighbouringDiffs--
+                    if (isLowerThreshold(leftThreshold, currThreshold)) neighbouringDiffs--
+                    if (isLowerThreshold(rightThreshold, currThreshold)) neighbouringDiffs--
+
+                    if (isSame(colorDiff, neighbouringDiffs)) continue
+                }
+
+                var diffArray = diff
+                if (diffArray == null) {
+                    // Bands write disjoint pixels of the shared diff image.
+                    diffArray = diffRef.updateAndGet { it ?: IntArray(width * height) }!!
+                    diff = diffArray
+                }
+                diffArray[y * width + x] = MAGENTA
+                different++
+            }
+        }
+
+        ignoredCount.addAndGet(ignored)
+        differentCount.addAndGet(different)
+    }
+
+    private fun colorDiffSqWithTransparency(referenceColor: Int, testColor: Int): Int {
+        val diffWithWhite =
+            colorDiffSq(
+                blendWithBackground(referenceColor, WHITE),
+                blendWithBackground(testColor, WHITE)
+            )
+        val diffWithBlack =
+            colorDiffSq(
+                blendWithBackground(referenceColor, BLACK),
+                blendWithBackground(testColor, BLACK)
+            )
+
+        return max(diffWithWhite, diffWithBlack)
+    }
+
+    // ref
+    // R. F. Witzel, R. W. Burnham, and J. W. Onley. Threshold and suprathreshold perceptual color
+    // differences. J. Optical Society of America, 63:615{625, 1973. 14
+    private fun colorDiffSq(referenceColor: Int, testColor: Int): Int {
+        val green = green(referenceColor) - green(testColor)
+        val blue = blue(referenceColor) - blue(testColor)
+        val red = red(referenceColor) - red(testColor)
+        val redMean = (red(referenceColor) + red(testColor)) / 2
+        val redScalar = if (redMean < 128) 2 else 3
+        val blueScalar = if (redMean < 128) 3 else 2
+        val greenScalar = 4
+
+        return (redScalar * red * red) + (greenScalar * green * green) + (blueScalar * blue * blue)
+    }
+
+    /** Any alpha component of the [backgroundColor] will be ignored. */
+    private fun blendWithBackground(color: Int, backgroundColor: Int): Int {
+        val alpha: Float = alpha(color) / 255f
+        if (alpha == 1f) return color
+        if (alpha == 0f) return backgroundColor
+
+        val outRed = alpha * red(color) + (1 - alpha) * red(backgroundColor)
+        val outGreen = alpha * green(color) + (1 - alpha) * green(backgroundColor)
+        val outBlue = alpha * blue(color) + (1 - alpha) * blue(backgroundColor)
+
+        // Same rounding as Color.valueOf(outRed / 255f, outGreen / 255f, outBlue / 255f).toArgb()
+        return (0xff shl 24) or
+            (toComponent(outRed / 255f) shl 16) or
+            (toComponent(outGreen / 255f) shl 8) or
+            toComponent(outBlue / 255f)
+    }
+
+    private fun toComponent(value: Float): Int = (value * 255.0f + 0.5f).toInt()
+
+    /**
+     * This function is more lenient (uses a higher diff threshold) on isolated pixels than it is on
+     * lines or blocks of differing pixels. This is to emulate the human eye. It is harder to see
+     * color differences in very small objects as compared to larger ones.
+     */
+    private fun getThresholdSq(neighbouringDiffs: Int): Int =
+        when (neighbouringDiffs) {
+            0,
+            1 -> THRESHOLD_ISOLATED_PIXEL_SQ
+            2 -> THRESHOLD_1PX_LINE_OF_PIXELS_SQ
+            3 -> THRESHOLD_2PX_LINE_OF_PIXELS_SQ
+            4 -> THRESHOLD_BLOCK_OF_PIXELS_SQ
+            else ->
+                throw IllegalArgumentException(
+                    "Unsupported neighbouringDiffs value: $neighbouringDiffs"
+                )
+        }
+
+    private fun getEasiestThresholdFailed(colorDiff: Int): Int =
+        when {
+            colorDiff == IGNORED_COLOR_DIFF -> IGNORED_THRESHOLD
+            colorDiff > THRESHOLD_ISOLATED_PIXEL_SQ -> THRESHOLD_ISOLATED_PIXEL_SQ
+            colorDiff > THRESHOLD_1PX_LINE_OF_PIXELS_SQ -> THRESHOLD_1PX_LINE_OF_PIXELS_SQ
+            colorDiff > THRESHOLD_2PX_LINE_OF_PIXELS_SQ -> THRESHOLD_2PX_LINE_OF_PIXELS_SQ
+            colorDiff > THRESHOLD_BLOCK_OF_PIXELS_SQ -> THRESHOLD_BLOCK_OF_PIXELS_SQ
+            else -> 0
+        }
+
+    private fun isLowerThreshold(threshold: Int, currThreshold: Int) =
+        threshold != IGNORED_THRESHOLD && currThreshold > threshold
+
+    private fun isSameForLargeArea(colorDiff: Int) = colorDiff <= THRESHOLD_BLOCK_OF_PIXELS_SQ
+
+    private fun isSame(colorDiff: Int, neighbouringDiffs: Int) =
+        colorDiff <= getThresholdSq(neighbouringDiffs)
+
+    private companion object {
+        const val THRESHOLD_BLOCK_OF_PIXELS_SQ = 3 * 3
+        const val THRESHOLD_2PX_LINE_OF_PIXELS_SQ = 10 * 10
+        const val THRESHOLD_1PX_LINE_OF_PIXELS_SQ = 12 * 12
+        const val THRESHOLD_ISOLATED_PIXEL_SQ = 40 * 40
+
+        const val IGNORED_COLOR_DIFF = -1
+        const val IGNORED_THRESHOLD = -1
+
+        const val BAND_ROWS = 32
+        const val PARALLEL_MIN_PIXELS = 256 * 256
+
+        // Same values as android.graphics.Color
+        const val WHITE = -0x1
+        const val BLACK = -0x1000000
+        const val MAGENTA = -0xff01
+
+        val bandBuffers = ThreadLocal.withInitial { IntArray(0) }
+
+        fun bandBuffer(size: Int): IntArray {
+            val buffer = bandBuffers.get()
+            if (buffer.size >= size) return buffer
+            return IntArray(size).also { bandBuffers.set(it) }
+        }
+
+        fun alpha(color: Int) = color ushr 24
+
+        fun red(color: Int) = (color shr 16) and 0xff
+
+        fun green(color: Int) = (color shr 8) and 0xff
+
+        fun blue(color: Int) = color and 0xff
+    }
+}
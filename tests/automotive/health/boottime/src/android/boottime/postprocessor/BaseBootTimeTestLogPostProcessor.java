@@ -23,7 +23,13 @@ import com.android.tradefed.postprocessor.BasePostProcessor;
 import com.android.tradefed.result.LogFile;
 import com.android.tradefed.result.TestDescription;
 
+import com.google.common.collect.ArrayListMultimap;
+
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
@@ -33,6 +39,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 public class BaseBootTimeTestLogPostProcessor extends BasePostProcessor {
@@ -42,6 +52,17 @@ public class BaseBootTimeTestLogPostProcessor extends BasePostProcessor {
     @Option(name = "file-regex", description = "Regex for identifying a logcat file name.")
     protected Set<String> mFileRegex = new HashSet<>();
 
+    @Option(
+            name = "parallel-file-count",
+            description = "Maximum number of boot iteration log files analyzed in parallel.")
+    protected int mParallelFileCount = Runtime.getRuntime().availableProcessors();
+
+    /** Creates the analyzers which are fed every line of the log file of a boot iteration. */
+    protected interface BootLogAnalyzerFactory {
+        /** @param iteration index of the log file in the list of analyzed files */
+        List<BootLogAnalyzer> create(int iteration);
+    }
+
     /** {@inheritDoc} */
     @Override
     public Map<String, MetricMeasurement.Metric.Builder> processTestMetricsAndLogs(
@@ -96,6 +117,82 @@ public class BaseBootTimeTestLogPostProcessor extends BasePostProcessor {
         return tfMetrics;
     }
 
+    /**
+     * Analyze the log files of all the boot iterations. Each file is read once and every line is
+     * fed to all the analyzers created for it. Files are analyzed in parallel and the metrics are
+     * merged in file order, so that the n-th value of a metric belongs to the n-th iteration which
+     * reported it.
+     *
+     * @param files List of log files, one per boot iteration
+     * @param factory creates the analyzers for each file
+     * @return Multimap with metric keys and the values collected from each file
+     */
+    protected ArrayListMultimap<String, Double> analyzeFiles(
+            List<File> files, BootLogAnalyzerFactory factory) {
+        ArrayListMultimap<String, Double> metrics = ArrayListMultimap.create();
+        if (files.isEmpty()) {
+            return metrics;
+        }
+        int threadCount = Math.max(1, Math.min(mParallelFileCount, files.size()));
+        ExecutorService fileExecutor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<ArrayListMultimap<String, Double>>> results = new ArrayList<>();
+            for (int i = 0; i < files.size(); i++) {
+                File file = files.get(i);
+                int iteration = i;
+                results.add(
+                        fileExecutor.submit(() -> analyzeFile(file, factory.create(iteration))));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    metrics.putAll(results.get(i).get());
+                } catch (ExecutionException e) {
+                    LogUtil.CLog.e("Failed to analyze log file %s", files.get(i).getPath());
+                    LogUtil.CLog.e(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LogUtil.CLog.e("Interrupted while analyzing log files");
+        } finally {
+            fileExecutor.shutdownNow();
+        }
+        return metrics;
+    }
+
+    private ArrayListMultimap<String, Double> analyzeFile(
+            File file, List<BootLogAnalyzer> analyzers) {
+        LogUtil.CLog.d("Parsing log file %s", file.getPath());
+        ArrayListMultimap<String, Double> metrics = ArrayListMultimap.create();
+        List<BootLogAnalyzer> activeAnalyzers = new ArrayList<>(analyzers);
+        try (InputStreamReader ir = new InputStreamReader(new FileInputStream(file));
+                BufferedReader input = new BufferedReader(ir)) {
+            String line;
+            while ((line = input.readLine()) != null && !activeAnalyzers.isEmpty()) {
+                for (int i = activeAnalyzers.size() - 1; i >= 0; i--) {
+                    try {
+                        activeAnalyzers.get(i).processLine(line);
+                    } catch (IOException e) {
+                        // The analyzer failed, its error is reported when it is finished.
+                        activeAnalyzers.remove(i);
+                    }
+                }
+            }
+        } catch (IOException ioe) {
+            LogUtil.CLog.e("Failed to read log file %s", file.getPath());
+            LogUtil.CLog.e(ioe);
+        }
+        for (BootLogAnalyzer analyzer : analyzers) {
+            try {
+                analyzer.finish().forEach(metrics::put);
+            } catch (IOException ioe) {
+                LogUtil.CLog.e("Failed to analyze log file %s", file.getPath());
+                LogUtil.CLog.e(ioe);
+            }
+        }
+        return metrics;
+    }
+
     protected List<File> filterFiles(Map<String, LogFile> logs) {
         List<File> files = new ArrayList<>();
         for (Map.Entry<String, LogFile> entry : logs.entrySet()) {
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.boottime.postprocessor;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Analyzes a boot log one line at a time. All the analyzers registered for a log file are fed
+ * each line during a single pass over the file.
+ */
+public interface BootLogAnalyzer {
+    /** Consumes the next line of the log file. */
+    void processLine(String line) throws IOException;
+
+    /**
+     * Called once the whole log file has been consumed.
+     *
+     * @return Map with metric keys and values extracted from the log file
+     */
+    Map<String, Double> finish() throws IOException;
+}
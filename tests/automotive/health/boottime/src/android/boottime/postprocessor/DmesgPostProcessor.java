@@ -19,7 +19,6 @@ package android.boottime.postprocessor;
 import android.boottime.BootTimeTest;
 
 import com.android.loganalysis.item.DmesgActionInfoItem;
-import com.android.loganalysis.item.DmesgItem;
 import com.android.loganalysis.item.DmesgServiceInfoItem;
 import com.android.loganalysis.item.DmesgStageInfoItem;
 import com.android.loganalysis.parser.DmesgParser;
@@ -32,13 +31,8 @@ import com.android.tradefed.result.LogFile;
 import com.android.tradefed.result.TestDescription;
 
 import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimaps;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -101,33 +95,10 @@ public class DmesgPostProcessor extends BaseBootTimeTestLogPostProcessor {
      * @return Map with metric keys and stringified double values joined by comma
      */
     private Map<String, Metric.Builder> processDmesgLogs(List<File> dmesgFiles) {
-        ArrayListMultimap<String, Double> metrics = ArrayListMultimap.create();
-        for (File dmesgFile : dmesgFiles) {
-            CLog.d("Parsing dmesg file %s", dmesgFile.getPath());
-            DmesgParser dmesgLogParser = new DmesgParser();
-            try (InputStreamReader ir = new InputStreamReader(new FileInputStream(dmesgFile));
-                    BufferedReader input = new BufferedReader(ir)) {
-                DmesgItem dmesgItem = dmesgLogParser.parseInfo(input);
-                if (!dmesgItem.getServiceInfoItems().isEmpty()) {
-                    metrics.putAll(
-                            Multimaps.forMap(
-                                    analyzeDmesgServiceInfo(
-                                            dmesgItem.getServiceInfoItems().values())));
-                }
-                if (!dmesgItem.getStageInfoItems().isEmpty()) {
-                    metrics.putAll(
-                            Multimaps.forMap(analyzeDmesgStageInfo(dmesgItem.getStageInfoItems())));
-                }
-                if (!dmesgItem.getActionInfoItems().isEmpty()) {
-                    metrics.putAll(
-                            Multimaps.forMap(
-                                    analyzeDmesgActionInfo(dmesgItem.getActionInfoItems())));
-                }
-            } catch (IOException ioe) {
-                CLog.e("Failed to analyze the dmesg logs");
-                CLog.e(ioe);
-            }
-        }
+        ArrayListMultimap<String, Double> metrics =
+                analyzeFiles(
+                        dmesgFiles,
+                        iteration -> List.of(new DmesgInfoAnalyzer()));
         if (mBootloaderInfo) {
             ArrayListMultimap<String, Double> bootLoaderTimingInfos =
                     analyzeBootLoaderTimingInfo(metrics.get(DMESG_BOOT_COMPLETE_TIME));
@@ -136,6 +107,38 @@ public class DmesgPostProcessor extends BaseBootTimeTestLogPostProcessor {
         return buildTfMetrics(metrics.asMap());
     }
 
+    /**
+     * Feeds each dmesg line to a {@link DmesgParser} and extracts the service, stage and action
+     * info metrics once the whole file has been parsed.
+     */
+    private class DmesgInfoAnalyzer implements BootLogAnalyzer {
+        private final DmesgParser mParser = new DmesgParser();
+
+        /** {@inheritDoc} */
+        @Override
+        public void processLine(String line) {
+            if (!mParser.parseServiceInfo(line) && !mParser.parseStageInfo(line)) {
+                mParser.parseActionInfo(line);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Map<String, Double> finish() {
+            Map<String, Double> metrics = new HashMap<>();
+            if (!mParser.getServiceInfoItems().isEmpty()) {
+                metrics.putAll(analyzeDmesgServiceInfo(mParser.getServiceInfoItems().values()));
+            }
+            if (!mParser.getStageInfoItems().isEmpty()) {
+                metrics.putAll(analyzeDmesgStageInfo(mParser.getStageInfoItems()));
+            }
+            if (!mParser.getActionInfoItems().isEmpty()) {
+                metrics.putAll(analyzeDmesgActionInfo(mParser.getActionInfoItems()));
+            }
+            return metrics;
+        }
+    }
+
     /**
      * Analyze the services info parsed from the dmesg logs and construct the metrics as a part of
      * boot time data.
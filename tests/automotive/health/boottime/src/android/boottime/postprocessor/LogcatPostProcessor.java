@@ -26,17 +26,14 @@ import com.android.tradefed.metrics.proto.MetricMeasurement.Metric;
 import com.android.tradefed.result.LogFile;
 import com.android.tradefed.result.TestDescription;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimaps;
-
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -83,6 +80,12 @@ public class LogcatPostProcessor extends BaseBootTimeTestLogPostProcessor {
 
     private List<Double> mDmesgBootCompleteTimes;
 
+    // Parsed once from the options above and shared by the analyzers of all the logcat files.
+    private Set<String> mComponentSet;
+    private Set<String> mFullComponentSet;
+    private boolean mIsComponentFilterSet;
+    private Map<String, Pattern> mCompiledBootTimePatterns;
+
     /** {@inheritDoc} */
     @Override
     public Map<String, Metric.Builder> processTestMetricsAndLogs(
@@ -120,33 +123,49 @@ public class LogcatPostProcessor extends BaseBootTimeTestLogPostProcessor {
      * @return Map with metric keys and stringified double values joined by comma
      */
     private Map<String, Metric.Builder> processLogcatLogs(List<File> files) {
-        int iteration = 0;
-        ArrayListMultimap<String, Double> metrics = ArrayListMultimap.create();
-        for (File file : files) {
-            LogUtil.CLog.d("Parsing logcat file %s", file.getPath());
-            try (InputStreamReader ir = new InputStreamReader(new FileInputStream(file));
-                    BufferedReader input = new BufferedReader(ir)) {
-                metrics.putAll(Multimaps.forMap(analyzeGranularBootInfo(input)));
-                if (!mBootTimePatterns.isEmpty()) {
-                    metrics.putAll(
-                            Multimaps.forMap(
-                                    analyzeCustomBootInfo(
-                                            input, mDmesgBootCompleteTimes.get(iteration))));
-                } else {
-                    LogUtil.CLog.i(
-                            "No boot-time-pattern values provided. Skipping analyzeCustomBootInfo");
-                }
-            } catch (IOException ioe) {
-                LogUtil.CLog.e("Problem parsing the granular boot delay information");
-                LogUtil.CLog.e(ioe);
-            } catch (IndexOutOfBoundsException e) {
+        parseOptions();
+        if (mCompiledBootTimePatterns.isEmpty()) {
+            LogUtil.CLog.i("No boot-time-pattern values provided. Skipping analyzeCustomBootInfo");
+        }
+        return buildTfMetrics(analyzeFiles(files, this::createAnalyzers).asMap());
+    }
+
+    /** Creates the analyzers sharing a single pass over the logcat file of the given iteration. */
+    private List<BootLogAnalyzer> createAnalyzers(int iteration) {
+        List<ReaderBootLogAnalyzer.ReaderParser> parsers = new ArrayList<>();
+        parsers.add(this::analyzeGranularBootInfo);
+        if (!mCompiledBootTimePatterns.isEmpty()) {
+            if (mDmesgBootCompleteTimes == null || iteration >= mDmesgBootCompleteTimes.size()) {
                 LogUtil.CLog.e("Missing dmesg boot complete signals for iteration %d", iteration);
-                LogUtil.CLog.e(e);
+            } else {
+                double dmesgBootCompleteTime = mDmesgBootCompleteTimes.get(iteration);
+                parsers.add(input -> analyzeCustomBootInfo(input, dmesgBootCompleteTime));
             }
-            iteration++;
         }
+        return List.of(new ReaderBootLogAnalyzer(parsers));
+    }
 
-        return buildTfMetrics(metrics.asMap());
+    /** Splits the component lists and compiles the boot time patterns once for all the files. */
+    private void parseOptions() {
+        if (mCompiledBootTimePatterns != null) {
+            return;
+        }
+        mIsComponentFilterSet = mComponentNames != null || mFullCompNames != null;
+        mComponentSet =
+                mComponentNames == null
+                        ? new HashSet<>()
+                        : new HashSet<>(Arrays.asList(mComponentNames.split(",")));
+        mFullComponentSet =
+                mFullCompNames == null
+                        ? new HashSet<>()
+                        : new HashSet<>(Arrays.asList(mFullCompNames.split(",")));
+        mCompiledBootTimePatterns = new LinkedHashMap<>();
+        for (Map.Entry<String, String> pattern : mBootTimePatterns.entrySet()) {
+            LogUtil.CLog.d(
+                    "Adding boot metric with name: %s, pattern: %s",
+                    pattern.getKey(), pattern.getValue());
+            mCompiledBootTimePatterns.put(pattern.getKey(), Pattern.compile(pattern.getValue()));
+        }
     }
 
     /**
@@ -155,22 +174,6 @@ public class LogcatPostProcessor extends BaseBootTimeTestLogPostProcessor {
      */
     private Map<String, Double> analyzeGranularBootInfo(BufferedReader input) throws IOException {
         Map<String, Double> metrics = new HashMap<>();
-        String[] compStr = new String[0];
-        String[] fullCompStr = new String[0];
-        boolean isFilterSet = false;
-
-        if (null != mComponentNames) {
-            compStr = mComponentNames.split(",");
-            isFilterSet = true;
-        }
-        if (null != mFullCompNames) {
-            fullCompStr = mFullCompNames.split(",");
-            isFilterSet = true;
-        }
-
-        Set<String> compSet = new HashSet<>(Arrays.asList(compStr));
-        Set<String> fullCompSet = new HashSet<>(Arrays.asList(fullCompStr));
-
         TimingsLogParser parser = new TimingsLogParser();
         List<SystemServicesTimingItem> items = parser.parseSystemServicesTimingItems(input);
         for (SystemServicesTimingItem item : items) {
@@ -181,9 +184,9 @@ public class LogcatPostProcessor extends BaseBootTimeTestLogPostProcessor {
             // components otherwise
             // only for the given component names and full component
             // names.
-            if (!isFilterSet
-                    || compSet.contains(componentName)
-                    || fullCompSet.contains(fullCompName)) {
+            if (!mIsComponentFilterSet
+                    || mComponentSet.contains(componentName)
+                    || mFullComponentSet.contains(fullCompName)) {
                 Double time = item.getDuration() != null ? item.getDuration() : item.getStartTime();
                 if (time == null) {
                     continue;
@@ -200,12 +203,9 @@ public class LogcatPostProcessor extends BaseBootTimeTestLogPostProcessor {
         Map<String, Double> metrics = new HashMap<>();
         TimingsLogParser parser = new TimingsLogParser();
         parser.addDurationPatternPair(BOOT_PHASE_1000, KERNEL_START_PATTERN, LOGCAT_BOOT_COMPLETED);
-        for (Map.Entry<String, String> pattern : mBootTimePatterns.entrySet()) {
-            LogUtil.CLog.d(
-                    "Adding boot metric with name: %s, pattern: %s",
-                    pattern.getKey(), pattern.getValue());
+        for (Map.Entry<String, Pattern> pattern : mCompiledBootTimePatterns.entrySet()) {
             parser.addDurationPatternPair(
-                    pattern.getKey(), LOGCAT_BOOT_COMPLETED, Pattern.compile(pattern.getValue()));
+                    pattern.getKey(), LOGCAT_BOOT_COMPLETED, pattern.getValue());
         }
 
         List<GenericTimingItem> items = parser.parseGenericTimingItems(input);
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.boottime.postprocessor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link BootLogAnalyzer} for loganalysis parsers which only expose a {@link BufferedReader}
+ * entry point, such as {@link com.android.loganalysis.parser.TimingsLogParser}.
+ *
+ * <p>The lines fed through {@link #processLine(String)} are kept once and every parser reads them
+ * back from memory when the analyzer is finished, so the log file itself is still read a single
+ * time.
+ */
+public class ReaderBootLogAnalyzer implements BootLogAnalyzer {
+    /** A parser consuming all the lines available from the given reader. */
+    public interface ReaderParser {
+        Map<String, Double> parse(BufferedReader input) throws IOException;
+    }
+
+    private final List<ReaderParser> mParsers;
+    private final StringBuilder mLines = new StringBuilder();
+
+    public ReaderBootLogAnalyzer(List<ReaderParser> parsers) {
+        mParsers = parsers;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void processLine(String line) {
+        mLines.append(line).append('\n');
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, Double> finish() throws IOException {
+        Map<String, Double> metrics = new HashMap<>();
+        String lines = mLines.toString();
+        mLines.setLength(0);
+        for (ReaderParser parser : mParsers) {
+            try (BufferedReader input = new BufferedReader(new StringReader(lines))) {
+                metrics.putAll(parser.parse(input));
+            }
+        }
+        return metrics;
+    }
+}
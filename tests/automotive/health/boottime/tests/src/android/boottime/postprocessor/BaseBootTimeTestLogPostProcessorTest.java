@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.boottime.postprocessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ArrayListMultimap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/** Unit tests for the log analysis of {@link BaseBootTimeTestLogPostProcessor}. */
+@RunWith(JUnit4.class)
+public class BaseBootTimeTestLogPostProcessorTest {
+    @Rule public TemporaryFolder mTempFolder = new TemporaryFolder();
+
+    private final BaseBootTimeTestLogPostProcessor mProcessor =
+            new BaseBootTimeTestLogPostProcessor();
+
+    /** Test that every analyzer is fed all the lines of its file. */
+    @Test
+    public void testAnalyzeFiles_feedsEveryLineToEachAnalyzer() throws IOException {
+        List<File> files = List.of(writeFile("a", "1", "2", "3"));
+
+        ArrayListMultimap<String, Double> metrics =
+                mProcessor.analyzeFiles(
+                        files, iteration -> List.of(new SumAnalyzer("sum"), new CountAnalyzer()));
+
+        assertEquals(List.of(6.0), metrics.get("sum"));
+        assertEquals(List.of(3.0), metrics.get("count"));
+    }
+
+    /** Test that metrics are merged in file order whatever the number of parallel files. */
+    @Test
+    public void testAnalyzeFiles_keepsFileOrder() throws IOException {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            files.add(writeFile("file" + i, String.valueOf(i)));
+        }
+
+        for (int parallelFileCount : new int[] {1, 4}) {
+            mProcessor.mParallelFileCount = parallelFileCount;
+            ArrayListMultimap<String, Double> metrics =
+                    mProcessor.analyzeFiles(files, iteration -> List.of(new SumAnalyzer("sum")));
+
+            assertEquals(List.of(0.0, 1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0), metrics.get("sum"));
+        }
+    }
+
+    /** Test that a failing analyzer stops being fed without affecting the other analyzers. */
+    @Test
+    public void testAnalyzeFiles_failingAnalyzer() throws IOException {
+        List<File> files = List.of(writeFile("a", "1", "fail", "2"));
+        CountAnalyzer failingAnalyzer =
+                new CountAnalyzer() {
+                    @Override
+                    public void processLine(String line) throws IOException {
+                        if ("fail".equals(line)) {
+                            throw new IOException("Unexpected line");
+                        }
+                        super.processLine(line);
+                    }
+                };
+
+        ArrayListMultimap<String, Double> metrics =
+                mProcessor.analyzeFiles(
+                        files, iteration -> List.of(failingAnalyzer, new SumAnalyzer("sum")));
+
+        assertEquals(List.of(1.0), metrics.get("count"));
+        assertEquals(List.of(3.0), metrics.get("sum"));
+    }
+
+    /** Test that no metric is reported without files. */
+    @Test
+    public void testAnalyzeFiles_noFiles() {
+        assertTrue(
+                mProcessor
+                        .analyzeFiles(List.of(), iteration -> List.of(new CountAnalyzer()))
+                        .isEmpty());
+    }
+
+    private File writeFile(String name, String... lines) throws IOException {
+        File file = mTempFolder.newFile(name);
+        Files.write(file.toPath(), List.of(lines));
+        return file;
+    }
+
+    /** Sums the numeric lines of the file. */
+    private static class SumAnalyzer implements BootLogAnalyzer {
+        private final String mKey;
+        private double mSum;
+
+        SumAnalyzer(String key) {
+            mKey = key;
+        }
+
+        @Override
+        public void processLine(String line) {
+            try {
+                mSum += Double.parseDouble(line);
+            } catch (NumberFormatException e) {
+                // Not a value line.
+            }
+        }
+
+        @Override
+        public Map<String, Double> finish() {
+            return Map.of(mKey, mSum);
+        }
+    }
+
+    /** Counts the lines of the file. */
+    private static class CountAnalyzer implements BootLogAnalyzer {
+        private int mCount;
+
+        @Override
+        public void processLine(String line) throws IOException {
+            mCount++;
+        }
+
+        @Override
+        public Map<String, Double> finish() {
+            return Map.of("count", (double) mCount);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.boottime.postprocessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tradefed.config.ConfigurationException;
+import com.android.tradefed.config.OptionSetter;
+import com.android.tradefed.metrics.proto.MetricMeasurement.Metric;
+import com.android.tradefed.result.LogDataType;
+import com.android.tradefed.result.LogFile;
+import com.android.tradefed.result.TestDescription;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Unit tests for the line by line dmesg analysis of {@link DmesgPostProcessor}. */
+@RunWith(JUnit4.class)
+public class DmesgPostProcessorTest {
+    private static final String FIRST_STAGE_LINE = "[    1.500000] init: init first stage started!";
+    private static final String START_SERVICE_LINE =
+            "[    4.250000] init: starting service 'vold'...";
+    private static final String EARLY_INIT_ACTION_LINE =
+            "[    2.000000] init: processing action (early-init) from (/init.rc:14)";
+    private static final String BOOT_COMPLETED_ACTION_LINE =
+            "[   %s] init: processing action (sys.boot_completed=1) from (/init.rc:5)";
+
+    @Rule public TemporaryFolder mTempFolder = new TemporaryFolder();
+
+    private final TestDescription mTestDescription = new TestDescription("class", "test");
+    private DmesgPostProcessor mProcessor;
+
+    @Before
+    public void setUp() throws ConfigurationException {
+        mProcessor = new DmesgPostProcessor();
+        new OptionSetter(mProcessor).setOptionValue("file-regex", "dmesg.*");
+    }
+
+    /** Test that service, stage and action lines mixed in one file are all parsed. */
+    @Test
+    public void testServiceStageAndActionInfo() throws IOException {
+        Map<String, LogFile> logs =
+                Map.of(
+                        "dmesg_0",
+                        writeLog(
+                                "dmesg_0",
+                                FIRST_STAGE_LINE,
+                                EARLY_INIT_ACTION_LINE,
+                                "[    3.000000] init: unrelated line",
+                                START_SERVICE_LINE,
+                                String.format(BOOT_COMPLETED_ACTION_LINE, "25.000000")));
+
+        Map<String, Metric.Builder> metrics =
+                mProcessor.processTestMetricsAndLogs(mTestDescription, new HashMap<>(), logs);
+
+        assertEquals("4250.0", getValue(metrics, "init_vold_START_TIME"));
+        assertTrue(
+                metrics.keySet().stream()
+                        .anyMatch(
+                                key ->
+                                        key.startsWith("init_stage_first")
+                                                && key.endsWith("_START_TIME")));
+        assertEquals("2000.0", getValue(metrics, "action_early-init_/init.rc:14_START_TIME"));
+        assertEquals(
+                "25000.0",
+                getValue(metrics, BaseBootTimeTestLogPostProcessor.DMESG_BOOT_COMPLETE_TIME));
+    }
+
+    /** Test that the first boot completed action of each file is its boot complete time. */
+    @Test
+    public void testBootCompleteTimePerIteration() throws IOException {
+        Map<String, LogFile> logs =
+                Map.of(
+                        "dmesg_0",
+                        writeLog(
+                                "dmesg_0",
+                                String.format(BOOT_COMPLETED_ACTION_LINE, "25.000000"),
+                                String.format(BOOT_COMPLETED_ACTION_LINE, "26.000000")),
+                        "dmesg_1",
+                        writeLog(
+                                "dmesg_1",
+                                START_SERVICE_LINE,
+                                String.format(BOOT_COMPLETED_ACTION_LINE, "27.500000")));
+
+        Map<String, Metric.Builder> metrics =
+                mProcessor.processTestMetricsAndLogs(mTestDescription, new HashMap<>(), logs);
+
+        assertEquals(
+                "25000.0,27500.0",
+                getValue(metrics, BaseBootTimeTestLogPostProcessor.DMESG_BOOT_COMPLETE_TIME));
+        assertEquals("4250.0", getValue(metrics, "init_vold_START_TIME"));
+    }
+
+    private static String getValue(Map<String, Metric.Builder> metrics, String key) {
+        return metrics.get(key).getMeasurements().getSingleString();
+    }
+
+    private LogFile writeLog(String name, String... lines) throws IOException {
+        File file = mTempFolder.newFile(name + ".txt");
+        Files.write(file.toPath(), List.of(lines));
+        return new LogFile(file.getPath(), /* url= */ null, LogDataType.TEXT);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.boottime.postprocessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.android.tradefed.config.ConfigurationException;
+import com.android.tradefed.config.OptionSetter;
+import com.android.tradefed.metrics.proto.MetricMeasurement.Measurements;
+import com.android.tradefed.metrics.proto.MetricMeasurement.Metric;
+import com.android.tradefed.result.LogDataType;
+import com.android.tradefed.result.LogFile;
+import com.android.tradefed.result.TestDescription;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Unit tests for {@link LogcatPostProcessor}. */
+@RunWith(JUnit4.class)
+public class LogcatPostProcessorTest {
+    private static final String KERNEL_START_LINE =
+            "10-19 00:00:00.000     0     0 I         : Linux version 5.15.0";
+    private static final String START_WIFI_LINE =
+            "10-19 00:00:10.000  1005  1005 D SystemServerTiming: StartWifi took to complete: "
+                    + "3474ms";
+    private static final String BOOT_COMPLETED_LINE =
+            "10-19 00:00:20.000  1005  1005 I SystemServiceManager: Starting phase 1000";
+    private static final String CUSTOM_METRIC = "launcher_shown";
+    private static final String CUSTOM_PATTERN = "Displayed com.android.car.carlauncher";
+
+    @Rule public TemporaryFolder mTempFolder = new TemporaryFolder();
+
+    private final TestDescription mTestDescription = new TestDescription("class", "test");
+    private LogcatPostProcessor mProcessor;
+    private OptionSetter mOptionSetter;
+
+    @Before
+    public void setUp() throws ConfigurationException {
+        mProcessor = new LogcatPostProcessor();
+        mOptionSetter = new OptionSetter(mProcessor);
+        mOptionSetter.setOptionValue("file-regex", "logcat.*");
+    }
+
+    /** Test that the granular boot info is reported without custom boot time patterns. */
+    @Test
+    public void testGranularBootInfo() throws IOException {
+        Map<String, LogFile> logs =
+                Map.of("logcat_0", writeLog("logcat_0", KERNEL_START_LINE, START_WIFI_LINE));
+
+        Map<String, Metric.Builder> metrics =
+                mProcessor.processTestMetricsAndLogs(mTestDescription, new HashMap<>(), logs);
+
+        assertEquals("3474.0", getValue(metrics, "SystemServerTiming_StartWifi"));
+        assertFalse(metrics.containsKey(CUSTOM_METRIC));
+    }
+
+    /**
+     * Test that the custom boot info parser sees all the lines of the file when it runs after the
+     * granular boot info parser.
+     */
+    @Test
+    public void testCustomBootInfo_alongsideGranularBootInfo() throws Exception {
+        mOptionSetter.setOptionValue("boot-time-pattern", CUSTOM_METRIC, CUSTOM_PATTERN);
+        Map<String, LogFile> logs =
+                Map.of(
+                        "logcat_0",
+                        writeLog(
+                                "logcat_0",
+                                KERNEL_START_LINE,
+                                START_WIFI_LINE,
+                                BOOT_COMPLETED_LINE,
+                                launcherShownLine("00:00:22.500")));
+
+        Map<String, Metric.Builder> metrics =
+                mProcessor.processTestMetricsAndLogs(
+                        mTestDescription, dmesgBootCompleteTimes("10000.0"), logs);
+
+        assertEquals("3474.0", getValue(metrics, "SystemServerTiming_StartWifi"));
+        // Dmesg boot complete time plus the time from phase 1000 to the custom signal.
+        assertEquals("12500.0", getValue(metrics, CUSTOM_METRIC));
+        assertEquals("30000.0", getValue(metrics, "starting_phase_1000"));
+    }
+
+    /** Test that each logcat file is paired with the dmesg boot complete time of its iteration. */
+    @Test
+    public void testCustomBootInfo_perIteration() throws Exception {
+        mOptionSetter.setOptionValue("boot-time-pattern", CUSTOM_METRIC, CUSTOM_PATTERN);
+        Map<String, LogFile> logs =
+                Map.of(
+                        "logcat_0",
+                        writeLog(
+                                "logcat_0",
+                                KERNEL_START_LINE,
+                                BOOT_COMPLETED_LINE,
+                                launcherShownLine("00:00:21.000")),
+                        "logcat_1",
+                        writeLog(
+                                "logcat_1",
+                                KERNEL_START_LINE,
+                                BOOT_COMPLETED_LINE,
+                                launcherShownLine("00:00:23.000")));
+
+        Map<String, Metric.Builder> metrics =
+                mProcessor.processTestMetricsAndLogs(
+                        mTestDescription, dmesgBootCompleteTimes("10000.0,20000.0"), logs);
+
+        assertEquals("11000.0,23000.0", getValue(metrics, CUSTOM_METRIC));
+    }
+
+    /** Test that the custom boot info is skipped without the dmesg boot complete times. */
+    @Test
+    public void testCustomBootInfo_missingDmesgBootComplete() throws Exception {
+        mOptionSetter.setOptionValue("boot-time-pattern", CUSTOM_METRIC, CUSTOM_PATTERN);
+        Map<String, LogFile> logs =
+                Map.of(
+                        "logcat_0",
+                        writeLog(
+                                "logcat_0",
+                                KERNEL_START_LINE,
+                                START_WIFI_LINE,
+                                BOOT_COMPLETED_LINE,
+                                launcherShownLine("00:00:22.500")));
+
+        Map<String, Metric.Builder> metrics =
+                mProcessor.processTestMetricsAndLogs(mTestDescription, new HashMap<>(), logs);
+
+        assertEquals("3474.0", getValue(metrics, "SystemServerTiming_StartWifi"));
+        assertFalse(metrics.containsKey(CUSTOM_METRIC));
+    }
+
+    private static String launcherShownLine(String time) {
+        return String.format(
+                "10-19 %s  1005  1030 I ActivityTaskManager: %s/.CarLauncher: +1s0ms",
+                time, CUSTOM_PATTERN);
+    }
+
+    private static HashMap<String, Metric> dmesgBootCompleteTimes(String times) {
+        HashMap<String, Metric> metrics = new HashMap<>();
+        metrics.put(
+                BaseBootTimeTestLogPostProcessor.DMESG_BOOT_COMPLETE_TIME,
+                Metric.newBuilder()
+                        .setMeasurements(Measurements.newBuilder().setSingleString(times))
+                        .build());
+        return metrics;
+    }
+
+    private static String getValue(Map<String, Metric.Builder> metrics, String key) {
+        return metrics.get(key).getMeasurements().getSingleString();
+    }
+
+    private LogFile writeLog(String name, String... lines) throws IOException {
+        File file = mTempFolder.newFile(name + ".txt");
+        Files.write(file.toPath(), List.of(lines));
+        return new LogFile(file.getPath(), /* url= */ null, LogDataType.TEXT);
+    }
+}
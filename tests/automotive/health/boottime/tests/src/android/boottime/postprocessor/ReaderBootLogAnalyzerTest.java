@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.boottime.postprocessor;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/** Unit tests for {@link ReaderBootLogAnalyzer}. */
+@RunWith(JUnit4.class)
+public class ReaderBootLogAnalyzerTest {
+
+    /** Test that every parser reads all the lines fed to the analyzer. */
+    @Test
+    public void testFinish_eachParserReadsAllLines() throws IOException {
+        ReaderBootLogAnalyzer analyzer =
+                new ReaderBootLogAnalyzer(
+                        List.of(
+                                input -> Map.of("line_count", (double) countLines(input)),
+                                input -> Map.of("first_line", Double.valueOf(input.readLine()))));
+        analyzer.processLine("1");
+        analyzer.processLine("2");
+        analyzer.processLine("3");
+
+        Map<String, Double> metrics = analyzer.finish();
+
+        assertEquals(Map.of("line_count", 3.0, "first_line", 1.0), metrics);
+    }
+
+    /** Test that a parser stopping early does not affect the following parsers. */
+    @Test
+    public void testFinish_parserStoppingEarly() throws IOException {
+        ReaderBootLogAnalyzer analyzer =
+                new ReaderBootLogAnalyzer(
+                        List.of(
+                                input -> Map.of("first_line", Double.valueOf(input.readLine())),
+                                input -> Map.of("line_count", (double) countLines(input))));
+        analyzer.processLine("5");
+        analyzer.processLine("6");
+
+        Map<String, Double> metrics = analyzer.finish();
+
+        assertEquals(Map.of("first_line", 5.0, "line_count", 2.0), metrics);
+    }
+
+    private static int countLines(BufferedReader input) throws IOException {
+        int count = 0;
+        while (input.readLine() != null) {
+            count++;
+        }
+        return count;
+    }
+}